@@ -10,31 +10,42 @@ USE tfi_bd1;
 
 -- Idempotencia: recrear el esquema sin borrar la base completa
 SET FOREIGN_KEY_CHECKS = 0;
+DROP TABLE IF EXISTS secuencia;
+DROP TABLE IF EXISTS resumen_contadores;
+DROP TABLE IF EXISTS historia_clinica_archivo;
+DROP TABLE IF EXISTS paciente_archivo;
 DROP TABLE IF EXISTS historia_clinica;
 DROP TABLE IF EXISTS paciente;
 SET FOREIGN_KEY_CHECKS = 1;
 
 -- Tabla A: PACIENTE
+-- Los ids de paciente e historia_clinica no son AUTO_INCREMENT: los asigna la aplicación
+-- (GeneradorIds, tabla secuencia) y las cargas masivas los envían explícitos.
 CREATE TABLE paciente (
-  id               BIGINT AUTO_INCREMENT PRIMARY KEY,
+  id               BIGINT PRIMARY KEY,
   nombre           VARCHAR(80)  NOT NULL,
   apellido         VARCHAR(80)  NOT NULL,
   dni              VARCHAR(15)  NOT NULL UNIQUE,
   fecha_nacimiento DATE,
   eliminado        TINYINT(1)   NOT NULL DEFAULT 0,
+  version          INT          NOT NULL DEFAULT 0, -- Control de concurrencia optimista
+  fecha_alta       DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP, -- Registro del paciente
+  fecha_eliminacion DATETIME    NULL, -- Último borrado lógico (NULL si está activo)
   CONSTRAINT chk_paciente_eliminado CHECK (eliminado IN (0,1))
 );
 
 -- Tabla B: HISTORIA CLÍNICA
 CREATE TABLE historia_clinica (
-  id                 BIGINT AUTO_INCREMENT PRIMARY KEY,
+  id                 BIGINT PRIMARY KEY,
   nro_historia       VARCHAR(20) UNIQUE,
   grupo_sanguineo    ENUM('A+','A-','B+','B-','AB+','AB-','O+','O-') NOT NULL,
   antecedentes       TEXT,
   medicacion_actual  TEXT,
   observaciones      TEXT,
   eliminado          TINYINT(1) NOT NULL DEFAULT 0,
+  version            INT        NOT NULL DEFAULT 0, -- Control de concurrencia optimista
   paciente_id        BIGINT     NOT NULL UNIQUE,
+  fecha_eliminacion  DATETIME   NULL, -- Último borrado lógico (NULL si está activa)
 
   CONSTRAINT chk_hc_eliminado CHECK (eliminado IN (0,1)),
   CONSTRAINT fk_hist_paciente
@@ -42,3 +53,98 @@ CREATE TABLE historia_clinica (
     ON DELETE CASCADE
     ON UPDATE RESTRICT
 );
+
+-- Índices de listados: cubren las proyecciones (PacienteResumen / HistoriaClinicaResumen),
+-- que se resuelven sin leer las filas completas ni los TEXT. InnoDB agrega el id (PK)
+-- a cada índice secundario.
+CREATE INDEX idx_paciente_listado ON paciente (eliminado, apellido, nombre, dni, fecha_nacimiento);
+CREATE INDEX idx_hc_listado ON historia_clinica (eliminado, nro_historia, grupo_sanguineo);
+
+-- Búsqueda de pacientes por prefijo de nombre (el prefijo de apellido usa idx_paciente_listado).
+CREATE INDEX idx_paciente_nombre ON paciente (eliminado, nombre, apellido, dni, fecha_nacimiento);
+-- Búsqueda aproximada (errores de tipeo): índice FULLTEXT con parser ngram. Para trigramas,
+-- configurar ngram_token_size=3 en el servidor (my.cnf) antes de crear el índice (el valor por defecto es 2).
+CREATE FULLTEXT INDEX ft_paciente_nombre ON paciente (apellido, nombre) WITH PARSER ngram;
+
+-- Búsqueda de texto completo en antecedentes, medicación actual y observaciones
+CREATE FULLTEXT INDEX ft_hc_textos ON historia_clinica (antecedentes, medicacion_actual, observaciones);
+
+-- Filtros de reportes (FiltroPaciente): rango de fecha de nacimiento (edad) y grupo sanguíneo
+CREATE INDEX idx_paciente_nacimiento ON paciente (eliminado, fecha_nacimiento);
+CREATE INDEX idx_hc_grupo ON historia_clinica (eliminado, grupo_sanguineo, paciente_id);
+
+-- Reporte demográfico: altas de pacientes por mes (índice cubriente, sin leer las filas)
+CREATE INDEX idx_paciente_alta ON paciente (fecha_alta);
+
+-- Tabla C: RESUMEN DE CONTADORES (estadísticas del sistema)
+-- Fila única mantenida por la aplicación con incrementos en la misma transacción de cada
+-- escritura, y recalculada periódicamente (EstadisticasService.reconciliarResumen).
+CREATE TABLE resumen_contadores (
+  id                     TINYINT  PRIMARY KEY, -- Fila única (id = 1)
+  pacientes_activos      BIGINT   NOT NULL DEFAULT 0,
+  pacientes_eliminados   BIGINT   NOT NULL DEFAULT 0,
+  pacientes_con_historia BIGINT   NOT NULL DEFAULT 0, -- Activos con Historia Clínica activa
+  historias_activas      BIGINT   NOT NULL DEFAULT 0,
+  historias_eliminadas   BIGINT   NOT NULL DEFAULT 0,
+  -- Historias Clínicas activas por grupo sanguíneo
+  historias_a_pos        BIGINT   NOT NULL DEFAULT 0,
+  historias_a_neg        BIGINT   NOT NULL DEFAULT 0,
+  historias_b_pos        BIGINT   NOT NULL DEFAULT 0,
+  historias_b_neg        BIGINT   NOT NULL DEFAULT 0,
+  historias_ab_pos       BIGINT   NOT NULL DEFAULT 0,
+  historias_ab_neg       BIGINT   NOT NULL DEFAULT 0,
+  historias_o_pos        BIGINT   NOT NULL DEFAULT 0,
+  historias_o_neg        BIGINT   NOT NULL DEFAULT 0,
+  reconciliado           DATETIME NULL, -- Último recálculo completo
+  CONSTRAINT chk_resumen_fila_unica CHECK (id = 1)
+);
+INSERT INTO resumen_contadores (id) VALUES (1);
+
+-- Archivado (ArchivadoService): eliminados hace más del período de retención
+CREATE INDEX idx_paciente_eliminacion ON paciente (eliminado, fecha_eliminacion);
+CREATE INDEX idx_hc_eliminacion ON historia_clinica (eliminado, fecha_eliminacion);
+
+-- Tablas D y E: ARCHIVO (almacenamiento frío)
+-- Pacientes e Historias Clínicas eliminados hace más del período de retención, movidos
+-- fuera de las tablas principales para que no ocupen sus índices. Mismas columnas que
+-- las originales (se conservan los ids para poder recuperarlos) y sin FK: una Historia
+-- Clínica archivada puede ser de un paciente activo. Los ids no se reutilizan porque
+-- salen de la tabla secuencia, que nunca retrocede.
+CREATE TABLE paciente_archivo (
+  id                BIGINT       PRIMARY KEY,
+  nombre            VARCHAR(80)  NOT NULL,
+  apellido          VARCHAR(80)  NOT NULL,
+  dni               VARCHAR(15)  NOT NULL,
+  fecha_nacimiento  DATE,
+  eliminado         TINYINT(1)   NOT NULL,
+  version           INT          NOT NULL,
+  fecha_alta        DATETIME     NOT NULL,
+  fecha_eliminacion DATETIME     NULL,
+  archivado         DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  INDEX idx_paciente_archivo_listado (apellido, nombre)
+) ROW_FORMAT = COMPRESSED;
+
+CREATE TABLE historia_clinica_archivo (
+  id                 BIGINT      PRIMARY KEY,
+  nro_historia       VARCHAR(20),
+  grupo_sanguineo    ENUM('A+','A-','B+','B-','AB+','AB-','O+','O-') NOT NULL,
+  antecedentes       TEXT,
+  medicacion_actual  TEXT,
+  observaciones      TEXT,
+  eliminado          TINYINT(1)  NOT NULL,
+  version            INT         NOT NULL,
+  paciente_id        BIGINT      NOT NULL,
+  fecha_eliminacion  DATETIME    NULL,
+  archivado          DATETIME    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  INDEX idx_hc_archivo_paciente (paciente_id)
+) ROW_FORMAT = COMPRESSED;
+
+-- Tabla F: SECUENCIAS (GeneradorIds)
+-- La aplicación reserva bloques de valores (hi/lo) con un UPDATE por bloque, así conoce los
+-- ids de un lote antes de insertarlo. valor es el último valor reservado. 'nro_historia'
+-- numera los números de Historia Clínica generados (HC-<n>).
+CREATE TABLE secuencia (
+  nombre VARCHAR(40) PRIMARY KEY,
+  valor  BIGINT      NOT NULL
+);
+INSERT INTO secuencia (nombre, valor) VALUES ('paciente', 0), ('historia_clinica', 0), ('nro_historia', 0);
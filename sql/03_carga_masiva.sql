@@ -11,6 +11,8 @@ SET FOREIGN_KEY_CHECKS = 0;
 -- Se vacian las tablas para asegurar un inicio desde cero.
 TRUNCATE TABLE historia_clinica;
 TRUNCATE TABLE paciente;
+TRUNCATE TABLE historia_clinica_archivo;
+TRUNCATE TABLE paciente_archivo;
 
 -- Se reactiva la revisión de FK.
 SET FOREIGN_KEY_CHECKS = 1;
@@ -22,7 +24,7 @@ SET @@cte_max_recursion_depth = 200001;
 
 -- 4. CARGA MASIVA DE PACIENTES (Tabla Padre)
 -- Se usa WITH RECURSIVE para generar 200,000 números
-INSERT INTO paciente (id, nombre, apellido, dni, fecha_nacimiento, eliminado)
+INSERT INTO paciente (id, nombre, apellido, dni, fecha_nacimiento, eliminado, fecha_alta)
 WITH RECURSIVE NumberGenerator (n) AS (
   SELECT 1
   UNION ALL
@@ -36,7 +38,9 @@ SELECT
   sa.apellido, -- Apellido desde la tabla semilla unida
   CONCAT('DNI-', g.n),
   DATE_SUB(CURDATE(), INTERVAL FLOOR(18 + (RAND(g.n * 3) * 62)) YEAR),
-  0
+  0,
+  -- Altas repartidas en los últimos 10 años
+  DATE_SUB(NOW(), INTERVAL FLOOR(RAND(g.n * 7) * 3650) DAY)
 FROM
   NumberGenerator g
   -- Unimos con nombres: (g.n % 100) da un número entre 0-99. Le sumamos 1
@@ -57,7 +61,33 @@ SELECT
 FROM
   paciente p;
 
--- 6. VERIFICACIÓN
+-- 6. RESUMEN DE CONTADORES
+-- La carga masiva no pasa por la aplicación: se recalculan los contadores de las estadísticas.
+UPDATE resumen_contadores SET
+  pacientes_activos = (SELECT COUNT(*) FROM paciente WHERE eliminado = FALSE),
+  pacientes_eliminados = (SELECT COUNT(*) FROM paciente WHERE eliminado = TRUE),
+  pacientes_con_historia = (SELECT COUNT(*) FROM paciente p JOIN historia_clinica hc ON hc.paciente_id = p.id WHERE p.eliminado = FALSE AND hc.eliminado = FALSE),
+  historias_activas = (SELECT COUNT(*) FROM historia_clinica WHERE eliminado = FALSE),
+  historias_eliminadas = (SELECT COUNT(*) FROM historia_clinica WHERE eliminado = TRUE),
+  historias_a_pos = (SELECT COUNT(*) FROM historia_clinica WHERE eliminado = FALSE AND grupo_sanguineo = 'A+'),
+  historias_a_neg = (SELECT COUNT(*) FROM historia_clinica WHERE eliminado = FALSE AND grupo_sanguineo = 'A-'),
+  historias_b_pos = (SELECT COUNT(*) FROM historia_clinica WHERE eliminado = FALSE AND grupo_sanguineo = 'B+'),
+  historias_b_neg = (SELECT COUNT(*) FROM historia_clinica WHERE eliminado = FALSE AND grupo_sanguineo = 'B-'),
+  historias_ab_pos = (SELECT COUNT(*) FROM historia_clinica WHERE eliminado = FALSE AND grupo_sanguineo = 'AB+'),
+  historias_ab_neg = (SELECT COUNT(*) FROM historia_clinica WHERE eliminado = FALSE AND grupo_sanguineo = 'AB-'),
+  historias_o_pos = (SELECT COUNT(*) FROM historia_clinica WHERE eliminado = FALSE AND grupo_sanguineo = 'O+'),
+  historias_o_neg = (SELECT COUNT(*) FROM historia_clinica WHERE eliminado = FALSE AND grupo_sanguineo = 'O-'),
+  reconciliado = NOW()
+WHERE id = 1;
+
+-- 7. SECUENCIAS
+-- Los ids y números de historia cargados no pasan por GeneradorIds: las secuencias siguen
+-- después de los valores cargados (HC-<id del paciente>).
+UPDATE secuencia SET valor = (SELECT COALESCE(MAX(id), 0) FROM paciente) WHERE nombre = 'paciente';
+UPDATE secuencia SET valor = (SELECT COALESCE(MAX(id), 0) FROM historia_clinica) WHERE nombre = 'historia_clinica';
+UPDATE secuencia SET valor = (SELECT COALESCE(MAX(paciente_id), 0) FROM historia_clinica) WHERE nombre = 'nro_historia';
+
+-- 8. VERIFICACIÓN
 -- Se muestran todos los conteos necesarios
 SELECT 'paciente' AS Tabla, COUNT(*) AS Total FROM paciente
 UNION ALL
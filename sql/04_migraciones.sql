@@ -0,0 +1,148 @@
+-- ===============================================
+-- MIGRACIONES SOBRE UNA BASE YA CREADA
+-- ===============================================
+-- 01_esquema.sql ya incluye estos cambios. Este script es para bases creadas con
+-- una versión anterior del esquema, sin tener que recrear las tablas ni perder datos.
+-- Ejecutar las secciones nuevas en orden.
+USE tfi_bd1;
+
+-- 1. CONTROL DE CONCURRENCIA OPTIMISTA
+-- Columna version: cada UPDATE la incrementa y exige la versión leída
+-- (WHERE id = ? AND version = ?), así se detectan las actualizaciones perdidas.
+ALTER TABLE paciente
+  ADD COLUMN version INT NOT NULL DEFAULT 0;
+ALTER TABLE historia_clinica
+  ADD COLUMN version INT NOT NULL DEFAULT 0;
+
+-- 2. ÍNDICES CUBRIENTES PARA LISTADOS
+-- Las proyecciones de los listados (id, nombre, apellido, dni, fecha de nacimiento e ID
+-- de la HC; id, número y grupo de la HC) se leen solo desde estos índices.
+CREATE INDEX idx_paciente_listado ON paciente (eliminado, apellido, nombre, dni, fecha_nacimiento);
+CREATE INDEX idx_hc_listado ON historia_clinica (eliminado, nro_historia, grupo_sanguineo);
+
+-- 3. BÚSQUEDA DE PACIENTES POR APELLIDO/NOMBRE
+-- Prefijo de nombre (el de apellido usa idx_paciente_listado) y búsqueda aproximada
+-- con FULLTEXT ngram (ngram_token_size=3 en my.cnf para trigramas; el valor por defecto es 2).
+CREATE INDEX idx_paciente_nombre ON paciente (eliminado, nombre, apellido, dni, fecha_nacimiento);
+CREATE FULLTEXT INDEX ft_paciente_nombre ON paciente (apellido, nombre) WITH PARSER ngram;
+
+-- 4. BÚSQUEDA DE TEXTO COMPLETO EN HISTORIAS CLÍNICAS
+-- Antecedentes, medicación actual y observaciones (MATCH ... AGAINST en BOOLEAN MODE).
+CREATE FULLTEXT INDEX ft_hc_textos ON historia_clinica (antecedentes, medicacion_actual, observaciones);
+
+-- 5. FILTROS COMBINADOS DE PACIENTES (REPORTES)
+-- La edad se filtra como rango de fecha_nacimiento y el grupo sanguíneo desde la HC.
+CREATE INDEX idx_paciente_nacimiento ON paciente (eliminado, fecha_nacimiento);
+CREATE INDEX idx_hc_grupo ON historia_clinica (eliminado, grupo_sanguineo, paciente_id);
+
+-- 6. REPORTE DEMOGRÁFICO (PIRÁMIDE DE EDADES Y ALTAS)
+-- Fecha de registro de cada paciente. Las filas existentes quedan con la fecha de la
+-- migración (no hay un dato anterior del que tomarla).
+ALTER TABLE paciente
+  ADD COLUMN fecha_alta DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP;
+CREATE INDEX idx_paciente_alta ON paciente (fecha_alta);
+
+-- 7. RESUMEN DE CONTADORES
+-- Fila única con los contadores de las estadísticas; la aplicación la mantiene al día en
+-- cada escritura. Se crea con los valores actuales.
+CREATE TABLE resumen_contadores (
+  id                     TINYINT  PRIMARY KEY, -- Fila única (id = 1)
+  pacientes_activos      BIGINT   NOT NULL DEFAULT 0,
+  pacientes_eliminados   BIGINT   NOT NULL DEFAULT 0,
+  pacientes_con_historia BIGINT   NOT NULL DEFAULT 0, -- Activos con Historia Clínica activa
+  historias_activas      BIGINT   NOT NULL DEFAULT 0,
+  historias_eliminadas   BIGINT   NOT NULL DEFAULT 0,
+  -- Historias Clínicas activas por grupo sanguíneo
+  historias_a_pos        BIGINT   NOT NULL DEFAULT 0,
+  historias_a_neg        BIGINT   NOT NULL DEFAULT 0,
+  historias_b_pos        BIGINT   NOT NULL DEFAULT 0,
+  historias_b_neg        BIGINT   NOT NULL DEFAULT 0,
+  historias_ab_pos       BIGINT   NOT NULL DEFAULT 0,
+  historias_ab_neg       BIGINT   NOT NULL DEFAULT 0,
+  historias_o_pos        BIGINT   NOT NULL DEFAULT 0,
+  historias_o_neg        BIGINT   NOT NULL DEFAULT 0,
+  reconciliado           DATETIME NULL, -- Último recálculo completo
+  CONSTRAINT chk_resumen_fila_unica CHECK (id = 1)
+);
+INSERT INTO resumen_contadores (id) VALUES (1);
+UPDATE resumen_contadores SET
+  pacientes_activos = (SELECT COUNT(*) FROM paciente WHERE eliminado = FALSE),
+  pacientes_eliminados = (SELECT COUNT(*) FROM paciente WHERE eliminado = TRUE),
+  pacientes_con_historia = (SELECT COUNT(*) FROM paciente p JOIN historia_clinica hc ON hc.paciente_id = p.id WHERE p.eliminado = FALSE AND hc.eliminado = FALSE),
+  historias_activas = (SELECT COUNT(*) FROM historia_clinica WHERE eliminado = FALSE),
+  historias_eliminadas = (SELECT COUNT(*) FROM historia_clinica WHERE eliminado = TRUE),
+  historias_a_pos = (SELECT COUNT(*) FROM historia_clinica WHERE eliminado = FALSE AND grupo_sanguineo = 'A+'),
+  historias_a_neg = (SELECT COUNT(*) FROM historia_clinica WHERE eliminado = FALSE AND grupo_sanguineo = 'A-'),
+  historias_b_pos = (SELECT COUNT(*) FROM historia_clinica WHERE eliminado = FALSE AND grupo_sanguineo = 'B+'),
+  historias_b_neg = (SELECT COUNT(*) FROM historia_clinica WHERE eliminado = FALSE AND grupo_sanguineo = 'B-'),
+  historias_ab_pos = (SELECT COUNT(*) FROM historia_clinica WHERE eliminado = FALSE AND grupo_sanguineo = 'AB+'),
+  historias_ab_neg = (SELECT COUNT(*) FROM historia_clinica WHERE eliminado = FALSE AND grupo_sanguineo = 'AB-'),
+  historias_o_pos = (SELECT COUNT(*) FROM historia_clinica WHERE eliminado = FALSE AND grupo_sanguineo = 'O+'),
+  historias_o_neg = (SELECT COUNT(*) FROM historia_clinica WHERE eliminado = FALSE AND grupo_sanguineo = 'O-'),
+  reconciliado = NOW()
+WHERE id = 1;
+
+-- 8. ARCHIVADO DE ELIMINADOS
+-- Fecha del último borrado lógico. Las filas ya eliminadas toman la fecha de la migración:
+-- el período de retención empieza a contar desde acá.
+ALTER TABLE paciente
+  ADD COLUMN fecha_eliminacion DATETIME NULL;
+ALTER TABLE historia_clinica
+  ADD COLUMN fecha_eliminacion DATETIME NULL;
+UPDATE paciente SET fecha_eliminacion = NOW() WHERE eliminado = TRUE;
+UPDATE historia_clinica SET fecha_eliminacion = NOW() WHERE eliminado = TRUE;
+CREATE INDEX idx_paciente_eliminacion ON paciente (eliminado, fecha_eliminacion);
+CREATE INDEX idx_hc_eliminacion ON historia_clinica (eliminado, fecha_eliminacion);
+
+CREATE TABLE paciente_archivo (
+  id                BIGINT       PRIMARY KEY,
+  nombre            VARCHAR(80)  NOT NULL,
+  apellido          VARCHAR(80)  NOT NULL,
+  dni               VARCHAR(15)  NOT NULL,
+  fecha_nacimiento  DATE,
+  eliminado         TINYINT(1)   NOT NULL,
+  version           INT          NOT NULL,
+  fecha_alta        DATETIME     NOT NULL,
+  fecha_eliminacion DATETIME     NULL,
+  archivado         DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  INDEX idx_paciente_archivo_listado (apellido, nombre)
+) ROW_FORMAT = COMPRESSED;
+
+CREATE TABLE historia_clinica_archivo (
+  id                 BIGINT      PRIMARY KEY,
+  nro_historia       VARCHAR(20),
+  grupo_sanguineo    ENUM('A+','A-','B+','B-','AB+','AB-','O+','O-') NOT NULL,
+  antecedentes       TEXT,
+  medicacion_actual  TEXT,
+  observaciones      TEXT,
+  eliminado          TINYINT(1)  NOT NULL,
+  version            INT         NOT NULL,
+  paciente_id        BIGINT      NOT NULL,
+  fecha_eliminacion  DATETIME    NULL,
+  archivado          DATETIME    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  INDEX idx_hc_archivo_paciente (paciente_id)
+) ROW_FORMAT = COMPRESSED;
+
+-- 9. SECUENCIAS DE IDS (GeneradorIds)
+-- Los ids de paciente e historia_clinica y los números de historia generados se reservan
+-- por bloques en esta tabla. Arrancan después del mayor valor existente, contando el archivo.
+CREATE TABLE secuencia (
+  nombre VARCHAR(40) PRIMARY KEY,
+  valor  BIGINT      NOT NULL
+);
+INSERT INTO secuencia (nombre, valor) VALUES
+  ('paciente', GREATEST(
+      (SELECT COALESCE(MAX(id), 0) FROM paciente),
+      (SELECT COALESCE(MAX(id), 0) FROM paciente_archivo))),
+  ('historia_clinica', GREATEST(
+      (SELECT COALESCE(MAX(id), 0) FROM historia_clinica),
+      (SELECT COALESCE(MAX(id), 0) FROM historia_clinica_archivo))),
+  ('nro_historia', GREATEST(
+      (SELECT COALESCE(MAX(CAST(SUBSTRING(nro_historia, 4) AS UNSIGNED)), 0) FROM historia_clinica WHERE nro_historia REGEXP '^HC-[0-9]+$'),
+      (SELECT COALESCE(MAX(CAST(SUBSTRING(nro_historia, 4) AS UNSIGNED)), 0) FROM historia_clinica_archivo WHERE nro_historia REGEXP '^HC-[0-9]+$')));
+-- Sin AUTO_INCREMENT: un INSERT sin id fallaría en lugar de tomar un valor que la
+-- secuencia puede entregar después. paciente.id está referenciado por fk_hist_paciente.
+SET FOREIGN_KEY_CHECKS = 0;
+ALTER TABLE paciente MODIFY id BIGINT NOT NULL;
+ALTER TABLE historia_clinica MODIFY id BIGINT NOT NULL;
+SET FOREIGN_KEY_CHECKS = 1;
@@ -0,0 +1,233 @@
+/*
+ * Control de admisión (backpressure) delante de la base de datos.
+ * Limita la cantidad de conexiones abiertas simultáneamente; las solicitudes que exceden
+ * el límite esperan en una cola acotada ordenada por Prioridad (y por orden de llegada
+ * dentro de la misma prioridad), con un tiempo máximo de espera.
+ *
+ * Si la cola está llena la solicitud se rechaza de inmediato, en lugar de dejar que
+ * MySQL llegue a max_connections y fallen todas.
+ */
+package config;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+public final class ControlAdmision {
+
+    /**
+     * Foto de las métricas del control de admisión.
+     */
+    public record Metricas(int enUso, int limite, int profundidadCola, int profundidadMaximaCola,
+            long admitidas, long rechazadas, long vencidas, double esperaPromedioMs, double esperaMaximaMs) {
+
+        @Override
+        public String toString() {
+            return String.format("Admisión{enUso=%d/%d, cola=%d (máx %d), admitidas=%d, rechazadas=%d, vencidas=%d, espera prom=%.1fms, espera máx=%.1fms}",
+                    enUso, limite, profundidadCola, profundidadMaximaCola, admitidas, rechazadas, vencidas, esperaPromedioMs, esperaMaximaMs);
+        }
+    }
+
+    // Permiso concedido (uno por conexión física): se devuelve con liberar()
+    public final class Permiso {
+        private final AtomicInteger tenenciaHilo;
+        private boolean liberado = false;
+
+        private Permiso(AtomicInteger tenenciaHilo) {
+            this.tenenciaHilo = tenenciaHilo;
+        }
+
+        /**
+         * Devuelve el permiso (idempotente).
+         */
+        public synchronized void liberar() {
+            if (liberado) {
+                return;
+            }
+            liberado = true;
+            tenenciaHilo.decrementAndGet();
+            devolver();
+        }
+    }
+
+    // Solicitud encolada
+    private static final class Espera implements Comparable<Espera> {
+        private final Prioridad prioridad;
+        private final long secuencia;
+        private final Condition condicion;
+        private boolean admitida = false;
+
+        private Espera(Prioridad prioridad, long secuencia, Condition condicion) {
+            this.prioridad = prioridad;
+            this.secuencia = secuencia;
+            this.condicion = condicion;
+        }
+
+        @Override
+        public int compareTo(Espera otra) {
+            int cmp = Integer.compare(prioridad.ordinal(), otra.prioridad.ordinal());
+            return cmp != 0 ? cmp : Long.compare(secuencia, otra.secuencia);
+        }
+    }
+
+    private final int limite;
+    private final int maxCola;
+    private final long esperaMaxNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PriorityQueue<Espera> cola = new PriorityQueue<>();
+    private int enUso = 0;
+    private long secuencia = 0;
+
+    // Métricas (protegidas por lock)
+    private int profundidadMaximaCola = 0;
+    private long admitidas = 0;
+    private long rechazadas = 0;
+    private long vencidas = 0;
+    private long esperaTotalNanos = 0;
+    private long esperaMaximaNanos = 0;
+
+    // Cantidad de permisos que tiene cada hilo: un hilo que ya tiene una conexión admitida
+    // (ej: dentro de una transacción) no vuelve a esperar, para no bloquearse a sí mismo,
+    // pero su nueva conexión también se cuenta en enUso (puede superar el límite un momento).
+    private final ThreadLocal<AtomicInteger> tenencia = ThreadLocal.withInitial(AtomicInteger::new);
+
+    /**
+     * @param limite Máximo de conexiones simultáneas.
+     * @param maxCola Máximo de solicitudes en espera.
+     * @param esperaMaxMs Tiempo máximo de espera en la cola, en milisegundos.
+     */
+    public ControlAdmision(int limite, int maxCola, long esperaMaxMs) {
+        if (limite <= 0 || maxCola < 0 || esperaMaxMs < 0) {
+            throw new IllegalArgumentException("Configuración de control de admisión inválida.");
+        }
+        this.limite = limite;
+        this.maxCola = maxCola;
+        this.esperaMaxNanos = TimeUnit.MILLISECONDS.toNanos(esperaMaxMs);
+    }
+
+    /**
+     * Solicita un permiso para abrir una conexión. Si el hilo ya tiene una conexión admitida,
+     * el permiso se concede sin esperar aunque se supere el límite; igual ocupa un lugar
+     * hasta que se libere, y mientras se supere el límite no se admite a nadie de la cola.
+     *
+     * @param prioridad Clase de prioridad de la solicitud.
+     * @return Permiso a liberar cuando se cierre la conexión.
+     * @throws SQLTransientConnectionException Si la cola está llena (rechazo inmediato).
+     * @throws SQLTimeoutException Si se supera el tiempo máximo de espera (o el Plazo vigente).
+     */
+    public Permiso adquirir(Prioridad prioridad) throws SQLException {
+        AtomicInteger tenenciaHilo = tenencia.get();
+        boolean reentrante = tenenciaHilo.get() > 0;
+
+        long inicio = System.nanoTime();
+        lock.lock();
+        try {
+            if (reentrante || (enUso < limite && cola.isEmpty())) {
+                enUso++;
+                registrarAdmision(0);
+            } else {
+                esperarTurno(prioridad, inicio);
+            }
+        } finally {
+            lock.unlock();
+        }
+        tenenciaHilo.incrementAndGet();
+        return new Permiso(tenenciaHilo);
+    }
+
+    /**
+     * Retorna las métricas actuales (profundidad de cola, tiempos de espera, rechazos).
+     */
+    public Metricas getMetricas() {
+        lock.lock();
+        try {
+            double promedio = admitidas == 0 ? 0 : esperaTotalNanos / (double) admitidas / 1_000_000.0;
+            return new Metricas(enUso, limite, cola.size(), profundidadMaximaCola, admitidas, rechazadas, vencidas,
+                    promedio, esperaMaximaNanos / 1_000_000.0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Debe llamarse con el lock tomado
+    private void esperarTurno(Prioridad prioridad, long inicio) throws SQLException {
+        if (cola.size() >= maxCola) {
+            rechazadas++;
+            throw new SQLTransientConnectionException("Sistema saturado: la cola de acceso a la base de datos está llena ("
+                    + maxCola + " solicitudes en espera). Intente nuevamente en unos instantes.", "08004");
+        }
+
+        Espera espera = new Espera(prioridad, secuencia++, lock.newCondition());
+        cola.add(espera);
+        profundidadMaximaCola = Math.max(profundidadMaximaCola, cola.size());
+
+        // La espera tampoco puede exceder el plazo vigente de la operación
+        long esperaMaxima = esperaMaxNanos;
+        Plazo plazo = Plazo.actual();
+        if (plazo != null) {
+            esperaMaxima = Math.min(esperaMaxima, plazo.restanteNanos());
+        }
+        long restante = esperaMaxima - (System.nanoTime() - inicio);
+        try {
+            while (!espera.admitida && restante > 0) {
+                restante = espera.condicion.awaitNanos(restante);
+            }
+        } catch (InterruptedException e) {
+            if (!abandonar(espera)) {
+                // Ya se le había cedido el permiso: se devuelve
+                devolverConLock();
+            }
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Espera de conexión interrumpida.", "08004", e);
+        }
+
+        if (!espera.admitida) {
+            abandonar(espera);
+            vencidas++;
+            throw new SQLTimeoutException("Tiempo de espera agotado para obtener una conexión a la base de datos ("
+                    + TimeUnit.NANOSECONDS.toMillis(esperaMaxNanos) + " ms).");
+        }
+        registrarAdmision(System.nanoTime() - inicio);
+    }
+
+    private boolean abandonar(Espera espera) {
+        if (espera.admitida) {
+            return false;
+        }
+        cola.remove(espera);
+        return true;
+    }
+
+    private void registrarAdmision(long esperaNanos) {
+        admitidas++;
+        esperaTotalNanos += esperaNanos;
+        esperaMaximaNanos = Math.max(esperaMaximaNanos, esperaNanos);
+    }
+
+    private void devolver() {
+        lock.lock();
+        try {
+            devolverConLock();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Cede el permiso a la siguiente solicitud de la cola o lo devuelve al total disponible
+    // (siempre lo devuelve si se había superado el límite con conexiones reentrantes)
+    private void devolverConLock() {
+        Espera siguiente = enUso > limite ? null : cola.poll();
+        if (siguiente != null) {
+            siguiente.admitida = true;
+            siguiente.condicion.signal();
+        } else {
+            enUso--;
+        }
+    }
+}
@@ -4,9 +4,15 @@
  */
 package config;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Properties;
 
 /**
  *
@@ -17,16 +23,24 @@ import java.sql.Connection;
  *
  * Contiene un método estático que retorna java.sql.Connection
  *
- * Configuración por defecto: - URL: jdbc:mysql://localhost:3306/tfi_bd1
+ * Configuración por defecto: - URL: jdbc:mysql://localhost:3306/tfi_bd1?rewriteBatchedStatements=true
  * - Usuario: dev - Contraseña: Grupo54Dev
  *
  */
 public final class DatabaseConnection {
 
     /**
-     * URL de conexión JDBC
+     * URL de conexión JDBC. rewriteBatchedStatements hace que el driver envíe los lotes de
+     * INSERT (addBatch/executeBatch) como un solo INSERT de varias filas
      */
-    private static final String URL = System.getProperty("db.url", "jdbc:mysql://localhost:3306/tfi_bd1");
+    private static final String URL = System.getProperty("db.url", "jdbc:mysql://localhost:3306/tfi_bd1?rewriteBatchedStatements=true");
+
+    /**
+     * allowMultiQueries (varias sentencias en un solo envío) no va en la URL: solo lo reciben
+     * las conexiones de getConnectionMultiSentencia, así una sentencia armada por error con
+     * texto concatenado no puede encadenar otras en el resto de la aplicación
+     */
+    private static final String PROPIEDAD_MULTI_SENTENCIA = "allowMultiQueries";
 
     /**
      * Usuario de la base de datos: rol developer
@@ -38,6 +52,15 @@ public final class DatabaseConnection {
      */
     private static final String PASSWORD = System.getProperty("db.password", "Grupo54Dev");
 
+    /**
+     * Control de admisión: máximo de conexiones simultáneas, tamaño de la cola de
+     * espera y tiempo máximo de espera (ms)
+     */
+    private static final ControlAdmision CONTROL_ADMISION = new ControlAdmision(
+            Integer.getInteger("db.maxConexiones", 10),
+            Integer.getInteger("db.maxCola", 100),
+            Long.getLong("db.esperaMaxMs", 5000L));
+
     /**
      * Bloque static para inicializar la conexión
      *
@@ -70,7 +93,7 @@ public final class DatabaseConnection {
     }
 
     /**
-     * Retorna una nueva conexión a la base de datos.
+     * Retorna una nueva conexión a la base de datos con prioridad CONSULTA.
      *
      * No hay pooling, cada llamada crea una nueva conexión. 
      * 
@@ -80,7 +103,145 @@ public final class DatabaseConnection {
      * @throws SQLException Si no se puede establecer la conexión
      */
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        return getConnection(Prioridad.CONSULTA);
+    }
+
+    /**
+     * Retorna una nueva conexión a la base de datos, pasando antes por el control de
+     * admisión. Si el límite de conexiones simultáneas está alcanzado, la solicitud espera
+     * en la cola según su prioridad; si la cola está llena se rechaza de inmediato.
+     *
+     * Al cerrar la conexión se libera el permiso. Las sentencias creadas con la conexión
+     * respetan el Plazo vigente del hilo (ver Plazo).
+     *
+     * @param prioridad Clase de prioridad de la operación
+     * @return Conexión JDBC activa
+     * @throws SQLException Si se rechaza la admisión, vence la espera o no se puede establecer la conexión
+     */
+    public static Connection getConnection(Prioridad prioridad) throws SQLException {
+        return abrir(prioridad, false);
+    }
+
+    /**
+     * Igual que getConnection(Prioridad), pero la conexión acepta varias sentencias separadas
+     * por ';' en un mismo PreparedStatement (allowMultiQueries). Solo para las operaciones que
+     * lo necesitan (PacienteDao.crearConHistoria); se obtiene con
+     * TransaccionConReintentos.ejecutar(operacion, true, trabajo).
+     *
+     * @param prioridad Clase de prioridad de la operación
+     * @return Conexión JDBC activa
+     * @throws SQLException Si se rechaza la admisión, vence la espera o no se puede establecer la conexión
+     */
+    public static Connection getConnectionMultiSentencia(Prioridad prioridad) throws SQLException {
+        return abrir(prioridad, true);
+    }
+
+    private static Connection abrir(Prioridad prioridad, boolean multiSentencia) throws SQLException {
+        Plazo.verificarActual();
+        ControlAdmision.Permiso permiso = CONTROL_ADMISION.adquirir(prioridad);
+        try {
+            Properties propiedades = new Properties();
+            propiedades.setProperty("user", USER);
+            propiedades.setProperty("password", PASSWORD);
+            propiedades.setProperty(PROPIEDAD_MULTI_SENTENCIA, Boolean.toString(multiSentencia));
+            Connection conn = DriverManager.getConnection(URL, propiedades);
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new ConexionAdmitida(conn, permiso));
+        } catch (SQLException | RuntimeException e) {
+            permiso.liberar();
+            throw e;
+        }
+    }
+
+    /**
+     * Métricas del control de admisión (conexiones en uso, profundidad de cola, esperas)
+     *
+     * @return Foto de las métricas actuales
+     */
+    public static ControlAdmision.Metricas getMetricasAdmision() {
+        return CONTROL_ADMISION.getMetricas();
+    }
+
+    /**
+     * Envoltorio de la conexión real: delega todo, aplica el Plazo vigente a cada
+     * sentencia creada y libera el permiso de admisión al cerrar
+     */
+    private static final class ConexionAdmitida implements InvocationHandler {
+
+        private final Connection conn;
+        private final ControlAdmision.Permiso permiso;
+
+        private ConexionAdmitida(Connection conn, ControlAdmision.Permiso permiso) {
+            this.conn = conn;
+            this.permiso = permiso;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+                try {
+                    conn.close();
+                } finally {
+                    permiso.liberar();
+                }
+                return null;
+            }
+            Object resultado;
+            try {
+                resultado = method.invoke(conn, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            // Cada sentencia creada recibe el timeout del plazo vigente y queda registrada para
+            // cancelación hasta que se cierra
+            if (resultado instanceof Statement) {
+                Statement sentencia = (Statement) resultado;
+                Plazo plazo;
+                try {
+                    plazo = Plazo.aplicar(sentencia);
+                } catch (SQLException e) {
+                    sentencia.close();
+                    throw e;
+                }
+                if (plazo != null) {
+                    return Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                            new Class<?>[]{method.getReturnType()}, new SentenciaRegistrada(sentencia, plazo));
+                }
+            }
+            return resultado;
+        }
+    }
+
+    /**
+     * Envoltorio de una sentencia registrada en un Plazo: delega todo y la quita del
+     * registro de cancelación al cerrarla
+     */
+    private static final class SentenciaRegistrada implements InvocationHandler {
+
+        private final Statement sentencia;
+        private final Plazo plazo;
+
+        private SentenciaRegistrada(Statement sentencia, Plazo plazo) {
+            this.sentencia = sentencia;
+            this.plazo = plazo;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+                try {
+                    sentencia.close();
+                } finally {
+                    plazo.liberar(sentencia);
+                }
+                return null;
+            }
+            try {
+                return method.invoke(sentencia, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
     }
 
     /**
@@ -101,5 +262,9 @@ public final class DatabaseConnection {
         if (PASSWORD == null || USER.trim().isEmpty()) {
             throw new IllegalStateException("Contraseña inválida o vacía. No se ha podido validar el setup.");
         }
+        // Un parámetro de la URL tiene prioridad sobre las propiedades de la conexión
+        if (URL.contains(PROPIEDAD_MULTI_SENTENCIA + "=")) {
+            throw new IllegalStateException("La URL no debe incluir " + PROPIEDAD_MULTI_SENTENCIA + ": lo habilita solo getConnectionMultiSentencia.");
+        }
     }
 }
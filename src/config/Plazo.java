@@ -0,0 +1,309 @@
+/*
+ * Plazo (deadline) de una operación, propagado por hilo desde la llamada al Service
+ * (o al request HTTP) hasta cada sentencia JDBC.
+ *
+ * Uso:
+ *   List<Paciente> pacientes = Plazo.ejecutar(Duration.ofSeconds(5), () -> pacienteService.getAll());
+ * o, si hace falta el plazo dentro del bloque (ej: para vincular otros hilos):
+ *   try (Plazo plazo = Plazo.iniciar(Duration.ofSeconds(5))) {
+ *       ...
+ *   }
+ *
+ * Las conexiones de DatabaseConnection aplican el plazo vigente a cada Statement que crean:
+ * setQueryTimeout con el tiempo restante y registro para cancelación (hasta que la sentencia
+ * se cierra). Al vencer el plazo (o si quien llamó lo abandona con cancelar()) se cancelan
+ * las sentencias en curso, también las de los plazos anidados dentro de él (ej: el plazo de
+ * un Service llamado dentro del plazo de un request); la excepción resultante llega a la
+ * capa Service, que hace rollback como con cualquier error.
+ */
+package config;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+public final class Plazo implements AutoCloseable {
+
+    /**
+     * Timeout (segundos) que se aplica a las sentencias ejecutadas sin un plazo vigente,
+     * para que ninguna consulta quede sin límite
+     */
+    private static final int TIMEOUT_POR_DEFECTO_SEG = Integer.getInteger("db.timeoutConsultaSeg", 30);
+
+    private static final ThreadLocal<Plazo> ACTUAL = new ThreadLocal<>();
+
+    // Hilo que cancela las sentencias de los plazos vencidos
+    private static final ScheduledExecutorService VIGILANTE = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "plazo-vigilante");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Operación ejecutada bajo un plazo (ejecutar / ejecutarVinculado).
+     */
+    @FunctionalInterface
+    public interface Operacion<T, E extends Exception> {
+        T ejecutar() throws E;
+    }
+
+    private final long vencimientoNanos;
+    // Plazo que se restablece en el hilo al cerrar este
+    private final Plazo anterior;
+    // Plazo propio dentro del cual se inició este (null si no hay): su vencimiento o
+    // cancelación alcanzan también a este plazo y a sus sentencias
+    private final Plazo padre;
+    // Plazo de otro hilo al que está vinculado (null si es un plazo propio): comparte su
+    // vencimiento, su cancelación y el registro de sentencias
+    private final Plazo origen;
+    private final Set<Statement> sentencias = ConcurrentHashMap.newKeySet();
+    private final ScheduledFuture<?> alarma;
+    private volatile boolean cancelado = false;
+
+    private Plazo(long vencimientoNanos, Plazo anterior) {
+        this.vencimientoNanos = vencimientoNanos;
+        this.anterior = anterior;
+        this.padre = anterior != null ? anterior.raiz() : null;
+        this.origen = null;
+        long demora = Math.max(0, vencimientoNanos - System.nanoTime());
+        this.alarma = VIGILANTE.schedule(this::cancelar, demora, TimeUnit.NANOSECONDS);
+    }
+
+    private Plazo(Plazo origen, Plazo anterior) {
+        this.vencimientoNanos = origen.vencimientoNanos;
+        this.anterior = anterior;
+        this.padre = null; // Se usa la cadena del origen
+        this.origen = origen;
+        this.alarma = null; // La alarma del origen cancela también las sentencias de este hilo
+    }
+
+    /**
+     * Inicia un plazo en el hilo actual. Si ya hay un plazo vigente más corto (ej: el del
+     * request que llama al Service), se respeta el más corto.
+     *
+     * @param duracion Tiempo disponible para la operación.
+     * @return Plazo vigente hasta que se cierre.
+     */
+    public static Plazo iniciar(Duration duracion) {
+        if (duracion == null || duracion.isNegative()) {
+            throw new IllegalArgumentException("La duración del plazo debe ser positiva.");
+        }
+        Plazo anterior = ACTUAL.get();
+        long vencimiento = System.nanoTime() + duracion.toNanos();
+        if (anterior != null && anterior.vencimientoNanos - vencimiento < 0) {
+            vencimiento = anterior.vencimientoNanos;
+        }
+        Plazo plazo = new Plazo(vencimiento, anterior);
+        ACTUAL.set(plazo);
+        return plazo;
+    }
+
+    /**
+     * Ejecuta la operación con un plazo iniciado en el hilo actual (ver iniciar) y lo
+     * cierra al terminar.
+     *
+     * @param duracion Tiempo disponible para la operación.
+     * @param operacion Operación a ejecutar.
+     * @return El resultado de la operación.
+     * @throws E El error de la operación (SQLTimeoutException si se agotó el plazo).
+     */
+    public static <T, E extends Exception> T ejecutar(Duration duracion, Operacion<T, E> operacion) throws E {
+        Plazo plazo = iniciar(duracion);
+        try {
+            return operacion.ejecutar();
+        } finally {
+            plazo.close();
+        }
+    }
+
+    /**
+     * Ejecuta la operación en el hilo actual vinculado al plazo de otro hilo (ver vincular).
+     *
+     * @param origen Plazo del hilo que delega el trabajo (si es null, se ejecuta sin plazo).
+     * @param operacion Operación a ejecutar.
+     * @return El resultado de la operación.
+     * @throws E El error de la operación.
+     */
+    public static <T, E extends Exception> T ejecutarVinculado(Plazo origen, Operacion<T, E> operacion) throws E {
+        Plazo plazo = vincular(origen);
+        try {
+            return operacion.ejecutar();
+        } finally {
+            if (plazo != null) {
+                plazo.close();
+            }
+        }
+    }
+
+    /**
+     * Vincula el hilo actual (ej: un hilo de trabajo que ejecuta parte de la operación)
+     * al plazo de otro hilo: mismo vencimiento, y cancelar() en el origen cancela también
+     * las sentencias de este hilo.
+     *
+     * Uso:
+     *   Plazo origen = Plazo.actual();
+     *   executor.submit(() -> Plazo.ejecutarVinculado(origen, () -> ...));
+     *
+     * @param origen Plazo del hilo que delega el trabajo (puede ser null).
+     * @return Plazo vigente en este hilo hasta que se cierre, o null si origen es null.
+     */
+    public static Plazo vincular(Plazo origen) {
+        if (origen == null) {
+            return null;
+        }
+        Plazo plazo = new Plazo(origen.raiz(), ACTUAL.get());
+        ACTUAL.set(plazo);
+        return plazo;
+    }
+
+    /**
+     * Plazo vigente en el hilo actual.
+     *
+     * @return El plazo o null si no hay ninguno.
+     */
+    public static Plazo actual() {
+        return ACTUAL.get();
+    }
+
+    /**
+     * Verifica el plazo vigente del hilo (si existe).
+     *
+     * @throws SQLTimeoutException Si el plazo venció o fue cancelado.
+     */
+    public static void verificarActual() throws SQLTimeoutException {
+        Plazo plazo = ACTUAL.get();
+        if (plazo != null) {
+            plazo.verificar();
+        }
+    }
+
+    /**
+     * Aplica el plazo vigente a una sentencia recién creada: setQueryTimeout con el tiempo
+     * restante (redondeado hacia arriba a segundos) y registro para cancelación en el plazo
+     * y en los que lo contienen. Sin plazo vigente se aplica el timeout por defecto.
+     * Al cerrar la sentencia hay que llamar a liberar() con el plazo devuelto.
+     *
+     * @param sentencia Sentencia a configurar.
+     * @return Plazo en el que quedó registrada, o null si no hay plazo vigente.
+     * @throws SQLException Si el plazo ya venció o el driver rechaza el timeout.
+     */
+    public static Plazo aplicar(Statement sentencia) throws SQLException {
+        Plazo plazo = ACTUAL.get();
+        if (plazo == null) {
+            sentencia.setQueryTimeout(TIMEOUT_POR_DEFECTO_SEG);
+            return null;
+        }
+        plazo.verificar();
+        long restanteMs = plazo.restanteMillis();
+        sentencia.setQueryTimeout((int) Math.max(1, (restanteMs + 999) / 1000));
+        for (Plazo p = plazo.raiz(); p != null; p = p.padre) {
+            p.sentencias.add(sentencia);
+        }
+        return plazo;
+    }
+
+    /**
+     * Quita del registro de cancelación una sentencia que terminó (se cerró).
+     *
+     * @param sentencia Sentencia registrada con aplicar() en este plazo.
+     */
+    public void liberar(Statement sentencia) {
+        for (Plazo p = raiz(); p != null; p = p.padre) {
+            p.sentencias.remove(sentencia);
+        }
+    }
+
+    /**
+     * Tiempo restante en milisegundos (0 si ya venció).
+     */
+    public long restanteMillis() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(vencimientoNanos - System.nanoTime()));
+    }
+
+    /**
+     * Tiempo restante en nanosegundos (0 si ya venció).
+     */
+    public long restanteNanos() {
+        return Math.max(0, vencimientoNanos - System.nanoTime());
+    }
+
+    /**
+     * Indica si el plazo venció o fue cancelado.
+     */
+    public boolean vencido() {
+        return cancelado() || vencimientoNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * @throws SQLTimeoutException Si el plazo venció o fue cancelado.
+     */
+    public void verificar() throws SQLTimeoutException {
+        if (vencimientoNanos - System.nanoTime() <= 0) {
+            throw new SQLTimeoutException("Se agotó el plazo de la operación.");
+        }
+        if (cancelado()) {
+            throw new SQLTimeoutException("La operación fue cancelada.");
+        }
+    }
+
+    // Cancelado este plazo o alguno de los que lo contienen
+    private boolean cancelado() {
+        for (Plazo p = raiz(); p != null; p = p.padre) {
+            if (p.cancelado) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Abandona la operación: cancela las sentencias en curso asociadas a este plazo, incluidas
+     * las de los plazos anidados (también quedan registradas aquí), que además ven la
+     * cancelación en verificar(). Puede llamarse desde otro hilo (ej: cuando el cliente HTTP
+     * se desconecta).
+     */
+    public void cancelar() {
+        if (origen != null) {
+            origen.cancelar();
+            return;
+        }
+        cancelado = true;
+        for (Statement sentencia : sentencias) {
+            try {
+                sentencia.cancel();
+            } catch (SQLException ignore) {
+                // La sentencia ya terminó o fue cerrada
+            }
+        }
+    }
+
+    // Plazo propio al que pertenecen las sentencias y la cancelación
+    private Plazo raiz() {
+        return origen != null ? origen : this;
+    }
+
+    /**
+     * Cierra el plazo y restablece el anterior en el hilo actual.
+     */
+    @Override
+    public void close() {
+        if (origen == null) {
+            alarma.cancel(false);
+            sentencias.clear();
+        }
+        if (ACTUAL.get() == this) {
+            if (anterior != null) {
+                ACTUAL.set(anterior);
+            } else {
+                ACTUAL.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+/*
+ * Clases de prioridad para el control de admisión de conexiones (ver ControlAdmision).
+ * El orden de declaración define la prioridad: las primeras se atienden antes.
+ */
+package config;
+
+public enum Prioridad {
+    /**
+     * Altas, modificaciones y bajas de la mesa de entradas (transacciones de la capa Service).
+     */
+    ESCRITURA,
+
+    /**
+     * Lecturas puntuales: búsqueda por ID, por DNI, conteos.
+     */
+    CONSULTA,
+
+    /**
+     * Listados completos y exportaciones: pueden esperar detrás de las anteriores.
+     */
+    LISTADO
+}
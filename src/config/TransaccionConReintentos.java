@@ -0,0 +1,181 @@
+/*
+ * Ejecuta una unidad de trabajo dentro de una transacción (TransactionManager) y la
+ * reintenta cuando MySQL la aborta por deadlock (1213 / SQLState 40001) o por
+ * lock wait timeout (1205).
+ *
+ * La unidad de trabajo se pasa como lambda y debe ser idempotente: ante un error
+ * reintentable se hace rollback completo y se vuelve a ejecutar desde el principio,
+ * con una nueva conexión, luego de una espera con backoff exponencial y jitter.
+ *
+ * Uso desde la capa Service:
+ *   TransaccionConReintentos.ejecutar("paciente.actualizar", tm -> {
+ *       pacienteDao.actualizar(paciente, tm.getConnection());
+ *       return null;
+ *   });
+ */
+package config;
+
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class TransaccionConReintentos {
+
+    /**
+     * Unidad de trabajo transaccional. Recibe el TransactionManager con la transacción
+     * ya iniciada; el commit/rollback lo maneja el ejecutor.
+     */
+    @FunctionalInterface
+    public interface UnidadDeTrabajo<T> {
+        T ejecutar(TransactionManager tm) throws Exception;
+    }
+
+    // Códigos de error MySQL reintentables
+    private static final int ER_LOCK_DEADLOCK = 1213;
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+
+    private static final int MAX_INTENTOS = Integer.getInteger("tx.maxIntentos", 3);
+    private static final long BACKOFF_BASE_MS = Long.getLong("tx.backoffBaseMs", 50L);
+    private static final long BACKOFF_MAX_MS = Long.getLong("tx.backoffMaxMs", 1000L);
+
+    // Plazo por defecto de una escritura completa (incluidos los reintentos)
+    private static final Duration PLAZO_ESCRITURA = Duration.ofSeconds(Long.getLong("plazo.escrituraSeg", 15));
+
+    // Métricas por operación
+    private static final Map<String, LongAdder> REINTENTOS = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> AGOTADOS = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor privado, no se puede instanciar
+     */
+    private TransaccionConReintentos() {
+        throw new UnsupportedOperationException("Esta clase no se puede instanciar.");
+    }
+
+    /**
+     * Ejecuta la unidad de trabajo en una transacción de prioridad ESCRITURA, con
+     * reintentos ante deadlocks y lock wait timeouts.
+     *
+     * @param operacion Nombre de la operación (para las métricas, ej: "paciente.actualizar").
+     * @param trabajo Unidad de trabajo idempotente.
+     * @return El resultado de la unidad de trabajo.
+     * @throws Exception El error de la unidad de trabajo si no es reintentable o se agotaron los intentos.
+     */
+    public static <T> T ejecutar(String operacion, UnidadDeTrabajo<T> trabajo) throws Exception {
+        return ejecutar(operacion, false, trabajo);
+    }
+
+    /**
+     * Igual que ejecutar(operacion, trabajo), pero con multiSentencia en true la transacción
+     * usa una conexión que acepta varias sentencias en un solo envío
+     * (DatabaseConnection.getConnectionMultiSentencia).
+     *
+     * @param operacion Nombre de la operación (para las métricas, ej: "paciente.actualizar").
+     * @param multiSentencia true si la unidad de trabajo envía varias sentencias juntas.
+     * @param trabajo Unidad de trabajo idempotente.
+     * @return El resultado de la unidad de trabajo.
+     * @throws Exception El error de la unidad de trabajo si no es reintentable o se agotaron los intentos.
+     */
+    public static <T> T ejecutar(String operacion, boolean multiSentencia, UnidadDeTrabajo<T> trabajo) throws Exception {
+        try (Plazo plazo = Plazo.iniciar(PLAZO_ESCRITURA)) {
+            for (int intento = 1; ; intento++) {
+                try (TransactionManager tm = new TransactionManager(multiSentencia
+                        ? DatabaseConnection.getConnectionMultiSentencia(Prioridad.ESCRITURA)
+                        : DatabaseConnection.getConnection(Prioridad.ESCRITURA))) {
+                    tm.startTransaction();
+                    try {
+                        T resultado = trabajo.ejecutar(tm);
+                        tm.commit();
+                        return resultado;
+                    } catch (Exception e) {
+                        try {
+                            tm.rollback();
+                            System.out.println("❌ Transacción revertida - Rollback realizado");
+                        } catch (SQLException errorRollback) {
+                            // Ej: conexión rota tras el deadlock o la cancelación; se conserva la causa real
+                            e.addSuppressed(errorRollback);
+                        }
+                        if (!esReintentable(e)) {
+                            throw e;
+                        }
+                        if (intento >= MAX_INTENTOS) {
+                            AGOTADOS.computeIfAbsent(operacion, k -> new LongAdder()).increment();
+                            throw e;
+                        }
+                        REINTENTOS.computeIfAbsent(operacion, k -> new LongAdder()).increment();
+                        esperarBackoff(intento, plazo, e);
+                        System.out.println("🔁 Reintentando " + operacion + " (intento " + (intento + 1) + " de " + MAX_INTENTOS + ")");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Indica si el error (o alguna de sus causas) es un deadlock o un lock wait timeout.
+     *
+     * @param error Error a analizar.
+     * @return true si la transacción puede reintentarse.
+     */
+    public static boolean esReintentable(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof SQLTransactionRollbackException) {
+                return true;
+            }
+            if (t instanceof SQLException) {
+                SQLException sqlEx = (SQLException) t;
+                if ("40001".equals(sqlEx.getSQLState())
+                        || sqlEx.getErrorCode() == ER_LOCK_DEADLOCK
+                        || sqlEx.getErrorCode() == ER_LOCK_WAIT_TIMEOUT) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Cantidad de reintentos realizados por operación.
+     *
+     * @return Mapa operación → reintentos (ordenado por nombre).
+     */
+    public static Map<String, Long> getReintentosPorOperacion() {
+        return foto(REINTENTOS);
+    }
+
+    /**
+     * Cantidad de operaciones que agotaron los intentos, por operación.
+     *
+     * @return Mapa operación → operaciones fallidas tras el último intento.
+     */
+    public static Map<String, Long> getAgotadosPorOperacion() {
+        return foto(AGOTADOS);
+    }
+
+    private static Map<String, Long> foto(Map<String, LongAdder> contadores) {
+        Map<String, Long> resultado = new TreeMap<>();
+        contadores.forEach((operacion, contador) -> resultado.put(operacion, contador.sum()));
+        return resultado;
+    }
+
+    // Backoff exponencial con jitter completo: espera aleatoria en [0, min(max, base * 2^(intento-1))]
+    private static void esperarBackoff(int intento, Plazo plazo, Exception causa) throws Exception {
+        long tope = Math.min(BACKOFF_MAX_MS, BACKOFF_BASE_MS << Math.min(intento - 1, 20));
+        long espera = ThreadLocalRandom.current().nextLong(tope + 1);
+        if (espera >= plazo.restanteMillis()) {
+            // No alcanza el plazo para otro intento: se informa el error original
+            throw causa;
+        }
+        try {
+            Thread.sleep(espera);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw causa;
+        }
+    }
+}
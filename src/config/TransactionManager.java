@@ -14,6 +14,7 @@ package config;
 
 import java.sql.Connection; //Importa la libreria Java.sql connection
 import java.sql.SQLException; //Importa la libreria Java.sql SQLException
+import java.sql.Statement; //Importa la libreria Java.sql Statement
 
 // Implementamos AutoCloseable para que el bloque try-with-resources la cierre automáticamente.
 public class TransactionManager implements AutoCloseable { 
@@ -24,6 +25,12 @@ public class TransactionManager implements AutoCloseable {
     // - transactionActive: boolean
     private boolean transactionActive = false;
 
+    // - readOnly: boolean (transacción de solo lectura con snapshot consistente)
+    private boolean readOnly = false;
+
+    // - isolationOriginal: int (se restablece al cerrar una transacción de solo lectura)
+    private int isolationOriginal = Connection.TRANSACTION_REPEATABLE_READ;
+
     // + TransactionManager(conn: Connection) (Constructor)
     public TransactionManager(Connection conn) {
         if (conn == null) {
@@ -44,19 +51,55 @@ public class TransactionManager implements AutoCloseable {
             throw new IllegalStateException("Esta instancia de TransactionManager ya tiene una transacción activa.");
         }
         
+        // No tiene sentido abrir la transacción si el plazo de la operación ya venció
+        Plazo.verificarActual();
+
         this.conn.setAutoCommit(false);
         this.transactionActive = true;
         System.out.println("[DEBUG] Transacción iniciada.");
     }
 
+    // + startReadOnlyTransaction(): void
+    /**
+     * Inicia una transacción de solo lectura con snapshot consistente (REPEATABLE READ +
+     * START TRANSACTION WITH CONSISTENT SNAPSHOT, READ ONLY).
+     * Todas las lecturas hechas con getConnection() ven los datos del mismo instante,
+     * y InnoDB evita el costo de una transacción de lectura-escritura.
+     * Pensada para reportes y exportaciones que combinan varias consultas.
+     */
+    public void startReadOnlyTransaction() throws SQLException {
+        if (this.conn == null || this.conn.isClosed()) {
+            throw new SQLException("No se puede iniciar la transacción: conexión no disponible o cerrada.");
+        }
+        if (this.transactionActive) {
+            throw new IllegalStateException("Esta instancia de TransactionManager ya tiene una transacción activa.");
+        }
+        Plazo.verificarActual();
+
+        this.isolationOriginal = this.conn.getTransactionIsolation();
+        this.conn.setReadOnly(true);
+        this.conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        this.conn.setAutoCommit(false);
+        this.readOnly = true;
+        this.transactionActive = true;
+        try (Statement st = this.conn.createStatement()) {
+            // El snapshot se toma ahora y no en la primera lectura
+            st.execute("START TRANSACTION WITH CONSISTENT SNAPSHOT, READ ONLY");
+        }
+        System.out.println("[DEBUG] Transacción de solo lectura iniciada.");
+    }
+
     // + commit(): void
     /**
      * Confirma los cambios y cierra los recursos (restablece auto-commit y cierra la conexión).
+     * Si el plazo de la operación venció, no confirma: lanza SQLTimeoutException y la
+     * transacción queda pendiente de rollback.
      */
     public void commit() throws SQLException {
         if (!this.transactionActive) {
             throw new IllegalStateException("No hay transacción activa para hacer commit.");
         }
+        Plazo.verificarActual();
         try {
             this.conn.commit();
             System.out.println("[DEBUG] Commit realizado correctamente.");
@@ -108,10 +151,14 @@ public class TransactionManager implements AutoCloseable {
                     this.conn.rollback(); // Forzamos el rollback si no se hizo ni commit ni rollback
                 }
                 
-                // 2. Restablecer auto-commit
+                // 2. Restablecer auto-commit (y el modo lectura-escritura si era de solo lectura)
                 if (!this.conn.getAutoCommit()) {
                     this.conn.setAutoCommit(true);
                 }
+                if (this.readOnly) {
+                    this.conn.setReadOnly(false);
+                    this.conn.setTransactionIsolation(this.isolationOriginal);
+                }
                 
                 // 3. Cerrar la conexión
                 this.conn.close();
@@ -123,6 +170,7 @@ public class TransactionManager implements AutoCloseable {
                 // 4. Limpiar atributos
                 this.conn = null;
                 this.transactionActive = false;
+                this.readOnly = false;
             }
         }
     }
@@ -135,6 +183,14 @@ public class TransactionManager implements AutoCloseable {
         return this.transactionActive;
     }
 
+    // + isReadOnly(): boolean
+    /**
+     * Indica si la transacción activa es de solo lectura.
+     */
+    public boolean isReadOnly() {
+        return this.readOnly;
+    }
+
     // + getConnection(): Connection
     /**
      * Obtiene la conexión compartida para pasarla a los DAOs.
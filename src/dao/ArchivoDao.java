@@ -0,0 +1,276 @@
+/*
+ * Acceso a las tablas de archivo (paciente_archivo, historia_clinica_archivo): el
+ * almacenamiento frío de los pacientes e historias clínicas eliminados hace más que el
+ * período de retención (ver ArchivadoService).
+ *
+ * Mover filas: se copian con INSERT ... SELECT y se borran de la tabla principal en la
+ * misma transacción, conservando ids, versión y fechas. Recuperar hace el camino inverso
+ * (PacienteDao.recuperar / HistoriaClinicaDao.recuperar lo usan cuando la fila ya no está
+ * en la tabla principal).
+ *
+ * Los contadores de resumen_contadores incluyen las filas archivadas (ver
+ * ResumenContadoresDao), así que archivar no cambia ninguno.
+ */
+package dao;
+
+import config.DatabaseConnection;
+import config.Prioridad;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ArchivoDao {
+
+    /**
+     * Filas movidas al archivo en un lote.
+     *
+     * @param ids IDs de los pacientes archivados.
+     */
+    public record Archivados(int pacientes, int historias, List<Long> ids) {
+    }
+
+    private static final String COLUMNAS_PACIENTE = "id, nombre, apellido, dni, fecha_nacimiento, eliminado, version, fecha_alta, fecha_eliminacion";
+    private static final String COLUMNAS_HISTORIA = "id, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado, version, paciente_id, fecha_eliminacion";
+
+    // Candidatas: eliminadas antes del límite, las más antiguas primero (idx_paciente_eliminacion / idx_hc_eliminacion)
+    private static final String CANDIDATOS_PACIENTES_SQL = "SELECT id FROM paciente WHERE eliminado = TRUE AND fecha_eliminacion < ? ORDER BY fecha_eliminacion LIMIT ?";
+    private static final String CANDIDATAS_HISTORIAS_SQL = "SELECT id FROM historia_clinica WHERE eliminado = TRUE AND fecha_eliminacion < ? ORDER BY fecha_eliminacion LIMIT ?";
+
+    // Se vuelve a verificar cada candidata bloqueándola por PK (pudo recuperarse desde que se eligió)
+    private static final String BLOQUEAR_PACIENTES_SQL = "SELECT id FROM paciente WHERE eliminado = TRUE AND fecha_eliminacion < ? AND id IN ";
+    private static final String BLOQUEAR_HISTORIAS_SQL = "SELECT id FROM historia_clinica WHERE eliminado = TRUE AND fecha_eliminacion < ? AND id IN ";
+
+    private static final String ARCHIVAR_HISTORIAS_DE_PACIENTES_SQL = "INSERT INTO historia_clinica_archivo (" + COLUMNAS_HISTORIA + ") SELECT " + COLUMNAS_HISTORIA + " FROM historia_clinica WHERE paciente_id IN ";
+    private static final String BORRAR_HISTORIAS_DE_PACIENTES_SQL = "DELETE FROM historia_clinica WHERE paciente_id IN ";
+    private static final String ARCHIVAR_PACIENTES_SQL = "INSERT INTO paciente_archivo (" + COLUMNAS_PACIENTE + ") SELECT " + COLUMNAS_PACIENTE + " FROM paciente WHERE id IN ";
+    private static final String BORRAR_PACIENTES_SQL = "DELETE FROM paciente WHERE id IN ";
+    private static final String ARCHIVAR_HISTORIAS_SQL = "INSERT INTO historia_clinica_archivo (" + COLUMNAS_HISTORIA + ") SELECT " + COLUMNAS_HISTORIA + " FROM historia_clinica WHERE id IN ";
+    private static final String BORRAR_HISTORIAS_SQL = "DELETE FROM historia_clinica WHERE id IN ";
+
+    // Recuperación: la fila vuelve activa, con una versión nueva
+    private static final String RESTAURAR_PACIENTE_SQL = "INSERT INTO paciente (" + COLUMNAS_PACIENTE + ") SELECT id, nombre, apellido, dni, fecha_nacimiento, FALSE, version + 1, fecha_alta, NULL FROM paciente_archivo WHERE id = ?";
+    private static final String BORRAR_PACIENTE_ARCHIVADO_SQL = "DELETE FROM paciente_archivo WHERE id = ?";
+    private static final String BLOQUEAR_PACIENTE_ARCHIVADO_SQL = "SELECT id FROM paciente_archivo WHERE id = ? FOR UPDATE";
+    // Si quedaron varias historias archivadas del paciente, vuelve la activa (o la más reciente); las demás siguen en el archivo
+    private static final String HISTORIA_DE_PACIENTE_ARCHIVADA_SQL = "SELECT id FROM historia_clinica_archivo WHERE paciente_id = ? ORDER BY eliminado, id DESC LIMIT 1 FOR UPDATE";
+    private static final String HISTORIA_ARCHIVADA_SQL = "SELECT hca.paciente_id, p.id FROM historia_clinica_archivo hca LEFT JOIN paciente p ON p.id = hca.paciente_id WHERE hca.id = ? AND hca.eliminado = TRUE FOR UPDATE OF hca FOR SHARE OF p";
+    private static final String RESTAURAR_HISTORIA_SQL = "INSERT INTO historia_clinica (" + COLUMNAS_HISTORIA + ") SELECT " + COLUMNAS_HISTORIA + " FROM historia_clinica_archivo WHERE id = ?";
+    private static final String RECUPERAR_HISTORIA_SQL = "INSERT INTO historia_clinica (" + COLUMNAS_HISTORIA + ") SELECT id, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, FALSE, version + 1, paciente_id, NULL FROM historia_clinica_archivo WHERE id = ?";
+    private static final String BORRAR_HISTORIA_ARCHIVADA_SQL = "DELETE FROM historia_clinica_archivo WHERE id = ?";
+
+    // --- Archivado (ArchivadoService) ---
+
+    /**
+     * IDs de pacientes eliminados antes del límite, los más antiguos primero. Lectura sin
+     * bloqueos desde el índice; archivarPacientes vuelve a verificar cada uno.
+     * Nota: Este método maneja su propia conexión, no es transaccional.
+     * @param limite Fecha de eliminación límite (exclusiva).
+     * @param cantidad Máximo de IDs.
+     * @return IDs candidatos.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public List<Long> candidatosPacientes(LocalDateTime limite, int cantidad) throws SQLException {
+        return candidatos(CANDIDATOS_PACIENTES_SQL, limite, cantidad);
+    }
+
+    /**
+     * IDs de historias clínicas eliminadas antes del límite (de pacientes activos o no), las
+     * más antiguas primero. Ver candidatosPacientes.
+     * Nota: Este método maneja su propia conexión, no es transaccional.
+     * @param limite Fecha de eliminación límite (exclusiva).
+     * @param cantidad Máximo de IDs.
+     * @return IDs candidatos.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public List<Long> candidatasHistorias(LocalDateTime limite, int cantidad) throws SQLException {
+        return candidatos(CANDIDATAS_HISTORIAS_SQL, limite, cantidad);
+    }
+
+    /**
+     * Mueve al archivo los pacientes indicados que sigan eliminados antes del límite, junto
+     * con todas sus historias clínicas (activas o no). Bloquea solo esas filas, por PK.
+     * Este método es transaccional.
+     * @param conn Conexión compartida para la transacción activa.
+     * @param ids IDs candidatos (ver candidatosPacientes).
+     * @param limite Fecha de eliminación límite (exclusiva).
+     * @return Cantidad de pacientes e historias archivados, con los IDs de los pacientes.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public Archivados archivarPacientes(Connection conn, List<Long> ids, LocalDateTime limite) throws SQLException {
+        List<Long> bloqueados = bloquear(conn, BLOQUEAR_PACIENTES_SQL, ids, limite);
+        if (bloqueados.isEmpty()) {
+            return new Archivados(0, 0, bloqueados);
+        }
+        // Primero las historias (FK hacia paciente); el alta de una historia nueva espera el bloqueo del paciente
+        int historias = ejecutar(conn, ARCHIVAR_HISTORIAS_DE_PACIENTES_SQL, bloqueados);
+        ejecutar(conn, BORRAR_HISTORIAS_DE_PACIENTES_SQL, bloqueados);
+        int pacientes = ejecutar(conn, ARCHIVAR_PACIENTES_SQL, bloqueados);
+        ejecutar(conn, BORRAR_PACIENTES_SQL, bloqueados);
+        return new Archivados(pacientes, historias, bloqueados);
+    }
+
+    /**
+     * Mueve al archivo las historias clínicas indicadas que sigan eliminadas antes del límite.
+     * Este método es transaccional.
+     * @param conn Conexión compartida para la transacción activa.
+     * @param ids IDs candidatos (ver candidatasHistorias).
+     * @param limite Fecha de eliminación límite (exclusiva).
+     * @return IDs de las historias archivadas.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public List<Long> archivarHistorias(Connection conn, List<Long> ids, LocalDateTime limite) throws SQLException {
+        List<Long> bloqueadas = bloquear(conn, BLOQUEAR_HISTORIAS_SQL, ids, limite);
+        if (bloqueadas.isEmpty()) {
+            return bloqueadas;
+        }
+        ejecutar(conn, ARCHIVAR_HISTORIAS_SQL, bloqueadas);
+        ejecutar(conn, BORRAR_HISTORIAS_SQL, bloqueadas);
+        return bloqueadas;
+    }
+
+    // --- Recuperación (PacienteDao.recuperar / HistoriaClinicaDao.recuperar) ---
+
+    /**
+     * Devuelve un paciente archivado a la tabla principal, activo y con una versión nueva,
+     * junto con su historia clínica archivada (si tiene).
+     * Este método es transaccional.
+     * @param id ID del Paciente.
+     * @param conn Conexión compartida para la transacción activa.
+     * @return false si el paciente no está en el archivo.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos o si el DNI o el
+     *         número de historia ya están en uso por otro registro.
+     */
+    public boolean restaurarPaciente(long id, Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(BLOQUEAR_PACIENTE_ARCHIVADO_SQL)) {
+            ps.setLong(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return false;
+                }
+            }
+        }
+        try {
+            ejecutar(conn, RESTAURAR_PACIENTE_SQL, id);
+        } catch (SQLIntegrityConstraintViolationException e) {
+            throw new SQLException("No se puede recuperar el Paciente archivado " + id + ": su DNI ya está en uso por otro paciente.", e);
+        }
+        ejecutar(conn, BORRAR_PACIENTE_ARCHIVADO_SQL, id);
+
+        long historiaId = 0;
+        try (PreparedStatement ps = conn.prepareStatement(HISTORIA_DE_PACIENTE_ARCHIVADA_SQL)) {
+            ps.setLong(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    historiaId = rs.getLong(1);
+                }
+            }
+        }
+        if (historiaId > 0) {
+            try {
+                ejecutar(conn, RESTAURAR_HISTORIA_SQL, historiaId);
+            } catch (SQLIntegrityConstraintViolationException e) {
+                throw new SQLException("No se puede recuperar la Historia Clínica archivada " + historiaId + " del Paciente " + id + ": su número de historia ya está en uso.", e);
+            }
+            ejecutar(conn, BORRAR_HISTORIA_ARCHIVADA_SQL, historiaId);
+        }
+        return true;
+    }
+
+    /**
+     * Devuelve una historia clínica eliminada y archivada a la tabla principal, activa y con
+     * una versión nueva. Su paciente debe estar en la tabla principal.
+     * Este método es transaccional.
+     * @param id ID de la Historia Clínica.
+     * @param conn Conexión compartida para la transacción activa.
+     * @return false si la historia no está en el archivo.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos, si el paciente
+     *         también está archivado, o si el paciente ya tiene otra historia o el número de
+     *         historia está en uso.
+     */
+    public boolean restaurarHistoria(long id, Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(HISTORIA_ARCHIVADA_SQL)) {
+            ps.setLong(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return false;
+                }
+                long pacienteId = rs.getLong(1);
+                rs.getLong(2);
+                if (rs.wasNull()) {
+                    throw new SQLException("La Historia Clínica " + id + " es del Paciente archivado " + pacienteId + ": recupere primero el paciente.");
+                }
+            }
+        }
+        try {
+            ejecutar(conn, RECUPERAR_HISTORIA_SQL, id);
+        } catch (SQLIntegrityConstraintViolationException e) {
+            throw new SQLException("No se puede recuperar la Historia Clínica archivada " + id + ": el paciente ya tiene otra historia o su número de historia está en uso.", e);
+        }
+        ejecutar(conn, BORRAR_HISTORIA_ARCHIVADA_SQL, id);
+        return true;
+    }
+
+    // --- Utilidades ---
+
+    private static List<Long> candidatos(String sql, LocalDateTime limite, int cantidad) throws SQLException {
+        List<Long> ids = new ArrayList<>(cantidad);
+        try (
+            Connection conn = DatabaseConnection.getConnection(Prioridad.LISTADO);
+            PreparedStatement ps = conn.prepareStatement(sql);
+        ) {
+            ps.setTimestamp(1, Timestamp.valueOf(limite));
+            ps.setInt(2, cantidad);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    // SELECT ... FOR UPDATE de los candidatos que siguen cumpliendo la condición
+    private static List<Long> bloquear(Connection conn, String sqlBase, List<Long> ids, LocalDateTime limite) throws SQLException {
+        List<Long> bloqueados = new ArrayList<>(ids.size());
+        if (ids.isEmpty()) {
+            return bloqueados;
+        }
+        try (PreparedStatement ps = conn.prepareStatement(sqlBase + LecturaPorLotes.marcadores(ids.size()) + " ORDER BY id FOR UPDATE")) {
+            ps.setTimestamp(1, Timestamp.valueOf(limite));
+            int i = 2;
+            for (Long id : ids) {
+                ps.setLong(i++, id);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    bloqueados.add(rs.getLong(1));
+                }
+            }
+        }
+        return bloqueados;
+    }
+
+    private static int ejecutar(Connection conn, String sqlBase, List<Long> ids) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sqlBase + LecturaPorLotes.marcadores(ids.size()))) {
+            int i = 1;
+            for (Long id : ids) {
+                ps.setLong(i++, id);
+            }
+            return ps.executeUpdate();
+        }
+    }
+
+    private static int ejecutar(Connection conn, String sql, long id) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, id);
+            return ps.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Utilidades de texto para las búsquedas por nombre: normalización (sin mayúsculas ni
+ * acentos, como la colación utf8mb4_0900_ai_ci de la BD), escape de comodines LIKE y
+ * similitud por trigramas para ordenar las coincidencias aproximadas.
+ */
+package dao;
+
+import java.text.Normalizer;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+final class BusquedaTexto {
+
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+    private static final Pattern ESPACIOS = Pattern.compile("\\s+");
+
+    /**
+     * Constructor privado, no se puede instanciar
+     */
+    private BusquedaTexto() {
+        throw new UnsupportedOperationException("Esta clase no se puede instanciar.");
+    }
+
+    /**
+     * Pasa a minúsculas, quita acentos y colapsa los espacios ("  Núñez  " → "nunez").
+     */
+    static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String sinAcentos = DIACRITICOS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return ESPACIOS.matcher(sinAcentos.toLowerCase(Locale.ROOT).trim()).replaceAll(" ");
+    }
+
+    /**
+     * Separa el texto en términos (por espacios).
+     */
+    static String[] terminos(String texto) {
+        String limpio = ESPACIOS.matcher(texto.trim()).replaceAll(" ");
+        return limpio.isEmpty() ? new String[0] : limpio.split(" ");
+    }
+
+    /**
+     * Patrón LIKE de prefijo con los comodines del usuario escapados ("50%" → "50\%%").
+     */
+    static String prefijoLike(String texto) {
+        StringBuilder sb = new StringBuilder(texto.length() + 1);
+        for (char c : texto.toCharArray()) {
+            if (c == '%' || c == '_' || c == '\\') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.append('%').toString();
+    }
+
+    /**
+     * Convierte el texto del usuario en una consulta FULLTEXT en BOOLEAN MODE donde todos los
+     * términos son obligatorios: las frases entre comillas se conservan como frase y el resto
+     * de las palabras se marcan con '+'. Se descartan los operadores que escriba el usuario
+     * (salvo '*' final, que busca por prefijo) para que la consulta nunca sea inválida.
+     * Ej: {@code "insuficiencia renal" enalapril} → {@code +"insuficiencia renal" +enalapril}
+     *
+     * @return La consulta o cadena vacía si no quedó ningún término.
+     */
+    static String consultaBooleana(String texto) {
+        StringBuilder consulta = new StringBuilder();
+        String[] partes = texto.split("\"", -1);
+        for (int i = 0; i < partes.length; i++) {
+            boolean esFrase = i % 2 == 1 && i < partes.length - 1; // Comillas sin cerrar: palabras sueltas
+            if (esFrase) {
+                String frase = String.join(" ", palabras(partes[i], false));
+                if (!frase.isEmpty()) {
+                    consulta.append(consulta.length() > 0 ? " " : "").append("+\"").append(frase).append('"');
+                }
+            } else {
+                for (String palabra : palabras(partes[i], true)) {
+                    consulta.append(consulta.length() > 0 ? " " : "").append('+').append(palabra);
+                }
+            }
+        }
+        return consulta.toString();
+    }
+
+    // Palabras formadas solo por letras y dígitos (opcionalmente con '*' final)
+    private static String[] palabras(String texto, boolean permitirPrefijo) {
+        StringBuilder limpio = new StringBuilder(texto.length());
+        for (String termino : terminos(texto)) {
+            StringBuilder palabra = new StringBuilder();
+            for (char c : termino.toCharArray()) {
+                if (Character.isLetterOrDigit(c)) {
+                    palabra.append(c);
+                } else if (palabra.length() > 0) {
+                    palabra.append(' ');
+                }
+            }
+            String p = palabra.toString().trim();
+            if (!p.isEmpty()) {
+                boolean prefijo = permitirPrefijo && termino.endsWith("*") && p.indexOf(' ') < 0;
+                limpio.append(limpio.length() > 0 ? " " : "").append(p).append(prefijo ? "*" : "");
+            }
+        }
+        return terminos(limpio.toString());
+    }
+
+    /**
+     * Similitud de Jaccard entre los trigramas de dos textos normalizados (0 a 1).
+     * Tolera errores de tipeo: "gonzales" y "gonzalez" comparten la mayoría de sus trigramas.
+     */
+    static double similitud(String a, String b) {
+        Set<String> ta = trigramas(normalizar(a));
+        Set<String> tb = trigramas(normalizar(b));
+        if (ta.isEmpty() || tb.isEmpty()) {
+            return 0;
+        }
+        int comunes = 0;
+        for (String t : ta) {
+            if (tb.contains(t)) {
+                comunes++;
+            }
+        }
+        return comunes / (double) (ta.size() + tb.size() - comunes);
+    }
+
+    // Trigramas de cada palabra, con relleno de espacios en los bordes ("ana" → "  a", " an", "ana", "na ")
+    private static Set<String> trigramas(String texto) {
+        Set<String> resultado = new HashSet<>();
+        for (String palabra : terminos(texto)) {
+            String relleno = "  " + palabra + " ";
+            for (int i = 0; i + 3 <= relleno.length(); i++) {
+                resultado.add(relleno.substring(i, i + 3));
+            }
+        }
+        return resultado;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Excepción lanzada por los DAOs cuando un UPDATE condicionado por versión
+ * (WHERE id = ? AND version = ?) no modifica ninguna fila: otro usuario modificó
+ * o eliminó el registro desde que se leyó. Evita las actualizaciones perdidas.
+ */
+package dao;
+
+import java.sql.SQLException;
+
+public class ConflictoConcurrenciaException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long id;
+    private final long versionEsperada;
+
+    /**
+     * @param entidad Nombre de la entidad (ej: "Paciente", "Historia Clinica").
+     * @param id ID del registro.
+     * @param versionEsperada Versión con la que se leyó el registro.
+     */
+    public ConflictoConcurrenciaException(String entidad, long id, long versionEsperada) {
+        // Sin SQLState de deadlock: reintentar la misma versión daría el mismo conflicto
+        super("El registro de " + entidad + " con ID " + id + " fue modificado o eliminado por otro usuario (versión leída: "
+                + versionEsperada + "). Vuelva a cargarlo e intente nuevamente.");
+        this.id = id;
+        this.versionEsperada = versionEsperada;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getVersionEsperada() {
+        return versionEsperada;
+    }
+}
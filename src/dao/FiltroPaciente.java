@@ -0,0 +1,302 @@
+/*
+ * Criterios de búsqueda combinables sobre Paciente y su Historia Clínica, para reportes
+ * ("pacientes activos de 60 años o más, grupo O-, sin medicación registrada").
+ *
+ * El filtro se compila a una única sentencia parametrizada: la edad se traduce a un rango
+ * de fecha_nacimiento y el nombre a un LIKE de prefijo, así las condiciones usan los índices
+ * (idx_paciente_nacimiento, idx_paciente_listado, idx_hc_grupo) en lugar de calcular sobre
+ * cada fila.
+ */
+package dao;
+
+import entities.TipoSangre;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Builder de criterios sobre Paciente e HistoriaClinica. Los criterios no indicados no
+ * filtran; por defecto solo se incluyen los pacientes activos.
+ * <pre>
+ * FiltroPaciente.nuevo().edadMinima(60).grupoSanguineo(TipoSangre.O_NEG).conMedicacion(false)
+ * </pre>
+ * Los criterios sobre la Historia Clínica (grupo sanguíneo, textos) implican que el paciente
+ * tiene una Historia Clínica activa.
+ */
+public final class FiltroPaciente {
+
+    /**
+     * Estado de borrado lógico de los pacientes a incluir.
+     */
+    public enum Estado {
+        ACTIVOS,
+        ELIMINADOS,
+        TODOS
+    }
+
+    private Estado estado = Estado.ACTIVOS;
+    private Integer edadMinima;
+    private Integer edadMaxima;
+    private EnumSet<TipoSangre> grupos;
+    private String prefijoApellido;
+    private String prefijoNombre;
+    private Boolean conHistoriaClinica;
+    private Boolean conAntecedentes;
+    private Boolean conMedicacion;
+    private Boolean conObservaciones;
+    private boolean ordenadoPorApellido;
+
+    private FiltroPaciente() {
+    }
+
+    /**
+     * Filtro vacío: todos los pacientes activos.
+     */
+    public static FiltroPaciente nuevo() {
+        return new FiltroPaciente();
+    }
+
+    /**
+     * Pacientes activos, eliminados lógicamente o ambos (por defecto, activos).
+     */
+    public FiltroPaciente estado(Estado estado) {
+        if (estado == null) {
+            throw new IllegalArgumentException("El estado no puede ser nulo");
+        }
+        this.estado = estado;
+        return this;
+    }
+
+    /**
+     * Edad mínima en años cumplidos (inclusive). Excluye a los pacientes sin fecha de nacimiento.
+     */
+    public FiltroPaciente edadMinima(int anios) {
+        validarEdad(anios);
+        this.edadMinima = anios;
+        return this;
+    }
+
+    /**
+     * Edad máxima en años cumplidos (inclusive). Excluye a los pacientes sin fecha de nacimiento.
+     */
+    public FiltroPaciente edadMaxima(int anios) {
+        validarEdad(anios);
+        this.edadMaxima = anios;
+        return this;
+    }
+
+    /**
+     * Rango de edad en años cumplidos (ambos extremos inclusive).
+     */
+    public FiltroPaciente edadEntre(int minima, int maxima) {
+        if (minima > maxima) {
+            throw new IllegalArgumentException("La edad mínima no puede ser mayor que la máxima");
+        }
+        return edadMinima(minima).edadMaxima(maxima);
+    }
+
+    /**
+     * Grupos sanguíneos aceptados (alcanza con uno). Implica Historia Clínica activa.
+     */
+    public FiltroPaciente grupoSanguineo(TipoSangre... grupos) {
+        if (grupos == null || grupos.length == 0) {
+            throw new IllegalArgumentException("Debe indicar al menos un grupo sanguíneo");
+        }
+        EnumSet<TipoSangre> conjunto = EnumSet.noneOf(TipoSangre.class);
+        Collections.addAll(conjunto, grupos);
+        this.grupos = conjunto;
+        return this;
+    }
+
+    /**
+     * Prefijo del apellido (sin distinguir mayúsculas ni acentos, por la collation de la BD).
+     */
+    public FiltroPaciente apellidoEmpiezaCon(String prefijo) {
+        this.prefijoApellido = validarPrefijo(prefijo);
+        return this;
+    }
+
+    /**
+     * Prefijo del nombre (sin distinguir mayúsculas ni acentos, por la collation de la BD).
+     */
+    public FiltroPaciente nombreEmpiezaCon(String prefijo) {
+        this.prefijoNombre = validarPrefijo(prefijo);
+        return this;
+    }
+
+    /**
+     * Con (true) o sin (false) Historia Clínica activa.
+     */
+    public FiltroPaciente conHistoriaClinica(boolean con) {
+        this.conHistoriaClinica = con;
+        return this;
+    }
+
+    /**
+     * Con (true) o sin (false) antecedentes registrados. Implica Historia Clínica activa.
+     */
+    public FiltroPaciente conAntecedentes(boolean con) {
+        this.conAntecedentes = con;
+        return this;
+    }
+
+    /**
+     * Con (true) o sin (false) medicación actual registrada. Implica Historia Clínica activa.
+     */
+    public FiltroPaciente conMedicacion(boolean con) {
+        this.conMedicacion = con;
+        return this;
+    }
+
+    /**
+     * Con (true) o sin (false) observaciones registradas. Implica Historia Clínica activa.
+     */
+    public FiltroPaciente conObservaciones(boolean con) {
+        this.conObservaciones = con;
+        return this;
+    }
+
+    /**
+     * Ordena los resultados por apellido, nombre e ID. Sin orden, las filas llegan en el
+     * orden del índice elegido por MySQL (sin ordenamiento adicional en el servidor).
+     */
+    public FiltroPaciente ordenadoPorApellido() {
+        this.ordenadoPorApellido = true;
+        return this;
+    }
+
+    /**
+     * Estado de borrado lógico de los pacientes incluidos.
+     */
+    public Estado getEstado() {
+        return estado;
+    }
+
+    /**
+     * Condición SQL compilada: fragmento WHERE (sobre los alias p = paciente, hc =
+     * historia_clinica del LEFT JOIN) y sus parámetros, en orden.
+     */
+    record Condicion(String where, List<Object> parametros, String orderBy) {
+    }
+
+    /**
+     * Compila el filtro a una condición parametrizada.
+     *
+     * @param hoy Fecha de referencia para calcular las edades.
+     */
+    Condicion compilar(LocalDate hoy) {
+        List<String> condiciones = new ArrayList<>();
+        List<Object> parametros = new ArrayList<>();
+
+        if (estado != Estado.TODOS) {
+            condiciones.add("p.eliminado = ?");
+            parametros.add(estado == Estado.ELIMINADOS);
+        }
+        if (prefijoApellido != null) {
+            condiciones.add("p.apellido LIKE ?");
+            parametros.add(BusquedaTexto.prefijoLike(prefijoApellido));
+        }
+        if (prefijoNombre != null) {
+            condiciones.add("p.nombre LIKE ?");
+            parametros.add(BusquedaTexto.prefijoLike(prefijoNombre));
+        }
+        // Edad → rango de fechas (sargable): tener al menos N años es haber nacido hasta hoy - N
+        if (edadMinima != null) {
+            condiciones.add("p.fecha_nacimiento <= ?");
+            parametros.add(java.sql.Date.valueOf(hoy.minusYears(edadMinima)));
+        }
+        if (edadMaxima != null) {
+            condiciones.add("p.fecha_nacimiento > ?");
+            parametros.add(java.sql.Date.valueOf(hoy.minusYears(edadMaxima + 1L)));
+        }
+
+        boolean requiereHistoria = grupos != null || conAntecedentes != null || conMedicacion != null
+                || conObservaciones != null || Boolean.TRUE.equals(conHistoriaClinica);
+        if (Boolean.FALSE.equals(conHistoriaClinica)) {
+            if (requiereHistoria) {
+                condiciones.add("FALSE"); // Criterios contradictorios
+            } else {
+                condiciones.add("(hc.id IS NULL OR hc.eliminado = TRUE)");
+            }
+        } else if (requiereHistoria) {
+            condiciones.add("hc.eliminado = FALSE");
+        }
+        if (grupos != null) {
+            StringBuilder in = new StringBuilder("hc.grupo_sanguineo IN (");
+            String separador = "";
+            for (TipoSangre grupo : grupos) {
+                in.append(separador).append('?');
+                separador = ", ";
+                parametros.add(grupo.getValor());
+            }
+            condiciones.add(in.append(')').toString());
+        }
+        agregarPresencia(condiciones, "hc.antecedentes", conAntecedentes);
+        agregarPresencia(condiciones, "hc.medicacion_actual", conMedicacion);
+        agregarPresencia(condiciones, "hc.observaciones", conObservaciones);
+
+        String where = condiciones.isEmpty() ? "TRUE" : String.join(" AND ", condiciones);
+        String orderBy = ordenadoPorApellido ? " ORDER BY p.apellido, p.nombre, p.id" : "";
+        return new Condicion(where, parametros, orderBy);
+    }
+
+    @Override
+    public String toString() {
+        List<String> partes = new ArrayList<>();
+        partes.add("estado=" + estado);
+        if (edadMinima != null) {
+            partes.add("edad>=" + edadMinima);
+        }
+        if (edadMaxima != null) {
+            partes.add("edad<=" + edadMaxima);
+        }
+        if (grupos != null) {
+            partes.add("grupos=" + grupos);
+        }
+        if (prefijoApellido != null) {
+            partes.add("apellido='" + prefijoApellido + "*'");
+        }
+        if (prefijoNombre != null) {
+            partes.add("nombre='" + prefijoNombre + "*'");
+        }
+        if (conHistoriaClinica != null) {
+            partes.add("conHistoriaClinica=" + conHistoriaClinica);
+        }
+        if (conAntecedentes != null) {
+            partes.add("conAntecedentes=" + conAntecedentes);
+        }
+        if (conMedicacion != null) {
+            partes.add("conMedicacion=" + conMedicacion);
+        }
+        if (conObservaciones != null) {
+            partes.add("conObservaciones=" + conObservaciones);
+        }
+        return "FiltroPaciente{" + String.join(", ", partes) + '}';
+    }
+
+    // Texto registrado = no nulo y no vacío
+    private static void agregarPresencia(List<String> condiciones, String columna, Boolean con) {
+        if (con == null) {
+            return;
+        }
+        condiciones.add(con
+                ? "(" + columna + " IS NOT NULL AND " + columna + " <> '')"
+                : "(" + columna + " IS NULL OR " + columna + " = '')");
+    }
+
+    private static void validarEdad(int anios) {
+        if (anios < 0 || anios > 150) {
+            throw new IllegalArgumentException("La edad debe estar entre 0 y 150 años");
+        }
+    }
+
+    private static String validarPrefijo(String prefijo) {
+        if (prefijo == null || prefijo.trim().isEmpty()) {
+            throw new IllegalArgumentException("El prefijo no puede estar vacío");
+        }
+        return prefijo.trim();
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Generador de IDs por bloques (hi/lo) respaldado por la tabla secuencia.
+ *
+ * En lugar de esperar el AUTO_INCREMENT de cada INSERT (RETURN_GENERATED_KEYS), cada JVM
+ * reserva un bloque de secuencia.tamanioBloque valores (por defecto 1000) con un solo
+ * UPDATE y los reparte en memoria sin sincronizar (AtomicLong). Así los IDs de un lote
+ * completo se conocen antes de insertar y los INSERT se pueden enviar agrupados.
+ *
+ * Los valores de un bloque que no se llegan a usar (la JVM termina, una transacción hace
+ * rollback) se pierden: los IDs son únicos y crecientes por JVM, no consecutivos.
+ */
+package dao;
+
+import config.DatabaseConnection;
+import config.Prioridad;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class GeneradorIds {
+
+    // LAST_INSERT_ID(expr) deja el nuevo valor en el paquete OK del UPDATE: se lee con
+    // getGeneratedKeys sin una segunda consulta
+    private static final String RESERVAR_SQL = "UPDATE secuencia SET valor = LAST_INSERT_ID(valor + ?) WHERE nombre = ?";
+
+    private static final int TAMANIO_BLOQUE = Integer.getInteger("secuencia.tamanioBloque", 1000);
+
+    /**
+     * IDs de paciente.
+     */
+    public static final GeneradorIds PACIENTE = new GeneradorIds("paciente");
+
+    /**
+     * IDs de historia_clinica.
+     */
+    public static final GeneradorIds HISTORIA_CLINICA = new GeneradorIds("historia_clinica");
+
+    // Parte numérica de los números de Historia Clínica (HC-<n>)
+    private static final GeneradorIds NRO_HISTORIA = new GeneradorIds("nro_historia");
+    private static final String PREFIJO_NRO_HISTORIA = "HC-";
+
+    /**
+     * Rango reservado: se entregan los valores de siguiente a limite (inclusive).
+     */
+    private static final class Bloque {
+
+        private final AtomicLong siguiente;
+        private final long limite;
+
+        private Bloque(long primero, long limite) {
+            this.siguiente = new AtomicLong(primero);
+            this.limite = limite;
+        }
+    }
+
+    private final String nombre;
+    private volatile Bloque actual = new Bloque(1, 0); // Vacío: el primer pedido reserva
+
+    private GeneradorIds(String nombre) {
+        this.nombre = nombre;
+    }
+
+    /**
+     * Próximo ID. Solo accede a la BD cuando se agota el bloque en curso (una vez cada
+     * secuencia.tamanioBloque llamadas), con su propia conexión.
+     *
+     * @throws SQLException Si no se puede reservar un nuevo bloque.
+     */
+    public long siguiente() throws SQLException {
+        while (true) {
+            Bloque bloque = actual;
+            long id = bloque.siguiente.getAndIncrement();
+            if (id <= bloque.limite) {
+                return id;
+            }
+            reponer(bloque);
+        }
+    }
+
+    /**
+     * IDs para un lote de altas. Si el lote es al menos del tamaño de un bloque, se reserva
+     * un rango propio en un solo viaje a la BD; si no, se toman del bloque en curso.
+     *
+     * @param cantidad Cantidad de IDs.
+     * @throws SQLException Si no se puede reservar un nuevo bloque.
+     */
+    public long[] siguientes(int cantidad) throws SQLException {
+        long[] ids = new long[cantidad];
+        if (cantidad >= TAMANIO_BLOQUE) {
+            long primero = reservar(cantidad);
+            for (int i = 0; i < cantidad; i++) {
+                ids[i] = primero + i;
+            }
+        } else {
+            for (int i = 0; i < cantidad; i++) {
+                ids[i] = siguiente();
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Próximo número de Historia Clínica generado ("HC-" y un número creciente). La tabla
+     * secuencia arranca después del mayor "HC-n" existente; un número cargado a mano con
+     * ese formato y mayor que los generados puede chocar con el índice UNIQUE más adelante.
+     *
+     * @throws SQLException Si no se puede reservar un nuevo bloque.
+     */
+    public static String siguienteNroHistoria() throws SQLException {
+        return PREFIJO_NRO_HISTORIA + NRO_HISTORIA.siguiente();
+    }
+
+    // Solo un hilo reserva; los demás esperan y usan el bloque nuevo
+    private synchronized void reponer(Bloque agotado) throws SQLException {
+        if (actual != agotado) {
+            return; // Otro hilo ya lo repuso
+        }
+        long primero = reservar(TAMANIO_BLOQUE);
+        actual = new Bloque(primero, primero + TAMANIO_BLOQUE - 1);
+    }
+
+    /**
+     * Reserva un rango en la tabla secuencia, en una transacción propia (autocommit) para
+     * no retener el bloqueo de la fila hasta el commit de quien pidió el ID.
+     *
+     * @return Primer valor del rango reservado.
+     */
+    private long reservar(int cantidad) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection(Prioridad.ESCRITURA);
+             PreparedStatement ps = conn.prepareStatement(RESERVAR_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            ps.setLong(1, cantidad);
+            ps.setString(2, nombre);
+            if (ps.executeUpdate() == 0) {
+                throw new SQLException("No existe la secuencia '" + nombre + "' en la tabla secuencia.");
+            }
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                if (!rs.next()) {
+                    throw new SQLException("No se obtuvo el valor reservado de la secuencia '" + nombre + "'.");
+                }
+                return rs.getLong(1) - cantidad + 1;
+            }
+        }
+    }
+}
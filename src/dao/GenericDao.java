@@ -45,6 +45,15 @@ public interface GenericDao<T extends Base> { //se define el GenericDao
      */
     List<T> leerTodos() throws SQLException; 
 
+    /**
+     * Igual que leerTodos(), pero usando una conexión existente (ej: una transacción de
+     * solo lectura compartida por varias consultas de un reporte).
+     * @param conn Conexión compartida.
+     * @return Lista de entidades activas.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    List<T> leerTodos(Connection conn) throws SQLException;
+
     /**
      * Actualiza una entidad existente.
      * @param entidad Objeto entidad con los datos a actualizar.
@@ -74,6 +83,14 @@ public interface GenericDao<T extends Base> { //se define el GenericDao
      * @throws SQLException Si ocurre un error de acceso a la base de datos.
      */
     long contarEliminados() throws SQLException; 
+
+    /**
+     * Igual que contarEliminados(), pero usando una conexión existente.
+     * @param conn Conexión compartida.
+     * @return La cantidad de registros eliminados.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    long contarEliminados(Connection conn) throws SQLException;
     
     /**
      * Recupera una entidad eliminada lógicamente, estableciendo 'eliminado = FALSE'.
@@ -16,29 +16,84 @@ package dao;
 
 //Importa las librerias y los demas Source Packages con los que trabajara 
 import config.DatabaseConnection;
+import config.Prioridad;
 import entities.HistoriaClinica;
+import entities.HistoriaClinicaConPaciente;
+import entities.HistoriaClinicaResumen;
+import entities.PacienteResumen;
 import entities.TipoSangre;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class HistoriaClinicaDao implements GenericDao<HistoriaClinica> {
 
+    /**
+     * Recibe los campos TEXT de cada Historia Clínica durante un recorrido completo (recorrerTextos),
+     * con su paciente y el estado de este.
+     */
+    @FunctionalInterface
+    public interface ConsumidorTextos {
+        void aceptar(long id, long pacienteId, boolean pacienteEliminado, String antecedentes, String medicacionActual, String observaciones);
+    }
+
     // --- Constantes SQL ---
-    private static final String INSERT_SQL = "INSERT INTO historia_clinica (nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado, paciente_id) VALUES (?, ?, ?, ?, ?, ?, ?)";
-    private static final String SELECT_BY_ID_SQL = "SELECT id, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado FROM historia_clinica WHERE id = ? AND eliminado = FALSE";
-    private static final String UPDATE_SQL = "UPDATE historia_clinica SET nro_historia = ?, grupo_sanguineo = ?, antecedentes = ?, medicacion_actual = ?, observaciones = ? WHERE id = ?";
-    private static final String DELETE_SQL = "UPDATE historia_clinica SET eliminado = TRUE WHERE id = ?";
-    private static final String RECOVER_SQL = "UPDATE historia_clinica SET eliminado = FALSE WHERE id = ?";
-    private static final String SELECT_ALL_ACTIVE_SQL = "SELECT id, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado FROM historia_clinica WHERE eliminado = FALSE";
+    // El ID (y el número si no se cargó) se asigna antes de insertar (GeneradorIds).
+    // PacienteDao.crearConHistoria lo envía junto con el INSERT del paciente
+    static final String INSERT_SQL = "INSERT INTO historia_clinica (id, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado, paciente_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_BY_ID_SQL = "SELECT id, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado, version, paciente_id FROM historia_clinica WHERE id = ? AND eliminado = FALSE";
+    private static final String DELETE_SQL = "UPDATE historia_clinica SET eliminado = TRUE, version = version + 1, fecha_eliminacion = NOW() WHERE id = ? AND eliminado = FALSE";
+    private static final String RECOVER_SQL = "UPDATE historia_clinica SET eliminado = FALSE, version = version + 1, fecha_eliminacion = NULL WHERE id = ? AND eliminado = TRUE";
+    // Reemplazo de los datos de historias ya bloqueadas por quien llama (PacienteDao.upsertPorDni)
+    private static final String UPDATE_DATOS_SQL = "UPDATE historia_clinica SET nro_historia = ?, grupo_sanguineo = ?, antecedentes = ?, medicacion_actual = ?, observaciones = ?, version = version + 1 WHERE id = ?";
+    // Los listados traen solo las columnas angostas; los TEXT se completan con cargarTextos
+    private static final String SELECT_ALL_ACTIVE_SQL = "SELECT id, nro_historia, grupo_sanguineo, eliminado, version, paciente_id FROM historia_clinica WHERE eliminado = FALSE";
+    // Lectura por lotes de IDs: LecturaPorLotes agrega "(?, ?, ...)" al final
+    private static final String SELECT_BY_IDS_SQL = "SELECT id, nro_historia, grupo_sanguineo, eliminado, version, paciente_id FROM historia_clinica WHERE eliminado = FALSE AND id IN ";
+
+    // --- Búsquedas por claves únicas (índices UNIQUE de paciente_id y nro_historia) ---
+    private static final String SELECT_BY_PACIENTE_ID_SQL = "SELECT id, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado, version, paciente_id FROM historia_clinica WHERE paciente_id = ? AND eliminado = FALSE";
+    private static final String SELECT_BY_NRO_HISTORIA_SQL = "SELECT id, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado, version, paciente_id FROM historia_clinica WHERE nro_historia = ? AND eliminado = FALSE";
+
+    // Historias activas con su Paciente en una sola consulta (sin los TEXT)
+    private static final String SELECT_ALL_CON_PACIENTE_SQL = "SELECT hc.id, hc.nro_historia, hc.grupo_sanguineo, hc.eliminado, hc.version, hc.paciente_id, p.nombre, p.apellido, p.dni, p.fecha_nacimiento, p.eliminado as p_eliminado FROM historia_clinica hc JOIN paciente p ON p.id = hc.paciente_id WHERE hc.eliminado = FALSE ORDER BY hc.nro_historia";
+
+    // Búsqueda de texto completo en los TEXT (índice ft_hc_textos), excluyendo historias y pacientes eliminados
+    private static final String BUSCAR_EN_TEXTOS_SQL = "SELECT hc.id, hc.nro_historia, hc.grupo_sanguineo, hc.eliminado, hc.version, hc.paciente_id, p.nombre, p.apellido, p.dni, p.fecha_nacimiento, p.eliminado as p_eliminado, MATCH(hc.antecedentes, hc.medicacion_actual, hc.observaciones) AGAINST (? IN BOOLEAN MODE) AS relevancia FROM historia_clinica hc JOIN paciente p ON p.id = hc.paciente_id WHERE hc.eliminado = FALSE AND p.eliminado = FALSE AND MATCH(hc.antecedentes, hc.medicacion_actual, hc.observaciones) AGAINST (? IN BOOLEAN MODE) ORDER BY relevancia DESC, hc.id LIMIT ? OFFSET ?";
+
+    // --- Proyección para listados (cubierta por idx_hc_listado) ---
+    private static final String SELECT_RESUMEN_SQL = "SELECT id, nro_historia, grupo_sanguineo, eliminado FROM historia_clinica WHERE eliminado = ? ORDER BY nro_historia";
+    private static final String SELECT_RESUMEN_ELIMINADAS_SQL = "SELECT id, nro_historia, grupo_sanguineo, eliminado FROM historia_clinica WHERE eliminado = TRUE"
+            + " UNION ALL SELECT id, nro_historia, grupo_sanguineo, eliminado FROM historia_clinica_archivo WHERE eliminado = TRUE"
+            + " ORDER BY nro_historia";
+
+    // --- Carga de los campos TEXT de historias leídas sin ellos (con las archivadas desde entonces) ---
+    private static final String SELECT_TEXTOS_BY_IDS_SQL = "SELECT id, antecedentes, medicacion_actual, observaciones FROM historia_clinica WHERE id IN ";
+    private static final String SELECT_TEXTOS_ARCHIVADOS_BY_IDS_SQL = "SELECT id, antecedentes, medicacion_actual, observaciones FROM historia_clinica_archivo WHERE id IN ";
+    // Recorrido completo de los TEXT de las historias activas (ordenado por id: los índices en memoria agregan al final)
+    private static final String SELECT_TEXTOS_ACTIVOS_SQL = "SELECT hc.id, hc.paciente_id, p.eliminado AS p_eliminado, hc.antecedentes, hc.medicacion_actual, hc.observaciones FROM historia_clinica hc JOIN paciente p ON p.id = hc.paciente_id WHERE hc.eliminado = FALSE ORDER BY hc.id";
+    // Máximo de ids por IN-list al cargar textos por lote
+    private static final int TAMANIO_LOTE_TEXTOS = Integer.getInteger("dao.loteTextos", 500);
+
+    // UPDATE por conjunto de columnas modificadas: se arma una vez por combinación y se reutiliza
+    // (a lo sumo 2^n variantes, n = cantidad de campos de HistoriaClinica.Campo)
+    private static final Map<EnumSet<HistoriaClinica.Campo>, String> UPDATES_POR_CAMPOS = new ConcurrentHashMap<>();
 
     // --- CONSTANTES SQL para manejo del Borrado Lógico ---
-    private static final String SELECT_ALL_DELETED_SQL = "SELECT id, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado FROM historia_clinica WHERE eliminado = TRUE";
-    private static final String COUNT_DELETED_SQL = "SELECT COUNT(*) FROM historia_clinica WHERE eliminado = TRUE";
+    private static final String SELECT_ALL_DELETED_SQL = "SELECT id, nro_historia, grupo_sanguineo, eliminado, version, paciente_id FROM historia_clinica WHERE eliminado = TRUE";
+    // Las eliminadas incluyen las archivadas (ArchivoDao)
+    private static final String SELECT_ALL_ARCHIVED_SQL = "SELECT id, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado, version, paciente_id FROM historia_clinica_archivo WHERE eliminado = TRUE";
+    private static final String COUNT_DELETED_SQL = "SELECT (SELECT COUNT(*) FROM historia_clinica WHERE eliminado = TRUE) + (SELECT COUNT(*) FROM historia_clinica_archivo WHERE eliminado = TRUE)";
+
+    private final ArchivoDao archivoDao = new ArchivoDao();
 
     // --- Mapeo y Utilidades ---
 
@@ -50,71 +105,216 @@ public class HistoriaClinicaDao implements GenericDao<HistoriaClinica> {
      * @throws SQLException Si ocurre un error de lectura de la base de datos.
      */
     private HistoriaClinica mapearEntidad(ResultSet rs) throws SQLException {
+        return mapearEntidad(rs, true);
+    }
+
+    /**
+     * Mapea un ResultSet a una entidad HistoriaClinica, con o sin los campos TEXT.
+     * Sin textos, la entidad queda marcada para completarlos con cargarTextos.
+     * @param rs ResultSet de la consulta.
+     * @param conTextos true si la consulta incluye antecedentes, medicacion_actual y observaciones.
+     * @return Objeto HistoriaClinica.
+     * @throws SQLException Si ocurre un error de lectura de la base de datos.
+     */
+    private HistoriaClinica mapearEntidad(ResultSet rs, boolean conTextos) throws SQLException {
         long id = rs.getLong("id");
         String nroHistoria = rs.getString("nro_historia");
 
-        TipoSangre grupoSanguineo = null;
+        TipoSangre grupoSanguineo = leerGrupoSanguineo(rs);
+
+        boolean eliminado = rs.getBoolean("eliminado");
+
+        HistoriaClinica historia;
+        if (conTextos) {
+            String antecedentes = rs.getString("antecedentes");
+            String medicacionActual = rs.getString("medicacion_actual");
+            String observaciones = rs.getString("observaciones");
+            historia = new HistoriaClinica(id, eliminado, nroHistoria, grupoSanguineo, antecedentes, medicacionActual, observaciones);
+        } else {
+            historia = new HistoriaClinica(id, eliminado, nroHistoria, grupoSanguineo, null, null, null);
+            historia.marcarSinTextos();
+        }
+        historia.setVersion(rs.getLong("version"));
+        historia.setPacienteId(rs.getLong("paciente_id"));
+        return historia;
+    }
+
+    /**
+     * Lee la columna grupo_sanguineo y la convierte del String de la BD al Enum de Java.
+     * @param rs ResultSet posicionado en la fila.
+     * @return El TipoSangre o null si está vacío o es inválido.
+     * @throws SQLException Si ocurre un error de lectura de la base de datos.
+     */
+    private TipoSangre leerGrupoSanguineo(ResultSet rs) throws SQLException {
         String dbGrupo = rs.getString("grupo_sanguineo");
-        
+
         // Conversión segura de String (BD) a Enum (Java)
         if (dbGrupo != null && !dbGrupo.isEmpty()) {
             try {
-                grupoSanguineo = TipoSangre.fromDbValue(dbGrupo);
+                return TipoSangre.fromDbValue(dbGrupo);
             } catch (IllegalArgumentException e) {
                 // Notificación de valor inválido en BD, pero permite que la HC se mapee
                 System.err.println("Valor de TipoSangre inválido en BD: " + dbGrupo);
             }
         }
+        return null;
+    }
 
-        String antecedentes = rs.getString("antecedentes");
-        String medicacionActual = rs.getString("medicacion_actual");
-        String observaciones = rs.getString("observaciones");
-        boolean eliminado = rs.getBoolean("eliminado");
-
-        return new HistoriaClinica(id, eliminado, nroHistoria, grupoSanguineo, antecedentes, medicacionActual, observaciones);
+    /**
+     * Retorna la proyección liviana de las Historias Clínicas activas o eliminadas (incluidas
+     * las archivadas), ordenada por número de historia. Solo lee las columnas que muestran los
+     * listados (sin los TEXT); la consulta se resuelve desde el índice.
+     * Nota: Este método maneja su propia conexión, no es transaccional.
+     * @param eliminadas true para las eliminadas lógicamente, false para las activas.
+     * @return Lista de resúmenes.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public List<HistoriaClinicaResumen> leerResumenes(boolean eliminadas) throws SQLException {
+        List<HistoriaClinicaResumen> lista = new ArrayList<>();
+        try (
+            Connection conn = DatabaseConnection.getConnection(Prioridad.LISTADO);
+            PreparedStatement ps = conn.prepareStatement(eliminadas ? SELECT_RESUMEN_ELIMINADAS_SQL : SELECT_RESUMEN_SQL);
+        ) {
+            if (!eliminadas) {
+                ps.setBoolean(1, false);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    lista.add(new HistoriaClinicaResumen(rs.getLong("id"), rs.getString("nro_historia"),
+                            leerGrupoSanguineo(rs), rs.getBoolean("eliminado")));
+                }
+            }
+            return lista;
+        }
     }
 
     /**
      * Inserta una nueva Historia Clínica en la base de datos.
+     * Si no tiene ID se le asigna uno de GeneradorIds.HISTORIA_CLINICA, y si no tiene número
+     * de historia, uno generado (GeneradorIds.siguienteNroHistoria).
      * Este método es transaccional y siempre requiere un pacienteId.
      * @param entidad Objeto HistoriaClinica a insertar.
      * @param conn Conexión compartida para la transacción activa.
      * @param pacienteId ID del paciente al cual se relaciona la historia clínica.
-     * @return La entidad HistoriaClinica con su ID autogenerado.
-     * @throws SQLException Si falla la inserción o no se obtiene el ID.
+     * @return La entidad HistoriaClinica con su ID asignado.
+     * @throws SQLException Si falla la inserción o la reserva del ID.
      */
     public HistoriaClinica crear(HistoriaClinica entidad, Connection conn, long pacienteId) throws SQLException {
         if (pacienteId <= 0) {
             throw new SQLException("El pacienteId debe ser mayor a 0 para crear una Historia Clinica.");
         }
+        asignarIdentificadores(entidad);
+        entidad.setPacienteId(pacienteId);
 
-        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
-
-            int i = 1;
-            ps.setString(i++, entidad.getNroHistoria());
-            ps.setString(i++, entidad.getGrupoSanguineo() != null ? entidad.getGrupoSanguineo().getValor() : null); 
-            ps.setString(i++, entidad.getAntecedentes());
-            ps.setString(i++, entidad.getMedicacionActual());
-            ps.setString(i++, entidad.getObservaciones());
-            ps.setBoolean(i++, entidad.isEliminado());
-            ps.setLong(i++, pacienteId);
-
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            setParametrosInsert(ps, 1, entidad);
             int affectedRows = ps.executeUpdate();
             if (affectedRows == 0) {
                 throw new SQLException("Fallo al crear la Historia Clinica, no se modificaron filas.");
             }
+            entidad.limpiarCamposModificados();
+            return entidad;
+        }
+    }
 
-            // Obtener el ID autogenerado
-            try (ResultSet rs = ps.getGeneratedKeys()) {
-                if (rs.next()) {
-                    entidad.setId(rs.getLong(1));
-                } else {
-                    throw new SQLException("Fallo al crear la Historia Clinica, no se obtuvo ID generado.");
-                }
+    /**
+     * Inserta varias Historias Clínicas en un solo lote; cada una debe tener su pacienteId.
+     * Los IDs y números que faltan se piden a GeneradorIds antes de insertar.
+     * Este método es transaccional.
+     * @param entidades Historias Clínicas a insertar.
+     * @param conn Conexión compartida para la transacción activa.
+     * @throws SQLException Si falla alguna inserción o la reserva de IDs.
+     */
+    public void crearLote(List<HistoriaClinica> entidades, Connection conn) throws SQLException {
+        if (entidades.isEmpty()) {
+            return;
+        }
+        int sinId = 0;
+        for (HistoriaClinica entidad : entidades) {
+            if (entidad.getPacienteId() <= 0) {
+                throw new SQLException("El pacienteId debe ser mayor a 0 para crear una Historia Clinica.");
+            }
+            if (entidad.getId() <= 0) {
+                sinId++;
             }
-            return entidad;
+        }
+        long[] ids = GeneradorIds.HISTORIA_CLINICA.siguientes(sinId);
+        int j = 0;
+        for (HistoriaClinica entidad : entidades) {
+            if (entidad.getId() <= 0) {
+                entidad.setId(ids[j++]);
+            }
+            asignarIdentificadores(entidad);
+        }
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            for (HistoriaClinica entidad : entidades) {
+                setParametrosInsert(ps, 1, entidad);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        for (HistoriaClinica entidad : entidades) {
+            entidad.limpiarCamposModificados();
+        }
+    }
+
+    /**
+     * Reemplaza los datos de varias Historias Clínicas en un solo lote, sin control de
+     * versión: quien llama ya bloqueó las filas en la misma transacción. El estado
+     * (eliminado) y el paciente no cambian.
+     * Este método es transaccional.
+     * @param entidades Historias Clínicas con su ID y los datos nuevos.
+     * @param conn Conexión compartida para la transacción activa.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos (ej: número de historia repetido).
+     */
+    public void actualizarLote(List<HistoriaClinica> entidades, Connection conn) throws SQLException {
+        if (entidades.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement ps = conn.prepareStatement(UPDATE_DATOS_SQL)) {
+            for (HistoriaClinica entidad : entidades) {
+                int i = 1;
+                ps.setString(i++, entidad.getNroHistoria());
+                ps.setString(i++, entidad.getGrupoSanguineo() != null ? entidad.getGrupoSanguineo().getValor() : null);
+                ps.setString(i++, entidad.getAntecedentes());
+                ps.setString(i++, entidad.getMedicacionActual());
+                ps.setString(i++, entidad.getObservaciones());
+                ps.setLong(i++, entidad.getId());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        for (HistoriaClinica entidad : entidades) {
+            entidad.limpiarCamposModificados();
         }
     }
+
+    static void asignarIdentificadores(HistoriaClinica entidad) throws SQLException {
+        if (entidad.getId() <= 0) {
+            entidad.setId(GeneradorIds.HISTORIA_CLINICA.siguiente());
+        }
+        if (entidad.getNroHistoria() == null || entidad.getNroHistoria().trim().isEmpty()) {
+            entidad.setNroHistoria(GeneradorIds.siguienteNroHistoria());
+        }
+    }
+
+    /**
+     * Completa los parámetros de INSERT_SQL desde la posición indicada.
+     *
+     * @return Posición del siguiente parámetro.
+     */
+    static int setParametrosInsert(PreparedStatement ps, int i, HistoriaClinica entidad) throws SQLException {
+        ps.setLong(i++, entidad.getId());
+        ps.setString(i++, entidad.getNroHistoria());
+        ps.setString(i++, entidad.getGrupoSanguineo() != null ? entidad.getGrupoSanguineo().getValor() : null);
+        ps.setString(i++, entidad.getAntecedentes());
+        ps.setString(i++, entidad.getMedicacionActual());
+        ps.setString(i++, entidad.getObservaciones());
+        ps.setBoolean(i++, entidad.isEliminado());
+        ps.setLong(i++, entidad.getPacienteId());
+        return i;
+    }
+
      @Override
     public HistoriaClinica crear(HistoriaClinica entidad, Connection conn) throws SQLException {
     throw new UnsupportedOperationException("Error, la que debes llamar es crear(HistoriaClinica, Connection, long pacienteId) en su lugar.");
@@ -148,6 +348,119 @@ public class HistoriaClinicaDao implements GenericDao<HistoriaClinica> {
         }
     }
 
+    /**
+     * Lee la Historia Clínica activa de un Paciente (búsqueda por el índice único de paciente_id).
+     * Nota: Este método maneja su propia conexión, no es transaccional.
+     * @param pacienteId El ID del Paciente dueño.
+     * @return La Historia Clínica encontrada o null si el Paciente no tiene una activa.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public HistoriaClinica leerPorPacienteId(long pacienteId) throws SQLException {
+        return leerUna(SELECT_BY_PACIENTE_ID_SQL, ps -> ps.setLong(1, pacienteId));
+    }
+
+    /**
+     * Lee una Historia Clínica activa por su número (búsqueda por el índice único de nro_historia).
+     * Nota: Este método maneja su propia conexión, no es transaccional.
+     * @param nroHistoria Número de Historia Clínica (ej: HC-0001).
+     * @return La Historia Clínica encontrada o null si no existe.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public HistoriaClinica leerPorNroHistoria(String nroHistoria) throws SQLException {
+        return leerUna(SELECT_BY_NRO_HISTORIA_SQL, ps -> ps.setString(1, nroHistoria));
+    }
+
+    // Parámetros de una consulta por clave
+    @FunctionalInterface
+    private interface Parametros {
+        void asignar(PreparedStatement ps) throws SQLException;
+    }
+
+    // Ejecuta una consulta que devuelve a lo sumo una fila (con los campos TEXT)
+    private HistoriaClinica leerUna(String sql, Parametros parametros) throws SQLException {
+        try (
+            Connection conn = DatabaseConnection.getConnection();
+            PreparedStatement ps = conn.prepareStatement(sql);
+        ) {
+            parametros.asignar(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return mapearEntidad(rs);
+                }
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Retorna las Historias Clínicas activas junto con el resumen de su Paciente, ordenadas
+     * por número, en una sola consulta (JOIN) en lugar de una lectura de Paciente por historia.
+     * Los campos TEXT no se leen (ver cargarTextos).
+     * Nota: Este método maneja su propia conexión, no es transaccional.
+     * @return Lista de pares Historia Clínica / Paciente.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public List<HistoriaClinicaConPaciente> leerTodosConPaciente() throws SQLException {
+        List<HistoriaClinicaConPaciente> lista = new ArrayList<>();
+        try (
+            Connection conn = DatabaseConnection.getConnection(Prioridad.LISTADO);
+            PreparedStatement ps = conn.prepareStatement(SELECT_ALL_CON_PACIENTE_SQL);
+            ResultSet rs = ps.executeQuery();
+        ) {
+            while (rs.next()) {
+                lista.add(mapearConPaciente(rs));
+            }
+            return lista;
+        }
+    }
+
+    /**
+     * Busca Historias Clínicas activas (de pacientes activos) cuyos antecedentes, medicación
+     * actual u observaciones contengan todos los términos, usando el índice FULLTEXT.
+     * Las frases entre comillas deben aparecer tal cual y un '*' final busca por prefijo.
+     * Resultados ordenados por relevancia.
+     * Nota: Este método maneja su propia conexión, no es transaccional.
+     * @param texto Términos a buscar (ej: {@code enalapril "insuficiencia renal"}).
+     * @param pagina Número de página (desde 0).
+     * @param tamanio Cantidad de resultados por página.
+     * @return Página de pares Historia Clínica / Paciente (sin los TEXT, ver cargarTextos).
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public Pagina<HistoriaClinicaConPaciente> buscarEnTextos(String texto, int pagina, int tamanio) throws SQLException {
+        String consulta = BusquedaTexto.consultaBooleana(texto);
+        if (consulta.isEmpty()) {
+            return new Pagina<>(List.of(), pagina, tamanio, false);
+        }
+
+        List<HistoriaClinicaConPaciente> lista = new ArrayList<>();
+        try (
+            Connection conn = DatabaseConnection.getConnection(Prioridad.CONSULTA);
+            PreparedStatement ps = conn.prepareStatement(BUSCAR_EN_TEXTOS_SQL);
+        ) {
+            ps.setString(1, consulta);
+            ps.setString(2, consulta);
+            ps.setInt(3, tamanio + 1); // Uno de más para saber si hay página siguiente
+            ps.setInt(4, pagina * tamanio);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    lista.add(mapearConPaciente(rs));
+                }
+            }
+        }
+        boolean haySiguiente = lista.size() > tamanio;
+        return new Pagina<>(haySiguiente ? lista.subList(0, tamanio) : lista, pagina, tamanio, haySiguiente);
+    }
+
+    // Mapea una fila de historia_clinica JOIN paciente (columnas de leerTodosConPaciente)
+    private HistoriaClinicaConPaciente mapearConPaciente(ResultSet rs) throws SQLException {
+        HistoriaClinica historia = mapearEntidad(rs, false);
+        java.sql.Date fecha = rs.getDate("fecha_nacimiento");
+        PacienteResumen paciente = new PacienteResumen(historia.getPacienteId(), rs.getString("nombre"),
+                rs.getString("apellido"), rs.getString("dni"), fecha != null ? fecha.toLocalDate() : null,
+                historia.getId(), rs.getBoolean("p_eliminado"));
+        return new HistoriaClinicaConPaciente(historia, paciente);
+    }
+
     /**
      * Retorna una lista de todas las Historias Clínicas que están activas (eliminado = FALSE).
      * Nota: Este método maneja su propia conexión, no es transaccional.
@@ -156,29 +469,52 @@ public class HistoriaClinicaDao implements GenericDao<HistoriaClinica> {
      */
     @Override
     public List<HistoriaClinica> leerTodos() throws SQLException {
-        List<HistoriaClinica> lista = new ArrayList<>();
-        Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getConnection(Prioridad.LISTADO)) {
+            return leerTodos(conn);
+        }
+    }
 
+    /**
+     * Retorna la lista de Historias Clínicas activos usando una conexión existente (no la cierra).
+     * @param conn Conexión compartida (ej: transacción de solo lectura de un reporte).
+     * @return Lista de Historias Clínicas activos.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    @Override
+    public List<HistoriaClinica> leerTodos(Connection conn) throws SQLException {
+        List<HistoriaClinica> lista = new ArrayList<>();
         try (
             PreparedStatement ps = conn.prepareStatement(SELECT_ALL_ACTIVE_SQL);
             ResultSet rs = ps.executeQuery();
         ) {
             while (rs.next()) {
-                lista.add(mapearEntidad(rs));
+                lista.add(mapearEntidad(rs, false));
             }
             return lista;
-        } finally {
-            if (conn != null) {
-                try { conn.close(); } catch (SQLException ignore) {}
-            }
         }
     }
 
     /**
-     * Actualiza los datos de una Historia Clínica existente.
+     * Lee varias Historias Clínicas activas por ID con consultas IN por lotes, ejecutadas en
+     * paralelo. Los campos TEXT no se leen (ver cargarTextos).
+     * Nota: Este método maneja sus propias conexiones, no es transaccional.
+     * @param ids IDs a leer.
+     * @return Las encontradas en el orden pedido y los IDs que no existen o están eliminados.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public ResultadoLectura<HistoriaClinica> leerPorIds(Collection<Long> ids) throws SQLException {
+        return LecturaPorLotes.leer(ids, SELECT_BY_IDS_SQL, rs -> mapearEntidad(rs, false), HistoriaClinica::getId);
+    }
+
+    /**
+     * Actualiza los datos de una Historia Clínica existente en un solo round trip,
+     * condicionado por la versión leída (WHERE id = ? AND version = ?).
+     * Solo se escriben las columnas modificadas desde la carga (getCamposModificados);
+     * si no cambió ninguna, no se ejecuta nada.
      * Este método es transaccional.
-     * @param entidad Objeto HistoriaClinica con los datos a actualizar.
+     * @param entidad Objeto HistoriaClinica con los datos a actualizar (y la versión con la que se leyó).
      * @param conn Conexión compartida para la transacción activa.
+     * @throws ConflictoConcurrenciaException Si la Historia Clínica no existe o cambió su versión.
      * @throws SQLException Si ocurre un error de acceso a la base de datos o si el ID es inválido.
      */
     @Override
@@ -187,23 +523,60 @@ public class HistoriaClinicaDao implements GenericDao<HistoriaClinica> {
             throw new SQLException("El ID de la Historia Clinica es inválido para la actualización.");
         }
 
-        try (PreparedStatement ps = conn.prepareStatement(UPDATE_SQL)) {
+        EnumSet<HistoriaClinica.Campo> campos = entidad.getCamposModificados();
+        if (campos.isEmpty()) {
+            return; // Nada que escribir
+        }
+
+        String sql = UPDATES_POR_CAMPOS.computeIfAbsent(campos, HistoriaClinicaDao::construirUpdate);
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
 
             int i = 1;
-            ps.setString(i++, entidad.getNroHistoria());
-            ps.setString(i++, entidad.getGrupoSanguineo() != null ? entidad.getGrupoSanguineo().getValor() : null);
-            ps.setString(i++, entidad.getAntecedentes());
-            ps.setString(i++, entidad.getMedicacionActual());
-            ps.setString(i++, entidad.getObservaciones());
-            ps.setLong(i++, entidad.getId());
+            for (HistoriaClinica.Campo campo : campos) { // EnumSet itera en el mismo orden con el que se armó el SQL
+                switch (campo) {
+                    case NRO_HISTORIA:
+                        ps.setString(i++, entidad.getNroHistoria());
+                        break;
+                    case GRUPO_SANGUINEO:
+                        ps.setString(i++, entidad.getGrupoSanguineo() != null ? entidad.getGrupoSanguineo().getValor() : null);
+                        break;
+                    case ANTECEDENTES:
+                        ps.setString(i++, entidad.getAntecedentes());
+                        break;
+                    case MEDICACION_ACTUAL:
+                        ps.setString(i++, entidad.getMedicacionActual());
+                        break;
+                    case OBSERVACIONES:
+                        ps.setString(i++, entidad.getObservaciones());
+                        break;
+                }
+            }
+
+            ps.setLong(i++, entidad.getId()); // Parámetros para la cláusula WHERE
+            ps.setLong(i++, entidad.getVersion());
 
             int rows = ps.executeUpdate();
             if (rows == 0) {
-                throw new SQLException("No se pudo actualizar la Historia Clinica con ID: " + entidad.getId());
+                // No existe o su versión cambió desde que se leyó
+                throw new ConflictoConcurrenciaException("Historia Clinica", entidad.getId(), entidad.getVersion());
             }
+            entidad.setVersion(entidad.getVersion() + 1);
         }
     }
 
+    /**
+     * Arma el UPDATE con solo las columnas indicadas, condicionado por id y versión.
+     * @param campos Campos modificados.
+     * @return Sentencia SQL parametrizada.
+     */
+    private static String construirUpdate(EnumSet<HistoriaClinica.Campo> campos) {
+        StringBuilder sql = new StringBuilder("UPDATE historia_clinica SET ");
+        for (HistoriaClinica.Campo campo : campos) {
+            sql.append(campo.getColumna()).append(" = ?, ");
+        }
+        return sql.append("version = version + 1 WHERE id = ? AND version = ?").toString();
+    }
+
     /**
      * Realiza la baja lógica (Soft Delete) de una Historia Clínica, estableciendo 'eliminado = TRUE'.
      * Este método es transaccional.
@@ -228,6 +601,7 @@ public class HistoriaClinicaDao implements GenericDao<HistoriaClinica> {
 
     /**
      * Recupera una Historia Clínica eliminada lógicamente, estableciendo 'eliminado = FALSE'.
+     * Si ya fue archivada, la devuelve a la tabla principal (ArchivoDao); su Paciente no puede estar archivado.
      * Este método es transaccional.
      * @param id El ID de la Historia Clínica a recuperar.
      * @param conn Conexión compartida para la transacción activa.
@@ -242,28 +616,39 @@ public class HistoriaClinicaDao implements GenericDao<HistoriaClinica> {
         try (PreparedStatement ps = conn.prepareStatement(RECOVER_SQL)) {
             ps.setLong(1, id);
             int rows = ps.executeUpdate();
-            if (rows == 0) {
+            if (rows == 0 && !archivoDao.restaurarHistoria(id, conn)) {
                 throw new SQLException("No se encontró Historia Clinica (marcada como eliminada) con ID: " + id);
             }
         }
     }
 
     /**
-     * Obtiene la lista completa de Historias Clínicas marcadas como eliminadas lógicamente (eliminado = TRUE).
+     * Obtiene la lista completa de Historias Clínicas marcadas como eliminadas lógicamente (eliminado = TRUE),
+     * seguidas de las archivadas (ver ArchivoDao), que vienen con sus textos.
      * @return Lista de Historias Clínicas eliminadas.
      * @throws SQLException Si ocurre un error al acceder a la base de datos.
      */
     @Override
     public List<HistoriaClinica> leerTodosEliminados() throws SQLException {
         List<HistoriaClinica> lista = new ArrayList<>();
-        Connection conn = DatabaseConnection.getConnection();
-
-        try (
-            PreparedStatement ps = conn.prepareStatement(SELECT_ALL_DELETED_SQL);
-            ResultSet rs = ps.executeQuery();
-        ) {
-            while (rs.next()) {
-                lista.add(mapearEntidad(rs));
+        Connection conn = DatabaseConnection.getConnection(Prioridad.LISTADO);
+
+        try {
+            try (
+                PreparedStatement ps = conn.prepareStatement(SELECT_ALL_DELETED_SQL);
+                ResultSet rs = ps.executeQuery();
+            ) {
+                while (rs.next()) {
+                    lista.add(mapearEntidad(rs, false));
+                }
+            }
+            try (
+                PreparedStatement ps = conn.prepareStatement(SELECT_ALL_ARCHIVED_SQL);
+                ResultSet rs = ps.executeQuery();
+            ) {
+                while (rs.next()) {
+                    lista.add(mapearEntidad(rs, true));
+                }
             }
             return lista;
         } finally {
@@ -274,25 +659,126 @@ public class HistoriaClinicaDao implements GenericDao<HistoriaClinica> {
     }
 
     /**
-     * Cuenta la cantidad de registros de HistoriaClinica que están marcados como eliminados lógicamente (eliminado = TRUE).
+     * Cuenta la cantidad de registros de HistoriaClinica que están marcados como eliminados lógicamente (eliminado = TRUE),
+     * incluidos los archivados.
      * @return El número de registros eliminados.
      * @throws SQLException Si ocurre un error al acceder a la base de datos.
      */
     @Override
     public long contarEliminados() throws SQLException {
-        Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return contarEliminados(conn);
+        }
+    }
 
+    /**
+     * Cuenta los registros eliminados lógicamente usando una conexión existente (no la cierra).
+     * @param conn Conexión compartida.
+     * @return El número de registros eliminados.
+     * @throws SQLException Si ocurre un error al acceder a la base de datos.
+     */
+    @Override
+    public long contarEliminados(Connection conn) throws SQLException {
+        return contar(conn, COUNT_DELETED_SQL);
+    }
+
+    // Ejecuta un SELECT COUNT(*) y retorna el resultado (0 si no hay filas)
+    private long contar(Connection conn, String sql) throws SQLException {
         try (
-            PreparedStatement ps = conn.prepareStatement(COUNT_DELETED_SQL);
+            PreparedStatement ps = conn.prepareStatement(sql);
             ResultSet rs = ps.executeQuery();
         ) {
             if (rs.next()) {
                 return rs.getLong(1);
             }
             return 0;
-        } finally {
-            if (conn != null) {
-                try { conn.close(); } catch (SQLException ignore) {}
+        }
+    }
+
+    /**
+     * Completa los campos TEXT de una Historia Clínica leída sin ellos (listados). Si desde
+     * entonces se archivó, los lee de historia_clinica_archivo.
+     * Nota: Este método maneja su propia conexión, no es transaccional.
+     * @param historia Historia Clínica leída sin textos (si ya los tiene, no hace nada).
+     * @throws SQLException Si ocurre un error de acceso a la base de datos o la historia ya no existe.
+     */
+    public void cargarTextos(HistoriaClinica historia) throws SQLException {
+        cargarTextos(List.of(historia));
+        if (!historia.isTextosCargados()) {
+            throw new SQLException("No se encontró la Historia Clínica con ID: " + historia.getId());
+        }
+    }
+
+    /**
+     * Carga en una sola consulta (un IN-list por cada lote de ids) los campos TEXT de
+     * todas las Historias Clínicas que aún no los tienen. Pensado para una página de
+     * pacientes que se va a mostrar completa, en lugar de una consulta por historia.
+     * Las que no están en la tabla principal se buscan en historia_clinica_archivo; las que
+     * ya no existen en ninguna quedan sin textos (isTextosCargados() en false).
+     * Nota: Este método maneja su propia conexión, no es transaccional.
+     * @param historias Historias Clínicas (se ignoran las null y las que ya tienen sus textos).
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public void cargarTextos(Collection<HistoriaClinica> historias) throws SQLException {
+        Map<Long, List<HistoriaClinica>> pendientes = new HashMap<>();
+        for (HistoriaClinica historia : historias) {
+            if (historia != null && !historia.isTextosCargados()) {
+                pendientes.computeIfAbsent(historia.getId(), k -> new ArrayList<>()).add(historia);
+            }
+        }
+        if (pendientes.isEmpty()) {
+            return;
+        }
+
+        try (Connection conn = DatabaseConnection.getConnection(Prioridad.LISTADO)) {
+            cargarTextos(conn, SELECT_TEXTOS_BY_IDS_SQL, pendientes);
+            if (!pendientes.isEmpty()) {
+                cargarTextos(conn, SELECT_TEXTOS_ARCHIVADOS_BY_IDS_SQL, pendientes);
+            }
+        }
+    }
+
+    // Completa las historias encontradas con la consulta y las quita de pendientes
+    private static void cargarTextos(Connection conn, String sql, Map<Long, List<HistoriaClinica>> pendientes) throws SQLException {
+        List<Long> ids = new ArrayList<>(pendientes.keySet());
+        for (int desde = 0; desde < ids.size(); desde += TAMANIO_LOTE_TEXTOS) {
+            List<Long> lote = ids.subList(desde, Math.min(ids.size(), desde + TAMANIO_LOTE_TEXTOS));
+            try (PreparedStatement ps = conn.prepareStatement(sql + LecturaPorLotes.marcadores(lote.size()))) {
+                int i = 1;
+                for (Long id : lote) {
+                    ps.setLong(i++, id);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        for (HistoriaClinica historia : pendientes.remove(rs.getLong("id"))) {
+                            historia.completarTextos(rs.getString("antecedentes"), rs.getString("medicacion_actual"), rs.getString("observaciones"));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Recorre los campos TEXT de todas las Historias Clínicas activas (de pacientes activos o
+     * eliminados), fila por fila, sin
+     * cargarlas todas en memoria (streaming del driver: setFetchSize(Integer.MIN_VALUE)).
+     * Pensado para construir índices en memoria al iniciar la aplicación.
+     * Nota: Este método maneja su propia conexión, no es transaccional.
+     * @param consumidor Recibe cada historia en orden de ID.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public void recorrerTextos(ConsumidorTextos consumidor) throws SQLException {
+        try (
+            Connection conn = DatabaseConnection.getConnection(Prioridad.LISTADO);
+            PreparedStatement ps = conn.prepareStatement(SELECT_TEXTOS_ACTIVOS_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ) {
+            ps.setFetchSize(Integer.MIN_VALUE); // MySQL Connector/J: una fila a la vez
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    consumidor.aceptar(rs.getLong("id"), rs.getLong("paciente_id"), rs.getBoolean("p_eliminado"),
+                            rs.getString("antecedentes"), rs.getString("medicacion_actual"), rs.getString("observaciones"));
+                }
             }
         }
     }
@@ -306,7 +792,7 @@ public class HistoriaClinicaDao implements GenericDao<HistoriaClinica> {
      * @throws SQLException Si ocurre un error de acceso a la base de datos.
      */
     public HistoriaClinica leerConEliminados(long id) throws SQLException {
-        final String SELECT_BY_ID_ALL_SQL = "SELECT id, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado FROM historia_clinica WHERE id = ?";
+        final String SELECT_BY_ID_ALL_SQL = "SELECT id, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado, version, paciente_id FROM historia_clinica WHERE id = ?";
 
         Connection conn = DatabaseConnection.getConnection();
 
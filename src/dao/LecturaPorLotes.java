@@ -0,0 +1,165 @@
+/*
+ * Lectura de muchas entidades por ID con consultas "WHERE id IN (...)" de tamaño acotado.
+ * Los IDs se dividen en lotes (dao.tamanioLoteIds, por defecto 200) que se consultan en
+ * paralelo (hasta dao.paralelismoLotes hilos), cada uno con su propia conexión de
+ * DatabaseConnection, es decir, sujeta al control de admisión. El Plazo del hilo que
+ * llama se vincula a los hilos de trabajo, así que el vencimiento o la cancelación
+ * alcanzan a todos los lotes.
+ */
+package dao;
+
+import config.DatabaseConnection;
+import config.Plazo;
+import config.Prioridad;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.ToLongFunction;
+
+final class LecturaPorLotes {
+
+    /**
+     * Mapea una fila del ResultSet a una entidad.
+     */
+    @FunctionalInterface
+    interface Mapeador<T> {
+        T mapear(ResultSet rs) throws SQLException;
+    }
+
+    private static final int TAMANIO_LOTE = Integer.getInteger("dao.tamanioLoteIds", 200);
+    private static final int PARALELISMO = Integer.getInteger("dao.paralelismoLotes", 4);
+
+    // Hilos de trabajo compartidos por todas las lecturas por lotes
+    private static final ExecutorService HILOS = Executors.newFixedThreadPool(PARALELISMO, r -> {
+        Thread t = new Thread(r, "lectura-lotes");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Constructor privado, no se puede instanciar
+     */
+    private LecturaPorLotes() {
+        throw new UnsupportedOperationException("Esta clase no se puede instanciar.");
+    }
+
+    /**
+     * Lee las entidades de los IDs indicados.
+     *
+     * @param ids IDs a leer (los repetidos se leen una sola vez).
+     * @param sqlBase SELECT terminado en "... id IN " (se completa con los marcadores del lote).
+     * @param mapeador Mapeo de cada fila.
+     * @param idDe Obtiene el ID de una entidad mapeada.
+     * @return Encontrados en el orden pedido y los IDs faltantes.
+     * @throws SQLException Si falla alguno de los lotes.
+     */
+    static <T> ResultadoLectura<T> leer(Collection<Long> ids, String sqlBase, Mapeador<T> mapeador,
+            ToLongFunction<T> idDe) throws SQLException {
+        List<Long> pedidos = new ArrayList<>(new LinkedHashSet<>(ids));
+        List<List<Long>> lotes = new ArrayList<>();
+        for (int desde = 0; desde < pedidos.size(); desde += TAMANIO_LOTE) {
+            lotes.add(pedidos.subList(desde, Math.min(pedidos.size(), desde + TAMANIO_LOTE)));
+        }
+
+        Map<Long, T> porId = new HashMap<>();
+        if (lotes.size() == 1) {
+            // Un solo lote: se consulta en el hilo actual, sin pasar por los hilos de trabajo
+            for (T entidad : leerLote(lotes.get(0), sqlBase, mapeador)) {
+                porId.put(idDe.applyAsLong(entidad), entidad);
+            }
+        } else if (!lotes.isEmpty()) {
+            Plazo plazo = Plazo.actual();
+            List<Future<List<T>>> futuros = new ArrayList<>();
+            for (List<Long> lote : lotes) {
+                futuros.add(HILOS.submit(() -> Plazo.ejecutarVinculado(plazo, () -> leerLote(lote, sqlBase, mapeador))));
+            }
+            try {
+                for (Future<List<T>> futuro : futuros) {
+                    for (T entidad : esperar(futuro)) {
+                        porId.put(idDe.applyAsLong(entidad), entidad);
+                    }
+                }
+            } finally {
+                // Si un lote falló, los que siguen pendientes ya no hacen falta
+                for (Future<List<T>> futuro : futuros) {
+                    futuro.cancel(true);
+                }
+            }
+        }
+
+        List<T> encontrados = new ArrayList<>(porId.size());
+        List<Long> faltantes = new ArrayList<>();
+        for (Long id : pedidos) {
+            T entidad = porId.get(id);
+            if (entidad != null) {
+                encontrados.add(entidad);
+            } else {
+                faltantes.add(id);
+            }
+        }
+        return new ResultadoLectura<>(encontrados, faltantes);
+    }
+
+    /**
+     * Arma "(?, ?, ..., ?)" con la cantidad de parámetros indicada.
+     */
+    static String marcadores(int cantidad) {
+        StringBuilder sb = new StringBuilder("(");
+        for (int i = 0; i < cantidad; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.append(')').toString();
+    }
+
+    private static <T> List<T> leerLote(List<Long> lote, String sqlBase, Mapeador<T> mapeador) throws SQLException {
+        List<T> lista = new ArrayList<>(lote.size());
+        try (
+            Connection conn = DatabaseConnection.getConnection(Prioridad.CONSULTA);
+            PreparedStatement ps = conn.prepareStatement(sqlBase + marcadores(lote.size()));
+        ) {
+            int i = 1;
+            for (Long id : lote) {
+                ps.setLong(i++, id);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    lista.add(mapeador.mapear(rs));
+                }
+            }
+            return lista;
+        }
+    }
+
+    private static <T> List<T> esperar(Future<List<T>> futuro) throws SQLException {
+        try {
+            return futuro.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Lectura por lotes interrumpida.", e);
+        } catch (CancellationException e) {
+            throw new SQLException("La lectura por lotes fue cancelada.", e);
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof SQLException) {
+                throw (SQLException) causa;
+            }
+            if (causa instanceof RuntimeException) {
+                throw (RuntimeException) causa;
+            }
+            throw new SQLException("Error en la lectura por lotes: " + causa.getMessage(), causa);
+        }
+    }
+}
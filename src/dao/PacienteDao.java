@@ -15,33 +15,136 @@ package dao;
 
 //Importa las librerias y los demas Source Packages con los que trabajara 
 import config.DatabaseConnection;
+import config.Prioridad;
 import entities.Paciente;
 import entities.HistoriaClinica;
+import entities.PacienteResumen;
 import entities.TipoSangre;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 public class PacienteDao implements GenericDao<Paciente> {
 
     // --- Constantes SQL (Consultas con JOIN para incluir HistoriaClinica) ---
-    private static final String INSERT_SQL = "INSERT INTO paciente (nombre, apellido, dni, fecha_nacimiento, eliminado) VALUES (?, ?, ?, ?, ?)";
+    // El ID se asigna antes de insertar (GeneradorIds), así las altas se pueden agrupar en lotes
+    private static final String INSERT_SQL = "INSERT INTO paciente (id, nombre, apellido, dni, fecha_nacimiento, eliminado) VALUES (?, ?, ?, ?, ?, ?)";
+    // Alta de paciente con su Historia Clínica en un solo viaje a la BD (solo con DatabaseConnection.getConnectionMultiSentencia)
+    private static final String INSERT_CON_HISTORIA_SQL = INSERT_SQL + "; " + HistoriaClinicaDao.INSERT_SQL;
     // SELECT_BY_ID incluye un LEFT JOIN para obtener los datos de la HistoriaClinica asociada (si existe).
-    private static final String SELECT_BY_ID_SQL = "SELECT p.*, hc.id as hc_id, hc.nro_historia, hc.grupo_sanguineo, hc.antecedentes, hc.medicacion_actual, hc.observaciones, hc.eliminado as hc_eliminado FROM paciente p LEFT JOIN historia_clinica hc ON hc.paciente_id = p.id WHERE p.id = ? AND p.eliminado = FALSE";
-    private static final String UPDATE_SQL = "UPDATE paciente SET nombre = ?, apellido = ?, dni = ?, fecha_nacimiento = ? WHERE id = ?";
-    private static final String DELETE_SQL = "UPDATE paciente SET eliminado = TRUE WHERE id = ?";
-    private static final String RECOVER_SQL = "UPDATE paciente SET eliminado = FALSE WHERE id = ?";
-    private static final String SELECT_ALL_ACTIVE_SQL = "SELECT p.*, hc.id as hc_id, hc.nro_historia, hc.grupo_sanguineo, hc.antecedentes, hc.medicacion_actual, hc.observaciones, hc.eliminado as hc_eliminado FROM paciente p LEFT JOIN historia_clinica hc ON hc.paciente_id = p.id WHERE p.eliminado = FALSE";
-    private static final String SELECT_BY_DNI_SQL = "SELECT p.*, hc.id as hc_id, hc.nro_historia, hc.grupo_sanguineo, hc.antecedentes, hc.medicacion_actual, hc.observaciones, hc.eliminado as hc_eliminado FROM paciente p LEFT JOIN historia_clinica hc ON hc.paciente_id = p.id WHERE p.dni = ? AND p.eliminado = FALSE";
+    private static final String SELECT_BY_ID_SQL = "SELECT p.*, hc.id as hc_id, hc.nro_historia, hc.grupo_sanguineo, hc.antecedentes, hc.medicacion_actual, hc.observaciones, hc.eliminado as hc_eliminado, hc.version as hc_version FROM paciente p LEFT JOIN historia_clinica hc ON hc.paciente_id = p.id WHERE p.id = ? AND p.eliminado = FALSE";
+    private static final String DELETE_SQL = "UPDATE paciente SET eliminado = TRUE, version = version + 1, fecha_eliminacion = NOW() WHERE id = ? AND eliminado = FALSE";
+    private static final String RECOVER_SQL = "UPDATE paciente SET eliminado = FALSE, version = version + 1, fecha_eliminacion = NULL WHERE id = ? AND eliminado = TRUE";
+    // Listados y búsqueda por DNI: sin los TEXT de la HC (antecedentes, medicación, observaciones),
+    // que se completan por lote con HistoriaClinicaDao.cargarTextos()
+    private static final String SELECT_ALL_ACTIVE_SQL = "SELECT p.*, hc.id as hc_id, hc.nro_historia, hc.grupo_sanguineo, hc.eliminado as hc_eliminado, hc.version as hc_version FROM paciente p LEFT JOIN historia_clinica hc ON hc.paciente_id = p.id WHERE p.eliminado = FALSE";
+    private static final String SELECT_BY_DNI_SQL = "SELECT p.*, hc.id as hc_id, hc.nro_historia, hc.grupo_sanguineo, hc.eliminado as hc_eliminado, hc.version as hc_version FROM paciente p LEFT JOIN historia_clinica hc ON hc.paciente_id = p.id WHERE p.dni = ? AND p.eliminado = FALSE";
     
+    // UPDATE por conjunto de columnas modificadas: se arma una vez por combinación y se reutiliza
+    // (a lo sumo 2^n variantes, n = cantidad de campos de Paciente.Campo)
+    private static final Map<EnumSet<Paciente.Campo>, String> UPDATES_POR_CAMPOS = new ConcurrentHashMap<>();
+
     // --- CONSTANTES SQL para manejo del Borrado Lógico ---
-    private static final String SELECT_ALL_DELETED_SQL = "SELECT p.*, hc.id as hc_id, hc.nro_historia, hc.grupo_sanguineo, hc.antecedentes, hc.medicacion_actual, hc.observaciones, hc.eliminado as hc_eliminado FROM paciente p LEFT JOIN historia_clinica hc ON hc.paciente_id = p.id WHERE p.eliminado = TRUE";
-    private static final String COUNT_DELETED_SQL = "SELECT COUNT(*) FROM paciente WHERE eliminado = TRUE";
+    private static final String SELECT_ALL_DELETED_SQL = "SELECT p.*, hc.id as hc_id, hc.nro_historia, hc.grupo_sanguineo, hc.eliminado as hc_eliminado, hc.version as hc_version FROM paciente p LEFT JOIN historia_clinica hc ON hc.paciente_id = p.id WHERE p.eliminado = TRUE";
+    // Los eliminados incluyen los archivados (ArchivoDao); de cada paciente archivado se muestra la historia que volvería al recuperarlo
+    private static final String SELECT_ALL_ARCHIVED_SQL = "SELECT pa.id, pa.nombre, pa.apellido, pa.dni, pa.fecha_nacimiento, pa.eliminado, pa.version, hca.id as hc_id, hca.nro_historia, hca.grupo_sanguineo, hca.antecedentes, hca.medicacion_actual, hca.observaciones, hca.eliminado as hc_eliminado, hca.version as hc_version FROM paciente_archivo pa LEFT JOIN historia_clinica_archivo hca ON hca.id = (SELECT h.id FROM historia_clinica_archivo h WHERE h.paciente_id = pa.id ORDER BY h.eliminado, h.id DESC LIMIT 1)";
+    private static final String COUNT_DELETED_SQL = "SELECT (SELECT COUNT(*) FROM paciente WHERE eliminado = TRUE) + (SELECT COUNT(*) FROM paciente_archivo)";
+
+    // Lectura por lotes de IDs (sin los TEXT de la HC): LecturaPorLotes agrega "(?, ?, ...)" al final
+    private static final String SELECT_BY_IDS_SQL = "SELECT p.*, hc.id as hc_id, hc.nro_historia, hc.grupo_sanguineo, hc.eliminado as hc_eliminado, hc.version as hc_version FROM paciente p LEFT JOIN historia_clinica hc ON hc.paciente_id = p.id WHERE p.eliminado = FALSE AND p.id IN ";
+
+    // --- Proyección para listados (cubierta por idx_paciente_listado + índice único de historia_clinica.paciente_id) ---
+    private static final String SELECT_RESUMEN_SQL = "SELECT p.id, p.nombre, p.apellido, p.dni, p.fecha_nacimiento, p.eliminado, hc.id as hc_id FROM paciente p LEFT JOIN historia_clinica hc ON hc.paciente_id = p.id WHERE p.eliminado = ? ORDER BY p.apellido, p.nombre";
+    private static final String SELECT_RESUMEN_ELIMINADOS_SQL = "SELECT p.id, p.nombre, p.apellido, p.dni, p.fecha_nacimiento, p.eliminado, hc.id as hc_id FROM paciente p LEFT JOIN historia_clinica hc ON hc.paciente_id = p.id WHERE p.eliminado = TRUE"
+            + " UNION ALL SELECT pa.id, pa.nombre, pa.apellido, pa.dni, pa.fecha_nacimiento, pa.eliminado, (SELECT h.id FROM historia_clinica_archivo h WHERE h.paciente_id = pa.id ORDER BY h.eliminado, h.id DESC LIMIT 1) FROM paciente_archivo pa"
+            + " ORDER BY apellido, nombre";
+
+    // --- Búsqueda por apellido/nombre ---
+    // La colación utf8mb4_0900_ai_ci ya compara sin distinguir mayúsculas ni acentos.
+    // Cada rama es un rango de índice cubriente (idx_paciente_listado / idx_paciente_nombre)
+    // que se corta en LIMIT; el ranking es el número de rama y, dentro de ella, el orden del índice.
+    private static final String COLUMNAS_RESUMEN = "p.id, p.nombre, p.apellido, p.dni, p.fecha_nacimiento, p.eliminado, hc.id as hc_id";
+    private static final String BUSCAR_UN_TERMINO_SQL = armarBusqueda(
+            rama(0, "p.apellido = ?", true),                          // apellido exacto
+            rama(1, "p.apellido LIKE ?", true),                       // apellido por prefijo
+            rama(3, "p.nombre LIKE ?", false));                       // nombre por prefijo
+    private static final String BUSCAR_VARIOS_TERMINOS_SQL = armarBusqueda(
+            rama(0, "p.apellido = ?", true),                          // apellido compuesto exacto
+            rama(1, "p.apellido LIKE ?", true),                       // apellido compuesto por prefijo
+            rama(2, "p.apellido LIKE ? AND p.nombre LIKE ?", true),   // "apellido nombre"
+            rama(3, "p.nombre LIKE ? AND p.apellido LIKE ?", false)); // "nombre apellido"
+
+    // Búsqueda aproximada: candidatos del índice FULLTEXT ngram, reordenados por similitud de trigramas
+    private static final String BUSCAR_APROXIMADO_SQL = "SELECT " + COLUMNAS_RESUMEN + " FROM paciente p LEFT JOIN historia_clinica hc ON hc.paciente_id = p.id WHERE p.eliminado = FALSE AND MATCH(p.apellido, p.nombre) AGAINST (? IN NATURAL LANGUAGE MODE) ORDER BY MATCH(p.apellido, p.nombre) AGAINST (? IN NATURAL LANGUAGE MODE) DESC LIMIT ?";
+    private static final int CANDIDATOS_APROXIMADOS = Integer.getInteger("busqueda.candidatosAproximados", 200);
+    private static final double SIMILITUD_MINIMA = Double.parseDouble(System.getProperty("busqueda.similitudMinima", "0.3"));
+
+    // --- Filtros combinados (FiltroPaciente): se completa con la condición compilada ---
+    private static final String SELECT_FILTRO_SQL = "SELECT p.*, hc.id as hc_id, hc.nro_historia, hc.grupo_sanguineo, hc.eliminado as hc_eliminado, hc.version as hc_version FROM paciente p LEFT JOIN historia_clinica hc ON hc.paciente_id = p.id WHERE ";
+    private static final String COUNT_FILTRO_SQL = "SELECT COUNT(*) FROM paciente p LEFT JOIN historia_clinica hc ON hc.paciente_id = p.id WHERE ";
+
+    // --- Reporte demográfico: edad (a la fecha indicada), grupo de la HC activa y mes de alta (aaaamm) ---
+    private static final String RANGO_IDS_SQL = "SELECT MIN(id), MAX(id) FROM paciente";
+    private static final String SELECT_DEMOGRAFIA_SQL = "SELECT TIMESTAMPDIFF(YEAR, p.fecha_nacimiento, ?) AS edad, hc.grupo_sanguineo, EXTRACT(YEAR_MONTH FROM p.fecha_alta) AS mes_alta, p.eliminado FROM paciente p LEFT JOIN historia_clinica hc ON hc.paciente_id = p.id AND hc.eliminado = FALSE WHERE p.id BETWEEN ? AND ?";
+    private static final String PIRAMIDE_SQL = "SELECT TIMESTAMPDIFF(YEAR, p.fecha_nacimiento, ?) AS edad, hc.grupo_sanguineo, COUNT(*) FROM paciente p LEFT JOIN historia_clinica hc ON hc.paciente_id = p.id AND hc.eliminado = FALSE WHERE p.eliminado = FALSE GROUP BY edad, hc.grupo_sanguineo";
+    private static final String ALTAS_POR_MES_SQL = "SELECT EXTRACT(YEAR_MONTH FROM fecha_alta) AS mes_alta, COUNT(*) FROM paciente GROUP BY mes_alta";
+
+    // Cambios masivos de estado por filtro, en rangos de IDs (MutacionMasivaService)
+    private static final String SELECT_MASIVO_SQL = "SELECT p.id, hc.id IS NOT NULL AND hc.eliminado = FALSE AS con_historia FROM paciente p LEFT JOIN historia_clinica hc ON hc.paciente_id = p.id WHERE p.id BETWEEN ? AND ? AND p.eliminado = ? AND ";
+    private static final String ELIMINAR_MASIVO_SQL = "UPDATE paciente SET eliminado = TRUE, version = version + 1, fecha_eliminacion = NOW() WHERE eliminado = FALSE AND id IN ";
+    private static final String RECUPERAR_MASIVO_SQL = "UPDATE paciente SET eliminado = FALSE, version = version + 1, fecha_eliminacion = NULL WHERE eliminado = TRUE AND id IN ";
+
+    // Upsert por DNI (upsertPorDni). Primero se leen y bloquean las filas existentes, así el
+    // resultado de cada fila es exacto y solo se escribe lo que cambió. La clave en conflicto
+    // es dni (el id propuesto sale de GeneradorIds); el estado (eliminado) no se modifica.
+    // Los valores propuestos se leen con el alias de fila "nuevo" (VALUES(col) está obsoleto desde MySQL 8.0.20).
+    private static final String SELECT_UPSERT_SQL = "SELECT p.*, hc.id as hc_id, hc.nro_historia, hc.grupo_sanguineo, hc.antecedentes, hc.medicacion_actual, hc.observaciones, hc.eliminado as hc_eliminado, hc.version as hc_version FROM paciente p LEFT JOIN historia_clinica hc ON hc.paciente_id = p.id WHERE p.dni IN ";
+    private static final String UPSERT_SQL = INSERT_SQL + " AS nuevo ON DUPLICATE KEY UPDATE version = version + 1, nombre = nuevo.nombre, apellido = nuevo.apellido, fecha_nacimiento = nuevo.fecha_nacimiento";
+
+    /**
+     * Pacientes de un rango de IDs bloqueados para un cambio masivo de estado (bloquearRango).
+     *
+     * @param conHistoria Cuántos tienen Historia Clínica activa (para el resumen de contadores).
+     */
+    public record SeleccionMasiva(List<Long> ids, long conHistoria) {
+    }
+
+    /**
+     * Qué pasó con una fila en un upsert.
+     */
+    public enum ResultadoUpsert {
+        INSERTADO, ACTUALIZADO, SIN_CAMBIOS
+    }
+
+    /**
+     * Resultado del upsert de un Paciente (upsertPorDni).
+     *
+     * @param paciente El Paciente recibido, con el ID, la versión y el estado de la BD.
+     * @param historia Resultado de su Historia Clínica (null si no se incluyó).
+     * @param grupoAnterior Grupo sanguíneo de la Historia Clínica antes de actualizarla
+     *        (null si no se actualizó).
+     */
+    public record Upsert(Paciente paciente, ResultadoUpsert resultado, ResultadoUpsert historia, TipoSangre grupoAnterior) {
+    }
+
+    // Altas y actualizaciones por lote de las Historias Clínicas (upsertPorDni)
+    private final HistoriaClinicaDao hcDao = new HistoriaClinicaDao();
+    private final ArchivoDao archivoDao = new ArchivoDao();
 
 
     // --- Mapeo y Utilidades ---
@@ -54,6 +157,18 @@ public class PacienteDao implements GenericDao<Paciente> {
      * @throws SQLException Si ocurre un error de lectura de la base de datos.
      */
     private Paciente mapearEntidad(ResultSet rs) throws SQLException {
+        return mapearEntidad(rs, true);
+    }
+
+    /**
+     * Mapea un ResultSet a una entidad Paciente, con o sin los campos TEXT de la HistoriaClinica.
+     * Sin textos, la HistoriaClinica queda marcada para completarlos con HistoriaClinicaDao.cargarTextos.
+     * @param rs ResultSet de la consulta.
+     * @param conTextos true si la consulta incluye antecedentes, medicacion_actual y observaciones.
+     * @return Objeto Paciente con su HistoriaClinica asociada (si existe).
+     * @throws SQLException Si ocurre un error de lectura de la base de datos.
+     */
+    private Paciente mapearEntidad(ResultSet rs, boolean conTextos) throws SQLException {
         // --- 1. Mapear atributos del Paciente ---
         long id = rs.getLong("id");
         String nombre = rs.getString("nombre");
@@ -68,6 +183,7 @@ public class PacienteDao implements GenericDao<Paciente> {
         boolean eliminado = rs.getBoolean("eliminado");
 
         Paciente paciente = new Paciente(id, eliminado, nombre, apellido, dni, fechaNacimiento);
+        paciente.setVersion(rs.getLong("version"));
 
         // --- 2. Mapear HistoriaClinica (Relación 1:1) ---
         long fkHistoriaClinica = rs.getLong("hc_id");
@@ -88,65 +204,125 @@ public class PacienteDao implements GenericDao<Paciente> {
                 }
             }
 
-            String antecedentes = rs.getString("antecedentes");
-            String medicacionActual = rs.getString("medicacion_actual");
-            String observaciones = rs.getString("observaciones");
             // Se usa el alias 'hc_eliminado' para no confundir con p.eliminado
             boolean hcEliminado = rs.getBoolean("hc_eliminado"); 
 
             // Construir y enlazar la HistoriaClinica al Paciente
-            HistoriaClinica hc = new HistoriaClinica(fkHistoriaClinica, hcEliminado, nroHistoria, grupoSanguineo, antecedentes, medicacionActual, observaciones);
+            HistoriaClinica hc;
+            if (conTextos) {
+                String antecedentes = rs.getString("antecedentes");
+                String medicacionActual = rs.getString("medicacion_actual");
+                String observaciones = rs.getString("observaciones");
+                hc = new HistoriaClinica(fkHistoriaClinica, hcEliminado, nroHistoria, grupoSanguineo, antecedentes, medicacionActual, observaciones);
+            } else {
+                hc = new HistoriaClinica(fkHistoriaClinica, hcEliminado, nroHistoria, grupoSanguineo, null, null, null);
+                hc.marcarSinTextos();
+            }
+            hc.setVersion(rs.getLong("hc_version"));
+            hc.setPacienteId(id);
             paciente.setHistoriaClinica(hc);
         }
 
         return paciente;
     }
 
+    /**
+     * Mapea una fila de la proyección de listado a un PacienteResumen.
+     * @param rs ResultSet de la consulta.
+     * @return Resumen inmutable del Paciente.
+     * @throws SQLException Si ocurre un error de lectura de la base de datos.
+     */
+    private PacienteResumen mapearResumen(ResultSet rs) throws SQLException {
+        java.sql.Date fecha = rs.getDate("fecha_nacimiento");
+        long hcId = rs.getLong("hc_id");
+        Long historiaClinicaId = rs.wasNull() ? null : hcId;
+        return new PacienteResumen(rs.getLong("id"), rs.getString("nombre"), rs.getString("apellido"), rs.getString("dni"),
+                fecha != null ? fecha.toLocalDate() : null, historiaClinicaId, rs.getBoolean("eliminado"));
+    }
+
     /**
      * Inserta un nuevo Paciente en la base de datos, incluyendo la Foreign Key a HistoriaClinica.
+     * Si no tiene ID se le asigna uno de GeneradorIds.PACIENTE antes de insertar (si la
+     * transacción se reintenta, se vuelve a insertar con el mismo).
      * Este método es transaccional y debe ser llamado con una Connection activa.
      * @param entidad Objeto Paciente a insertar.
      * @param conn Conexión compartida para la transacción activa.
-     * @return La entidad Paciente con su ID autogenerado.
-     * @throws SQLException Si falla la inserción o no se obtiene el ID.
+     * @return La entidad Paciente con su ID asignado.
+     * @throws SQLException Si falla la inserción o la reserva del ID.
      */
     @Override
     public Paciente crear(Paciente entidad, Connection conn) throws SQLException {
-        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
-
-            int i = 1;
-            ps.setString(i++, entidad.getNombre());
-            ps.setString(i++, entidad.getApellido());
-            ps.setString(i++, entidad.getDni());
-
-            // 1. Manejo de Fecha de Nacimiento
-            if (entidad.getFechaNacimiento() != null) {
-                ps.setDate(i++, java.sql.Date.valueOf(entidad.getFechaNacimiento()));
-            } else {
-                ps.setNull(i++, java.sql.Types.DATE);
-            }
-
-            ps.setBoolean(i++, entidad.isEliminado());
-
+        asignarId(entidad);
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            setParametrosInsert(ps, 1, entidad);
             int affectedRows = ps.executeUpdate();
             if (affectedRows == 0) {
                 throw new SQLException("Fallo al crear el Paciente, no se modificaron filas.");
             }
+            entidad.limpiarCamposModificados();
+            return entidad;
+        }
+    }
 
-            // Obtener el ID autogenerado para el Paciente
-            try (ResultSet rs = ps.getGeneratedKeys()) {
-                if (rs.next()) {
-                    entidad.setId(rs.getLong(1));
-                    // System.out.println("DEBUG: Paciente creado con ID: " + entidad.getId());
-                } else {
-                    throw new SQLException("Fallo al crear el Paciente, no se obtuvo ID generado.");
-                }
+    /**
+     * Inserta un nuevo Paciente junto con su Historia Clínica en un solo viaje a la BD: los
+     * IDs (y el número de historia si falta) se asignan antes con GeneradorIds, así los dos
+     * INSERT se envían juntos sin esperar la clave generada del paciente. No se verifica el
+     * DNI antes: si está repetido falla la restricción UNIQUE (error 1062).
+     * Este método es transaccional.
+     * @param paciente Paciente a insertar.
+     * @param historia Historia Clínica del paciente.
+     * @param conn Conexión compartida para la transacción activa, obtenida con
+     *        DatabaseConnection.getConnectionMultiSentencia (con otra, el driver rechaza la sentencia).
+     * @return El Paciente con su ID asignado (la Historia Clínica también queda con el suyo).
+     * @throws SQLException Si falla alguna de las inserciones o la reserva de IDs.
+     */
+    public Paciente crearConHistoria(Paciente paciente, HistoriaClinica historia, Connection conn) throws SQLException {
+        asignarId(paciente);
+        HistoriaClinicaDao.asignarIdentificadores(historia);
+        historia.setPacienteId(paciente.getId());
+
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_CON_HISTORIA_SQL)) {
+            int i = setParametrosInsert(ps, 1, paciente);
+            HistoriaClinicaDao.setParametrosInsert(ps, i, historia);
+            ps.execute();
+            // Un conteo de filas por sentencia
+            int pacientes = ps.getUpdateCount();
+            ps.getMoreResults();
+            int historias = ps.getUpdateCount();
+            if (pacientes != 1 || historias != 1) {
+                throw new SQLException("Fallo al crear el Paciente con su Historia Clinica, no se modificaron filas.");
             }
+        }
+        paciente.limpiarCamposModificados();
+        historia.limpiarCamposModificados();
+        return paciente;
+    }
 
-            return entidad;
+    private static void asignarId(Paciente entidad) throws SQLException {
+        if (entidad.getId() <= 0) {
+            entidad.setId(GeneradorIds.PACIENTE.siguiente());
         }
     }
 
+    // Completa los parámetros de INSERT_SQL desde la posición i; devuelve la siguiente posición
+    private static int setParametrosInsert(PreparedStatement ps, int i, Paciente entidad) throws SQLException {
+        ps.setLong(i++, entidad.getId());
+        ps.setString(i++, entidad.getNombre());
+        ps.setString(i++, entidad.getApellido());
+        ps.setString(i++, entidad.getDni());
+
+        // Manejo de Fecha de Nacimiento
+        if (entidad.getFechaNacimiento() != null) {
+            ps.setDate(i++, java.sql.Date.valueOf(entidad.getFechaNacimiento()));
+        } else {
+            ps.setNull(i++, java.sql.Types.DATE);
+        }
+
+        ps.setBoolean(i++, entidad.isEliminado());
+        return i;
+    }
+
     /**
      * Lee un Paciente por su ID (solo registros activos: eliminado = FALSE).
      * Incluye los datos de la HistoriaClinica asociada a través de un LEFT JOIN.
@@ -184,24 +360,45 @@ public class PacienteDao implements GenericDao<Paciente> {
      */
     @Override
     public List<Paciente> leerTodos() throws SQLException {
-        List<Paciente> lista = new ArrayList<>();
-        Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getConnection(Prioridad.LISTADO)) {
+            return leerTodos(conn);
+        }
+    }
 
+    /**
+     * Retorna la lista de Pacientes activos usando una conexión existente (no la cierra).
+     * @param conn Conexión compartida (ej: transacción de solo lectura de un reporte).
+     * @return Lista de Pacientes activos.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    @Override
+    public List<Paciente> leerTodos(Connection conn) throws SQLException {
+        List<Paciente> lista = new ArrayList<>();
         try (
             PreparedStatement ps = conn.prepareStatement(SELECT_ALL_ACTIVE_SQL);
             ResultSet rs = ps.executeQuery();
         ) {
             while (rs.next()) {
-                lista.add(mapearEntidad(rs));
+                lista.add(mapearEntidad(rs, false));
             }
             return lista;
-        } finally {
-            if (conn != null) {
-                try { conn.close(); } catch (SQLException ignore) {} // Cierre de conexión local
-            }
         }
     }
 
+    /**
+     * Lee varios Pacientes activos por ID (ej: la planilla de una sala) con consultas IN por
+     * lotes, ejecutadas en paralelo, en lugar de una consulta y una conexión por paciente.
+     * Los campos TEXT de las Historias Clínicas no se leen
+     * (ver HistoriaClinicaDao.cargarTextos).
+     * Nota: Este método maneja sus propias conexiones, no es transaccional.
+     * @param ids IDs a leer.
+     * @return Los encontrados en el orden pedido y los IDs que no existen o están eliminados.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public ResultadoLectura<Paciente> leerPorIds(Collection<Long> ids) throws SQLException {
+        return LecturaPorLotes.leer(ids, SELECT_BY_IDS_SQL, rs -> mapearEntidad(rs, false), Paciente::getId);
+    }
+
     /**
      * Método adicional para buscar un Paciente por su número de DNI (solo activos).
      * Nota: Este método maneja su propia conexión, no es transaccional.
@@ -218,7 +415,7 @@ public class PacienteDao implements GenericDao<Paciente> {
             ps.setString(1, dni);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    return mapearEntidad(rs);
+                    return mapearEntidad(rs, false);
                 }
                 return null;
             }
@@ -229,24 +426,572 @@ public class PacienteDao implements GenericDao<Paciente> {
         }
     }
     
+    /**
+     * Retorna la proyección liviana de los Pacientes activos o eliminados (incluidos los
+     * archivados), ordenada por apellido y nombre. Solo lee las columnas que muestran los
+     * listados (sin armar Paciente ni HistoriaClinica); la consulta se resuelve desde índices.
+     * Nota: Este método maneja su propia conexión, no es transaccional.
+     * @param eliminados true para los eliminados lógicamente, false para los activos.
+     * @return Lista de resúmenes.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public List<PacienteResumen> leerResumenes(boolean eliminados) throws SQLException {
+        List<PacienteResumen> lista = new ArrayList<>();
+        try (
+            Connection conn = DatabaseConnection.getConnection(Prioridad.LISTADO);
+            PreparedStatement ps = conn.prepareStatement(eliminados ? SELECT_RESUMEN_ELIMINADOS_SQL : SELECT_RESUMEN_SQL);
+        ) {
+            if (!eliminados) {
+                ps.setBoolean(1, false);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    lista.add(mapearResumen(rs));
+                }
+            }
+            return lista;
+        }
+    }
+
+    /**
+     * Busca Pacientes activos por prefijo de apellido y/o nombre, sin distinguir mayúsculas
+     * ni acentos ("gonz" encuentra a González; "garcia ju" a García, Juan; "juan garcia" también).
+     * Orden: apellido exacto, apellido por prefijo, "apellido nombre", nombre por prefijo.
+     * Se leen como máximo (pagina + 1) * tamanio + 1 filas por rama, desde los índices.
+     * Nota: Este método maneja su propia conexión, no es transaccional.
+     * @param texto Texto a buscar.
+     * @param pagina Número de página (desde 0).
+     * @param tamanio Cantidad de resultados por página.
+     * @return Página de resúmenes.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public Pagina<PacienteResumen> buscarPorNombre(String texto, int pagina, int tamanio) throws SQLException {
+        String[] terminos = BusquedaTexto.terminos(texto);
+        if (terminos.length == 0) {
+            return new Pagina<>(List.of(), pagina, tamanio, false);
+        }
+        String completo = String.join(" ", terminos);
+        String resto = String.join(" ", Arrays.copyOfRange(terminos, 1, terminos.length));
+        int limiteRama = (pagina + 1) * tamanio + 1;
+
+        try (
+            Connection conn = DatabaseConnection.getConnection(Prioridad.CONSULTA);
+            PreparedStatement ps = conn.prepareStatement(terminos.length == 1 ? BUSCAR_UN_TERMINO_SQL : BUSCAR_VARIOS_TERMINOS_SQL);
+        ) {
+            int i = 1;
+            ps.setString(i++, completo);
+            ps.setInt(i++, limiteRama);
+            ps.setString(i++, BusquedaTexto.prefijoLike(completo));
+            ps.setInt(i++, limiteRama);
+            if (terminos.length == 1) {
+                ps.setString(i++, BusquedaTexto.prefijoLike(completo));
+                ps.setInt(i++, limiteRama);
+            } else {
+                ps.setString(i++, BusquedaTexto.prefijoLike(terminos[0]));
+                ps.setString(i++, BusquedaTexto.prefijoLike(resto));
+                ps.setInt(i++, limiteRama);
+                ps.setString(i++, BusquedaTexto.prefijoLike(terminos[0]));
+                ps.setString(i++, BusquedaTexto.prefijoLike(resto));
+                ps.setInt(i++, limiteRama);
+            }
+
+            // Las ramas se solapan: cada paciente queda con su mejor posición
+            List<PacienteResumen> ordenados = new ArrayList<>();
+            Set<Long> vistos = new HashSet<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (vistos.add(rs.getLong("id"))) {
+                        ordenados.add(mapearResumen(rs));
+                    }
+                }
+            }
+            return paginar(ordenados, pagina, tamanio);
+        }
+    }
+
+    /**
+     * Busca Pacientes activos con apellido/nombre parecido al texto, tolerando errores de
+     * tipeo ("gonzales" encuentra a González). Los candidatos salen del índice FULLTEXT ngram
+     * y se ordenan por similitud de trigramas; se descartan los de similitud menor a
+     * busqueda.similitudMinima. Se leen a lo sumo busqueda.candidatosAproximados candidatos;
+     * si el índice tiene más, la página lo indica con truncada().
+     * Nota: Este método maneja su propia conexión, no es transaccional.
+     * @param texto Texto a buscar.
+     * @param pagina Número de página (desde 0).
+     * @param tamanio Cantidad de resultados por página.
+     * @return Página de resúmenes, de mayor a menor similitud.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public Pagina<PacienteResumen> buscarAproximado(String texto, int pagina, int tamanio) throws SQLException {
+        String consulta = BusquedaTexto.normalizar(texto);
+        if (consulta.isEmpty()) {
+            return new Pagina<>(List.of(), pagina, tamanio, false);
+        }
+
+        record Candidato(PacienteResumen resumen, double similitud, String clave) {}
+        List<Candidato> candidatos = new ArrayList<>();
+        int leidos = 0;
+        try (
+            Connection conn = DatabaseConnection.getConnection(Prioridad.CONSULTA);
+            PreparedStatement ps = conn.prepareStatement(BUSCAR_APROXIMADO_SQL);
+        ) {
+            ps.setString(1, consulta);
+            ps.setString(2, consulta);
+            ps.setInt(3, CANDIDATOS_APROXIMADOS + 1); // uno de más para saber si se cortó
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next() && ++leidos <= CANDIDATOS_APROXIMADOS) {
+                    PacienteResumen resumen = mapearResumen(rs);
+                    double similitud = Math.max(
+                            BusquedaTexto.similitud(consulta, resumen.apellido() + " " + resumen.nombre()),
+                            BusquedaTexto.similitud(consulta, resumen.apellido()));
+                    if (similitud >= SIMILITUD_MINIMA) {
+                        candidatos.add(new Candidato(resumen, similitud,
+                                BusquedaTexto.normalizar(resumen.apellido() + " " + resumen.nombre())));
+                    }
+                }
+            }
+        }
+
+        candidatos.sort(Comparator.comparingDouble(Candidato::similitud).reversed().thenComparing(Candidato::clave));
+        List<PacienteResumen> ordenados = new ArrayList<>(candidatos.size());
+        for (Candidato candidato : candidatos) {
+            ordenados.add(candidato.resumen());
+        }
+        Pagina<PacienteResumen> resultado = paginar(ordenados, pagina, tamanio);
+        return new Pagina<>(resultado.elementos(), pagina, tamanio, resultado.haySiguiente(),
+                leidos > CANDIDATOS_APROXIMADOS);
+    }
+
+    /**
+     * Recorre los Pacientes que cumplen el filtro, fila por fila (streaming del driver), sin
+     * cargar el resultado completo en memoria. Las Historias Clínicas vienen sin los TEXT
+     * (ver HistoriaClinicaDao.cargarTextos).
+     * Nota: Este método maneja su propia conexión, no es transaccional.
+     * @param filtro Criterios (una sola sentencia parametrizada).
+     * @param consumidor Recibe cada Paciente.
+     * @return Cantidad de Pacientes recorridos.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public long recorrer(FiltroPaciente filtro, Consumer<Paciente> consumidor) throws SQLException {
+        FiltroPaciente.Condicion condicion = filtro.compilar(LocalDate.now());
+        try (
+            Connection conn = DatabaseConnection.getConnection(Prioridad.LISTADO);
+            PreparedStatement ps = conn.prepareStatement(SELECT_FILTRO_SQL + condicion.where() + condicion.orderBy(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ) {
+            asignarParametros(ps, condicion.parametros());
+            ps.setFetchSize(Integer.MIN_VALUE); // MySQL Connector/J: una fila a la vez
+            long cantidad = 0;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    consumidor.accept(mapearEntidad(rs, false));
+                    cantidad++;
+                }
+            }
+            return cantidad;
+        }
+    }
+
+    /**
+     * Retorna hasta 'limite' Pacientes que cumplen el filtro.
+     * Nota: Este método maneja su propia conexión, no es transaccional.
+     * @param filtro Criterios.
+     * @param limite Cantidad máxima de resultados.
+     * @return Lista de Pacientes (HC sin los TEXT, ver HistoriaClinicaDao.cargarTextos).
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public List<Paciente> buscar(FiltroPaciente filtro, int limite) throws SQLException {
+        FiltroPaciente.Condicion condicion = filtro.compilar(LocalDate.now());
+        List<Paciente> lista = new ArrayList<>();
+        try (
+            Connection conn = DatabaseConnection.getConnection(Prioridad.CONSULTA);
+            PreparedStatement ps = conn.prepareStatement(SELECT_FILTRO_SQL + condicion.where() + condicion.orderBy() + " LIMIT ?");
+        ) {
+            int i = asignarParametros(ps, condicion.parametros());
+            ps.setInt(i, limite);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    lista.add(mapearEntidad(rs, false));
+                }
+            }
+            return lista;
+        }
+    }
+
+    /**
+     * Cuenta los Pacientes que cumplen el filtro.
+     * Nota: Este método maneja su propia conexión, no es transaccional.
+     * @param filtro Criterios.
+     * @return Cantidad de Pacientes.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public long contar(FiltroPaciente filtro) throws SQLException {
+        FiltroPaciente.Condicion condicion = filtro.compilar(LocalDate.now());
+        try (
+            Connection conn = DatabaseConnection.getConnection(Prioridad.CONSULTA);
+            PreparedStatement ps = conn.prepareStatement(COUNT_FILTRO_SQL + condicion.where());
+        ) {
+            asignarParametros(ps, condicion.parametros());
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Selecciona y bloquea (FOR UPDATE) los Pacientes con ID en [idDesde, idHasta] que cumplen
+     * el filtro y están en el estado indicado, para cambiarles el estado con cambiarEstado en la
+     * misma transacción. El rango acota las filas bloqueadas, que se recorren por la clave primaria.
+     * Este método es transaccional.
+     * @param conn Conexión compartida para la transacción activa.
+     * @param filtro Criterios (el orden se ignora).
+     * @param hoy Fecha de referencia para las edades (la misma en todos los rangos).
+     * @param eliminados Estado actual de los pacientes a seleccionar.
+     * @param idDesde Primer ID del rango.
+     * @param idHasta Último ID del rango.
+     * @return IDs seleccionados (en orden) y cuántos tienen Historia Clínica activa.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public SeleccionMasiva bloquearRango(Connection conn, FiltroPaciente filtro, LocalDate hoy, boolean eliminados,
+            long idDesde, long idHasta) throws SQLException {
+        FiltroPaciente.Condicion condicion = filtro.compilar(hoy);
+        List<Long> ids = new ArrayList<>();
+        long conHistoria = 0;
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_MASIVO_SQL + "(" + condicion.where() + ") ORDER BY p.id FOR UPDATE OF p FOR SHARE OF hc")) {
+            ps.setLong(1, idDesde);
+            ps.setLong(2, idHasta);
+            ps.setBoolean(3, eliminados);
+            int i = 4;
+            for (Object parametro : condicion.parametros()) {
+                ps.setObject(i++, parametro);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                    if (rs.getBoolean(2)) {
+                        conHistoria++;
+                    }
+                }
+            }
+        }
+        return new SeleccionMasiva(ids, conHistoria);
+    }
+
+    /**
+     * Baja o recuperación lógica de varios Pacientes en una sola sentencia (ver bloquearRango).
+     * Este método es transaccional.
+     * @param conn Conexión compartida para la transacción activa.
+     * @param ids IDs de los Pacientes.
+     * @param eliminar true para la baja, false para la recuperación.
+     * @return Cantidad de Pacientes que cambiaron de estado.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public int cambiarEstado(Connection conn, List<Long> ids, boolean eliminar) throws SQLException {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String sql = (eliminar ? ELIMINAR_MASIVO_SQL : RECUPERAR_MASIVO_SQL) + LecturaPorLotes.marcadores(ids.size());
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            for (Long id : ids) {
+                ps.setLong(i++, id);
+            }
+            return ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Inserta o actualiza varios Pacientes según su DNI (INSERT ... ON DUPLICATE KEY UPDATE
+     * en un solo lote), y opcionalmente su Historia Clínica. Las filas existentes se leen y
+     * bloquean al comienzo (también los huecos de los DNI que no existen, en REPEATABLE READ),
+     * así nadie más puede insertar o modificar esos pacientes hasta el commit; los que no
+     * cambian no se escriben. Un paciente existente conserva su estado (eliminado o activo);
+     * su Historia Clínica también, y si el número de historia viene vacío se conserva el
+     * actual (o se genera, si la historia es nueva). Los pacientes archivados (ArchivoDao) no
+     * se buscan: su DNI se da de alta como un paciente nuevo.
+     * Este método es transaccional.
+     * @param conn Conexión compartida para la transacción activa.
+     * @param pacientes Pacientes a guardar (DNI normalizados, sin repetir). Se actualizan con
+     *        el ID, la versión y el estado resultantes.
+     * @param conHistoria true para incluir la Historia Clínica de cada paciente (si tiene).
+     * @return Un resultado por paciente, en el mismo orden.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos o la reserva de IDs.
+     */
+    public List<Upsert> upsertPorDni(Connection conn, List<Paciente> pacientes, boolean conHistoria) throws SQLException {
+        if (pacientes.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // 1. Estado actual de los que ya existen (la colación no distingue mayúsculas en el DNI)
+        Map<String, Paciente> existentes = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        String sql = SELECT_UPSERT_SQL + LecturaPorLotes.marcadores(pacientes.size()) + (conHistoria ? " FOR UPDATE" : " FOR UPDATE OF p");
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            for (Paciente paciente : pacientes) {
+                ps.setString(i++, paciente.getDni());
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Paciente actual = mapearEntidad(rs, true);
+                    existentes.put(actual.getDni(), actual);
+                }
+            }
+        }
+
+        // 2. Resultado de cada fila y lo que hay que escribir
+        List<Upsert> resultados = new ArrayList<>(pacientes.size());
+        List<Paciente> aEscribir = new ArrayList<>();
+        List<HistoriaClinica> historiasNuevas = new ArrayList<>();
+        List<HistoriaClinica> historiasCambiadas = new ArrayList<>();
+        for (Paciente paciente : pacientes) {
+            Paciente actual = existentes.get(paciente.getDni());
+            ResultadoUpsert resultado;
+            if (actual == null) {
+                asignarId(paciente);
+                resultado = ResultadoUpsert.INSERTADO;
+                aEscribir.add(paciente);
+            } else {
+                paciente.setId(actual.getId());
+                paciente.setEliminado(actual.isEliminado());
+                boolean iguales = Objects.equals(paciente.getNombre(), actual.getNombre())
+                        && Objects.equals(paciente.getApellido(), actual.getApellido())
+                        && Objects.equals(paciente.getFechaNacimiento(), actual.getFechaNacimiento());
+                resultado = iguales ? ResultadoUpsert.SIN_CAMBIOS : ResultadoUpsert.ACTUALIZADO;
+                paciente.setVersion(iguales ? actual.getVersion() : actual.getVersion() + 1);
+                if (!iguales) {
+                    aEscribir.add(paciente);
+                }
+            }
+
+            HistoriaClinica historia = conHistoria ? paciente.getHistoriaClinica() : null;
+            ResultadoUpsert resultadoHistoria = null;
+            TipoSangre grupoAnterior = null;
+            if (historia != null) {
+                historia.setPacienteId(paciente.getId());
+                HistoriaClinica historiaActual = actual != null ? actual.getHistoriaClinica() : null;
+                if (historiaActual == null) {
+                    resultadoHistoria = ResultadoUpsert.INSERTADO;
+                    historiasNuevas.add(historia);
+                } else {
+                    historia.setId(historiaActual.getId());
+                    historia.setEliminado(historiaActual.isEliminado());
+                    if (historia.getNroHistoria() == null || historia.getNroHistoria().trim().isEmpty()) {
+                        historia.setNroHistoria(historiaActual.getNroHistoria());
+                    }
+                    boolean iguales = Objects.equals(historia.getNroHistoria(), historiaActual.getNroHistoria())
+                            && historia.getGrupoSanguineo() == historiaActual.getGrupoSanguineo()
+                            && Objects.equals(historia.getAntecedentes(), historiaActual.getAntecedentes())
+                            && Objects.equals(historia.getMedicacionActual(), historiaActual.getMedicacionActual())
+                            && Objects.equals(historia.getObservaciones(), historiaActual.getObservaciones());
+                    historia.setVersion(iguales ? historiaActual.getVersion() : historiaActual.getVersion() + 1);
+                    if (iguales) {
+                        resultadoHistoria = ResultadoUpsert.SIN_CAMBIOS;
+                        historia.limpiarCamposModificados();
+                    } else {
+                        resultadoHistoria = ResultadoUpsert.ACTUALIZADO;
+                        grupoAnterior = historiaActual.getGrupoSanguineo();
+                        historiasCambiadas.add(historia);
+                    }
+                }
+            }
+            resultados.add(new Upsert(paciente, resultado, resultadoHistoria, grupoAnterior));
+        }
+
+        // 3. Escrituras en lote: primero los pacientes (las historias nuevas los referencian)
+        if (!aEscribir.isEmpty()) {
+            try (PreparedStatement ps = conn.prepareStatement(UPSERT_SQL)) {
+                for (Paciente paciente : aEscribir) {
+                    setParametrosInsert(ps, 1, paciente);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+        hcDao.crearLote(historiasNuevas, conn);
+        hcDao.actualizarLote(historiasCambiadas, conn);
+        for (Paciente paciente : pacientes) {
+            paciente.limpiarCamposModificados();
+        }
+        return resultados;
+    }
+
+    /**
+     * Recibe los conteos del reporte demográfico, fila por fila (recorrerDemografia, con
+     * cantidad 1) o ya agrupados en la BD (agruparDemografia).
+     */
+    public interface AcumuladorDemografico {
+
+        /**
+         * Pacientes activos con la edad y el grupo sanguíneo indicados.
+         * @param edad Edad en años cumplidos, o -1 si no tiene fecha de nacimiento.
+         * @param grupo Grupo de la Historia Clínica activa, o null si no tiene.
+         * @param cantidad Cantidad de pacientes.
+         */
+        void agregarPacientes(int edad, TipoSangre grupo, long cantidad);
+
+        /**
+         * Pacientes (activos o eliminados) dados de alta en el mes indicado.
+         * @param anioMes Año y mes como aaaamm (ej: 202401).
+         * @param cantidad Cantidad de pacientes.
+         */
+        void agregarAltas(int anioMes, long cantidad);
+    }
+
+    /**
+     * Retorna el menor y el mayor ID de paciente (por la clave primaria, sin recorrer la tabla),
+     * para repartir un recorrido en rangos de IDs.
+     * Nota: Este método maneja su propia conexión, no es transaccional.
+     * @return {mínimo, máximo}, o {0, -1} si no hay pacientes.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public long[] rangoIds() throws SQLException {
+        try (
+            Connection conn = DatabaseConnection.getConnection(Prioridad.LISTADO);
+            PreparedStatement ps = conn.prepareStatement(RANGO_IDS_SQL);
+            ResultSet rs = ps.executeQuery();
+        ) {
+            if (rs.next()) {
+                long minimo = rs.getLong(1);
+                if (!rs.wasNull()) {
+                    return new long[] {minimo, rs.getLong(2)};
+                }
+            }
+            return new long[] {0, -1};
+        }
+    }
+
+    /**
+     * Recorre en streaming los pacientes (activos y eliminados) con ID en [idDesde, idHasta]
+     * para el reporte demográfico: edad, grupo sanguíneo y mes de alta, calculados en la BD
+     * (sin armar entidades). Se puede llamar en paralelo con rangos disjuntos.
+     * Nota: Este método maneja su propia conexión, no es transaccional.
+     * @param idDesde Primer ID del rango (inclusive).
+     * @param idHasta Último ID del rango (inclusive).
+     * @param hoy Fecha de referencia para las edades.
+     * @param acumulador Recibe cada paciente (cantidad 1).
+     * @return Cantidad de pacientes recorridos.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public long recorrerDemografia(long idDesde, long idHasta, LocalDate hoy, AcumuladorDemografico acumulador) throws SQLException {
+        try (
+            Connection conn = DatabaseConnection.getConnection(Prioridad.LISTADO);
+            PreparedStatement ps = conn.prepareStatement(SELECT_DEMOGRAFIA_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ) {
+            ps.setDate(1, java.sql.Date.valueOf(hoy));
+            ps.setLong(2, idDesde);
+            ps.setLong(3, idHasta);
+            ps.setFetchSize(Integer.MIN_VALUE); // MySQL Connector/J: una fila a la vez
+            long cantidad = 0;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (!rs.getBoolean(4)) {
+                        acumulador.agregarPacientes(edad(rs), grupo(rs), 1);
+                    }
+                    acumulador.agregarAltas(rs.getInt(3), 1);
+                    cantidad++;
+                }
+            }
+            return cantidad;
+        }
+    }
+
+    /**
+     * Calcula el reporte demográfico agrupando en la BD (GROUP BY por edad y grupo
+     * sanguíneo, y por mes de alta) usando una conexión existente (no la cierra).
+     * @param conn Conexión compartida (ej: transacción de solo lectura, para un snapshot consistente).
+     * @param hoy Fecha de referencia para las edades.
+     * @param acumulador Recibe cada grupo con su cantidad.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public void agruparDemografia(Connection conn, LocalDate hoy, AcumuladorDemografico acumulador) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(PIRAMIDE_SQL)) {
+            ps.setDate(1, java.sql.Date.valueOf(hoy));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    acumulador.agregarPacientes(edad(rs), grupo(rs), rs.getLong(3));
+                }
+            }
+        }
+        try (
+            PreparedStatement ps = conn.prepareStatement(ALTAS_POR_MES_SQL);
+            ResultSet rs = ps.executeQuery();
+        ) {
+            while (rs.next()) {
+                acumulador.agregarAltas(rs.getInt(1), rs.getLong(2));
+            }
+        }
+    }
+
+    // Columna 1 de las consultas demográficas: edad, -1 sin fecha de nacimiento
+    private static int edad(ResultSet rs) throws SQLException {
+        int edad = rs.getInt(1);
+        return rs.wasNull() ? -1 : edad;
+    }
+
+    // Columna 2 de las consultas demográficas: grupo sanguíneo, null sin HC activa
+    private static TipoSangre grupo(ResultSet rs) throws SQLException {
+        String grupo = rs.getString(2);
+        return grupo != null ? TipoSangre.fromDbValue(grupo) : null;
+    }
+
+    // Asigna los parámetros de una condición compilada; retorna el índice del siguiente parámetro
+    private static int asignarParametros(PreparedStatement ps, List<Object> parametros) throws SQLException {
+        int i = 1;
+        for (Object parametro : parametros) {
+            ps.setObject(i++, parametro);
+        }
+        return i;
+    }
+
+    // Recorta la página pedida de una lista ya ordenada
+    private static <T> Pagina<T> paginar(List<T> ordenados, int pagina, int tamanio) {
+        int desde = Math.min(ordenados.size(), pagina * tamanio);
+        int hasta = Math.min(ordenados.size(), desde + tamanio);
+        return new Pagina<>(ordenados.subList(desde, hasta), pagina, tamanio, ordenados.size() > hasta);
+    }
+
+    // Una rama de la búsqueda por nombre: condición, posición en el ranking y orden del índice que usa
+    private static String rama(int rango, String condicion, boolean porApellido) {
+        String orden = porApellido ? "p.apellido, p.nombre, p.dni" : "p.nombre, p.apellido, p.dni";
+        return "(SELECT " + COLUMNAS_RESUMEN + ", " + rango + " AS rango FROM paciente p LEFT JOIN historia_clinica hc ON hc.paciente_id = p.id"
+                + " WHERE p.eliminado = FALSE AND " + condicion + " ORDER BY " + orden + " LIMIT ?)";
+    }
+
+    // Une las ramas y ordena por rango y, dentro de cada rango, por el mismo orden de su índice
+    private static String armarBusqueda(String... ramas) {
+        return "SELECT * FROM (" + String.join(" UNION ALL ", ramas) + ") r"
+                + " ORDER BY r.rango, CASE WHEN r.rango = 3 THEN r.nombre ELSE r.apellido END,"
+                + " CASE WHEN r.rango = 3 THEN r.apellido ELSE r.nombre END, r.dni";
+    }
+
     // --- MÉTODOS DE MANEJO DE ELIMINADOS (Implementan GenericDao) ---
     
     /**
-     * Obtiene la lista completa de Pacientes que están marcados como eliminados lógicamente (eliminado = TRUE).
+     * Obtiene la lista completa de Pacientes que están marcados como eliminados lógicamente (eliminado = TRUE),
+     * seguidos de los archivados (ver ArchivoDao). Las historias de los archivados vienen con sus textos.
      * @return Lista de Pacientes eliminados.
      * @throws SQLException Si ocurre un error al acceder a la base de datos.
      */
     @Override
     public List<Paciente> leerTodosEliminados() throws SQLException {
         List<Paciente> lista = new ArrayList<>();
-        Connection conn = DatabaseConnection.getConnection();
+        Connection conn = DatabaseConnection.getConnection(Prioridad.LISTADO);
         
-        try (
-            PreparedStatement ps = conn.prepareStatement(SELECT_ALL_DELETED_SQL);
-            ResultSet rs = ps.executeQuery();
-        ) {
-            while (rs.next()) {
-                lista.add(mapearEntidad(rs));
+        try {
+            try (
+                PreparedStatement ps = conn.prepareStatement(SELECT_ALL_DELETED_SQL);
+                ResultSet rs = ps.executeQuery();
+            ) {
+                while (rs.next()) {
+                    lista.add(mapearEntidad(rs, false));
+                }
+            }
+            try (
+                PreparedStatement ps = conn.prepareStatement(SELECT_ALL_ARCHIVED_SQL);
+                ResultSet rs = ps.executeQuery();
+            ) {
+                while (rs.next()) {
+                    lista.add(mapearEntidad(rs, true));
+                }
             }
             return lista;
         } finally {
@@ -257,34 +1002,52 @@ public class PacienteDao implements GenericDao<Paciente> {
     }
 
     /**
-     * Cuenta la cantidad de registros de Paciente que están marcados como eliminados lógicamente (eliminado = TRUE).
+     * Cuenta la cantidad de registros de Paciente que están marcados como eliminados lógicamente (eliminado = TRUE),
+     * incluidos los archivados.
      * @return El número de registros eliminados.
      * @throws SQLException Si ocurre un error al acceder a la base de datos.
      */
     @Override
     public long contarEliminados() throws SQLException {
-        Connection conn = DatabaseConnection.getConnection();
-        
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return contarEliminados(conn);
+        }
+    }
+
+    /**
+     * Cuenta los registros eliminados lógicamente usando una conexión existente (no la cierra).
+     * @param conn Conexión compartida.
+     * @return El número de registros eliminados.
+     * @throws SQLException Si ocurre un error al acceder a la base de datos.
+     */
+    @Override
+    public long contarEliminados(Connection conn) throws SQLException {
+        return contar(conn, COUNT_DELETED_SQL);
+    }
+
+    // Ejecuta un SELECT COUNT(*) y retorna el resultado (0 si no hay filas)
+    private long contar(Connection conn, String sql) throws SQLException {
         try (
-            PreparedStatement ps = conn.prepareStatement(COUNT_DELETED_SQL);
+            PreparedStatement ps = conn.prepareStatement(sql);
             ResultSet rs = ps.executeQuery();
         ) {
             if (rs.next()) {
                 return rs.getLong(1);
             }
-            return 0; // Si no hay registros, retorna 0
-        } finally {
-            if (conn != null) {
-                try { conn.close(); } catch (SQLException ignore) {} // Cierre de conexión local
-            }
+            return 0;
         }
     }
 
     /**
-     * Actualiza los datos de un Paciente existente, incluyendo la posibilidad de cambiar su HistoriaClinica asociada (FK).
+     * Actualiza los datos de un Paciente existente en un solo round trip.
+     * El UPDATE está condicionado por la versión leída (WHERE id = ? AND version = ?):
+     * si otro usuario lo modificó o eliminó entretanto, no se pisa su cambio.
+     * Solo se escriben las columnas modificadas desde la carga (getCamposModificados);
+     * si no cambió ninguna, no se ejecuta nada.
      * Este método es transaccional.
-     * @param entidad Objeto Paciente con los datos a actualizar.
+     * @param entidad Objeto Paciente con los datos a actualizar (y la versión con la que se leyó).
      * @param conn Conexión compartida para la transacción activa.
+     * @throws ConflictoConcurrenciaException Si el Paciente no existe o cambió su versión.
      * @throws SQLException Si ocurre un error de acceso a la base de datos o si el ID es inválido.
      */
     @Override
@@ -293,29 +1056,61 @@ public class PacienteDao implements GenericDao<Paciente> {
             throw new SQLException("El ID del Paciente es inválido para la actualización.");
         }
 
-        try (PreparedStatement ps = conn.prepareStatement(UPDATE_SQL)) {
+        EnumSet<Paciente.Campo> campos = entidad.getCamposModificados();
+        if (campos.isEmpty()) {
+            return; // Nada que escribir
+        }
 
-            int i = 1;
-            ps.setString(i++, entidad.getNombre());
-            ps.setString(i++, entidad.getApellido());
-            ps.setString(i++, entidad.getDni());
+        String sql = UPDATES_POR_CAMPOS.computeIfAbsent(campos, PacienteDao::construirUpdate);
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
 
-            // 1. Manejo de Fecha de Nacimiento
-            if (entidad.getFechaNacimiento() != null) {
-                ps.setDate(i++, java.sql.Date.valueOf(entidad.getFechaNacimiento()));
-            } else {
-                ps.setNull(i++, java.sql.Types.DATE);
+            int i = 1;
+            for (Paciente.Campo campo : campos) { // EnumSet itera en el mismo orden con el que se armó el SQL
+                switch (campo) {
+                    case NOMBRE:
+                        ps.setString(i++, entidad.getNombre());
+                        break;
+                    case APELLIDO:
+                        ps.setString(i++, entidad.getApellido());
+                        break;
+                    case DNI:
+                        ps.setString(i++, entidad.getDni());
+                        break;
+                    case FECHA_NACIMIENTO:
+                        if (entidad.getFechaNacimiento() != null) {
+                            ps.setDate(i++, java.sql.Date.valueOf(entidad.getFechaNacimiento()));
+                        } else {
+                            ps.setNull(i++, java.sql.Types.DATE);
+                        }
+                        break;
+                }
             }
 
-            ps.setLong(i++, entidad.getId()); // Parámetro para la cláusula WHERE
+            ps.setLong(i++, entidad.getId()); // Parámetros para la cláusula WHERE
+            ps.setLong(i++, entidad.getVersion());
 
             int rows = ps.executeUpdate();
             if (rows == 0) {
-                throw new SQLException("No se pudo actualizar el Paciente con ID: " + entidad.getId());
+                // No existe o su versión cambió desde que se leyó
+                throw new ConflictoConcurrenciaException("Paciente", entidad.getId(), entidad.getVersion());
             }
+            entidad.setVersion(entidad.getVersion() + 1);
         }
     }
 
+    /**
+     * Arma el UPDATE con solo las columnas indicadas, condicionado por id y versión.
+     * @param campos Campos modificados.
+     * @return Sentencia SQL parametrizada.
+     */
+    private static String construirUpdate(EnumSet<Paciente.Campo> campos) {
+        StringBuilder sql = new StringBuilder("UPDATE paciente SET ");
+        for (Paciente.Campo campo : campos) {
+            sql.append(campo.getColumna()).append(" = ?, ");
+        }
+        return sql.append("version = version + 1 WHERE id = ? AND version = ?").toString();
+    }
+
     /**
      * Realiza la baja lógica (Soft Delete) de un Paciente, estableciendo 'eliminado = TRUE'.
      * Este método es transaccional.
@@ -339,6 +1134,7 @@ public class PacienteDao implements GenericDao<Paciente> {
 
     /**
      * Recupera un Paciente eliminado lógicamente, estableciendo 'eliminado = FALSE'.
+     * Si ya fue archivado, lo devuelve a la tabla principal junto con su Historia Clínica (ArchivoDao).
      * Este método es transaccional.
      * @param id El ID del Paciente a recuperar.
      * @param conn Conexión compartida para la transacción activa.
@@ -352,7 +1148,7 @@ public class PacienteDao implements GenericDao<Paciente> {
         try (PreparedStatement ps = conn.prepareStatement(RECOVER_SQL)) {
             ps.setLong(1, id);
             int rows = ps.executeUpdate();
-            if (rows == 0) {
+            if (rows == 0 && !archivoDao.restaurarPaciente(id, conn)) {
                 throw new SQLException("No se encontró Paciente (marcado como eliminado) con ID: " + id);
             }
         }
@@ -0,0 +1,35 @@
+/*
+ * Página de resultados de una búsqueda.
+ */
+package dao;
+
+import java.util.List;
+
+/**
+ * Elementos de una página y si existe una página siguiente. No se calcula el total
+ * (evita un COUNT sobre todas las coincidencias): se lee un elemento de más.
+ *
+ * @param elementos Elementos de la página, en el orden del ranking.
+ * @param numero Número de página (desde 0).
+ * @param tamanio Tamaño de página pedido.
+ * @param haySiguiente true si hay más resultados después de esta página.
+ * @param truncada true si la búsqueda se cortó en un máximo de candidatos: puede haber
+ *                 coincidencias que no aparecen en ninguna página.
+ */
+public record Pagina<T>(List<T> elementos, int numero, int tamanio, boolean haySiguiente, boolean truncada) {
+
+    public Pagina {
+        elementos = List.copyOf(elementos);
+    }
+
+    public Pagina(List<T> elementos, int numero, int tamanio, boolean haySiguiente) {
+        this(elementos, numero, tamanio, haySiguiente, false);
+    }
+
+    /**
+     * Indica si la página no tiene elementos.
+     */
+    public boolean vacia() {
+        return elementos.isEmpty();
+    }
+}
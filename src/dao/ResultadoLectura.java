@@ -0,0 +1,28 @@
+/*
+ * Resultado de una lectura de varias entidades por ID (leerPorIds).
+ */
+package dao;
+
+import java.util.List;
+
+/**
+ * Entidades encontradas, en el orden en que se pidieron sus IDs, y los IDs que no se
+ * encontraron (inexistentes o eliminados lógicamente), también en el orden pedido.
+ *
+ * @param encontrados Entidades encontradas (un elemento por ID distinto).
+ * @param faltantes IDs sin entidad activa.
+ */
+public record ResultadoLectura<T>(List<T> encontrados, List<Long> faltantes) {
+
+    public ResultadoLectura {
+        encontrados = List.copyOf(encontrados);
+        faltantes = List.copyOf(faltantes);
+    }
+
+    /**
+     * Indica si se encontraron todos los IDs pedidos.
+     */
+    public boolean completo() {
+        return faltantes.isEmpty();
+    }
+}
@@ -0,0 +1,459 @@
+/*
+ * Acceso a la fila única de resumen_contadores: los contadores de pacientes e historias
+ * clínicas que muestran las estadísticas, para leerlos sin contar filas (una lectura por PK).
+ *
+ * Cada escritura de los Services calcula su Delta y lo aplica en su misma transacción; la
+ * reconciliación periódica recalcula todo desde las tablas y corrige cualquier diferencia
+ * (ej: cargas hechas por fuera de la aplicación).
+ *
+ * Orden de bloqueos: las escrituras primero bloquean sus filas de paciente/historia_clinica
+ * (las lecturas "FOR UPDATE / FOR SHARE" que arman el Delta) y recién al final la fila del
+ * resumen (aplicar), justo antes del commit, así la fila compartida por todas las
+ * escrituras queda bloqueada el menor tiempo posible.
+ */
+package dao;
+
+import config.DatabaseConnection;
+import config.Prioridad;
+import entities.TipoSangre;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+public class ResumenContadoresDao {
+
+    /**
+     * Valores de los contadores.
+     *
+     * @param pacientesConHistoria Pacientes activos con Historia Clínica activa.
+     * @param historiasPorGrupo Historias Clínicas activas por grupo sanguíneo.
+     * @param reconciliado Último recálculo completo (null si nunca se recalculó).
+     */
+    public record Contadores(long pacientesActivos, long pacientesEliminados, long pacientesConHistoria,
+            long historiasActivas, long historiasEliminadas, Map<TipoSangre, Long> historiasPorGrupo,
+            LocalDateTime reconciliado) {
+
+        public Contadores {
+            historiasPorGrupo = Collections.unmodifiableMap(new EnumMap<>(historiasPorGrupo));
+        }
+    }
+
+    /**
+     * Cambio a aplicar sobre los contadores (se pueden sumar varios, ej: paciente + HC).
+     */
+    public static final class Delta {
+
+        private long pacientesActivos;
+        private long pacientesEliminados;
+        private long pacientesConHistoria;
+        private long historiasActivas;
+        private long historiasEliminadas;
+        private final long[] historiasPorGrupo = new long[TipoSangre.values().length];
+
+        /**
+         * Delta sin cambios.
+         */
+        public Delta() {
+        }
+
+        /**
+         * Alta de un Paciente (sin Historia Clínica).
+         */
+        public static Delta altaPaciente(boolean eliminado) {
+            return new Delta().pacientes(eliminado ? 0 : 1, eliminado ? 1 : 0);
+        }
+
+        /**
+         * Alta de una Historia Clínica.
+         *
+         * @param pacienteActivo Si el paciente de la Historia Clínica está activo.
+         */
+        public static Delta altaHistoria(TipoSangre grupo, boolean eliminada, boolean pacienteActivo) {
+            if (eliminada) {
+                return new Delta().historias(0, 1);
+            }
+            return new Delta().historias(1, 0).grupo(grupo, 1).conHistoria(pacienteActivo ? 1 : 0);
+        }
+
+        /**
+         * Cambio de grupo sanguíneo de una Historia Clínica activa.
+         */
+        public static Delta cambioGrupoHistoria(TipoSangre anterior, TipoSangre nuevo) {
+            if (anterior == nuevo) {
+                return new Delta();
+            }
+            return new Delta().grupo(anterior, -1).grupo(nuevo, 1);
+        }
+
+        /**
+         * Baja (eliminar = true) o recuperación de varios pacientes a la vez.
+         *
+         * @param conHistoria Cuántos de ellos tienen Historia Clínica activa.
+         */
+        public static Delta cambioEstadoPacientes(long cantidad, long conHistoria, boolean eliminar) {
+            long signo = eliminar ? -1 : 1;
+            return new Delta().pacientes(signo * cantidad, -signo * cantidad).conHistoria(signo * conHistoria);
+        }
+
+        /**
+         * Suma otro delta a este.
+         *
+         * @return Este delta.
+         */
+        public Delta sumar(Delta otro) {
+            pacientes(otro.pacientesActivos, otro.pacientesEliminados);
+            historias(otro.historiasActivas, otro.historiasEliminadas);
+            conHistoria(otro.pacientesConHistoria);
+            for (int i = 0; i < historiasPorGrupo.length; i++) {
+                historiasPorGrupo[i] += otro.historiasPorGrupo[i];
+            }
+            return this;
+        }
+
+        /**
+         * Indica si no cambia ningún contador.
+         */
+        public boolean vacio() {
+            if (pacientesActivos != 0 || pacientesEliminados != 0 || pacientesConHistoria != 0
+                    || historiasActivas != 0 || historiasEliminadas != 0) {
+                return false;
+            }
+            for (long cantidad : historiasPorGrupo) {
+                if (cantidad != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        Delta pacientes(long activos, long eliminados) {
+            pacientesActivos += activos;
+            pacientesEliminados += eliminados;
+            return this;
+        }
+
+        Delta historias(long activas, long eliminadas) {
+            historiasActivas += activas;
+            historiasEliminadas += eliminadas;
+            return this;
+        }
+
+        Delta conHistoria(long cantidad) {
+            pacientesConHistoria += cantidad;
+            return this;
+        }
+
+        Delta grupo(TipoSangre grupo, long cantidad) {
+            historiasPorGrupo[grupo.ordinal()] += cantidad;
+            return this;
+        }
+    }
+
+    // Columnas de los contadores, en el orden de Contadores (los grupos por ordinal de TipoSangre)
+    private static final String[] COLUMNAS = columnas();
+
+    private static final String SELECT_SQL = "SELECT " + String.join(", ", COLUMNAS) + ", reconciliado FROM resumen_contadores WHERE id = 1";
+    private static final String SELECT_FOR_UPDATE_SQL = SELECT_SQL + " FOR UPDATE";
+    private static final String APLICAR_SQL = armarUpdate(" = %s + ?") + " WHERE id = 1";
+    private static final String GUARDAR_SQL = armarUpdate(" = ?") + ", reconciliado = NOW() WHERE id = 1";
+
+    // Estado actual de las filas que cambian, bloqueadas hasta el commit (lecturas siempre de la última versión confirmada)
+    private static final String ESTADO_PACIENTE_SQL = "SELECT p.eliminado, hc.id FROM paciente p LEFT JOIN historia_clinica hc ON hc.paciente_id = p.id AND hc.eliminado = FALSE WHERE p.id = ? FOR UPDATE OF p FOR SHARE OF hc";
+    private static final String ESTADO_HISTORIA_SQL = "SELECT hc.eliminado, hc.grupo_sanguineo, p.eliminado FROM historia_clinica hc JOIN paciente p ON p.id = hc.paciente_id WHERE hc.id = ? FOR UPDATE OF hc FOR SHARE OF p";
+    private static final String GRUPO_HISTORIA_SQL = "SELECT eliminado, grupo_sanguineo FROM historia_clinica WHERE id = ? FOR UPDATE";
+    private static final String PACIENTE_ACTIVO_SQL = "SELECT eliminado FROM paciente WHERE id = ? FOR SHARE";
+    // Recuperación desde el archivo (ArchivoDao): el paciente vuelve con su historia activa, si la tiene
+    private static final String ESTADO_PACIENTE_ARCHIVADO_SQL = "SELECT pa.eliminado, (SELECT hca.id FROM historia_clinica_archivo hca WHERE hca.paciente_id = pa.id AND hca.eliminado = FALSE LIMIT 1) FROM paciente_archivo pa WHERE pa.id = ? FOR UPDATE";
+    private static final String ESTADO_HISTORIA_ARCHIVADA_SQL = "SELECT hca.eliminado, hca.grupo_sanguineo, p.eliminado FROM historia_clinica_archivo hca JOIN paciente p ON p.id = hca.paciente_id WHERE hca.id = ? FOR UPDATE OF hca FOR SHARE OF p";
+
+    // Recálculo completo (reconciliación). Las filas archivadas se cuentan según su estado, así archivar no cambia los contadores
+    private static final String CONTAR_SQL = "SELECT "
+            + "(SELECT COUNT(*) FROM paciente WHERE eliminado = FALSE), "
+            + "(SELECT COUNT(*) FROM paciente WHERE eliminado = TRUE) + (SELECT COUNT(*) FROM paciente_archivo), "
+            + "(SELECT COUNT(*) FROM paciente p JOIN historia_clinica hc ON hc.paciente_id = p.id WHERE p.eliminado = FALSE AND hc.eliminado = FALSE), "
+            + "(SELECT COUNT(*) FROM historia_clinica WHERE eliminado = TRUE) + (SELECT COUNT(*) FROM historia_clinica_archivo WHERE eliminado = TRUE)";
+    private static final String CONTAR_POR_GRUPO_SQL = "SELECT grupo_sanguineo, SUM(cantidad) FROM ("
+            + "SELECT grupo_sanguineo, COUNT(*) AS cantidad FROM historia_clinica WHERE eliminado = FALSE GROUP BY grupo_sanguineo"
+            + " UNION ALL SELECT grupo_sanguineo, COUNT(*) FROM historia_clinica_archivo WHERE eliminado = FALSE GROUP BY grupo_sanguineo"
+            + ") t GROUP BY grupo_sanguineo";
+
+    // --- Deltas de cada escritura (leen y bloquean las filas afectadas; llamar antes de modificarlas) ---
+
+    /**
+     * Delta de la baja o la recuperación de un Paciente. Bloquea la fila del paciente (en la
+     * recuperación, la del archivo si ya no está en la tabla principal).
+     * Este método es transaccional.
+     * @param conn Conexión compartida para la transacción activa.
+     * @param pacienteId ID del Paciente.
+     * @param eliminar true para la baja, false para la recuperación.
+     * @return Delta a aplicar (vacío si el paciente no existe o ya está en ese estado).
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public Delta cambioEstadoPaciente(Connection conn, long pacienteId, boolean eliminar) throws SQLException {
+        Delta delta = cambioEstadoPaciente(conn, ESTADO_PACIENTE_SQL, pacienteId, eliminar);
+        if (delta == null && !eliminar) {
+            delta = cambioEstadoPaciente(conn, ESTADO_PACIENTE_ARCHIVADO_SQL, pacienteId, false);
+        }
+        return delta != null ? delta : new Delta();
+    }
+
+    // null si la fila no existe en la tabla consultada
+    private static Delta cambioEstadoPaciente(Connection conn, String sql, long pacienteId, boolean eliminar) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, pacienteId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                if (rs.getBoolean(1) == eliminar) {
+                    return new Delta();
+                }
+                rs.getLong(2);
+                boolean conHistoria = !rs.wasNull();
+                long signo = eliminar ? -1 : 1;
+                return new Delta().pacientes(signo, -signo).conHistoria(conHistoria ? signo : 0);
+            }
+        }
+    }
+
+    /**
+     * Delta de la baja o la recuperación de una Historia Clínica. Bloquea la fila de la historia
+     * (en la recuperación, la del archivo si ya no está en la tabla principal).
+     * Este método es transaccional.
+     * @param conn Conexión compartida para la transacción activa.
+     * @param historiaId ID de la Historia Clínica.
+     * @param eliminar true para la baja, false para la recuperación.
+     * @return Delta a aplicar (vacío si la historia no existe o ya está en ese estado).
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public Delta cambioEstadoHistoria(Connection conn, long historiaId, boolean eliminar) throws SQLException {
+        Delta delta = cambioEstadoHistoria(conn, ESTADO_HISTORIA_SQL, historiaId, eliminar);
+        if (delta == null && !eliminar) {
+            delta = cambioEstadoHistoria(conn, ESTADO_HISTORIA_ARCHIVADA_SQL, historiaId, false);
+        }
+        return delta != null ? delta : new Delta();
+    }
+
+    // null si la fila no existe en la tabla consultada
+    private static Delta cambioEstadoHistoria(Connection conn, String sql, long historiaId, boolean eliminar) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, historiaId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                if (rs.getBoolean(1) == eliminar) {
+                    return new Delta();
+                }
+                long signo = eliminar ? -1 : 1;
+                boolean pacienteActivo = !rs.getBoolean(3);
+                return new Delta().historias(signo, -signo)
+                        .grupo(TipoSangre.fromDbValue(rs.getString(2)), signo)
+                        .conHistoria(pacienteActivo ? signo : 0);
+            }
+        }
+    }
+
+    /**
+     * Delta del cambio de grupo sanguíneo de una Historia Clínica. Bloquea la fila de la historia.
+     * Este método es transaccional.
+     * @param conn Conexión compartida para la transacción activa.
+     * @param historiaId ID de la Historia Clínica.
+     * @param nuevo Grupo sanguíneo nuevo.
+     * @return Delta a aplicar (vacío si la historia no está activa o no cambia de grupo).
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public Delta cambioGrupoHistoria(Connection conn, long historiaId, TipoSangre nuevo) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(GRUPO_HISTORIA_SQL)) {
+            ps.setLong(1, historiaId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || rs.getBoolean(1)) {
+                    return new Delta();
+                }
+                return Delta.cambioGrupoHistoria(TipoSangre.fromDbValue(rs.getString(2)), nuevo);
+            }
+        }
+    }
+
+    /**
+     * Delta del alta de una Historia Clínica de un Paciente existente (lee si el paciente está activo).
+     * Este método es transaccional.
+     * @param conn Conexión compartida para la transacción activa.
+     * @param pacienteId ID del Paciente.
+     * @param grupo Grupo sanguíneo de la historia.
+     * @param eliminada Si la historia se crea eliminada.
+     * @return Delta a aplicar.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public Delta altaHistoria(Connection conn, long pacienteId, TipoSangre grupo, boolean eliminada) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(PACIENTE_ACTIVO_SQL)) {
+            ps.setLong(1, pacienteId);
+            try (ResultSet rs = ps.executeQuery()) {
+                boolean pacienteActivo = rs.next() && !rs.getBoolean(1);
+                return Delta.altaHistoria(grupo, eliminada, pacienteActivo);
+            }
+        }
+    }
+
+    /**
+     * Aplica un delta a los contadores. Llamar como última sentencia de la transacción.
+     * Este método es transaccional.
+     * @param conn Conexión compartida para la transacción activa.
+     * @param delta Cambios (si está vacío no se ejecuta nada).
+     * @throws SQLException Si ocurre un error de acceso a la base de datos o falta la fila del resumen.
+     */
+    public void aplicar(Connection conn, Delta delta) throws SQLException {
+        if (delta.vacio()) {
+            return;
+        }
+        try (PreparedStatement ps = conn.prepareStatement(APLICAR_SQL)) {
+            int i = 1;
+            ps.setLong(i++, delta.pacientesActivos);
+            ps.setLong(i++, delta.pacientesEliminados);
+            ps.setLong(i++, delta.pacientesConHistoria);
+            ps.setLong(i++, delta.historiasActivas);
+            ps.setLong(i++, delta.historiasEliminadas);
+            for (long cantidad : delta.historiasPorGrupo) {
+                ps.setLong(i++, cantidad);
+            }
+            if (ps.executeUpdate() == 0) {
+                throw new SQLException("Falta la fila de resumen_contadores (ver 04_migraciones.sql, sección 7).");
+            }
+        }
+    }
+
+    // --- Lectura y reconciliación ---
+
+    /**
+     * Lee los contadores (una fila por clave primaria).
+     * Nota: Este método maneja su propia conexión, no es transaccional.
+     * @return Contadores actuales.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos o falta la fila del resumen.
+     */
+    public Contadores leer() throws SQLException {
+        try (
+            Connection conn = DatabaseConnection.getConnection(Prioridad.CONSULTA);
+            PreparedStatement ps = conn.prepareStatement(SELECT_SQL);
+            ResultSet rs = ps.executeQuery();
+        ) {
+            return mapear(rs);
+        }
+    }
+
+    /**
+     * Lee los contadores y bloquea la fila del resumen hasta el fin de la transacción: las
+     * escrituras que terminen mientras tanto esperan para aplicar su delta. Debe ser la
+     * primera lectura de la transacción (ver reconciliación en EstadisticasService).
+     * Este método es transaccional.
+     * @param conn Conexión compartida para la transacción activa.
+     * @return Contadores antes de la reconciliación.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos o falta la fila del resumen.
+     */
+    public Contadores bloquear(Connection conn) throws SQLException {
+        try (
+            PreparedStatement ps = conn.prepareStatement(SELECT_FOR_UPDATE_SQL);
+            ResultSet rs = ps.executeQuery();
+        ) {
+            return mapear(rs);
+        }
+    }
+
+    /**
+     * Cuenta pacientes e historias clínicas directamente en las tablas.
+     * @param conn Conexión compartida.
+     * @return Contadores exactos (sin fecha de reconciliación).
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public Contadores calcular(Connection conn) throws SQLException {
+        Map<TipoSangre, Long> porGrupo = new EnumMap<>(TipoSangre.class);
+        long historiasActivas = 0;
+        for (TipoSangre grupo : TipoSangre.values()) {
+            porGrupo.put(grupo, 0L);
+        }
+        try (
+            PreparedStatement ps = conn.prepareStatement(CONTAR_POR_GRUPO_SQL);
+            ResultSet rs = ps.executeQuery();
+        ) {
+            while (rs.next()) {
+                porGrupo.put(TipoSangre.fromDbValue(rs.getString(1)), rs.getLong(2));
+                historiasActivas += rs.getLong(2);
+            }
+        }
+        try (
+            PreparedStatement ps = conn.prepareStatement(CONTAR_SQL);
+            ResultSet rs = ps.executeQuery();
+        ) {
+            rs.next();
+            return new Contadores(rs.getLong(1), rs.getLong(2), rs.getLong(3), historiasActivas, rs.getLong(4), porGrupo, null);
+        }
+    }
+
+    /**
+     * Reemplaza los contadores y registra la fecha de reconciliación.
+     * Este método es transaccional.
+     * @param conn Conexión compartida para la transacción activa.
+     * @param contadores Valores nuevos.
+     * @throws SQLException Si ocurre un error de acceso a la base de datos.
+     */
+    public void guardar(Connection conn, Contadores contadores) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(GUARDAR_SQL)) {
+            int i = 1;
+            ps.setLong(i++, contadores.pacientesActivos());
+            ps.setLong(i++, contadores.pacientesEliminados());
+            ps.setLong(i++, contadores.pacientesConHistoria());
+            ps.setLong(i++, contadores.historiasActivas());
+            ps.setLong(i++, contadores.historiasEliminadas());
+            for (TipoSangre grupo : TipoSangre.values()) {
+                ps.setLong(i++, contadores.historiasPorGrupo().get(grupo));
+            }
+            ps.executeUpdate();
+        }
+    }
+
+    private static Contadores mapear(ResultSet rs) throws SQLException {
+        if (!rs.next()) {
+            throw new SQLException("Falta la fila de resumen_contadores (ver 04_migraciones.sql, sección 7).");
+        }
+        Map<TipoSangre, Long> porGrupo = new EnumMap<>(TipoSangre.class);
+        int i = 6;
+        for (TipoSangre grupo : TipoSangre.values()) {
+            porGrupo.put(grupo, rs.getLong(i++));
+        }
+        Timestamp reconciliado = rs.getTimestamp(i);
+        return new Contadores(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4), rs.getLong(5), porGrupo,
+                reconciliado != null ? reconciliado.toLocalDateTime() : null);
+    }
+
+    private static String[] columnas() {
+        TipoSangre[] grupos = TipoSangre.values();
+        String[] columnas = new String[5 + grupos.length];
+        columnas[0] = "pacientes_activos";
+        columnas[1] = "pacientes_eliminados";
+        columnas[2] = "pacientes_con_historia";
+        columnas[3] = "historias_activas";
+        columnas[4] = "historias_eliminadas";
+        for (TipoSangre grupo : grupos) {
+            columnas[5 + grupo.ordinal()] = "historias_" + grupo.name().toLowerCase(Locale.ROOT); // ej: historias_ab_neg
+        }
+        return columnas;
+    }
+
+    // "UPDATE resumen_contadores SET c1<asignacion>, c2<asignacion>, ..." (%s = nombre de la columna)
+    private static String armarUpdate(String asignacion) {
+        StringBuilder sql = new StringBuilder("UPDATE resumen_contadores SET ");
+        String separador = "";
+        for (String columna : COLUMNAS) {
+            sql.append(separador).append(columna).append(String.format(asignacion, columna));
+            separador = ", ";
+        }
+        return sql.toString();
+    }
+}
@@ -16,6 +16,9 @@ public abstract class Base {
     // Indicador de eliminación lógica.
     private boolean eliminado;
 
+    // Versión de la fila (control de concurrencia optimista)
+    private long version;
+
     /**
      * Constructor completo con todos los campos
      *
@@ -27,6 +30,17 @@ public abstract class Base {
         this.eliminado = eliminado;
     }
 
+    /**
+     * Constructor de copia de los campos comunes
+     *
+     * @param otra
+     */
+    protected Base(Base otra) {
+        this.id = otra.id;
+        this.eliminado = otra.eliminado;
+        this.version = otra.version;
+    }
+
     /**
      * Constructor por defecto: inicializa una entidad sin id ya que será
      * asignado por la BD
@@ -70,4 +84,23 @@ public abstract class Base {
     public void setEliminado(boolean eliminado) {
         this.eliminado = eliminado;
     }
+
+    /**
+     * Obtiene la versión de la fila leída de la BD. Los DAOs la usan para que el
+     * UPDATE solo se aplique si nadie modificó la fila desde que se leyó.
+     *
+     * @return version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Establece la versión de la fila
+     *
+     * @param version
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
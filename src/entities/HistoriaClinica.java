@@ -4,6 +4,7 @@
  */
 package entities;
 
+import java.util.EnumSet;
 import java.util.Objects;
 
 /**
@@ -15,12 +16,43 @@ import java.util.Objects;
  */
 public class HistoriaClinica extends Base {
 
+    /**
+     * Campos persistentes de HistoriaClinica, con la columna de la BD que les corresponde.
+     * Se usan para registrar qué campos cambiaron desde que la entidad se cargó.
+     */
+    public enum Campo {
+        NRO_HISTORIA("nro_historia"),
+        GRUPO_SANGUINEO("grupo_sanguineo"),
+        ANTECEDENTES("antecedentes"),
+        MEDICACION_ACTUAL("medicacion_actual"),
+        OBSERVACIONES("observaciones");
+
+        private final String columna;
+
+        Campo(String columna) {
+            this.columna = columna;
+        }
+
+        public String getColumna() {
+            return columna;
+        }
+    }
+
+    // Campos modificados con los setters desde que se cargó (o desde la última actualización)
+    private final EnumSet<Campo> camposModificados = EnumSet.noneOf(Campo.class);
+
     private String nroHistoria;
     private TipoSangre grupoSanguineo;
     private String antecedentes;
     private String medicacionActual;
     private String observaciones;
 
+    // ID del Paciente dueño (FK paciente_id). 0 si aún no se asignó (alta)
+    private long pacienteId;
+
+    // false si se leyó sin los campos TEXT (listados): se completan con HistoriaClinicaDao.cargarTextos
+    private boolean textosCargados = true;
+
     /**
      * Constructor completo para reconstruir una HistoriaClinica desde la BD
      *
@@ -53,6 +85,23 @@ public class HistoriaClinica extends Base {
         this.grupoSanguineo = Objects.requireNonNull(grupoSanguineo, "grupoSanguineo es obligatorio"); // NOT NULL en BD
     }
 
+    /**
+     * Constructor de copia
+     *
+     * @param otra
+     */
+    public HistoriaClinica(HistoriaClinica otra) {
+        super(otra);
+        this.nroHistoria = otra.nroHistoria;
+        this.grupoSanguineo = otra.grupoSanguineo;
+        this.antecedentes = otra.antecedentes;
+        this.medicacionActual = otra.medicacionActual;
+        this.observaciones = otra.observaciones;
+        this.pacienteId = otra.pacienteId;
+        this.textosCargados = otra.textosCargados;
+        this.camposModificados.addAll(otra.camposModificados);
+    }
+
     /**
      * Constructor por defecto para crear una nueva HistoriaClinica sin id
      *
@@ -76,6 +125,9 @@ public class HistoriaClinica extends Base {
      * @param nroHistoria
      */
     public void setNroHistoria(String nroHistoria) {
+        if (!Objects.equals(this.nroHistoria, nroHistoria)) {
+            camposModificados.add(Campo.NRO_HISTORIA);
+        }
         this.nroHistoria = nroHistoria;
     }
 
@@ -94,6 +146,9 @@ public class HistoriaClinica extends Base {
      * @param grupoSanguineo
      */
     public void setGrupoSanguineo(TipoSangre grupoSanguineo) {
+        if (!Objects.equals(this.grupoSanguineo, grupoSanguineo)) {
+            camposModificados.add(Campo.GRUPO_SANGUINEO);
+        }
         this.grupoSanguineo = grupoSanguineo;
     }
 
@@ -103,6 +158,7 @@ public class HistoriaClinica extends Base {
      * @return antecedentes
      */
     public String getAntecedentes() {
+        verificarTextos(Campo.ANTECEDENTES);
         return antecedentes;
     }
 
@@ -112,6 +168,9 @@ public class HistoriaClinica extends Base {
      * @param antecedentes
      */
     public void setAntecedentes(String antecedentes) {
+        if (!textosCargados || !Objects.equals(this.antecedentes, antecedentes)) { // Sin el valor de la BD no se puede comparar
+            camposModificados.add(Campo.ANTECEDENTES);
+        }
         this.antecedentes = antecedentes;
     }
 
@@ -121,6 +180,7 @@ public class HistoriaClinica extends Base {
      * @return medicacionActual
      */
     public String getMedicacionActual() {
+        verificarTextos(Campo.MEDICACION_ACTUAL);
         return medicacionActual;
     }
 
@@ -130,6 +190,9 @@ public class HistoriaClinica extends Base {
      * @param medicacionActual
      */
     public void setMedicacionActual(String medicacionActual) {
+        if (!textosCargados || !Objects.equals(this.medicacionActual, medicacionActual)) { // Sin el valor de la BD no se puede comparar
+            camposModificados.add(Campo.MEDICACION_ACTUAL);
+        }
         this.medicacionActual = medicacionActual;
     }
 
@@ -139,6 +202,7 @@ public class HistoriaClinica extends Base {
      * @return observaciones
      */
     public String getObservaciones() {
+        verificarTextos(Campo.OBSERVACIONES);
         return observaciones;
     }
 
@@ -148,9 +212,106 @@ public class HistoriaClinica extends Base {
      * @param observaciones
      */
     public void setObservaciones(String observaciones) {
+        if (!textosCargados || !Objects.equals(this.observaciones, observaciones)) { // Sin el valor de la BD no se puede comparar
+            camposModificados.add(Campo.OBSERVACIONES);
+        }
         this.observaciones = observaciones;
     }
 
+    /**
+     * Obtiene el ID del Paciente al que pertenece la Historia Clínica
+     *
+     * @return pacienteId (0 si todavía no se asignó)
+     */
+    public long getPacienteId() {
+        return pacienteId;
+    }
+
+    /**
+     * Establece el ID del Paciente al que pertenece la Historia Clínica.
+     * La relación no se modifica con actualizar(): la asigna el DAO al crear o leer.
+     *
+     * @param pacienteId
+     */
+    public void setPacienteId(long pacienteId) {
+        this.pacienteId = pacienteId;
+    }
+
+    /**
+     * Marca la entidad como leída sin los campos TEXT (los listados solo leen las columnas
+     * angostas). Hasta completarlos con HistoriaClinicaDao.cargarTextos, sus getters fallan
+     * salvo para los campos asignados con los setters.
+     */
+    public void marcarSinTextos() {
+        this.textosCargados = false;
+    }
+
+    /**
+     * Indica si los campos TEXT ya están en memoria
+     *
+     * @return false si la entidad se leyó sin ellos y todavía no se completaron
+     */
+    public boolean isTextosCargados() {
+        return textosCargados;
+    }
+
+    /**
+     * Completa los campos TEXT leídos por HistoriaClinicaDao.cargarTextos (individual o por lote).
+     * No los marca como modificados ni pisa los que ya se asignaron con los setters.
+     *
+     * @param antecedentes
+     * @param medicacionActual
+     * @param observaciones
+     */
+    public void completarTextos(String antecedentes, String medicacionActual, String observaciones) {
+        if (textosCargados) {
+            return;
+        }
+        if (!camposModificados.contains(Campo.ANTECEDENTES)) {
+            this.antecedentes = antecedentes;
+        }
+        if (!camposModificados.contains(Campo.MEDICACION_ACTUAL)) {
+            this.medicacionActual = medicacionActual;
+        }
+        if (!camposModificados.contains(Campo.OBSERVACIONES)) {
+            this.observaciones = observaciones;
+        }
+        this.textosCargados = true;
+    }
+
+    // Un campo TEXT sin leer no es null: es desconocido
+    private void verificarTextos(Campo campo) {
+        if (!textosCargados && !camposModificados.contains(campo)) {
+            throw new IllegalStateException("La Historia Clínica " + getId() + " se leyó sin sus textos (ver HistoriaClinicaService.cargarTextos)");
+        }
+    }
+
+    /**
+     * Obtiene los campos modificados con los setters desde que la entidad se cargó.
+     * El DAO los usa para armar un UPDATE solo con las columnas que cambiaron.
+     *
+     * @return Copia del conjunto de campos modificados
+     */
+    public EnumSet<Campo> getCamposModificados() {
+        return EnumSet.copyOf(camposModificados);
+    }
+
+    /**
+     * Indica si hay campos modificados pendientes de guardar
+     *
+     * @return true si algún campo cambió
+     */
+    public boolean isModificado() {
+        return !camposModificados.isEmpty();
+    }
+
+    /**
+     * Marca la entidad como sincronizada con la BD (se llama luego de guardarla)
+     */
+    public void limpiarCamposModificados() {
+        camposModificados.clear();
+    }
+
     @Override
     public String toString() {
         return "HistoriaClinica{"
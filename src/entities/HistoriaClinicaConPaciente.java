@@ -0,0 +1,19 @@
+/*
+ * Historia Clínica junto con el resumen de su Paciente, leídos en una misma consulta
+ * (JOIN) para los listados que muestran ambos, en lugar de una consulta por historia.
+ */
+package entities;
+
+/**
+ * Par Historia Clínica / Paciente dueño (solo lectura)
+ *
+ * @param historia Historia Clínica (sin los campos TEXT, ver HistoriaClinicaDao.cargarTextos)
+ * @param paciente Resumen del Paciente dueño
+ */
+public record HistoriaClinicaConPaciente(HistoriaClinica historia, PacienteResumen paciente) {
+
+    @Override
+    public String toString() {
+        return historia + " → " + paciente.apellido() + ", " + paciente.nombre() + " (DNI: " + paciente.dni() + ")";
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Proyección liviana e inmutable de una HistoriaClinica para listados.
+ * Se arma desde un SELECT angosto (cubierto por el índice idx_hc_listado),
+ * sin los campos TEXT.
+ */
+package entities;
+
+/**
+ * Resumen de una Historia Clínica (solo lectura)
+ *
+ * @param id
+ * @param nroHistoria
+ * @param grupoSanguineo
+ * @param eliminado
+ */
+public record HistoriaClinicaResumen(long id, String nroHistoria, TipoSangre grupoSanguineo, boolean eliminado) {
+
+    // Mismo formato que HistoriaClinica.toString, para que los listados no cambien
+    @Override
+    public String toString() {
+        return "HistoriaClinica{"
+                + "id=" + id
+                + ", nroHistoria='" + nroHistoria + '\''
+                + ", grupoSanguineo=" + grupoSanguineo
+                + ", eliminado=" + eliminado
+                + '}';
+    }
+}
@@ -5,6 +5,7 @@
 package entities;
 
 import java.time.LocalDate;
+import java.util.EnumSet;
 import java.util.Objects;
 
 /**
@@ -17,6 +18,30 @@ import java.util.Objects;
  */
 public class Paciente extends Base {
 
+    /**
+     * Campos persistentes de Paciente, con la columna de la BD que les corresponde.
+     * Se usan para registrar qué campos cambiaron desde que la entidad se cargó.
+     */
+    public enum Campo {
+        NOMBRE("nombre"),
+        APELLIDO("apellido"),
+        DNI("dni"),
+        FECHA_NACIMIENTO("fecha_nacimiento");
+
+        private final String columna;
+
+        Campo(String columna) {
+            this.columna = columna;
+        }
+
+        public String getColumna() {
+            return columna;
+        }
+    }
+
+    // Campos modificados con los setters desde que se cargó (o desde la última actualización)
+    private final EnumSet<Campo> camposModificados = EnumSet.noneOf(Campo.class);
+
     private String nombre;
     private String apellido;
     private String dni;
@@ -42,6 +67,21 @@ public class Paciente extends Base {
         this.fechaNacimiento = fechaNacimiento;
     }
 
+    /**
+     * Constructor de copia (incluye una copia de la HistoriaClinica asociada)
+     *
+     * @param otro
+     */
+    public Paciente(Paciente otro) {
+        super(otro);
+        this.nombre = otro.nombre;
+        this.apellido = otro.apellido;
+        this.dni = otro.dni;
+        this.fechaNacimiento = otro.fechaNacimiento;
+        this.camposModificados.addAll(otro.camposModificados);
+        this.historiaClinica = otro.historiaClinica != null ? new HistoriaClinica(otro.historiaClinica) : null;
+    }
+
     /**
      * Constructor por defecto para crear un nuevo Paciente sin id
      *
@@ -65,6 +105,9 @@ public class Paciente extends Base {
      * @param nombre
      */
     public void setNombre(String nombre) {
+        if (!Objects.equals(this.nombre, nombre)) {
+            camposModificados.add(Campo.NOMBRE);
+        }
         this.nombre = nombre;
     }
 
@@ -83,6 +126,9 @@ public class Paciente extends Base {
      * @param apellido
      */
     public void setApellido(String apellido) {
+        if (!Objects.equals(this.apellido, apellido)) {
+            camposModificados.add(Campo.APELLIDO);
+        }
         this.apellido = apellido;
     }
 
@@ -101,6 +147,9 @@ public class Paciente extends Base {
      * @param dni
      */
     public void setDni(String dni) {
+        if (!Objects.equals(this.dni, dni)) {
+            camposModificados.add(Campo.DNI);
+        }
         this.dni = dni;
     }
 
@@ -119,6 +168,9 @@ public class Paciente extends Base {
      * @param fechaNacimiento
      */
     public void setFechaNacimiento(LocalDate fechaNacimiento) {
+        if (!Objects.equals(this.fechaNacimiento, fechaNacimiento)) {
+            camposModificados.add(Campo.FECHA_NACIMIENTO);
+        }
         this.fechaNacimiento = fechaNacimiento;
     }
 
@@ -141,6 +193,32 @@ public class Paciente extends Base {
         this.historiaClinica = historiaClinica;
     }
 
+    /**
+     * Obtiene los campos modificados con los setters desde que la entidad se cargó.
+     * El DAO los usa para armar un UPDATE solo con las columnas que cambiaron.
+     *
+     * @return Copia del conjunto de campos modificados
+     */
+    public EnumSet<Campo> getCamposModificados() {
+        return EnumSet.copyOf(camposModificados);
+    }
+
+    /**
+     * Indica si hay campos modificados pendientes de guardar
+     *
+     * @return true si algún campo cambió
+     */
+    public boolean isModificado() {
+        return !camposModificados.isEmpty();
+    }
+
+    /**
+     * Marca la entidad como sincronizada con la BD (se llama luego de guardarla)
+     */
+    public void limpiarCamposModificados() {
+        camposModificados.clear();
+    }
+
     @Override
     public String toString() {
         return "Paciente{"
@@ -0,0 +1,46 @@
+/*
+ * Proyección liviana e inmutable de un Paciente para listados y búsquedas.
+ * Se arma desde un SELECT angosto (cubierto por el índice idx_paciente_listado),
+ * sin construir la HistoriaClinica asociada: de ella solo se conserva el ID.
+ */
+package entities;
+
+import java.time.LocalDate;
+
+/**
+ * Resumen de un Paciente (solo lectura)
+ *
+ * @param id
+ * @param nombre
+ * @param apellido
+ * @param dni
+ * @param fechaNacimiento
+ * @param historiaClinicaId ID de la Historia Clínica asociada o null si no tiene
+ * @param eliminado
+ */
+public record PacienteResumen(long id, String nombre, String apellido, String dni,
+        LocalDate fechaNacimiento, Long historiaClinicaId, boolean eliminado) {
+
+    /**
+     * Indica si el paciente tiene Historia Clínica asociada
+     *
+     * @return true si tiene Historia Clínica
+     */
+    public boolean tieneHistoriaClinica() {
+        return historiaClinicaId != null;
+    }
+
+    // Mismo formato que Paciente.toString, para que los listados no cambien
+    @Override
+    public String toString() {
+        return "Paciente{"
+                + "id=" + id
+                + ", nombre='" + nombre + '\''
+                + ", apellido='" + apellido + '\''
+                + ", dni='" + dni + '\''
+                + ", fechaNacimiento=" + fechaNacimiento
+                + ", historiaClinica=" + (historiaClinicaId != null ? "HC#" + historiaClinicaId : "null")
+                + ", eliminado=" + eliminado
+                + '}';
+    }
+}
@@ -4,6 +4,8 @@
  */
 package entities;
 
+import java.util.EnumSet;
+
 /**
  *
  * @author belenyardebuller
@@ -24,6 +26,27 @@ public enum TipoSangre {
 
     private final String valor;
 
+    // Compatibilidad de transfusión de glóbulos rojos (ABO/Rh): el donante no puede aportar
+    // antígenos (A, B, Rh) que el receptor no tenga. Se precalcula como máscaras de bits
+    // sobre los ordinales: DONANTES[receptor] = grupos que le pueden donar,
+    // RECEPTORES[donante] = grupos a los que puede donar.
+    private static final int ANTIGENO_A = 1;
+    private static final int ANTIGENO_B = 2;
+    private static final int ANTIGENO_RH = 4;
+    private static final int[] DONANTES = new int[8];
+    private static final int[] RECEPTORES = new int[8];
+
+    static {
+        for (TipoSangre receptor : values()) {
+            for (TipoSangre donante : values()) {
+                if ((donante.antigenos() & ~receptor.antigenos()) == 0) {
+                    DONANTES[receptor.ordinal()] |= 1 << donante.ordinal();
+                    RECEPTORES[donante.ordinal()] |= 1 << receptor.ordinal();
+                }
+            }
+        }
+    }
+
     /**
      * Constructor
      *
@@ -58,6 +81,64 @@ public enum TipoSangre {
         throw new IllegalArgumentException("Valor de grupo sanguíneo inválido: " + dbValue);
     }
 
+    /**
+     * Máscara de bits (por ordinal) de los grupos que pueden donar a este grupo
+     *
+     * @return máscara de donantes compatibles
+     */
+    public int mascaraDonantes() {
+        return DONANTES[ordinal()];
+    }
+
+    /**
+     * Indica si este grupo (receptor) puede recibir sangre del grupo indicado
+     *
+     * @param donante
+     * @return true si son compatibles
+     */
+    public boolean puedeRecibirDe(TipoSangre donante) {
+        return (DONANTES[ordinal()] & (1 << donante.ordinal())) != 0;
+    }
+
+    /**
+     * Grupos que pueden donar a este grupo
+     *
+     * @return conjunto de donantes compatibles
+     */
+    public EnumSet<TipoSangre> donantesCompatibles() {
+        EnumSet<TipoSangre> donantes = EnumSet.noneOf(TipoSangre.class);
+        for (TipoSangre t : values()) {
+            if (puedeRecibirDe(t)) {
+                donantes.add(t);
+            }
+        }
+        return donantes;
+    }
+
+    /**
+     * Cantidad de grupos a los que este grupo puede donar (8 para O-, 1 para AB+)
+     *
+     * @return cantidad de grupos receptores
+     */
+    public int cantidadReceptores() {
+        return Integer.bitCount(RECEPTORES[ordinal()]);
+    }
+
+    // Antígenos presentes en los glóbulos rojos del grupo
+    private int antigenos() {
+        int antigenos = 0;
+        if (valor.startsWith("A")) {
+            antigenos |= ANTIGENO_A;
+        }
+        if (valor.contains("B")) {
+            antigenos |= ANTIGENO_B;
+        }
+        if (valor.endsWith("+")) {
+            antigenos |= ANTIGENO_RH;
+        }
+        return antigenos;
+    }
+
     /**
      * Devuelve el valor tal como se guarda en la BD
      */
@@ -0,0 +1,433 @@
+/*
+ * Foto columnar en memoria de paciente + historia_clinica para estadísticas (tableros):
+ * una fila por paciente, cada atributo en su propio arreglo primitivo.
+ *
+ *   ids          long[]   ID del paciente
+ *   nacimientos  int[]    fecha de nacimiento en días desde 1970-01-01 (SIN_FECHA si falta)
+ *   apellidos    int[]    código de diccionario del apellido
+ *   nombres      int[]    código de diccionario del nombre
+ *   grupos       byte[]   ordinal de TipoSangre de la HC activa (SIN_GRUPO si no tiene)
+ *   eliminados   BitSet   borrado lógico del paciente
+ *
+ * Filtrar y agrupar son recorridos secuenciales sobre arreglos contiguos, sin objetos por
+ * fila. Las filas no se borran: un paciente eliminado solo marca su bit.
+ * Thread-safe: muchas lecturas concurrentes, una modificación a la vez (ReadWriteLock).
+ */
+package indices;
+
+import entities.TipoSangre;
+
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class AlmacenColumnarPacientes {
+
+    /**
+     * Criterios de selección de filas. Por defecto: pacientes activos.
+     */
+    public static final class Filtro {
+        private boolean incluirEliminados = false;
+        private Integer edadMinima;
+        private Integer edadMaxima;
+        private int mascaraGrupos = -1; // Bit por ordinal de TipoSangre; -1 = sin filtro
+        private String prefijoApellido;
+
+        /**
+         * Incluir también a los pacientes eliminados lógicamente.
+         */
+        public Filtro incluirEliminados() {
+            this.incluirEliminados = true;
+            return this;
+        }
+
+        /**
+         * Rango de edad en años cumplidos (ambos inclusive). Excluye a quienes no tienen fecha.
+         */
+        public Filtro edadEntre(int minima, int maxima) {
+            if (minima < 0 || minima > maxima) {
+                throw new IllegalArgumentException("Rango de edad inválido");
+            }
+            this.edadMinima = minima;
+            this.edadMaxima = maxima;
+            return this;
+        }
+
+        /**
+         * Edad mínima en años cumplidos (inclusive).
+         */
+        public Filtro edadMinima(int anios) {
+            if (anios < 0) {
+                throw new IllegalArgumentException("La edad no puede ser negativa");
+            }
+            this.edadMinima = anios;
+            return this;
+        }
+
+        /**
+         * Grupos sanguíneos aceptados (implica Historia Clínica activa).
+         */
+        public Filtro grupos(EnumSet<TipoSangre> grupos) {
+            int mascara = 0;
+            for (TipoSangre grupo : grupos) {
+                mascara |= 1 << grupo.ordinal();
+            }
+            this.mascaraGrupos = mascara;
+            return this;
+        }
+
+        /**
+         * Prefijo del apellido (sin distinguir mayúsculas ni acentos).
+         */
+        public Filtro apellidoEmpiezaCon(String prefijo) {
+            if (prefijo == null || prefijo.trim().isEmpty()) {
+                throw new IllegalArgumentException("El prefijo no puede estar vacío");
+            }
+            this.prefijoApellido = prefijo;
+            return this;
+        }
+    }
+
+    /**
+     * Tamaño del almacén.
+     */
+    public record Estadisticas(int filas, int apellidosDistintos, int nombresDistintos, long bytesEstimados) {
+
+        @Override
+        public String toString() {
+            return String.format("Almacén columnar{filas=%d, apellidos distintos=%d, nombres distintos=%d, memoria estimada=%.1f KB}",
+                    filas, apellidosDistintos, nombresDistintos, bytesEstimados / 1024.0);
+        }
+    }
+
+    public static final int SIN_FECHA = Integer.MIN_VALUE;
+    static final byte SIN_GRUPO = -1;
+    private static final int CAPACIDAD_INICIAL = 1024;
+
+    private long[] ids = new long[CAPACIDAD_INICIAL];
+    private int[] nacimientos = new int[CAPACIDAD_INICIAL];
+    private int[] apellidos = new int[CAPACIDAD_INICIAL];
+    private int[] nombres = new int[CAPACIDAD_INICIAL];
+    private byte[] grupos = new byte[CAPACIDAD_INICIAL];
+    private final BitSet eliminados = new BitSet();
+    private int filas = 0;
+
+    private final MapaLongInt filaPorPaciente = new MapaLongInt(CAPACIDAD_INICIAL);
+    private final MapaLongInt filaPorHistoria = new MapaLongInt(CAPACIDAD_INICIAL);
+    private final Diccionario diccionarioApellidos = new Diccionario();
+    private final Diccionario diccionarioNombres = new Diccionario();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // --- Actualización ---
+
+    /**
+     * Agrega o reemplaza los datos de un paciente (su Historia Clínica no cambia).
+     */
+    public void guardarPaciente(long id, String nombre, String apellido, LocalDate fechaNacimiento, boolean eliminado) {
+        lock.writeLock().lock();
+        try {
+            int fila = filaPorPaciente.get(id);
+            if (fila == MapaLongInt.AUSENTE) {
+                fila = agregarFila(id);
+            }
+            nacimientos[fila] = fechaNacimiento != null ? (int) fechaNacimiento.toEpochDay() : SIN_FECHA;
+            apellidos[fila] = diccionarioApellidos.codificar(apellido);
+            nombres[fila] = diccionarioNombres.codificar(nombre);
+            eliminados.set(fila, eliminado);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marca o desmarca el borrado lógico de un paciente (ignora IDs desconocidos).
+     */
+    public void marcarEliminado(long pacienteId, boolean eliminado) {
+        lock.writeLock().lock();
+        try {
+            int fila = filaPorPaciente.get(pacienteId);
+            if (fila != MapaLongInt.AUSENTE) {
+                eliminados.set(fila, eliminado);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Asocia la Historia Clínica a su paciente con su grupo sanguíneo.
+     *
+     * @param historiaId ID de la Historia Clínica.
+     * @param pacienteId ID del paciente (0 si no se conoce: se usa la asociación previa).
+     * @param grupo Grupo sanguíneo.
+     * @param eliminada true si la Historia Clínica está eliminada lógicamente.
+     * @return ID del paciente, o 0 si no está en el almacén.
+     */
+    public long guardarHistoria(long historiaId, long pacienteId, TipoSangre grupo, boolean eliminada) {
+        lock.writeLock().lock();
+        try {
+            int fila = pacienteId > 0 ? filaPorPaciente.get(pacienteId) : filaPorHistoria.get(historiaId);
+            if (fila == MapaLongInt.AUSENTE) {
+                return 0;
+            }
+            filaPorHistoria.put(historiaId, fila);
+            grupos[fila] = eliminada || grupo == null ? SIN_GRUPO : (byte) grupo.ordinal();
+            return ids[fila];
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Deja al paciente de la Historia Clínica sin Historia activa.
+     *
+     * @return ID del paciente, o 0 si la Historia Clínica no está en el almacén.
+     */
+    public long quitarHistoria(long historiaId) {
+        lock.writeLock().lock();
+        try {
+            int fila = filaPorHistoria.get(historiaId);
+            if (fila == MapaLongInt.AUSENTE) {
+                return 0;
+            }
+            grupos[fila] = SIN_GRUPO;
+            return ids[fila];
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Vacía el almacén.
+     */
+    public void limpiar() {
+        lock.writeLock().lock();
+        try {
+            filas = 0;
+            eliminados.clear();
+            filaPorPaciente.limpiar();
+            filaPorHistoria.limpiar();
+            diccionarioApellidos.limpiar();
+            diccionarioNombres.limpiar();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- Consultas ---
+
+    /**
+     * Filas que cumplen el filtro.
+     *
+     * @param filtro Criterios.
+     * @param hoy Fecha de referencia para las edades.
+     * @return Selección de filas (un bit por fila), para contar, agrupar o recorrer.
+     */
+    public BitSet filtrar(Filtro filtro, LocalDate hoy) {
+        lock.readLock().lock();
+        try {
+            // Edad → rango de días: tener al menos N años es haber nacido hasta hoy - N
+            int nacidoHasta = filtro.edadMinima != null ? (int) hoy.minusYears(filtro.edadMinima).toEpochDay() : Integer.MAX_VALUE;
+            int nacidoDesde = filtro.edadMaxima != null ? (int) hoy.minusYears(filtro.edadMaxima + 1L).toEpochDay() + 1 : SIN_FECHA + 1;
+            boolean porEdad = filtro.edadMinima != null || filtro.edadMaxima != null;
+            boolean[] apellidoCoincide = filtro.prefijoApellido != null ? diccionarioApellidos.codigosConPrefijo(filtro.prefijoApellido) : null;
+            int mascara = filtro.mascaraGrupos;
+
+            BitSet seleccion = new BitSet(filas);
+            for (int i = 0; i < filas; i++) {
+                int nacimiento = nacimientos[i];
+                if (porEdad && (nacimiento == SIN_FECHA || nacimiento > nacidoHasta || nacimiento < nacidoDesde)) {
+                    continue;
+                }
+                if (mascara != -1) {
+                    byte grupo = grupos[i];
+                    if (grupo == SIN_GRUPO || (mascara & (1 << grupo)) == 0) {
+                        continue;
+                    }
+                }
+                if (apellidoCoincide != null && (apellidos[i] == Diccionario.SIN_VALOR || !apellidoCoincide[apellidos[i]])) {
+                    continue;
+                }
+                seleccion.set(i);
+            }
+            if (!filtro.incluirEliminados) {
+                seleccion.andNot(eliminados);
+            }
+            return seleccion;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cantidad de pacientes que cumplen el filtro.
+     */
+    public int contar(Filtro filtro, LocalDate hoy) {
+        return filtrar(filtro, hoy).cardinality();
+    }
+
+    /**
+     * Cuenta la selección por grupo sanguíneo.
+     *
+     * @return Arreglo indexado por ordinal de TipoSangre; la última posición cuenta a los
+     * pacientes sin Historia Clínica activa.
+     */
+    public long[] contarPorGrupoSanguineo(BitSet seleccion) {
+        lock.readLock().lock();
+        try {
+            int sinGrupo = TipoSangre.values().length;
+            long[] conteo = new long[sinGrupo + 1];
+            for (int i = seleccion.nextSetBit(0); i >= 0 && i < filas; i = seleccion.nextSetBit(i + 1)) {
+                byte grupo = grupos[i];
+                conteo[grupo == SIN_GRUPO ? sinGrupo : grupo]++;
+            }
+            return conteo;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cuenta la selección por franjas de edad de 'ancho' años: posición k = edades en
+     * [k * ancho, (k + 1) * ancho). La última posición cuenta a los pacientes sin fecha.
+     */
+    public long[] contarPorFranjaDeEdad(BitSet seleccion, int ancho, LocalDate hoy) {
+        if (ancho <= 0) {
+            throw new IllegalArgumentException("El ancho de la franja debe ser mayor a 0");
+        }
+        int franjas = 150 / ancho + 1;
+        // limites[k]: nacidos hasta ese día tienen al menos k * ancho años
+        int[] limites = new int[franjas + 1];
+        for (int k = 0; k <= franjas; k++) {
+            limites[k] = (int) hoy.minusYears((long) k * ancho).toEpochDay();
+        }
+        lock.readLock().lock();
+        try {
+            long[] conteo = new long[franjas + 1];
+            for (int i = seleccion.nextSetBit(0); i >= 0 && i < filas; i = seleccion.nextSetBit(i + 1)) {
+                int nacimiento = nacimientos[i];
+                if (nacimiento == SIN_FECHA) {
+                    conteo[franjas]++;
+                    continue;
+                }
+                int k = 0;
+                while (k < franjas - 1 && nacimiento <= limites[k + 1]) {
+                    k++;
+                }
+                conteo[k]++;
+            }
+            return conteo;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Apellidos más frecuentes en la selección (agrupamiento por código de diccionario).
+     *
+     * @param seleccion Filas a considerar.
+     * @param cantidad Cantidad máxima de apellidos.
+     * @return Pares apellido → cantidad, de mayor a menor.
+     */
+    public List<Map.Entry<String, Long>> apellidosMasFrecuentes(BitSet seleccion, int cantidad) {
+        lock.readLock().lock();
+        try {
+            long[] conteo = new long[diccionarioApellidos.tamanio()];
+            for (int i = seleccion.nextSetBit(0); i >= 0 && i < filas; i = seleccion.nextSetBit(i + 1)) {
+                if (apellidos[i] != Diccionario.SIN_VALOR) {
+                    conteo[apellidos[i]]++;
+                }
+            }
+            List<Map.Entry<String, Long>> ranking = new ArrayList<>();
+            for (int codigo = 0; codigo < conteo.length; codigo++) {
+                if (conteo[codigo] > 0) {
+                    ranking.add(new AbstractMap.SimpleImmutableEntry<>(diccionarioApellidos.valor(codigo), conteo[codigo]));
+                }
+            }
+            ranking.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()).thenComparing(Map.Entry.comparingByKey()));
+            return ranking.subList(0, Math.min(cantidad, ranking.size()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Edad promedio (en años, con decimales) de la selección, sin contar a quienes no tienen fecha.
+     *
+     * @return El promedio, o NaN si nadie en la selección tiene fecha de nacimiento.
+     */
+    public double edadPromedio(BitSet seleccion, LocalDate hoy) {
+        long diaHoy = hoy.toEpochDay();
+        lock.readLock().lock();
+        try {
+            long sumaDias = 0;
+            long cantidad = 0;
+            for (int i = seleccion.nextSetBit(0); i >= 0 && i < filas; i = seleccion.nextSetBit(i + 1)) {
+                if (nacimientos[i] != SIN_FECHA) {
+                    sumaDias += diaHoy - nacimientos[i];
+                    cantidad++;
+                }
+            }
+            return cantidad == 0 ? Double.NaN : sumaDias / 365.2425 / cantidad;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * IDs de paciente de la selección, en orden de fila.
+     */
+    public long[] ids(BitSet seleccion) {
+        lock.readLock().lock();
+        try {
+            long[] resultado = new long[seleccion.cardinality()];
+            int n = 0;
+            for (int i = seleccion.nextSetBit(0); i >= 0 && i < filas && n < resultado.length; i = seleccion.nextSetBit(i + 1)) {
+                resultado[n++] = ids[i];
+            }
+            return n == resultado.length ? resultado : Arrays.copyOf(resultado, n);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retorna el tamaño actual del almacén.
+     */
+    public Estadisticas getEstadisticas() {
+        lock.readLock().lock();
+        try {
+            long bytes = ids.length * (8L + 4 + 4 + 4 + 1) + eliminados.size() / 8
+                    + filaPorPaciente.bytes() + filaPorHistoria.bytes()
+                    + diccionarioApellidos.bytesEstimados() + diccionarioNombres.bytesEstimados();
+            return new Estadisticas(filas, diccionarioApellidos.tamanio(), diccionarioNombres.tamanio(), bytes);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Debe llamarse con el lock de escritura tomado
+    private int agregarFila(long id) {
+        if (filas == ids.length) {
+            int capacidad = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacidad);
+            nacimientos = Arrays.copyOf(nacimientos, capacidad);
+            apellidos = Arrays.copyOf(apellidos, capacidad);
+            nombres = Arrays.copyOf(nombres, capacidad);
+            grupos = Arrays.copyOf(grupos, capacidad);
+        }
+        int fila = filas++;
+        ids[fila] = id;
+        grupos[fila] = SIN_GRUPO;
+        filaPorPaciente.put(id, fila);
+        return fila;
+    }
+}
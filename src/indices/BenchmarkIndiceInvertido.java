@@ -0,0 +1,114 @@
+/*
+ * Benchmark del índice invertido en memoria con textos clínicos sintéticos (no usa la BD).
+ * Reporta tiempo de construcción, memoria del índice (estimada y medida en el heap) y
+ * latencia de consultas AND/OR por percentiles.
+ *
+ * Uso: java indices.BenchmarkIndiceInvertido [documentos] [consultas]
+ *      (por defecto 100000 documentos y 20000 consultas por tipo)
+ */
+package indices;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public final class BenchmarkIndiceInvertido {
+
+    private static final String[] VOCABULARIO = {
+        "hipertensión", "diabetes", "asma", "alergia", "penicilina", "migraña", "hipotiroidismo",
+        "enalapril", "metformina", "salbutamol", "levotiroxina", "ibuprofeno", "paracetamol",
+        "omeprazol", "losartán", "atorvastatina", "insulina", "cirugía", "apendicectomía",
+        "fractura", "control", "anual", "dolor", "lumbar", "crónico", "fumador", "sedentarismo",
+        "obesidad", "arritmia", "anemia", "gastritis", "sinusitis", "dermatitis", "ansiedad",
+        "depresión", "vacunación", "completa", "tratamiento", "suspendido", "evolución",
+        "favorable", "derivación", "cardiología", "nutrición", "kinesiología", "controles",
+        "mensuales", "presión", "arterial", "glucemia", "elevada", "normal", "antecedente",
+        "familiar", "materno", "paterno", "quirúrgico", "niega", "refiere", "episodios"
+    };
+
+    private static final String[][] CONSULTAS_AND = {
+        {"diabetes metformina"}, {"hipertension enalapril"}, {"asma salbutamol"},
+        {"dolor lumbar cronico"}, {"alergia penicilina"}, {"control anual normal"}
+    };
+    private static final String[][] CONSULTAS_OR = {
+        {"arritmia anemia"}, {"gastritis omeprazol sinusitis"}, {"ansiedad depresion"},
+        {"fractura cirugia"}, {"insulina glucemia"}, {"migraña ibuprofeno paracetamol"}
+    };
+
+    private BenchmarkIndiceInvertido() {
+    }
+
+    public static void main(String[] args) {
+        int documentos = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int consultas = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        Random random = new Random(42);
+
+        long heapAntes = heapUsado();
+        IndiceInvertido indice = new IndiceInvertido();
+        long inicio = System.nanoTime();
+        for (long id = 1; id <= documentos; id++) {
+            indice.indexar(id, texto(random, 12), texto(random, 4), texto(random, 8));
+        }
+        indice.compactar();
+        long msConstruccion = (System.nanoTime() - inicio) / 1_000_000;
+        long heapDespues = heapUsado();
+
+        System.out.println("Documentos: " + documentos + " | construcción: " + msConstruccion + " ms");
+        System.out.println(indice.getEstadisticas());
+        System.out.printf("Heap medido: %.1f KB%n", (heapDespues - heapAntes) / 1024.0);
+
+        // Reindexación incremental (como la que hacen los observadores de cambios)
+        inicio = System.nanoTime();
+        int actualizaciones = Math.min(documentos, 10_000);
+        for (int i = 0; i < actualizaciones; i++) {
+            indice.indexar(1 + random.nextInt(documentos), texto(random, 12), texto(random, 4), texto(random, 8));
+        }
+        System.out.printf("Reindexación: %.1f µs/documento%n", (System.nanoTime() - inicio) / 1_000.0 / actualizaciones);
+
+        medir("AND", indice, CONSULTAS_AND, IndiceInvertido.Operador.TODOS, consultas);
+        medir("OR ", indice, CONSULTAS_OR, IndiceInvertido.Operador.ALGUNO, consultas);
+    }
+
+    private static void medir(String nombre, IndiceInvertido indice, String[][] consultas, IndiceInvertido.Operador operador, int repeticiones) {
+        // Calentamiento del JIT
+        long resultados = 0;
+        for (int i = 0; i < repeticiones / 4; i++) {
+            resultados += indice.buscar(consultas[i % consultas.length][0], operador).length;
+        }
+
+        long[] nanos = new long[repeticiones];
+        resultados = 0;
+        for (int i = 0; i < repeticiones; i++) {
+            long inicio = System.nanoTime();
+            resultados += indice.buscar(consultas[i % consultas.length][0], operador).length;
+            nanos[i] = System.nanoTime() - inicio;
+        }
+        Arrays.sort(nanos);
+        System.out.printf("%s: p50=%.1f µs, p90=%.1f µs, p99=%.1f µs, máx=%.1f µs (%.0f resultados promedio)%n",
+                nombre, percentil(nanos, 50), percentil(nanos, 90), percentil(nanos, 99),
+                nanos[nanos.length - 1] / 1_000.0, (double) resultados / repeticiones);
+    }
+
+    private static double percentil(long[] ordenados, int p) {
+        int pos = (int) Math.ceil(p / 100.0 * ordenados.length) - 1;
+        return ordenados[Math.max(0, pos)] / 1_000.0;
+    }
+
+    private static String texto(Random random, int palabras) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < palabras; i++) {
+            if (i > 0) {
+                sb.append(i % 5 == 0 ? ". " : " ");
+            }
+            sb.append(VOCABULARIO[random.nextInt(VOCABULARIO.length)]);
+        }
+        return sb.toString();
+    }
+
+    private static long heapUsado() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Codificación por diccionario de una columna de texto: cada valor distinto se guarda una
+ * vez y las filas guardan su código (int). Los nombres y apellidos se repiten mucho, así
+ * la columna ocupa 4 bytes por fila y los agrupamientos trabajan sobre enteros.
+ * Los valores que dejan de usarse no se liberan (el diccionario solo crece).
+ * No es thread-safe: lo sincroniza quien lo usa.
+ */
+package indices;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class Diccionario {
+
+    static final int SIN_VALOR = -1;
+
+    private final Map<String, Integer> codigos = new HashMap<>();
+    private final List<String> valores = new ArrayList<>();
+
+    /**
+     * Código del valor, agregándolo si es nuevo (SIN_VALOR para null).
+     */
+    int codificar(String valor) {
+        if (valor == null) {
+            return SIN_VALOR;
+        }
+        Integer codigo = codigos.get(valor);
+        if (codigo == null) {
+            codigo = valores.size();
+            codigos.put(valor, codigo);
+            valores.add(valor);
+        }
+        return codigo;
+    }
+
+    /**
+     * Valor de un código (null para SIN_VALOR).
+     */
+    String valor(int codigo) {
+        return codigo == SIN_VALOR ? null : valores.get(codigo);
+    }
+
+    /**
+     * Cantidad de valores distintos.
+     */
+    int tamanio() {
+        return valores.size();
+    }
+
+    /**
+     * Marca los códigos cuyos valores empiezan con el prefijo, sin distinguir mayúsculas
+     * ni acentos (se evalúa una vez por valor distinto, no por fila).
+     */
+    boolean[] codigosConPrefijo(String prefijo) {
+        String buscado = TokenizadorEspanol.plegar(prefijo.trim());
+        boolean[] coinciden = new boolean[valores.size()];
+        for (int i = 0; i < valores.size(); i++) {
+            coinciden[i] = TokenizadorEspanol.plegar(valores.get(i)).startsWith(buscado);
+        }
+        return coinciden;
+    }
+
+    /**
+     * Bytes estimados (texto + entrada de mapa + referencia en la lista).
+     */
+    long bytesEstimados() {
+        long bytes = 0;
+        for (String valor : valores) {
+            bytes += 40L + valor.length() + 48 + 8;
+        }
+        return bytes;
+    }
+
+    void limpiar() {
+        codigos.clear();
+        valores.clear();
+    }
+}
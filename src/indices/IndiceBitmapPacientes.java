@@ -0,0 +1,335 @@
+/*
+ * Índices de mapas de bits (MapaDeBits) por ID de paciente, para conteos filtrados
+ * instantáneos ("¿cuántos pacientes activos O- tienen menos de 40 años?"):
+ *
+ *   todos        todos los pacientes
+ *   eliminados   pacientes con borrado lógico
+ *   porGrupo     uno por TipoSangre (grupo de la Historia Clínica activa)
+ *   porAnio      uno por año de nacimiento (la edad cambia con el tiempo; el año no)
+ *
+ * Un rango de edad se resuelve como OR de los años completamente incluidos más los años
+ * del borde, que se filtran por fecha exacta (son una fracción chica de los pacientes).
+ * Thread-safe: muchas consultas concurrentes, una modificación a la vez (ReadWriteLock).
+ */
+package indices;
+
+import entities.TipoSangre;
+
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class IndiceBitmapPacientes {
+
+    /**
+     * Tamaño de los índices.
+     */
+    public record Estadisticas(long pacientes, int mapas, long bytes) {
+
+        @Override
+        public String toString() {
+            return String.format("Mapas de bits{pacientes=%d, mapas=%d, memoria=%.1f KB}", pacientes, mapas, bytes / 1024.0);
+        }
+    }
+
+    private static final int SIN_GRUPO = -1;
+    private static final int SIN_FECHA = Integer.MIN_VALUE;
+    private static final int EDAD_MAXIMA = 150;
+
+    private MapaDeBits todos = new MapaDeBits();
+    private MapaDeBits eliminados = new MapaDeBits();
+    private final MapaDeBits[] porGrupo = new MapaDeBits[TipoSangre.values().length];
+    private final TreeMap<Integer, MapaDeBits> porAnio = new TreeMap<>();
+
+    // Estado actual de cada paciente, para sacarlo de sus mapas anteriores al cambiar
+    private final MapaLongInt nacimientoPorPaciente = new MapaLongInt(1024);
+    private final MapaLongInt grupoPorPaciente = new MapaLongInt(1024);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public IndiceBitmapPacientes() {
+        for (int i = 0; i < porGrupo.length; i++) {
+            porGrupo[i] = new MapaDeBits();
+        }
+    }
+
+    // --- Actualización ---
+
+    /**
+     * Agrega o actualiza un paciente (fecha de nacimiento y borrado lógico).
+     */
+    public void guardarPaciente(long id, LocalDate fechaNacimiento, boolean eliminado) {
+        int nacimiento = fechaNacimiento != null ? (int) fechaNacimiento.toEpochDay() : SIN_FECHA;
+        lock.writeLock().lock();
+        try {
+            todos.agregar(id);
+            int anterior = nacimientoPorPaciente.getOrDefault(id, SIN_FECHA); // -1 es una fecha válida (1969-12-31)
+            if (anterior != SIN_FECHA) {
+                quitarDeAnio(id, anterior);
+            }
+            nacimientoPorPaciente.put(id, nacimiento);
+            if (nacimiento != SIN_FECHA) {
+                porAnio.computeIfAbsent(LocalDate.ofEpochDay(nacimiento).getYear(), anio -> new MapaDeBits()).agregar(id);
+            }
+            marcar(eliminados, id, eliminado);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marca o desmarca el borrado lógico de un paciente.
+     */
+    public void marcarEliminado(long id, boolean eliminado) {
+        lock.writeLock().lock();
+        try {
+            if (todos.contiene(id)) {
+                marcar(eliminados, id, eliminado);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Asigna el grupo sanguíneo de la Historia Clínica activa del paciente (null si no tiene).
+     */
+    public void asignarGrupo(long pacienteId, TipoSangre grupo) {
+        lock.writeLock().lock();
+        try {
+            int anterior = grupoPorPaciente.getOrDefault(pacienteId, SIN_GRUPO);
+            if (anterior != SIN_GRUPO) {
+                porGrupo[anterior].quitar(pacienteId);
+            }
+            grupoPorPaciente.put(pacienteId, grupo != null ? grupo.ordinal() : SIN_GRUPO);
+            if (grupo != null) {
+                porGrupo[grupo.ordinal()].agregar(pacienteId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- Consultas ---
+
+    /**
+     * Pacientes activos que cumplen los criterios.
+     *
+     * @param grupos Grupos sanguíneos aceptados (null o vacío: cualquiera, con o sin HC).
+     * @param edadMinima Edad mínima en años cumplidos (null: sin mínimo).
+     * @param edadMaxima Edad máxima en años cumplidos (null: sin máximo).
+     * @param hoy Fecha de referencia para las edades.
+     * @return IDs de los pacientes (mapa nuevo, se puede seguir combinando con and/or/andNot).
+     */
+    public MapaDeBits seleccionar(EnumSet<TipoSangre> grupos, Integer edadMinima, Integer edadMaxima, LocalDate hoy) {
+        lock.readLock().lock();
+        try {
+            MapaDeBits resultado = activosDeGrupos(grupos);
+            if (edadMinima != null || edadMaxima != null) {
+                resultado = conEdadSinLock(resultado, edadMinima != null ? edadMinima : 0,
+                        edadMaxima != null ? edadMaxima : EDAD_MAXIMA, hoy);
+            }
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cantidad de pacientes activos que cumplen los criterios (ver seleccionar). No arma el
+     * mapa del rango de edad: suma la intersección con cada año de nacimiento.
+     */
+    public long contar(EnumSet<TipoSangre> grupos, Integer edadMinima, Integer edadMaxima, LocalDate hoy) {
+        lock.readLock().lock();
+        try {
+            MapaDeBits base = activosDeGrupos(grupos);
+            if (edadMinima == null && edadMaxima == null) {
+                return base.cardinalidad();
+            }
+            RangoNacimiento rango = rango(edadMinima != null ? edadMinima : 0, edadMaxima != null ? edadMaxima : EDAD_MAXIMA, hoy);
+            long total = 0;
+            for (Map.Entry<Integer, MapaDeBits> entrada : porAnio.subMap(rango.anioDesde(), true, rango.anioHasta(), true).entrySet()) {
+                if (rango.incluyeAnio(entrada.getKey())) {
+                    total += base.cardinalidadAnd(entrada.getValue());
+                } else {
+                    // Año del borde: fecha exacta solo de los que ya cumplen el resto
+                    for (long id : base.and(entrada.getValue()).aArreglo()) {
+                        if (rango.incluye(nacimientoPorPaciente.getOrDefault(id, SIN_FECHA))) {
+                            total++;
+                        }
+                    }
+                }
+            }
+            return total;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Pacientes activos (copia).
+     */
+    public MapaDeBits activos() {
+        lock.readLock().lock();
+        try {
+            return todos.andNot(eliminados);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Pacientes eliminados lógicamente (copia).
+     */
+    public MapaDeBits eliminados() {
+        lock.readLock().lock();
+        try {
+            return eliminados.copia();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Pacientes (activos o no) cuya Historia Clínica activa es del grupo indicado (copia).
+     */
+    public MapaDeBits grupo(TipoSangre grupo) {
+        lock.readLock().lock();
+        try {
+            return porGrupo[grupo.ordinal()].copia();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Pacientes (activos o no) con edad en el rango, en años cumplidos (ambos inclusive).
+     */
+    public MapaDeBits conEdadEntre(int minima, int maxima, LocalDate hoy) {
+        lock.readLock().lock();
+        try {
+            return conEdadSinLock(todos, minima, maxima, hoy);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retorna el tamaño actual de los índices.
+     */
+    public Estadisticas getEstadisticas() {
+        lock.readLock().lock();
+        try {
+            long bytes = todos.bytes() + eliminados.bytes() + nacimientoPorPaciente.bytes() + grupoPorPaciente.bytes();
+            for (MapaDeBits mapa : porGrupo) {
+                bytes += mapa.bytes();
+            }
+            for (MapaDeBits mapa : porAnio.values()) {
+                bytes += mapa.bytes();
+            }
+            return new Estadisticas(todos.cardinalidad(), 2 + porGrupo.length + porAnio.size(), bytes);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Vacía los índices.
+     */
+    public void limpiar() {
+        lock.writeLock().lock();
+        try {
+            todos = new MapaDeBits();
+            eliminados = new MapaDeBits();
+            for (int i = 0; i < porGrupo.length; i++) {
+                porGrupo[i] = new MapaDeBits();
+            }
+            porAnio.clear();
+            nacimientoPorPaciente.limpiar();
+            grupoPorPaciente.limpiar();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Nacidos en [diaDesde, diaHasta] (días desde 1970-01-01)
+    private record RangoNacimiento(long diaDesde, long diaHasta) {
+
+        int anioDesde() {
+            return LocalDate.ofEpochDay(diaDesde).getYear();
+        }
+
+        int anioHasta() {
+            return LocalDate.ofEpochDay(diaHasta).getYear();
+        }
+
+        boolean incluye(long dia) {
+            return dia >= diaDesde && dia <= diaHasta;
+        }
+
+        boolean incluyeAnio(int anio) {
+            return LocalDate.of(anio, 1, 1).toEpochDay() >= diaDesde && LocalDate.of(anio, 12, 31).toEpochDay() <= diaHasta;
+        }
+    }
+
+    // Edad en [minima, maxima] años cumplidos ⇔ nacimiento en [hoy - (maxima + 1) años + 1 día, hoy - minima años]
+    private static RangoNacimiento rango(int minima, int maxima, LocalDate hoy) {
+        if (minima < 0 || minima > maxima) {
+            throw new IllegalArgumentException("Rango de edad inválido");
+        }
+        return new RangoNacimiento(hoy.minusYears(maxima + 1L).plusDays(1).toEpochDay(), hoy.minusYears(minima).toEpochDay());
+    }
+
+    // Debe llamarse con el lock tomado
+    private MapaDeBits activosDeGrupos(EnumSet<TipoSangre> grupos) {
+        if (grupos == null || grupos.isEmpty()) {
+            return todos.andNot(eliminados);
+        }
+        MapaDeBits resultado = new MapaDeBits();
+        for (TipoSangre grupo : grupos) {
+            resultado.orEnSitio(porGrupo[grupo.ordinal()]);
+        }
+        return resultado.andNot(eliminados);
+    }
+
+    // Los de 'base' con edad en el rango. Debe llamarse con el lock tomado
+    private MapaDeBits conEdadSinLock(MapaDeBits base, int minima, int maxima, LocalDate hoy) {
+        RangoNacimiento rango = rango(minima, maxima, hoy);
+        MapaDeBits resultado = new MapaDeBits();
+        for (Map.Entry<Integer, MapaDeBits> entrada : porAnio.subMap(rango.anioDesde(), true, rango.anioHasta(), true).entrySet()) {
+            MapaDeBits delAnio = base.and(entrada.getValue());
+            if (rango.incluyeAnio(entrada.getKey())) {
+                resultado.orEnSitio(delAnio);
+            } else {
+                // Año del borde: se filtra por fecha exacta
+                for (long id : delAnio.aArreglo()) {
+                    if (rango.incluye(nacimientoPorPaciente.getOrDefault(id, SIN_FECHA))) {
+                        resultado.agregar(id);
+                    }
+                }
+            }
+        }
+        return resultado;
+    }
+
+    private void quitarDeAnio(long id, int nacimiento) {
+        int anio = LocalDate.ofEpochDay(nacimiento).getYear();
+        MapaDeBits mapa = porAnio.get(anio);
+        if (mapa != null) {
+            mapa.quitar(id);
+            if (mapa.vacio()) {
+                porAnio.remove(anio);
+            }
+        }
+    }
+
+    private static void marcar(MapaDeBits mapa, long id, boolean presente) {
+        if (presente) {
+            mapa.agregar(id);
+        } else {
+            mapa.quitar(id);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Índice invertido en memoria: término → lista de IDs de documento (ListaPostings,
+ * comprimida con delta + varint). Responde consultas booleanas (todos los términos /
+ * alguno de los términos) sin consultar la base de datos.
+ *
+ * Los documentos se reemplazan completos con indexar(id, textos...) y se quitan con
+ * quitar(id); para poder hacerlo se guardan, por documento, referencias a las listas de
+ * sus términos.
+ * Thread-safe: muchas consultas concurrentes, una modificación a la vez (ReadWriteLock).
+ */
+package indices;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class IndiceInvertido {
+
+    /**
+     * Combinación de los términos de la consulta.
+     */
+    public enum Operador {
+        TODOS,  // AND: documentos que contienen todos los términos
+        ALGUNO  // OR: documentos que contienen al menos uno
+    }
+
+    /**
+     * Foto del tamaño del índice. Los bytes de memoria son una estimación: los postings
+     * se miden exactos; diccionario y mapa de documentos, con el overhead típico de la JVM.
+     */
+    public record Estadisticas(int documentos, int terminos, long postings, long bytesPostings, long bytesEstimados) {
+
+        @Override
+        public String toString() {
+            return String.format("Índice{documentos=%d, términos=%d, postings=%d, postings comprimidos=%.1f KB, memoria estimada=%.1f KB}",
+                    documentos, terminos, postings, bytesPostings / 1024.0, bytesEstimados / 1024.0);
+        }
+    }
+
+    // Overhead aproximado por entrada de HashMap (nodo + referencia en la tabla) y por objeto
+    private static final int BYTES_ENTRADA_MAPA = 48;
+    private static final int BYTES_OBJETO = 16;
+
+    private final Map<String, ListaPostings> postings = new HashMap<>();
+    private final Map<Long, ListaPostings[]> listasPorDocumento = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Indexa (o reindexa) un documento con el contenido de sus textos.
+     *
+     * @param id ID del documento (mayor a 0).
+     * @param textos Textos del documento (los null se ignoran).
+     */
+    public void indexar(long id, String... textos) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("El ID del documento debe ser mayor a 0.");
+        }
+        Set<String> terminos = new LinkedHashSet<>();
+        for (String texto : textos) {
+            terminos.addAll(TokenizadorEspanol.tokenizar(texto));
+        }
+
+        lock.writeLock().lock();
+        try {
+            // Solo se tocan las listas de los términos que cambiaron
+            ListaPostings[] anteriores = listasPorDocumento.remove(id);
+            List<ListaPostings> propias = new ArrayList<>(terminos.size());
+            if (anteriores != null) {
+                for (ListaPostings lista : anteriores) {
+                    if (terminos.remove(lista.termino())) {
+                        propias.add(lista); // El término sigue: la lista no cambia
+                    } else {
+                        quitarDeLista(lista, id);
+                    }
+                }
+            }
+            for (String termino : terminos) { // Quedan solo los términos nuevos
+                ListaPostings lista = postings.computeIfAbsent(termino, ListaPostings::new);
+                lista.agregar(id);
+                propias.add(lista);
+            }
+            if (!propias.isEmpty()) {
+                listasPorDocumento.put(id, propias.toArray(new ListaPostings[0]));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Quita un documento del índice.
+     *
+     * @param id ID del documento.
+     */
+    public void quitar(long id) {
+        lock.writeLock().lock();
+        try {
+            quitarSinLock(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Busca los documentos que cumplen la consulta.
+     *
+     * @param consulta Texto de la consulta (se tokeniza igual que los documentos).
+     * @param operador TODOS (AND) o ALGUNO (OR).
+     * @return IDs ordenados de menor a mayor (vacío si la consulta no tiene términos).
+     */
+    public long[] buscar(String consulta, Operador operador) {
+        Set<String> terminos = new LinkedHashSet<>(TokenizadorEspanol.tokenizar(consulta));
+        if (terminos.isEmpty()) {
+            return new long[0];
+        }
+
+        lock.readLock().lock();
+        try {
+            List<ListaPostings> listas = new ArrayList<>(terminos.size());
+            for (String termino : terminos) {
+                ListaPostings lista = postings.get(termino);
+                if (lista != null) {
+                    listas.add(lista);
+                } else if (operador == Operador.TODOS) {
+                    return new long[0]; // Un término ausente vacía la intersección
+                }
+            }
+            return operador == Operador.TODOS ? interseccion(listas) : union(listas);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ajusta la memoria de todas las listas al tamaño usado (llamar luego de la carga masiva).
+     */
+    public void compactar() {
+        lock.writeLock().lock();
+        try {
+            for (ListaPostings lista : postings.values()) {
+                lista.compactar();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Vacía el índice.
+     */
+    public void limpiar() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            listasPorDocumento.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retorna el tamaño actual del índice.
+     */
+    public Estadisticas getEstadisticas() {
+        lock.readLock().lock();
+        try {
+            long cantidadPostings = 0;
+            long bytesPostings = 0;
+            long bytesDiccionario = 0;
+            for (Map.Entry<String, ListaPostings> entrada : postings.entrySet()) {
+                cantidadPostings += entrada.getValue().cantidad();
+                bytesPostings += entrada.getValue().bytes() + BYTES_OBJETO;
+                bytesDiccionario += BYTES_ENTRADA_MAPA + 2L * BYTES_OBJETO + entrada.getKey().length();
+            }
+            long bytesDocumentos = 0;
+            for (ListaPostings[] listas : listasPorDocumento.values()) {
+                bytesDocumentos += BYTES_ENTRADA_MAPA + BYTES_OBJETO + 8L * listas.length + BYTES_OBJETO;
+            }
+            return new Estadisticas(listasPorDocumento.size(), postings.size(), cantidadPostings,
+                    bytesPostings, bytesPostings + bytesDiccionario + bytesDocumentos);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Debe llamarse con el lock de escritura tomado
+    private void quitarSinLock(long id) {
+        ListaPostings[] anteriores = listasPorDocumento.remove(id);
+        if (anteriores == null) {
+            return;
+        }
+        for (ListaPostings lista : anteriores) {
+            quitarDeLista(lista, id);
+        }
+    }
+
+    private void quitarDeLista(ListaPostings lista, long id) {
+        if (lista.quitar(id) && lista.cantidad() == 0) {
+            postings.remove(lista.termino());
+        }
+    }
+
+    // Intersección empezando por la lista más corta
+    private static long[] interseccion(List<ListaPostings> listas) {
+        listas.sort(Comparator.comparingInt(ListaPostings::cantidad));
+        long[] candidatos = listas.get(0).decodificar();
+        int n = candidatos.length;
+        for (int i = 1; i < listas.size() && n > 0; i++) {
+            n = listas.get(i).intersectar(candidatos, n);
+        }
+        return Arrays.copyOf(candidatos, n);
+    }
+
+    private static long[] union(List<ListaPostings> listas) {
+        if (listas.isEmpty()) {
+            return new long[0];
+        }
+        int total = 0;
+        long[][] decodificadas = new long[listas.size()][];
+        for (int i = 0; i < listas.size(); i++) {
+            decodificadas[i] = listas.get(i).decodificar();
+            total += decodificadas[i].length;
+        }
+        long[] todos = new long[total];
+        int pos = 0;
+        for (long[] ids : decodificadas) {
+            System.arraycopy(ids, 0, todos, pos, ids.length);
+            pos += ids.length;
+        }
+        Arrays.sort(todos);
+        int unicos = 0;
+        for (int i = 0; i < todos.length; i++) {
+            if (unicos == 0 || todos[i] != todos[unicos - 1]) {
+                todos[unicos++] = todos[i];
+            }
+        }
+        return Arrays.copyOf(todos, unicos);
+    }
+}
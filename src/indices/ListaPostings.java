@@ -0,0 +1,232 @@
+/*
+ * Lista de postings comprimida: IDs de documento ordenados, guardados como diferencias
+ * con el anterior (delta) codificadas en varint (7 bits por byte). IDs consecutivos o
+ * cercanos ocupan 1 byte cada uno en lugar de 8.
+ *
+ * Agregar un ID mayor que el último es O(1) (caso de las altas, con IDs crecientes);
+ * insertar en el medio o quitar recorre la lista y corrige solo los bytes afectados.
+ * No es thread-safe: la sincroniza IndiceInvertido.
+ */
+package indices;
+
+import java.util.Arrays;
+
+final class ListaPostings {
+
+    private final String termino;
+    private byte[] datos = new byte[4];
+    private int longitud = 0;   // Bytes usados de datos
+    private int cantidad = 0;   // Cantidad de IDs
+    private long ultimo = 0;    // Último ID (base del próximo delta)
+
+    ListaPostings(String termino) {
+        this.termino = termino;
+    }
+
+    /**
+     * Término al que pertenece la lista.
+     */
+    String termino() {
+        return termino;
+    }
+
+    /**
+     * Agrega un ID (si ya estaba, no hace nada).
+     */
+    void agregar(long id) {
+        if (id > ultimo) {
+            asegurarEspacio(10);
+            longitud = escribirVarint(datos, longitud, id - ultimo);
+            ultimo = id;
+            cantidad++;
+            return;
+        }
+        // Inserción en el medio: el delta del siguiente se parte en dos (id - anterior, siguiente - id)
+        int pos = 0;
+        long anterior = 0;
+        while (pos < longitud) {
+            int inicio = pos;
+            long delta = 0;
+            int desplazamiento = 0;
+            byte b;
+            do {
+                b = datos[pos++];
+                delta |= (long) (b & 0x7F) << desplazamiento;
+                desplazamiento += 7;
+            } while (b < 0);
+            long actual = anterior + delta;
+            if (actual == id) {
+                return;
+            }
+            if (actual > id) {
+                byte[] nuevos = new byte[20];
+                int n = escribirVarint(nuevos, 0, id - anterior);
+                n = escribirVarint(nuevos, n, actual - id);
+                reemplazar(inicio, pos, nuevos, n);
+                cantidad++;
+                return;
+            }
+            anterior = actual;
+        }
+    }
+
+    /**
+     * Quita un ID.
+     *
+     * @return true si estaba en la lista.
+     */
+    boolean quitar(long id) {
+        if (id > ultimo) {
+            return false;
+        }
+        int pos = 0;
+        long anterior = 0;
+        while (pos < longitud) {
+            int inicio = pos;
+            long actual = anterior + leerVarint(pos);
+            pos = finVarint(pos);
+            if (actual > id) {
+                return false;
+            }
+            if (actual == id) {
+                if (pos == longitud) {
+                    // Era el último: se descarta su delta
+                    longitud = inicio;
+                    ultimo = anterior;
+                } else {
+                    // El siguiente pasa a medirse desde el anterior al quitado
+                    int finSiguiente = finVarint(pos);
+                    long siguiente = actual + leerVarint(pos);
+                    byte[] nuevos = new byte[10];
+                    int n = escribirVarint(nuevos, 0, siguiente - anterior);
+                    reemplazar(inicio, finSiguiente, nuevos, n);
+                }
+                cantidad--;
+                return true;
+            }
+            anterior = actual;
+        }
+        return false;
+    }
+
+    /**
+     * IDs de la lista, ordenados de menor a mayor.
+     */
+    long[] decodificar() {
+        long[] ids = new long[cantidad];
+        long actual = 0;
+        int pos = 0;
+        for (int i = 0; i < cantidad; i++) {
+            long delta = 0;
+            int desplazamiento = 0;
+            byte b;
+            do {
+                b = datos[pos++];
+                delta |= (long) (b & 0x7F) << desplazamiento;
+                desplazamiento += 7;
+            } while (b < 0);
+            actual += delta;
+            ids[i] = actual;
+        }
+        return ids;
+    }
+
+    /**
+     * Conserva solo los IDs de 'candidatos' (ordenados) que están en esta lista.
+     * Recorre la lista comprimida sin decodificarla entera.
+     *
+     * @param candidatos IDs ordenados.
+     * @param n Cantidad de candidatos válidos.
+     * @return Cantidad de candidatos que quedaron (compactados al principio del arreglo).
+     */
+    int intersectar(long[] candidatos, int n) {
+        int quedan = 0;
+        int pos = 0;
+        int leidos = 0;
+        long actual = 0;
+        for (int c = 0; c < n; c++) {
+            long buscado = candidatos[c];
+            while (actual < buscado && leidos < cantidad) {
+                long delta = 0;
+                int desplazamiento = 0;
+                byte b;
+                do {
+                    b = datos[pos++];
+                    delta |= (long) (b & 0x7F) << desplazamiento;
+                    desplazamiento += 7;
+                } while (b < 0);
+                actual += delta;
+                leidos++;
+            }
+            if (actual == buscado) {
+                candidatos[quedan++] = buscado;
+            } else if (actual < buscado) {
+                break; // Se terminó la lista
+            }
+        }
+        return quedan;
+    }
+
+    int cantidad() {
+        return cantidad;
+    }
+
+    /**
+     * Bytes reservados por la lista comprimida.
+     */
+    int bytes() {
+        return datos.length;
+    }
+
+    /**
+     * Ajusta el arreglo al tamaño usado (luego de la carga inicial).
+     */
+    void compactar() {
+        if (datos.length > longitud) {
+            datos = Arrays.copyOf(datos, Math.max(1, longitud));
+        }
+    }
+
+    // Reemplaza los bytes [desde, hasta) por los n primeros de 'nuevos', corriendo el resto
+    private void reemplazar(int desde, int hasta, byte[] nuevos, int n) {
+        int diferencia = n - (hasta - desde);
+        asegurarEspacio(Math.max(0, diferencia));
+        System.arraycopy(datos, hasta, datos, hasta + diferencia, longitud - hasta);
+        System.arraycopy(nuevos, 0, datos, desde, n);
+        longitud += diferencia;
+    }
+
+    private long leerVarint(int pos) {
+        long valor = 0;
+        int desplazamiento = 0;
+        byte b;
+        do {
+            b = datos[pos++];
+            valor |= (long) (b & 0x7F) << desplazamiento;
+            desplazamiento += 7;
+        } while (b < 0);
+        return valor;
+    }
+
+    private int finVarint(int pos) {
+        while (datos[pos++] < 0) {
+            // Bytes de continuación
+        }
+        return pos;
+    }
+
+    private void asegurarEspacio(int bytes) {
+        if (longitud + bytes > datos.length) {
+            datos = Arrays.copyOf(datos, Math.max(datos.length * 2, longitud + bytes));
+        }
+    }
+
+    private static int escribirVarint(byte[] destino, int pos, long valor) {
+        while ((valor & ~0x7FL) != 0) {
+            destino[pos++] = (byte) ((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        destino[pos++] = (byte) valor;
+        return pos;
+    }
+}
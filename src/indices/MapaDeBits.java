@@ -0,0 +1,676 @@
+/*
+ * Conjunto comprimido de IDs (long no negativos, menores a 2^47) al estilo "roaring bitmap".
+ *
+ * Los IDs se parten en 16 bits altos (clave) y 16 bits bajos. Por cada clave presente hay
+ * un contenedor con los bits bajos:
+ *   - arreglo ordenado de char (hasta 4096 valores: 2 bytes por ID), para rangos dispersos;
+ *   - mapa de bits de 65536 bits (8 KB fijos), para rangos densos.
+ * Cada contenedor cambia de representación al cruzar los 4096 valores, así ninguno ocupa
+ * más de 8 KB y las operaciones AND / OR / ANDNOT se hacen contenedor a contenedor (palabra
+ * a palabra en los densos).
+ *
+ * No es thread-safe: lo sincroniza quien lo usa. Las operaciones binarias no modifican
+ * los operandos y retornan un mapa nuevo (salvo orEnSitio, que acumula en el receptor).
+ */
+package indices;
+
+import java.util.Arrays;
+
+public final class MapaDeBits {
+
+    // Máximo de valores de un contenedor arreglo (a partir de ahí, 8 KB de bits ocupan menos)
+    private static final int LIMITE_ARREGLO = 4096;
+    private static final long ID_MAXIMO = (1L << 47) - 1;
+
+    private int[] claves = new int[4];
+    private Contenedor[] contenedores = new Contenedor[4];
+    private int tamanio = 0; // Cantidad de contenedores
+
+    /**
+     * Mapa con los IDs indicados.
+     */
+    public static MapaDeBits de(long... ids) {
+        MapaDeBits mapa = new MapaDeBits();
+        for (long id : ids) {
+            mapa.agregar(id);
+        }
+        return mapa;
+    }
+
+    /**
+     * Agrega un ID.
+     *
+     * @return true si no estaba.
+     */
+    public boolean agregar(long id) {
+        validar(id);
+        int clave = (int) (id >>> 16);
+        char bajo = (char) id;
+        int pos = buscarClave(clave);
+        if (pos < 0) {
+            pos = -pos - 1;
+            insertarContenedor(pos, clave, new ContenedorArreglo());
+        }
+        int antes = contenedores[pos].cardinalidad();
+        contenedores[pos] = contenedores[pos].agregar(bajo);
+        return contenedores[pos].cardinalidad() > antes;
+    }
+
+    /**
+     * Quita un ID.
+     *
+     * @return true si estaba.
+     */
+    public boolean quitar(long id) {
+        if (id < 0 || id > ID_MAXIMO) {
+            return false;
+        }
+        int pos = buscarClave((int) (id >>> 16));
+        if (pos < 0) {
+            return false;
+        }
+        int antes = contenedores[pos].cardinalidad();
+        contenedores[pos] = contenedores[pos].quitar((char) id);
+        int despues = contenedores[pos].cardinalidad();
+        if (despues == 0) {
+            quitarContenedor(pos);
+        }
+        return despues < antes;
+    }
+
+    /**
+     * Indica si el ID está en el mapa.
+     */
+    public boolean contiene(long id) {
+        if (id < 0 || id > ID_MAXIMO) {
+            return false;
+        }
+        int pos = buscarClave((int) (id >>> 16));
+        return pos >= 0 && contenedores[pos].contiene((char) id);
+    }
+
+    /**
+     * Cantidad de IDs.
+     */
+    public long cardinalidad() {
+        long total = 0;
+        for (int i = 0; i < tamanio; i++) {
+            total += contenedores[i].cardinalidad();
+        }
+        return total;
+    }
+
+    public boolean vacio() {
+        return tamanio == 0;
+    }
+
+    /**
+     * Intersección (IDs en ambos mapas).
+     */
+    public MapaDeBits and(MapaDeBits otro) {
+        MapaDeBits resultado = new MapaDeBits();
+        int i = 0;
+        int j = 0;
+        while (i < tamanio && j < otro.tamanio) {
+            if (claves[i] < otro.claves[j]) {
+                i++;
+            } else if (claves[i] > otro.claves[j]) {
+                j++;
+            } else {
+                resultado.agregarSiNoVacio(claves[i], contenedores[i].and(otro.contenedores[j]));
+                i++;
+                j++;
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Cantidad de IDs en ambos mapas, sin armar la intersección.
+     */
+    public long cardinalidadAnd(MapaDeBits otro) {
+        long total = 0;
+        int i = 0;
+        int j = 0;
+        while (i < tamanio && j < otro.tamanio) {
+            if (claves[i] < otro.claves[j]) {
+                i++;
+            } else if (claves[i] > otro.claves[j]) {
+                j++;
+            } else {
+                total += contenedores[i].cardinalidadAnd(otro.contenedores[j]);
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Unión (IDs en alguno de los mapas).
+     */
+    public MapaDeBits or(MapaDeBits otro) {
+        MapaDeBits resultado = new MapaDeBits();
+        int i = 0;
+        int j = 0;
+        while (i < tamanio || j < otro.tamanio) {
+            if (j >= otro.tamanio || (i < tamanio && claves[i] < otro.claves[j])) {
+                resultado.agregarSiNoVacio(claves[i], contenedores[i].copia());
+                i++;
+            } else if (i >= tamanio || claves[i] > otro.claves[j]) {
+                resultado.agregarSiNoVacio(otro.claves[j], otro.contenedores[j].copia());
+                j++;
+            } else {
+                resultado.agregarSiNoVacio(claves[i], contenedores[i].or(otro.contenedores[j]));
+                i++;
+                j++;
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Agrega a este mapa los IDs del otro (unión en el lugar, sin copiar lo que ya tiene).
+     */
+    public void orEnSitio(MapaDeBits otro) {
+        for (int j = 0; j < otro.tamanio; j++) {
+            int pos = buscarClave(otro.claves[j]);
+            if (pos >= 0) {
+                contenedores[pos] = contenedores[pos].orEnSitio(otro.contenedores[j]);
+            } else {
+                insertarContenedor(-pos - 1, otro.claves[j], otro.contenedores[j].copia());
+            }
+        }
+    }
+
+    /**
+     * Diferencia (IDs de este mapa que no están en el otro).
+     */
+    public MapaDeBits andNot(MapaDeBits otro) {
+        MapaDeBits resultado = new MapaDeBits();
+        int j = 0;
+        for (int i = 0; i < tamanio; i++) {
+            while (j < otro.tamanio && otro.claves[j] < claves[i]) {
+                j++;
+            }
+            if (j < otro.tamanio && otro.claves[j] == claves[i]) {
+                resultado.agregarSiNoVacio(claves[i], contenedores[i].andNot(otro.contenedores[j]));
+            } else {
+                resultado.agregarSiNoVacio(claves[i], contenedores[i].copia());
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Copia independiente del mapa.
+     */
+    public MapaDeBits copia() {
+        MapaDeBits resultado = new MapaDeBits();
+        for (int i = 0; i < tamanio; i++) {
+            resultado.agregarSiNoVacio(claves[i], contenedores[i].copia());
+        }
+        return resultado;
+    }
+
+    /**
+     * IDs del mapa, de menor a mayor.
+     */
+    public long[] aArreglo() {
+        long cantidad = cardinalidad();
+        if (cantidad > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Demasiados IDs para un arreglo: " + cantidad);
+        }
+        long[] ids = new long[(int) cantidad];
+        int pos = 0;
+        for (int i = 0; i < tamanio; i++) {
+            pos = contenedores[i].volcar((long) claves[i] << 16, ids, pos);
+        }
+        return ids;
+    }
+
+    /**
+     * Bytes aproximados ocupados por los contenedores.
+     */
+    public long bytes() {
+        long bytes = claves.length * 4L + contenedores.length * 8L;
+        for (int i = 0; i < tamanio; i++) {
+            bytes += contenedores[i].bytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "MapaDeBits{cardinalidad=" + cardinalidad() + ", contenedores=" + tamanio + ", bytes=" + bytes() + '}';
+    }
+
+    private static void validar(long id) {
+        if (id < 0 || id > ID_MAXIMO) {
+            throw new IllegalArgumentException("ID fuera de rango para el mapa de bits: " + id);
+        }
+    }
+
+    private int buscarClave(int clave) {
+        return Arrays.binarySearch(claves, 0, tamanio, clave);
+    }
+
+    private void insertarContenedor(int pos, int clave, Contenedor contenedor) {
+        if (tamanio == claves.length) {
+            claves = Arrays.copyOf(claves, tamanio * 2);
+            contenedores = Arrays.copyOf(contenedores, tamanio * 2);
+        }
+        System.arraycopy(claves, pos, claves, pos + 1, tamanio - pos);
+        System.arraycopy(contenedores, pos, contenedores, pos + 1, tamanio - pos);
+        claves[pos] = clave;
+        contenedores[pos] = contenedor;
+        tamanio++;
+    }
+
+    private void quitarContenedor(int pos) {
+        System.arraycopy(claves, pos + 1, claves, pos, tamanio - pos - 1);
+        System.arraycopy(contenedores, pos + 1, contenedores, pos, tamanio - pos - 1);
+        contenedores[--tamanio] = null;
+    }
+
+    // Agrega al final (las operaciones recorren las claves en orden)
+    private void agregarSiNoVacio(int clave, Contenedor contenedor) {
+        if (contenedor.cardinalidad() > 0) {
+            insertarContenedor(tamanio, clave, contenedor);
+        }
+    }
+
+    // --- Contenedores de los 16 bits bajos ---
+
+    private abstract static class Contenedor {
+
+        abstract Contenedor agregar(char valor);
+
+        abstract Contenedor quitar(char valor);
+
+        abstract boolean contiene(char valor);
+
+        abstract int cardinalidad();
+
+        abstract Contenedor and(Contenedor otro);
+
+        abstract int cardinalidadAnd(Contenedor otro);
+
+        abstract Contenedor or(Contenedor otro);
+
+        // Unión que puede modificar este contenedor (por defecto, arma uno nuevo)
+        Contenedor orEnSitio(Contenedor otro) {
+            return or(otro);
+        }
+
+        abstract Contenedor andNot(Contenedor otro);
+
+        abstract Contenedor copia();
+
+        abstract int bytes();
+
+        // Copia los IDs (base + valor) en destino desde pos; retorna la nueva posición
+        abstract int volcar(long base, long[] destino, int pos);
+    }
+
+    // Hasta LIMITE_ARREGLO valores ordenados
+    private static final class ContenedorArreglo extends Contenedor {
+        private char[] valores;
+        private int cantidad;
+
+        ContenedorArreglo() {
+            this(new char[4], 0);
+        }
+
+        ContenedorArreglo(char[] valores, int cantidad) {
+            this.valores = valores;
+            this.cantidad = cantidad;
+        }
+
+        @Override
+        Contenedor agregar(char valor) {
+            int pos = Arrays.binarySearch(valores, 0, cantidad, valor);
+            if (pos >= 0) {
+                return this;
+            }
+            if (cantidad == LIMITE_ARREGLO) {
+                return aBits().agregar(valor);
+            }
+            pos = -pos - 1;
+            if (cantidad == valores.length) {
+                valores = Arrays.copyOf(valores, Math.min(LIMITE_ARREGLO, cantidad * 2));
+            }
+            System.arraycopy(valores, pos, valores, pos + 1, cantidad - pos);
+            valores[pos] = valor;
+            cantidad++;
+            return this;
+        }
+
+        @Override
+        Contenedor quitar(char valor) {
+            int pos = Arrays.binarySearch(valores, 0, cantidad, valor);
+            if (pos >= 0) {
+                System.arraycopy(valores, pos + 1, valores, pos, cantidad - pos - 1);
+                cantidad--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contiene(char valor) {
+            return Arrays.binarySearch(valores, 0, cantidad, valor) >= 0;
+        }
+
+        @Override
+        int cardinalidad() {
+            return cantidad;
+        }
+
+        @Override
+        Contenedor and(Contenedor otro) {
+            char[] resultado = new char[Math.min(cantidad, otro.cardinalidad())];
+            int n = 0;
+            if (otro instanceof ContenedorArreglo arreglo) {
+                int i = 0;
+                int j = 0;
+                while (i < cantidad && j < arreglo.cantidad) {
+                    if (valores[i] < arreglo.valores[j]) {
+                        i++;
+                    } else if (valores[i] > arreglo.valores[j]) {
+                        j++;
+                    } else {
+                        resultado[n++] = valores[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                long[] palabras = ((ContenedorBits) otro).palabras;
+                for (int i = 0; i < cantidad; i++) {
+                    char valor = valores[i];
+                    if ((palabras[valor >>> 6] & (1L << valor)) != 0) {
+                        resultado[n++] = valor;
+                    }
+                }
+            }
+            return new ContenedorArreglo(resultado, n);
+        }
+
+        @Override
+        int cardinalidadAnd(Contenedor otro) {
+            int n = 0;
+            if (otro instanceof ContenedorArreglo arreglo) {
+                int i = 0;
+                int j = 0;
+                while (i < cantidad && j < arreglo.cantidad) {
+                    if (valores[i] < arreglo.valores[j]) {
+                        i++;
+                    } else if (valores[i] > arreglo.valores[j]) {
+                        j++;
+                    } else {
+                        n++;
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                long[] palabras = ((ContenedorBits) otro).palabras;
+                for (int i = 0; i < cantidad; i++) {
+                    char valor = valores[i];
+                    if ((palabras[valor >>> 6] & (1L << valor)) != 0) {
+                        n++;
+                    }
+                }
+            }
+            return n;
+        }
+
+        @Override
+        Contenedor or(Contenedor otro) {
+            if (otro instanceof ContenedorBits) {
+                return otro.or(this);
+            }
+            ContenedorArreglo arreglo = (ContenedorArreglo) otro;
+            if (cantidad + arreglo.cantidad > LIMITE_ARREGLO) {
+                return aBits().or(arreglo);
+            }
+            char[] resultado = new char[cantidad + arreglo.cantidad];
+            int n = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cantidad || j < arreglo.cantidad) {
+                if (j >= arreglo.cantidad || (i < cantidad && valores[i] < arreglo.valores[j])) {
+                    resultado[n++] = valores[i++];
+                } else if (i >= cantidad || valores[i] > arreglo.valores[j]) {
+                    resultado[n++] = arreglo.valores[j++];
+                } else {
+                    resultado[n++] = valores[i];
+                    i++;
+                    j++;
+                }
+            }
+            return new ContenedorArreglo(resultado, n);
+        }
+
+        @Override
+        Contenedor andNot(Contenedor otro) {
+            char[] resultado = new char[cantidad];
+            int n = 0;
+            for (int i = 0; i < cantidad; i++) {
+                if (!otro.contiene(valores[i])) {
+                    resultado[n++] = valores[i];
+                }
+            }
+            return new ContenedorArreglo(resultado, n);
+        }
+
+        @Override
+        Contenedor copia() {
+            return new ContenedorArreglo(Arrays.copyOf(valores, Math.max(1, cantidad)), cantidad);
+        }
+
+        @Override
+        int bytes() {
+            return 16 + valores.length * 2;
+        }
+
+        @Override
+        int volcar(long base, long[] destino, int pos) {
+            for (int i = 0; i < cantidad; i++) {
+                destino[pos++] = base | valores[i];
+            }
+            return pos;
+        }
+
+        private ContenedorBits aBits() {
+            ContenedorBits bits = new ContenedorBits();
+            for (int i = 0; i < cantidad; i++) {
+                bits.agregar(valores[i]);
+            }
+            return bits;
+        }
+    }
+
+    // 65536 bits en 1024 palabras de 64
+    private static final class ContenedorBits extends Contenedor {
+        private final long[] palabras;
+        private int cantidad;
+
+        ContenedorBits() {
+            this(new long[1024], 0);
+        }
+
+        ContenedorBits(long[] palabras, int cantidad) {
+            this.palabras = palabras;
+            this.cantidad = cantidad;
+        }
+
+        @Override
+        Contenedor agregar(char valor) {
+            long antes = palabras[valor >>> 6];
+            long despues = antes | (1L << valor);
+            if (antes != despues) {
+                palabras[valor >>> 6] = despues;
+                cantidad++;
+            }
+            return this;
+        }
+
+        @Override
+        Contenedor quitar(char valor) {
+            long antes = palabras[valor >>> 6];
+            long despues = antes & ~(1L << valor);
+            if (antes != despues) {
+                palabras[valor >>> 6] = despues;
+                cantidad--;
+            }
+            return cantidad <= LIMITE_ARREGLO ? aArregloContenedor() : this;
+        }
+
+        @Override
+        boolean contiene(char valor) {
+            return (palabras[valor >>> 6] & (1L << valor)) != 0;
+        }
+
+        @Override
+        int cardinalidad() {
+            return cantidad;
+        }
+
+        @Override
+        Contenedor and(Contenedor otro) {
+            if (otro instanceof ContenedorArreglo) {
+                return otro.and(this);
+            }
+            long[] otras = ((ContenedorBits) otro).palabras;
+            long[] resultado = new long[1024];
+            int n = 0;
+            for (int i = 0; i < 1024; i++) {
+                resultado[i] = palabras[i] & otras[i];
+                n += Long.bitCount(resultado[i]);
+            }
+            return normalizar(resultado, n);
+        }
+
+        @Override
+        int cardinalidadAnd(Contenedor otro) {
+            if (otro instanceof ContenedorArreglo) {
+                return otro.cardinalidadAnd(this);
+            }
+            long[] otras = ((ContenedorBits) otro).palabras;
+            int n = 0;
+            for (int i = 0; i < 1024; i++) {
+                n += Long.bitCount(palabras[i] & otras[i]);
+            }
+            return n;
+        }
+
+        @Override
+        Contenedor or(Contenedor otro) {
+            long[] resultado = palabras.clone();
+            int n = cantidad;
+            if (otro instanceof ContenedorArreglo arreglo) {
+                for (int i = 0; i < arreglo.cantidad; i++) {
+                    char valor = arreglo.valores[i];
+                    long antes = resultado[valor >>> 6];
+                    resultado[valor >>> 6] = antes | (1L << valor);
+                    if (antes != resultado[valor >>> 6]) {
+                        n++;
+                    }
+                }
+            } else {
+                long[] otras = ((ContenedorBits) otro).palabras;
+                n = 0;
+                for (int i = 0; i < 1024; i++) {
+                    resultado[i] |= otras[i];
+                    n += Long.bitCount(resultado[i]);
+                }
+            }
+            return new ContenedorBits(resultado, n);
+        }
+
+        @Override
+        Contenedor orEnSitio(Contenedor otro) {
+            if (otro instanceof ContenedorArreglo arreglo) {
+                for (int i = 0; i < arreglo.cantidad; i++) {
+                    agregar(arreglo.valores[i]);
+                }
+            } else {
+                long[] otras = ((ContenedorBits) otro).palabras;
+                int n = 0;
+                for (int i = 0; i < 1024; i++) {
+                    palabras[i] |= otras[i];
+                    n += Long.bitCount(palabras[i]);
+                }
+                cantidad = n;
+            }
+            return this;
+        }
+
+        @Override
+        Contenedor andNot(Contenedor otro) {
+            long[] resultado = palabras.clone();
+            int n;
+            if (otro instanceof ContenedorArreglo arreglo) {
+                n = cantidad;
+                for (int i = 0; i < arreglo.cantidad; i++) {
+                    char valor = arreglo.valores[i];
+                    long antes = resultado[valor >>> 6];
+                    resultado[valor >>> 6] = antes & ~(1L << valor);
+                    if (antes != resultado[valor >>> 6]) {
+                        n--;
+                    }
+                }
+            } else {
+                long[] otras = ((ContenedorBits) otro).palabras;
+                n = 0;
+                for (int i = 0; i < 1024; i++) {
+                    resultado[i] &= ~otras[i];
+                    n += Long.bitCount(resultado[i]);
+                }
+            }
+            return normalizar(resultado, n);
+        }
+
+        @Override
+        Contenedor copia() {
+            return new ContenedorBits(palabras.clone(), cantidad);
+        }
+
+        @Override
+        int bytes() {
+            return 16 + 1024 * 8;
+        }
+
+        @Override
+        int volcar(long base, long[] destino, int pos) {
+            for (int i = 0; i < 1024; i++) {
+                long palabra = palabras[i];
+                while (palabra != 0) {
+                    destino[pos++] = base | ((long) i << 6) | Long.numberOfTrailingZeros(palabra);
+                    palabra &= palabra - 1;
+                }
+            }
+            return pos;
+        }
+
+        private ContenedorArreglo aArregloContenedor() {
+            char[] valores = new char[Math.max(1, cantidad)];
+            int n = 0;
+            for (int i = 0; i < 1024; i++) {
+                long palabra = palabras[i];
+                while (palabra != 0) {
+                    valores[n++] = (char) ((i << 6) | Long.numberOfTrailingZeros(palabra));
+                    palabra &= palabra - 1;
+                }
+            }
+            return new ContenedorArreglo(valores, n);
+        }
+
+        // Los resultados chicos pasan a arreglo
+        private static Contenedor normalizar(long[] palabras, int cantidad) {
+            ContenedorBits bits = new ContenedorBits(palabras, cantidad);
+            return cantidad <= LIMITE_ARREGLO ? bits.aArregloContenedor() : bits;
+        }
+    }
+}
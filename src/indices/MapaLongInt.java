@@ -0,0 +1,108 @@
+/*
+ * Mapa long → int de direccionamiento abierto (sondeo lineal) sobre dos arreglos
+ * primitivos: sin objetos Long/Integer ni nodos por entrada como un HashMap<Long, Integer>.
+ * Las claves deben ser mayores a 0 (el 0 marca las posiciones libres); no admite borrado,
+ * alcanza para IDs → número de fila de los almacenes en memoria.
+ * No es thread-safe: lo sincroniza quien lo usa.
+ */
+package indices;
+
+import java.util.Arrays;
+
+final class MapaLongInt {
+
+    static final int AUSENTE = -1;
+
+    private long[] claves;
+    private int[] valores;
+    private int cantidad = 0;
+
+    MapaLongInt(int capacidadInicial) {
+        int capacidad = Integer.highestOneBit(Math.max(16, capacidadInicial * 2 - 1)) << 1;
+        claves = new long[capacidad];
+        valores = new int[capacidad];
+    }
+
+    /**
+     * Valor asociado a la clave, o AUSENTE.
+     */
+    int get(long clave) {
+        return getOrDefault(clave, AUSENTE);
+    }
+
+    /**
+     * Valor asociado a la clave, o el indicado si no está (para valores que pueden ser -1).
+     */
+    int getOrDefault(long clave, int porDefecto) {
+        int mascara = claves.length - 1;
+        for (int i = posicion(clave, mascara); ; i = (i + 1) & mascara) {
+            long actual = claves[i];
+            if (actual == clave) {
+                return valores[i];
+            }
+            if (actual == 0) {
+                return porDefecto;
+            }
+        }
+    }
+
+    /**
+     * Asocia el valor a la clave (reemplaza el anterior si existía).
+     */
+    void put(long clave, int valor) {
+        if (clave <= 0) {
+            throw new IllegalArgumentException("La clave debe ser mayor a 0.");
+        }
+        if ((cantidad + 1) * 4L > claves.length * 3L) { // Factor de carga 0,75
+            agrandar();
+        }
+        int mascara = claves.length - 1;
+        for (int i = posicion(clave, mascara); ; i = (i + 1) & mascara) {
+            if (claves[i] == clave) {
+                valores[i] = valor;
+                return;
+            }
+            if (claves[i] == 0) {
+                claves[i] = clave;
+                valores[i] = valor;
+                cantidad++;
+                return;
+            }
+        }
+    }
+
+    int cantidad() {
+        return cantidad;
+    }
+
+    /**
+     * Bytes ocupados por los arreglos.
+     */
+    long bytes() {
+        return claves.length * 12L;
+    }
+
+    void limpiar() {
+        Arrays.fill(claves, 0);
+        cantidad = 0;
+    }
+
+    private void agrandar() {
+        long[] clavesAnteriores = claves;
+        int[] valoresAnteriores = valores;
+        claves = new long[clavesAnteriores.length * 2];
+        valores = new int[clavesAnteriores.length * 2];
+        cantidad = 0;
+        for (int i = 0; i < clavesAnteriores.length; i++) {
+            if (clavesAnteriores[i] != 0) {
+                put(clavesAnteriores[i], valoresAnteriores[i]);
+            }
+        }
+    }
+
+    // Mezcla los bits del ID (los IDs consecutivos no deben caer en posiciones consecutivas)
+    private static int posicion(long clave, int mascara) {
+        long h = clave * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mascara;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Tokenizador para textos clínicos en español.
+ * Pasa a minúsculas, pliega acentos y diéresis (á → a, ü → u, ñ → n, como escribe la
+ * mayoría de los usuarios al buscar), separa por cualquier carácter que no sea letra o
+ * dígito y descarta las palabras vacías más comunes del español.
+ */
+package indices;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+public final class TokenizadorEspanol {
+
+    // Longitud mínima de un término indexable
+    private static final int LONGITUD_MINIMA = 2;
+
+    private static final Set<String> PALABRAS_VACIAS = Set.of(
+            "a", "al", "ante", "con", "contra", "de", "del", "desde", "e", "el", "en", "entre", "es",
+            "esta", "este", "hacia", "la", "las", "le", "les", "lo", "los", "mas", "muy", "ni", "o",
+            "para", "pero", "por", "que", "se", "segun", "sin", "sobre", "su", "sus", "tras", "u",
+            "un", "una", "uno", "unos", "unas", "y", "ya");
+
+    /**
+     * Constructor privado, no se puede instanciar
+     */
+    private TokenizadorEspanol() {
+        throw new UnsupportedOperationException("Esta clase no se puede instanciar.");
+    }
+
+    /**
+     * Separa el texto en términos normalizados (puede haber repetidos, en orden de aparición).
+     *
+     * @param texto Texto a tokenizar (puede ser null).
+     * @return Lista de términos.
+     */
+    public static List<String> tokenizar(String texto) {
+        List<String> terminos = new ArrayList<>();
+        if (texto == null || texto.isEmpty()) {
+            return terminos;
+        }
+        String plegado = plegar(texto);
+        int inicio = -1;
+        for (int i = 0; i <= plegado.length(); i++) {
+            boolean letra = i < plegado.length() && Character.isLetterOrDigit(plegado.charAt(i));
+            if (letra && inicio < 0) {
+                inicio = i;
+            } else if (!letra && inicio >= 0) {
+                agregar(terminos, plegado.substring(inicio, i));
+                inicio = -1;
+            }
+        }
+        return terminos;
+    }
+
+    /**
+     * Minúsculas y sin marcas diacríticas ("Insuficiencia RENAL, Niño" → "insuficiencia renal, nino").
+     */
+    static String plegar(String texto) {
+        String descompuesto = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(descompuesto.length());
+        for (int i = 0; i < descompuesto.length(); i++) {
+            char c = descompuesto.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                sb.append(c);
+            }
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static void agregar(List<String> terminos, String termino) {
+        if (termino.length() >= LONGITUD_MINIMA && !PALABRAS_VACIAS.contains(termino)) {
+            terminos.add(termino);
+        }
+    }
+}
@@ -9,27 +9,57 @@
  */
 package main;
 
+import config.DatabaseConnection;
+import config.TransaccionConReintentos;
 import services.PacienteService;
 import services.HistoriaClinicaService;
+import services.EstadisticasService;
+import services.IndiceTextoService;
+import services.AnaliticaPacientesService;
+import services.CompatibilidadSanguineaService;
+import services.ArchivadoService;
+import services.MutacionMasivaService;
+import dao.FiltroPaciente;
+import dao.Pagina;
 import entities.Paciente;
+import entities.PacienteResumen;
 import entities.HistoriaClinica;
+import entities.HistoriaClinicaResumen;
+import entities.HistoriaClinicaConPaciente;
 import entities.TipoSangre;
+import indices.AlmacenColumnarPacientes;
+import indices.IndiceInvertido;
 
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.format.DateTimeParseException;
+import java.util.BitSet;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 public class AppMenu {
     
+    // Resultados por página en las búsquedas
+    private static final int TAMANIO_PAGINA_BUSQUEDA = 20;
+    
     private Scanner scanner;
     private PacienteService pacienteService;
     private HistoriaClinicaService historiaClinicaService;
+    private EstadisticasService estadisticasService;
+    private CompatibilidadSanguineaService compatibilidadService;
+    private ArchivadoService archivadoService;
+    private MutacionMasivaService mutacionMasivaService;
     
     public AppMenu() {
         this.scanner = new Scanner(System.in);
         this.pacienteService = new PacienteService();
         this.historiaClinicaService = new HistoriaClinicaService();
+        this.estadisticasService = new EstadisticasService();
+        this.compatibilidadService = new CompatibilidadSanguineaService();
+        this.archivadoService = new ArchivadoService();
+        this.mutacionMasivaService = new MutacionMasivaService();
     }
     
     public void iniciar() {
@@ -51,6 +81,12 @@ public class AppMenu {
                     case "3":
                         mostrarEstadisticas();
                         break;
+                    case "4":
+                        mostrarReporteDemografico();
+                        break;
+                    case "5":
+                        archivarEliminados();
+                        break;
                     case "0":
                         salir = true;
                         System.out.println("¡Hasta luego!");
@@ -71,6 +107,8 @@ public class AppMenu {
         System.out.println("1. Gestión de Pacientes");
         System.out.println("2. Gestión de Historias Clínicas");
         System.out.println("3. Estadísticas del Sistema");
+        System.out.println("4. Reporte demográfico (pirámide de edades y altas)");
+        System.out.println("5. Archivar eliminados antiguos");
         System.out.println("0. Salir");
         System.out.print("Seleccione una opción: ");
     }
@@ -89,6 +127,11 @@ public class AppMenu {
             System.out.println("6. Buscar Paciente por DNI");
             System.out.println("7. Listar todos los Pacientes");
             System.out.println("8. Listar Pacientes eliminados");
+            System.out.println("9. Buscar Pacientes por apellido/nombre");
+            System.out.println("10. Reporte: filtrar Pacientes por edad, grupo sanguíneo y datos clínicos");
+            System.out.println("11. Conteo rápido por grupo sanguíneo y edad");
+            System.out.println("12. Buscar donantes compatibles para un receptor");
+            System.out.println("13. Eliminar/recuperar Pacientes en masa por criterios");
             System.out.println("0. Volver al Menú Principal");
             System.out.print("Seleccione una opción: ");
             
@@ -119,6 +162,21 @@ public class AppMenu {
                 case "8":
                     listarPacientesEliminados();
                     break;
+                case "9":
+                    buscarPacientesPorNombre();
+                    break;
+                case "10":
+                    filtrarPacientes();
+                    break;
+                case "11":
+                    contarPorGrupoYEdad();
+                    break;
+                case "12":
+                    buscarDonantesCompatibles();
+                    break;
+                case "13":
+                    mutacionMasivaPacientes();
+                    break;
                 case "0":
                     volver = true;
                     break;
@@ -256,8 +314,8 @@ public class AppMenu {
         Long id = Long.parseLong(scanner.nextLine().trim());
         
         // Verificar que existe entre los eliminados
-        List<Paciente> eliminados = pacienteService.getAllDeleted();
-        boolean encontrado = eliminados.stream().anyMatch(p -> p.getId() == id);
+        List<PacienteResumen> eliminados = pacienteService.getAllDeletedResumen();
+        boolean encontrado = eliminados.stream().anyMatch(p -> p.id() == id);
         
         if (!encontrado) {
             System.out.println("❌ No se encontró paciente eliminado con ID: " + id);
@@ -304,6 +362,8 @@ public class AppMenu {
             System.out.println(paciente);
             if (paciente.getHistoriaClinica() != null) {
                 System.out.println("Historia Clínica asociada: " + paciente.getHistoriaClinica());
+                historiaClinicaService.cargarTextos(List.of(paciente.getHistoriaClinica()));
+                mostrarTextos(paciente.getHistoriaClinica());
             }
         } else {
             System.out.println("❌ No se encontró paciente con DNI: " + dni);
@@ -313,17 +373,253 @@ public class AppMenu {
         scanner.nextLine();
     }
     
+    private void buscarPacientesPorNombre() throws Exception {
+        System.out.println("\n--- BUSCAR PACIENTES POR APELLIDO/NOMBRE ---");
+        
+        System.out.print("Apellido y/o nombre (o su comienzo): ");
+        String texto = scanner.nextLine().trim();
+        
+        boolean aproximada = false;
+        int pagina = 0;
+        while (true) {
+            Pagina<PacienteResumen> resultados = aproximada
+                    ? pacienteService.buscarAproximado(texto, pagina, TAMANIO_PAGINA_BUSQUEDA)
+                    : pacienteService.buscarPorNombre(texto, pagina, TAMANIO_PAGINA_BUSQUEDA);
+            
+            if (resultados.vacia() && pagina == 0) {
+                if (aproximada) {
+                    System.out.println("❌ No se encontraron pacientes para: " + texto);
+                    break;
+                }
+                // Sin coincidencias exactas: se prueba tolerando errores de tipeo
+                aproximada = true;
+                System.out.println("Sin coincidencias por prefijo, buscando nombres parecidos...");
+                continue;
+            }
+            
+            System.out.println((aproximada ? "¿Quiso decir? " : "") + "Página " + (pagina + 1) + ":");
+            for (PacienteResumen p : resultados.elementos()) {
+                System.out.println("  " + p);
+            }
+            
+            if (!resultados.haySiguiente()) {
+                if (resultados.truncada()) {
+                    System.out.println("⚠️ Hay más nombres parecidos que no se muestran. Refine la búsqueda.");
+                }
+                break;
+            }
+            System.out.print("Enter para ver más, 0 para terminar: ");
+            if (scanner.nextLine().trim().equals("0")) {
+                break;
+            }
+            pagina++;
+        }
+        
+        System.out.println("Presione Enter para continuar...");
+        scanner.nextLine();
+    }
+    
+    private void filtrarPacientes() throws Exception {
+        System.out.println("\n--- REPORTE: FILTRAR PACIENTES ---");
+        System.out.println("Deje vacío cualquier criterio para no filtrar por él.");
+        FiltroPaciente filtro = FiltroPaciente.nuevo().ordenadoPorApellido();
+        capturarCriterios(filtro);
+        
+        System.out.println("Filtro: " + filtro);
+        long cantidad = pacienteService.recorrerPorFiltro(filtro, p -> System.out.println("  " + p));
+        System.out.println(cantidad == 0 ? "❌ Ningún paciente cumple los criterios." : "Total: " + cantidad + " paciente(s).");
+        
+        System.out.println("Presione Enter para continuar...");
+        scanner.nextLine();
+    }
+    
+    private void mutacionMasivaPacientes() throws Exception {
+        System.out.println("\n--- ELIMINAR / RECUPERAR PACIENTES EN MASA ---");
+        System.out.print("Operación: 1 = eliminar, 2 = recuperar: ");
+        String opcion = scanner.nextLine().trim();
+        MutacionMasivaService.Operacion operacion;
+        if (opcion.equals("1")) {
+            operacion = MutacionMasivaService.Operacion.ELIMINAR;
+        } else if (opcion.equals("2")) {
+            operacion = MutacionMasivaService.Operacion.RECUPERAR;
+        } else {
+            System.out.println("❌ Opción inválida.");
+            return;
+        }
+        
+        System.out.println("Deje vacío cualquier criterio para no filtrar por él.");
+        FiltroPaciente filtro = FiltroPaciente.nuevo().estado(operacion.getEstadoOrigen());
+        capturarCriterios(filtro);
+        Boolean conHistoria = leerSiNo("¿Con Historia Clínica activa? (s/n): ");
+        if (conHistoria != null) {
+            filtro.conHistoriaClinica(conHistoria);
+        }
+        System.out.print("Reanudar desde el ID (vacío = desde el principio): ");
+        String desde = scanner.nextLine().trim();
+        long desdeId = desde.isEmpty() ? 1 : Long.parseLong(desde);
+        
+        long cantidad = pacienteService.contarPorFiltro(filtro);
+        System.out.println("Filtro: " + filtro);
+        if (cantidad == 0) {
+            System.out.println("❌ Ningún paciente cumple los criterios.");
+            return;
+        }
+        System.out.print("Se aplicará " + operacion + " a " + cantidad + " paciente(s). ¿Continuar? (s/n): ");
+        if (!scanner.nextLine().trim().equalsIgnoreCase("s")) {
+            System.out.println("Operación cancelada.");
+            return;
+        }
+        
+        MutacionMasivaService.Resultado resultado = mutacionMasivaService.ejecutar(operacion, filtro, desdeId, (lote, idMaximo) ->
+                System.out.printf("  Lote %d: IDs %d-%d de %d, %d paciente(s) (%d ms)%n", lote.numero(), lote.idDesde(),
+                        lote.idHasta(), idMaximo, lote.afectados(), lote.duracion().toMillis()));
+        System.out.println("✅ " + resultado);
+        
+        System.out.println("Presione Enter para continuar...");
+        scanner.nextLine();
+    }
+    
+    // Criterios comunes del reporte y de las operaciones masivas
+    private void capturarCriterios(FiltroPaciente filtro) {
+        System.out.print("Edad mínima: ");
+        String edadMinima = scanner.nextLine().trim();
+        if (!edadMinima.isEmpty()) {
+            filtro.edadMinima(Integer.parseInt(edadMinima));
+        }
+        System.out.print("Edad máxima: ");
+        String edadMaxima = scanner.nextLine().trim();
+        if (!edadMaxima.isEmpty()) {
+            filtro.edadMaxima(Integer.parseInt(edadMaxima));
+        }
+        System.out.print("Grupos sanguíneos separados por coma (ej: O-,A-): ");
+        String grupos = scanner.nextLine().trim();
+        if (!grupos.isEmpty()) {
+            String[] valores = grupos.split(",");
+            TipoSangre[] tipos = new TipoSangre[valores.length];
+            for (int i = 0; i < valores.length; i++) {
+                tipos[i] = HistoriaClinicaService.parseTipoSangre(valores[i].trim());
+            }
+            filtro.grupoSanguineo(tipos);
+        }
+        System.out.print("Apellido (comienzo): ");
+        String apellido = scanner.nextLine().trim();
+        if (!apellido.isEmpty()) {
+            filtro.apellidoEmpiezaCon(apellido);
+        }
+        Boolean conMedicacion = leerSiNo("¿Con medicación actual registrada? (s/n): ");
+        if (conMedicacion != null) {
+            filtro.conMedicacion(conMedicacion);
+        }
+        Boolean conAntecedentes = leerSiNo("¿Con antecedentes registrados? (s/n): ");
+        if (conAntecedentes != null) {
+            filtro.conAntecedentes(conAntecedentes);
+        }
+    }
+    
+    private void contarPorGrupoYEdad() throws Exception {
+        System.out.println("\n--- CONTEO RÁPIDO DE PACIENTES ACTIVOS ---");
+        AnaliticaPacientesService analitica = AnaliticaPacientesService.getInstancia();
+        if (!analitica.isListo()) {
+            System.out.println("⚠️ Las estadísticas en memoria todavía se están cargando. Use el reporte (opción 10).");
+            return;
+        }
+        
+        System.out.print("Grupos sanguíneos separados por coma (vacío = todos): ");
+        String grupos = scanner.nextLine().trim();
+        EnumSet<TipoSangre> tipos = EnumSet.noneOf(TipoSangre.class);
+        if (!grupos.isEmpty()) {
+            for (String valor : grupos.split(",")) {
+                tipos.add(HistoriaClinicaService.parseTipoSangre(valor.trim()));
+            }
+        }
+        System.out.print("Edad mínima (vacío = sin mínimo): ");
+        String minima = scanner.nextLine().trim();
+        System.out.print("Edad máxima (vacío = sin máximo): ");
+        String maxima = scanner.nextLine().trim();
+        
+        long inicio = System.nanoTime();
+        long cantidad = analitica.getMapas().contar(tipos,
+                minima.isEmpty() ? null : Integer.valueOf(minima),
+                maxima.isEmpty() ? null : Integer.valueOf(maxima),
+                LocalDate.now());
+        long micros = (System.nanoTime() - inicio) / 1_000;
+        System.out.println("Pacientes activos: " + cantidad + " (" + micros + " µs)");
+        
+        System.out.println("Presione Enter para continuar...");
+        scanner.nextLine();
+    }
+    
+    private void buscarDonantesCompatibles() throws Exception {
+        System.out.println("\n--- DONANTES COMPATIBLES ---");
+        if (!AnaliticaPacientesService.getInstancia().isListo()) {
+            System.out.println("⚠️ Las estadísticas en memoria todavía se están cargando. Intente en unos segundos.");
+            return;
+        }
+        
+        System.out.print("Grupo sanguíneo del receptor (ej: A+): ");
+        TipoSangre receptor = HistoriaClinicaService.parseTipoSangre(scanner.nextLine().trim());
+        System.out.print("Edad mínima del donante (vacío = 18): ");
+        String minima = scanner.nextLine().trim();
+        System.out.print("Edad máxima del donante (vacío = 65): ");
+        String maxima = scanner.nextLine().trim();
+        Integer edadMinima = minima.isEmpty() ? 18 : Integer.valueOf(minima);
+        Integer edadMaxima = maxima.isEmpty() ? 65 : Integer.valueOf(maxima);
+        
+        long inicio = System.nanoTime();
+        Map<TipoSangre, Long> conteo = compatibilidadService.contarDonantes(receptor, edadMinima, edadMaxima);
+        long micros = (System.nanoTime() - inicio) / 1_000;
+        System.out.println("Donantes activos por grupo, en orden de preferencia (" + micros + " µs):");
+        for (Map.Entry<TipoSangre, Long> entrada : conteo.entrySet()) {
+            System.out.println("  " + entrada.getKey() + ": " + entrada.getValue());
+        }
+        
+        int pagina = 0;
+        while (true) {
+            Pagina<CompatibilidadSanguineaService.Donante> donantes =
+                    compatibilidadService.buscarDonantes(receptor, edadMinima, edadMaxima, pagina, TAMANIO_PAGINA_BUSQUEDA);
+            if (donantes.vacia() && pagina == 0) {
+                System.out.println("❌ No hay donantes compatibles con los criterios.");
+                break;
+            }
+            System.out.println("Página " + (pagina + 1) + ":");
+            for (CompatibilidadSanguineaService.Donante d : donantes.elementos()) {
+                System.out.println("  [" + d.grupo() + "] " + d.paciente());
+            }
+            if (!donantes.haySiguiente()) {
+                break;
+            }
+            System.out.print("Enter para ver más, 0 para terminar: ");
+            if (scanner.nextLine().trim().equals("0")) {
+                break;
+            }
+            pagina++;
+        }
+        
+        System.out.println("Presione Enter para continuar...");
+        scanner.nextLine();
+    }
+    
+    // null si se deja vacío
+    private Boolean leerSiNo(String pregunta) {
+        System.out.print(pregunta);
+        String respuesta = scanner.nextLine().trim();
+        if (respuesta.isEmpty()) {
+            return null;
+        }
+        return respuesta.equalsIgnoreCase("s");
+    }
+    
     private void listarPacientes() throws Exception {
         System.out.println("\n--- LISTA DE TODOS LOS PACIENTES ---");
         
-        List<Paciente> pacientes = pacienteService.getAll();
+        List<PacienteResumen> pacientes = pacienteService.getAllResumen();
         long totalEliminados = pacienteService.countDeleted();
         
         if (pacientes.isEmpty()) {
             System.out.println("No hay pacientes activos en el sistema.");
         } else {
             System.out.println("Pacientes activos (" + pacientes.size() + "):");
-            for (Paciente p : pacientes) {
+            for (PacienteResumen p : pacientes) {
                 System.out.println("  " + p);
             }
         }
@@ -337,13 +633,13 @@ public class AppMenu {
     private void listarPacientesEliminados() throws Exception {
         System.out.println("\n--- LISTA DE PACIENTES ELIMINADOS ---");
         
-        List<Paciente> eliminados = pacienteService.getAllDeleted();
+        List<PacienteResumen> eliminados = pacienteService.getAllDeletedResumen();
         
         if (eliminados.isEmpty()) {
             System.out.println("No hay pacientes eliminados en el sistema.");
         } else {
             System.out.println("Pacientes eliminados (" + eliminados.size() + "):");
-            for (Paciente p : eliminados) {
+            for (PacienteResumen p : eliminados) {
                 System.out.println("  " + p);
             }
         }
@@ -365,6 +661,9 @@ public class AppMenu {
             System.out.println("5. Buscar Historia Clínica por ID");
             System.out.println("6. Listar todas las Historias Clínicas");
             System.out.println("7. Listar Historias Clínicas eliminadas");
+            System.out.println("8. Buscar Historia Clínica por número");
+            System.out.println("9. Buscar en antecedentes/medicación/observaciones");
+            System.out.println("10. Búsqueda rápida en textos (índice en memoria)");
             System.out.println("0. Volver al Menú Principal");
             System.out.print("Seleccione una opción: ");
             
@@ -392,6 +691,15 @@ public class AppMenu {
                 case "7":
                     listarHistoriasClinicasEliminadas();
                     break;
+                case "8":
+                    buscarHistoriaClinicaPorNro();
+                    break;
+                case "9":
+                    buscarEnHistoriasClinicas();
+                    break;
+                case "10":
+                    buscarEnIndiceDeTextos();
+                    break;
                 case "0":
                     volver = true;
                     break;
@@ -404,8 +712,9 @@ public class AppMenu {
     private HistoriaClinica capturarDatosHistoriaClinica() {
         HistoriaClinica hc = new HistoriaClinica();
         
-        System.out.print("Número de Historia Clínica: ");
-        hc.setNroHistoria(scanner.nextLine().trim().toUpperCase());
+        System.out.print("Número de Historia Clínica (vacío = automático): ");
+        String nroHistoria = scanner.nextLine().trim().toUpperCase();
+        if (!nroHistoria.isEmpty()) hc.setNroHistoria(nroHistoria);
         
         System.out.print("Grupo Sanguíneo (A+, A-, B+, B-, AB+, AB-, O+, O-): ");
         String grupoSangreStr = scanner.nextLine().trim();
@@ -541,8 +850,8 @@ public class AppMenu {
         Long id = Long.parseLong(scanner.nextLine().trim());
         
         // Verificar que existe entre las eliminadas
-        List<HistoriaClinica> eliminadas = historiaClinicaService.getAllDeleted();
-        boolean encontrada = eliminadas.stream().anyMatch(hc -> hc.getId() == id);
+        List<HistoriaClinicaResumen> eliminadas = historiaClinicaService.getAllDeletedResumen();
+        boolean encontrada = eliminadas.stream().anyMatch(hc -> hc.id() == id);
         
         if (!encontrada) {
             System.out.println("❌ No se encontró historia clínica eliminada con ID: " + id);
@@ -574,17 +883,136 @@ public class AppMenu {
         scanner.nextLine();
     }
     
+    private void buscarHistoriaClinicaPorNro() throws Exception {
+        System.out.println("\n--- BUSCAR HISTORIA CLÍNICA POR NÚMERO ---");
+        
+        System.out.print("Número de historia clínica: ");
+        String nroHistoria = scanner.nextLine().trim().toUpperCase();
+        
+        HistoriaClinica hc = historiaClinicaService.getByNroHistoria(nroHistoria);
+        if (hc != null) {
+            System.out.println("✅ Historia Clínica encontrada:");
+            System.out.println(hc);
+            System.out.println("Paciente asociado: ID " + hc.getPacienteId());
+        } else {
+            System.out.println("❌ No se encontró historia clínica con número: " + nroHistoria);
+        }
+        
+        System.out.println("Presione Enter para continuar...");
+        scanner.nextLine();
+    }
+    
+    private void buscarEnHistoriasClinicas() throws Exception {
+        System.out.println("\n--- BUSCAR EN HISTORIAS CLÍNICAS ---");
+        System.out.println("Todos los términos son obligatorios; use comillas para frases exactas y * al final para prefijos.");
+        
+        System.out.print("Buscar: ");
+        String texto = scanner.nextLine().trim();
+        
+        mostrarBusquedaEnTextos(texto);
+        
+        System.out.println("Presione Enter para continuar...");
+        scanner.nextLine();
+    }
+    
+    // Búsqueda FULLTEXT en la BD, paginada
+    private void mostrarBusquedaEnTextos(String texto) throws Exception {
+        int pagina = 0;
+        while (true) {
+            Pagina<HistoriaClinicaConPaciente> resultados = historiaClinicaService.buscarEnTextos(texto, pagina, TAMANIO_PAGINA_BUSQUEDA);
+            if (resultados.vacia() && pagina == 0) {
+                System.out.println("❌ No se encontraron historias clínicas para: " + texto);
+                break;
+            }
+            
+            System.out.println("Página " + (pagina + 1) + ":");
+            for (HistoriaClinicaConPaciente hc : resultados.elementos()) {
+                System.out.println("  " + hc);
+            }
+            
+            if (!resultados.haySiguiente()) {
+                break;
+            }
+            System.out.print("Enter para ver más, 0 para terminar: ");
+            if (scanner.nextLine().trim().equals("0")) {
+                break;
+            }
+            pagina++;
+        }
+    }
+    
+    private void buscarEnIndiceDeTextos() throws Exception {
+        System.out.println("\n--- BÚSQUEDA RÁPIDA EN HISTORIAS CLÍNICAS ---");
+        IndiceTextoService indice = IndiceTextoService.getInstancia();
+        
+        System.out.print("Buscar (palabras, sin distinguir acentos): ");
+        String texto = scanner.nextLine().trim();
+        
+        if (!indice.isListo()) {
+            System.out.println("⚠️ El índice en memoria todavía se está construyendo; se busca en la base de datos (todos los términos).");
+            mostrarBusquedaEnTextos(texto);
+        } else {
+            System.out.print("¿Deben aparecer todas las palabras? (s/n, por defecto s): ");
+            IndiceInvertido.Operador operador = scanner.nextLine().trim().equalsIgnoreCase("n")
+                    ? IndiceInvertido.Operador.ALGUNO
+                    : IndiceInvertido.Operador.TODOS;
+            
+            int pagina = 0;
+            while (true) {
+                long inicio = System.nanoTime();
+                Pagina<HistoriaClinica> resultados = indice.buscar(texto, operador, pagina, TAMANIO_PAGINA_BUSQUEDA);
+                long micros = (System.nanoTime() - inicio) / 1_000;
+                if (resultados.vacia() && pagina == 0) {
+                    System.out.println("❌ No se encontraron historias clínicas para: " + texto);
+                    break;
+                }
+                
+                System.out.println("Página " + (pagina + 1) + " (" + micros + " µs):");
+                historiaClinicaService.cargarTextos(resultados.elementos());
+                for (HistoriaClinica hc : resultados.elementos()) {
+                    System.out.println("  " + hc + " (paciente ID: " + hc.getPacienteId() + ")");
+                    mostrarTextos(hc);
+                }
+                
+                if (!resultados.haySiguiente()) {
+                    break;
+                }
+                System.out.print("Enter para ver más, 0 para terminar: ");
+                if (scanner.nextLine().trim().equals("0")) {
+                    break;
+                }
+                pagina++;
+            }
+        }
+        
+        System.out.println("Presione Enter para continuar...");
+        scanner.nextLine();
+    }
+    
+    // Antecedentes, medicación y observaciones (la historia debe tener sus textos cargados)
+    private void mostrarTextos(HistoriaClinica hc) {
+        if (hc.getAntecedentes() != null && !hc.getAntecedentes().isEmpty()) {
+            System.out.println("      Antecedentes: " + hc.getAntecedentes());
+        }
+        if (hc.getMedicacionActual() != null && !hc.getMedicacionActual().isEmpty()) {
+            System.out.println("      Medicación actual: " + hc.getMedicacionActual());
+        }
+        if (hc.getObservaciones() != null && !hc.getObservaciones().isEmpty()) {
+            System.out.println("      Observaciones: " + hc.getObservaciones());
+        }
+    }
+    
     private void listarHistoriasClinicas() throws Exception {
         System.out.println("\n--- LISTA DE TODAS LAS HISTORIAS CLÍNICAS ---");
         
-        List<HistoriaClinica> historias = historiaClinicaService.getAll();
+        List<HistoriaClinicaConPaciente> historias = historiaClinicaService.getAllConPaciente();
         long totalEliminadas = historiaClinicaService.countDeleted();
         
         if (historias.isEmpty()) {
             System.out.println("No hay historias clínicas activas en el sistema.");
         } else {
             System.out.println("Historias Clínicas activas (" + historias.size() + "):");
-            for (HistoriaClinica hc : historias) {
+            for (HistoriaClinicaConPaciente hc : historias) {
                 System.out.println("  " + hc);
             }
         }
@@ -598,13 +1026,13 @@ public class AppMenu {
     private void listarHistoriasClinicasEliminadas() throws Exception {
         System.out.println("\n--- LISTA DE HISTORIAS CLÍNICAS ELIMINADAS ---");
         
-        List<HistoriaClinica> eliminadas = historiaClinicaService.getAllDeleted();
+        List<HistoriaClinicaResumen> eliminadas = historiaClinicaService.getAllDeletedResumen();
         
         if (eliminadas.isEmpty()) {
             System.out.println("No hay historias clínicas eliminadas en el sistema.");
         } else {
             System.out.println("Historias Clínicas eliminadas (" + eliminadas.size() + "):");
-            for (HistoriaClinica hc : eliminadas) {
+            for (HistoriaClinicaResumen hc : eliminadas) {
                 System.out.println("  " + hc);
             }
         }
@@ -618,10 +1046,12 @@ public class AppMenu {
     private void mostrarEstadisticas() throws Exception {
         System.out.println("\n--- ESTADÍSTICAS DEL SISTEMA ---");
         
-        long totalPacientes = pacienteService.getAll().size();
-        long pacientesEliminados = pacienteService.countDeleted();
-        long totalHistorias = historiaClinicaService.getAll().size();
-        long historiasEliminadas = historiaClinicaService.countDeleted();
+        // Los contadores se leen de la fila de resumen (sin contar filas)
+        EstadisticasService.ResumenEstadistico resumen = estadisticasService.obtenerResumen();
+        long totalPacientes = resumen.pacientesActivos();
+        long pacientesEliminados = resumen.pacientesEliminados();
+        long totalHistorias = resumen.historiasActivas();
+        long historiasEliminadas = resumen.historiasEliminadas();
         
         System.out.println("📊 RESUMEN ESTADÍSTICO:");
         System.out.println("Pacientes activos: " + totalPacientes);
@@ -634,11 +1064,118 @@ public class AppMenu {
         System.out.println("---");
         
         if (totalPacientes > 0) {
-            double porcentajeConHC = (double) totalHistorias / totalPacientes * 100;
-            System.out.printf("Pacientes con historia clínica: %.1f%%\n", porcentajeConHC);
+            double porcentajeConHC = (double) resumen.pacientesConHistoria() / totalPacientes * 100;
+            System.out.printf("Pacientes con historia clínica: %.1f%% (%d sin historia clínica)\n", porcentajeConHC, resumen.pacientesSinHistoria());
+        }
+        System.out.println("Historias clínicas activas por grupo sanguíneo: " + resumen.historiasPorGrupo());
+        System.out.println("Contadores recalculados por última vez: " + (resumen.reconciliado() != null ? resumen.reconciliado() : "nunca"));
+        System.out.println("---");
+        mostrarDistribucionPacientes();
+        System.out.println("---");
+        System.out.println("Acceso a BD: " + DatabaseConnection.getMetricasAdmision());
+        System.out.println("Estadísticas en memoria: " + AnaliticaPacientesService.getInstancia().getEstadisticas()
+                + ", " + AnaliticaPacientesService.getInstancia().getEstadisticasMapas());
+        IndiceTextoService indiceTextos = IndiceTextoService.getInstancia();
+        System.out.println("Índice de textos clínicos: " + (indiceTextos.isListo() ? indiceTextos.getEstadisticas() : "en construcción"));
+        if (!TransaccionConReintentos.getReintentosPorOperacion().isEmpty()) {
+            System.out.println("Reintentos por deadlock/lock timeout: " + TransaccionConReintentos.getReintentosPorOperacion());
+        }
+        
+        System.out.println("Presione Enter para continuar...");
+        scanner.nextLine();
+    }
+    
+    private void mostrarReporteDemografico() throws Exception {
+        System.out.println("\n--- REPORTE DEMOGRÁFICO ---");
+        System.out.print("Cálculo: 1 = recorrido en paralelo (por defecto), 2 = agregación en la BD: ");
+        boolean enBd = scanner.nextLine().trim().equals("2");
+        
+        long inicio = System.nanoTime();
+        EstadisticasService.Demografia demografia = enBd
+                ? estadisticasService.calcularDemografiaEnBd()
+                : estadisticasService.calcularDemografia();
+        long millis = (System.nanoTime() - inicio) / 1_000_000;
+        
+        long total = demografia.totalPacientes();
+        TipoSangre[] tipos = TipoSangre.values();
+        System.out.println("Pirámide de edades de " + total + " pacientes activos (% por grupo sanguíneo dentro de cada franja):");
+        for (int f = demografia.franjas() - 1; f >= 0; f--) {
+            long enFranja = demografia.totalFranja(f);
+            if (enFranja == 0) {
+                continue;
+            }
+            StringBuilder linea = new StringBuilder(String.format("  %-9s %7d %-25s", demografia.etiquetaFranja(f), enFranja,
+                    "█".repeat((int) Math.round(enFranja * 100.0 / total / 2))));
+            for (TipoSangre tipo : tipos) {
+                linea.append(String.format(" %s:%.0f%%", tipo, demografia.pacientes(f, tipo) * 100.0 / enFranja));
+            }
+            linea.append(String.format(" sin HC:%.0f%%", demografia.pacientes(f, null) * 100.0 / enFranja));
+            System.out.println(linea);
         }
         
+        System.out.println("Altas de pacientes por año:");
+        for (Map.Entry<Integer, Long> entrada : demografia.altasPorAnio().entrySet()) {
+            System.out.println("  " + entrada.getKey() + ": " + entrada.getValue());
+        }
+        System.out.println("Altas de los últimos 12 meses:");
+        YearMonth desde = YearMonth.now().minusMonths(11);
+        for (Map.Entry<YearMonth, Long> entrada : demografia.altasPorMes().tailMap(desde).entrySet()) {
+            System.out.println("  " + entrada.getKey() + ": " + entrada.getValue());
+        }
+        System.out.println("(calculado " + (enBd ? "en la BD" : "en paralelo") + " en " + millis + " ms)");
+        
         System.out.println("Presione Enter para continuar...");
         scanner.nextLine();
     }
+    
+    private void archivarEliminados() throws Exception {
+        System.out.println("\n--- ARCHIVAR ELIMINADOS ---");
+        System.out.println("Se moverán al archivo los pacientes e historias clínicas eliminados hace más de "
+                + ArchivadoService.getRetencionDias() + " días (se pueden seguir recuperando).");
+        System.out.print("¿Continuar? (s/n): ");
+        if (!scanner.nextLine().trim().equalsIgnoreCase("s")) {
+            System.out.println("Operación cancelada.");
+            return;
+        }
+        ArchivadoService.Resultado resultado = archivadoService.archivar();
+        System.out.println("✅ Archivados: " + resultado.pacientes() + " pacientes y " + resultado.historias()
+                + " historias clínicas en " + resultado.lotes() + " lotes (" + resultado.duracion().toMillis() + " ms)");
+        System.out.println("Presione Enter para continuar...");
+        scanner.nextLine();
+    }
+    
+    // Distribución de los pacientes activos por grupo sanguíneo y edad (desde la foto en memoria)
+    private void mostrarDistribucionPacientes() {
+        AnaliticaPacientesService analitica = AnaliticaPacientesService.getInstancia();
+        if (!analitica.isListo()) {
+            System.out.println("Distribución de pacientes: cargando estadísticas en memoria...");
+            return;
+        }
+        AlmacenColumnarPacientes almacen = analitica.getAlmacen();
+        LocalDate hoy = LocalDate.now();
+        long inicio = System.nanoTime();
+        BitSet activos = almacen.filtrar(new AlmacenColumnarPacientes.Filtro(), hoy);
+        long[] porGrupo = almacen.contarPorGrupoSanguineo(activos);
+        long[] porEdad = almacen.contarPorFranjaDeEdad(activos, 10, hoy);
+        double edadPromedio = almacen.edadPromedio(activos, hoy);
+        long micros = (System.nanoTime() - inicio) / 1_000;
+        
+        System.out.println("Pacientes activos por grupo sanguíneo:");
+        TipoSangre[] tipos = TipoSangre.values();
+        for (int i = 0; i < tipos.length; i++) {
+            System.out.println("  " + tipos[i] + ": " + porGrupo[i]);
+        }
+        System.out.println("  Sin historia clínica: " + porGrupo[tipos.length]);
+        System.out.println("Pacientes activos por edad:");
+        for (int k = 0; k < porEdad.length - 1; k++) {
+            if (porEdad[k] > 0) {
+                System.out.println("  " + (k * 10) + "-" + (k * 10 + 9) + " años: " + porEdad[k]);
+            }
+        }
+        System.out.println("  Sin fecha de nacimiento: " + porEdad[porEdad.length - 1]);
+        if (!Double.isNaN(edadPromedio)) {
+            System.out.printf("Edad promedio: %.1f años\n", edadPromedio);
+        }
+        System.out.println("(calculado en memoria en " + micros + " µs)");
+    }
 }
@@ -8,6 +8,12 @@
  * @author A-monardes
  */
 package main;
+
+import services.AnaliticaPacientesService;
+import services.ArchivadoService;
+import services.EstadisticasService;
+import services.IndiceTextoService;
+
 //Clase principal que inicia la aplicación del Sistema de Gestión Hospitalaria.
 public class Main {
     
@@ -18,6 +24,11 @@ public class Main {
     public static void main(String[] args) {
         try {
             System.out.println("🚀 Iniciando Sistema de Gestión Hospitalaria...");
+            // El índice de textos clínicos y las estadísticas en memoria se cargan mientras se usa el menú
+            IndiceTextoService.getInstancia().iniciarCargaEnSegundoPlano();
+            AnaliticaPacientesService.getInstancia().iniciarCargaEnSegundoPlano();
+            EstadisticasService.iniciarReconciliacionPeriodica();
+            ArchivadoService.iniciarArchivadoPeriodico();
             AppMenu appMenu = new AppMenu();
             appMenu.iniciar();
             
@@ -0,0 +1,77 @@
+/*
+ * Acumulador del reporte demográfico (EstadisticasService.calcularDemografia): pirámide
+ * de edades en franjas de 5 años por grupo sanguíneo, y altas por mes.
+ *
+ * Cada partición del recorrido en paralelo llena su propio acumulador, sin sincronizar,
+ * y al final se combinan (combinar). Los contadores son arreglos de long, así que sumar
+ * una fila no crea objetos.
+ */
+package services;
+
+import dao.PacienteDao;
+import entities.TipoSangre;
+
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+final class AcumuladorDemografia implements PacienteDao.AcumuladorDemografico {
+
+    static final int ANCHO_FRANJA = 5;
+    // Franjas 0-4 ... 85-89, luego "90 o más" y "sin fecha de nacimiento"
+    static final int FRANJA_ABIERTA = 90 / ANCHO_FRANJA;
+    static final int SIN_FECHA = FRANJA_ABIERTA + 1;
+    static final int FRANJAS = SIN_FECHA + 1;
+    // Grupos por ordinal de TipoSangre; el último lugar cuenta a los pacientes sin HC activa
+    static final int GRUPOS = TipoSangre.values().length + 1;
+
+    private final long[][] porFranjaYGrupo = new long[FRANJAS][GRUPOS];
+    // Altas por mes (aaaamm); el contador es un long[1] para no crear un Long por fila
+    private final Map<Integer, long[]> altasPorMes = new HashMap<>();
+
+    @Override
+    public void agregarPacientes(int edad, TipoSangre grupo, long cantidad) {
+        int franja = edad < 0 ? SIN_FECHA : Math.min(edad / ANCHO_FRANJA, FRANJA_ABIERTA);
+        porFranjaYGrupo[franja][grupo != null ? grupo.ordinal() : GRUPOS - 1] += cantidad;
+    }
+
+    @Override
+    public void agregarAltas(int anioMes, long cantidad) {
+        altasPorMes.computeIfAbsent(anioMes, mes -> new long[1])[0] += cantidad;
+    }
+
+    /**
+     * Suma los conteos de otro acumulador (otra partición) a este.
+     *
+     * @return Este acumulador.
+     */
+    AcumuladorDemografia combinar(AcumuladorDemografia otro) {
+        for (int f = 0; f < FRANJAS; f++) {
+            for (int g = 0; g < GRUPOS; g++) {
+                porFranjaYGrupo[f][g] += otro.porFranjaYGrupo[f][g];
+            }
+        }
+        for (Map.Entry<Integer, long[]> entrada : otro.altasPorMes.entrySet()) {
+            agregarAltas(entrada.getKey(), entrada.getValue()[0]);
+        }
+        return this;
+    }
+
+    /**
+     * Resultado inmutable del reporte.
+     */
+    EstadisticasService.Demografia resultado() {
+        long[][] copia = new long[FRANJAS][];
+        for (int f = 0; f < FRANJAS; f++) {
+            copia[f] = porFranjaYGrupo[f].clone();
+        }
+        SortedMap<YearMonth, Long> altas = new TreeMap<>();
+        for (Map.Entry<Integer, long[]> entrada : altasPorMes.entrySet()) {
+            int anioMes = entrada.getKey();
+            altas.put(YearMonth.of(anioMes / 100, anioMes % 100), entrada.getValue()[0]);
+        }
+        return new EstadisticasService.Demografia(copia, altas);
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Estadísticas sobre toda la base de pacientes sin consultar MySQL: mantiene una foto
+ * columnar en memoria (indices.AlmacenColumnarPacientes) de paciente + historia_clinica
+ * y los mapas de bits por grupo sanguíneo, borrado lógico y año de nacimiento
+ * (indices.IndiceBitmapPacientes) para los conteos filtrados.
+ *
+ * La foto se carga al iniciar la aplicación, en segundo plano, recorriendo los pacientes
+ * en streaming (PacienteDao.recorrer), y se mantiene al día como ObservadorCambios.
+ * Los cambios que llegan durante la carga se encolan y se aplican al terminarla: cada
+ * evento lleva el estado confirmado, así que aplicarlo después de la foto deja el dato nuevo.
+ */
+package services;
+
+import dao.FiltroPaciente;
+import dao.PacienteDao;
+import entities.HistoriaClinica;
+import entities.Paciente;
+import entities.TipoSangre;
+import indices.AlmacenColumnarPacientes;
+import indices.IndiceBitmapPacientes;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public final class AnaliticaPacientesService implements ObservadorCambios {
+
+    private static final AnaliticaPacientesService INSTANCIA = new AnaliticaPacientesService();
+
+    private final AlmacenColumnarPacientes almacen = new AlmacenColumnarPacientes();
+    private final IndiceBitmapPacientes mapas = new IndiceBitmapPacientes();
+    private final PacienteDao pacienteDao = new PacienteDao();
+    private final AtomicBoolean iniciado = new AtomicBoolean(false);
+    private volatile boolean listo = false;
+
+    // Cambios recibidos durante la carga inicial (protegido por 'this'); null fuera de la carga
+    private List<Runnable> pendientes;
+
+    private AnaliticaPacientesService() {
+    }
+
+    /**
+     * Instancia única (la foto es compartida por toda la aplicación).
+     */
+    public static AnaliticaPacientesService getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Registra el almacén como observador de cambios y lo carga en un hilo de fondo.
+     * Las llamadas siguientes no hacen nada.
+     */
+    public void iniciarCargaEnSegundoPlano() {
+        if (!iniciado.compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (this) {
+            pendientes = new ArrayList<>();
+        }
+        NotificadorCambios.registrar(this);
+        Thread hilo = new Thread(this::cargar, "analitica-pacientes");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Indica si la carga inicial terminó.
+     */
+    public boolean isListo() {
+        return listo;
+    }
+
+    /**
+     * Almacén columnar para filtrar y agrupar.
+     *
+     * @throws IllegalStateException Si todavía se está cargando.
+     */
+    public AlmacenColumnarPacientes getAlmacen() {
+        if (!listo) {
+            throw new IllegalStateException("Las estadísticas en memoria todavía se están cargando.");
+        }
+        return almacen;
+    }
+
+    /**
+     * Mapas de bits para conteos filtrados (grupo sanguíneo, edad, activos).
+     *
+     * @throws IllegalStateException Si todavía se están cargando.
+     */
+    public IndiceBitmapPacientes getMapas() {
+        if (!listo) {
+            throw new IllegalStateException("Las estadísticas en memoria todavía se están cargando.");
+        }
+        return mapas;
+    }
+
+    /**
+     * Tamaño actual del almacén.
+     */
+    public AlmacenColumnarPacientes.Estadisticas getEstadisticas() {
+        return almacen.getEstadisticas();
+    }
+
+    /**
+     * Tamaño actual de los mapas de bits.
+     */
+    public IndiceBitmapPacientes.Estadisticas getEstadisticasMapas() {
+        return mapas.getEstadisticas();
+    }
+
+    // OBSERVADOR DE CAMBIOS
+
+    @Override
+    public void pacienteGuardado(Paciente paciente) {
+        long id = paciente.getId();
+        String nombre = paciente.getNombre();
+        String apellido = paciente.getApellido();
+        LocalDate fechaNacimiento = paciente.getFechaNacimiento();
+        boolean eliminado = paciente.isEliminado();
+        HistoriaClinica historia = paciente.getHistoriaClinica();
+        long historiaId = historia != null ? historia.getId() : 0;
+        TipoSangre grupo = historia != null ? historia.getGrupoSanguineo() : null;
+        boolean historiaEliminada = historia != null && historia.isEliminado();
+        aplicar(() -> {
+            guardarPaciente(id, nombre, apellido, fechaNacimiento, eliminado);
+            if (historiaId > 0) {
+                guardarHistoria(historiaId, id, grupo, historiaEliminada);
+            }
+        });
+    }
+
+    @Override
+    public void pacienteEliminado(long id) {
+        aplicar(() -> {
+            almacen.marcarEliminado(id, true);
+            mapas.marcarEliminado(id, true);
+        });
+    }
+
+    @Override
+    public void pacienteRecuperado(long id) {
+        aplicar(() -> {
+            almacen.marcarEliminado(id, false);
+            mapas.marcarEliminado(id, false);
+        });
+    }
+
+    @Override
+    public void historiaGuardada(HistoriaClinica historia) {
+        long id = historia.getId();
+        long pacienteId = historia.getPacienteId();
+        TipoSangre grupo = historia.getGrupoSanguineo();
+        boolean eliminada = historia.isEliminado();
+        aplicar(() -> guardarHistoria(id, pacienteId, grupo, eliminada));
+    }
+
+    @Override
+    public void historiaEliminada(long id) {
+        aplicar(() -> {
+            long pacienteId = almacen.quitarHistoria(id);
+            if (pacienteId > 0) {
+                mapas.asignarGrupo(pacienteId, null);
+            }
+        });
+    }
+
+    // Actualiza almacén y mapas de bits con los datos de un paciente
+    private void guardarPaciente(long id, String nombre, String apellido, LocalDate fechaNacimiento, boolean eliminado) {
+        almacen.guardarPaciente(id, nombre, apellido, fechaNacimiento, eliminado);
+        mapas.guardarPaciente(id, fechaNacimiento, eliminado);
+    }
+
+    // El almacén resuelve el paciente de la Historia Clínica cuando el evento no lo trae
+    private void guardarHistoria(long historiaId, long pacienteId, TipoSangre grupo, boolean eliminada) {
+        long paciente = almacen.guardarHistoria(historiaId, pacienteId, grupo, eliminada);
+        if (paciente > 0) {
+            mapas.asignarGrupo(paciente, eliminada ? null : grupo);
+        }
+    }
+
+    // Aplica el cambio, o lo encola si la carga inicial está en curso
+    private synchronized void aplicar(Runnable cambio) {
+        if (pendientes != null) {
+            pendientes.add(cambio);
+        } else {
+            cambio.run();
+        }
+    }
+
+    // Carga inicial en streaming (hilo de fondo)
+    private void cargar() {
+        long inicio = System.nanoTime();
+        try {
+            pacienteDao.recorrer(FiltroPaciente.nuevo().estado(FiltroPaciente.Estado.TODOS), paciente -> {
+                guardarPaciente(paciente.getId(), paciente.getNombre(), paciente.getApellido(),
+                        paciente.getFechaNacimiento(), paciente.isEliminado());
+                HistoriaClinica historia = paciente.getHistoriaClinica();
+                if (historia != null) {
+                    guardarHistoria(historia.getId(), paciente.getId(), historia.getGrupoSanguineo(), historia.isEliminado());
+                }
+            });
+            synchronized (this) {
+                for (Runnable cambio : pendientes) {
+                    cambio.run();
+                }
+                pendientes = null;
+            }
+            listo = true;
+            System.out.println("📈 Estadísticas en memoria listas en " + (System.nanoTime() - inicio) / 1_000_000 + " ms: " + almacen.getEstadisticas() + ", " + mapas.getEstadisticas());
+        } catch (SQLException | RuntimeException e) {
+            synchronized (this) {
+                pendientes = null; // El almacén queda incompleto y sin usar (listo = false)
+            }
+            System.err.println("❌ No se pudieron cargar las estadísticas en memoria: " + e.getMessage());
+        }
+    }
+}
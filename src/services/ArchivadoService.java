@@ -0,0 +1,174 @@
+/*
+ * Archivado de eliminados: mueve a paciente_archivo / historia_clinica_archivo los
+ * pacientes e historias clínicas eliminados lógicamente hace más de archivo.retencionDias
+ * (por defecto 365), para que no sigan ocupando los índices de las tablas principales ni
+ * los recorridos "WHERE eliminado = FALSE".
+ *
+ * Se trabaja en lotes chicos (archivo.tamanioLote filas), cada uno en su propia transacción
+ * corta que bloquea solo sus filas, con una pausa entre lotes (archivo.pausaMs, o lo que
+ * tardó el lote si fue más: cuanto más cargada está la BD, más espacio se le deja al resto).
+ * La recuperación sigue funcionando igual: PacienteDao/HistoriaClinicaDao.recuperar buscan
+ * también en el archivo.
+ */
+package services;
+
+import config.TransaccionConReintentos;
+import dao.ArchivoDao;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
+
+public class ArchivadoService {
+
+    /**
+     * Resultado de una pasada de archivado.
+     *
+     * @param historias Historias Clínicas archivadas (con sus pacientes o solas).
+     */
+    public record Resultado(long pacientes, long historias, int lotes, Duration duracion) {
+
+        @Override
+        public String toString() {
+            return String.format("Archivado{pacientes=%d, historias=%d, lotes=%d, duración=%d ms}",
+                    pacientes, historias, lotes, duracion.toMillis());
+        }
+    }
+
+    private static final long RETENCION_DIAS = Long.getLong("archivo.retencionDias", 365);
+    private static final int TAMANIO_LOTE = Integer.getInteger("archivo.tamanioLote", 500);
+    private static final long PAUSA_MS = Long.getLong("archivo.pausaMs", 200);
+
+    // Archivado periódico
+    private static final long INTERVALO_HORAS = Long.getLong("archivo.intervaloHoras", 24);
+    private static final AtomicBoolean ARCHIVADO_INICIADO = new AtomicBoolean(false);
+    // Una sola pasada a la vez (la periódica y la pedida desde el menú)
+    private static final AtomicBoolean EN_CURSO = new AtomicBoolean(false);
+
+    private final ArchivoDao archivoDao;
+
+    public ArchivadoService() {
+        this.archivoDao = new ArchivoDao();
+    }
+
+    /**
+     * Programa el archivado: la primera pasada a la hora de iniciar (en un hilo de fondo) y
+     * luego cada archivo.intervaloHoras horas. Las llamadas siguientes no hacen nada.
+     */
+    public static void iniciarArchivadoPeriodico() {
+        if (!ARCHIVADO_INICIADO.compareAndSet(false, true)) {
+            return;
+        }
+        ScheduledExecutorService programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "archivado-eliminados");
+            t.setDaemon(true);
+            return t;
+        });
+        ArchivadoService servicio = new ArchivadoService();
+        programador.scheduleWithFixedDelay(() -> {
+            try {
+                Resultado resultado = servicio.archivar();
+                if (resultado.lotes() > 0) {
+                    System.out.println("🗄️ " + resultado);
+                }
+            } catch (Exception e) {
+                // Lo que quedó sin archivar se toma en la próxima ejecución
+                System.err.println("❌ No se pudo archivar los eliminados: " + e.getMessage());
+            }
+        }, TimeUnit.HOURS.toMinutes(1), TimeUnit.HOURS.toMinutes(INTERVALO_HORAS), TimeUnit.MINUTES);
+    }
+
+    /**
+     * Archiva todo lo eliminado hace más del período de retención: primero los pacientes
+     * (con sus historias clínicas) y después las historias eliminadas sueltas, en lotes con
+     * pausa entre uno y otro.
+     *
+     * @return Cantidades archivadas.
+     * @throws IllegalStateException Si ya hay una pasada en curso.
+     * @throws Exception Si hay error de BD (lo archivado en los lotes anteriores queda archivado).
+     */
+    public Resultado archivar() throws Exception {
+        if (!EN_CURSO.compareAndSet(false, true)) {
+            throw new IllegalStateException("Ya hay un archivado en curso");
+        }
+        long inicio = System.nanoTime();
+        LocalDateTime limite = LocalDateTime.now().minusDays(RETENCION_DIAS);
+        long pacientes = 0;
+        long historias = 0;
+        int lotes = 0;
+        try {
+            while (true) {
+                long inicioLote = System.nanoTime();
+                List<Long> candidatos = archivoDao.candidatosPacientes(limite, TAMANIO_LOTE);
+                if (candidatos.isEmpty()) {
+                    break;
+                }
+                ArchivoDao.Archivados archivados = TransaccionConReintentos.ejecutar("archivo.pacientes",
+                        tm -> archivoDao.archivarPacientes(tm.getConnection(), candidatos, limite));
+                pacientes += archivados.pacientes();
+                historias += archivados.historias();
+                lotes++;
+                notificarArchivados(archivados.ids(), NotificadorCambios::pacienteEliminado);
+                if (candidatos.size() < TAMANIO_LOTE) {
+                    break;
+                }
+                pausar(inicioLote);
+            }
+            while (true) {
+                long inicioLote = System.nanoTime();
+                List<Long> candidatas = archivoDao.candidatasHistorias(limite, TAMANIO_LOTE);
+                if (candidatas.isEmpty()) {
+                    break;
+                }
+                List<Long> archivadas = TransaccionConReintentos.ejecutar("archivo.historias",
+                        tm -> archivoDao.archivarHistorias(tm.getConnection(), candidatas, limite));
+                historias += archivadas.size();
+                lotes++;
+                notificarArchivados(archivadas, NotificadorCambios::historiaEliminada);
+                if (candidatas.size() < TAMANIO_LOTE) {
+                    break;
+                }
+                pausar(inicioLote);
+            }
+            return new Resultado(pacientes, historias, lotes, Duration.ofNanos(System.nanoTime() - inicio));
+        } catch (SQLException e) {
+            throw new Exception("Error al archivar eliminados (" + pacientes + " pacientes y " + historias
+                    + " historias ya archivados): " + e.getMessage(), e);
+        } finally {
+            EN_CURSO.set(false);
+        }
+    }
+
+    // Después del commit de cada lote: las lecturas coalescidas y las estructuras en memoria
+    // (AnaliticaPacientesService, IndiceTextoService) dejan de tratar esas filas como vigentes.
+    // La recuperación desde el archivo publica la fila completa (PacienteService.notificarRecuperado
+    // y HistoriaClinicaService.notificarRecuperada).
+    private static void notificarArchivados(List<Long> ids, LongConsumer notificacion) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        PacienteService.invalidarLecturas();
+        for (long id : ids) {
+            notificacion.accept(id);
+        }
+    }
+
+    // Pausa entre lotes: archivo.pausaMs, o lo que tardó el lote si fue más
+    private static void pausar(long inicioLote) throws InterruptedException {
+        long duracionMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicioLote);
+        Thread.sleep(Math.max(PAUSA_MS, duracionMs));
+    }
+
+    /**
+     * Período de retención: se archiva lo eliminado hace más de esta cantidad de días.
+     */
+    public static long getRetencionDias() {
+        return RETENCION_DIAS;
+    }
+}
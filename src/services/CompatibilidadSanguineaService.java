@@ -0,0 +1,166 @@
+/*
+ * Búsqueda de donantes compatibles para un receptor: pacientes activos cuyo grupo
+ * sanguíneo (Historia Clínica activa) es compatible ABO/Rh con el del receptor,
+ * opcionalmente filtrados por edad.
+ *
+ * La compatibilidad está precalculada como máscara de bits en TipoSangre, y los pacientes
+ * de cada grupo salen de los mapas de bits de AnaliticaPacientesService: la búsqueda es la
+ * unión de a lo sumo 8 mapas, sin recorrer la tabla. Solo se va a la BD para leer los
+ * pacientes de la página pedida.
+ */
+package services;
+
+import dao.Pagina;
+import dao.PacienteDao;
+import dao.ResultadoLectura;
+import entities.Paciente;
+import entities.TipoSangre;
+import indices.IndiceBitmapPacientes;
+import indices.MapaDeBits;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CompatibilidadSanguineaService {
+
+    private static final int MAX_TAMANIO_PAGINA = 100;
+
+    /**
+     * Un donante con el grupo sanguíneo por el que resultó compatible.
+     */
+    public record Donante(Paciente paciente, TipoSangre grupo) {
+    }
+
+    private final PacienteDao pacienteDao;
+
+    public CompatibilidadSanguineaService() {
+        this.pacienteDao = new PacienteDao();
+    }
+
+    /**
+     * Grupos que pueden donar al receptor, en orden de preferencia: primero los que sirven
+     * a menos receptores (el mismo grupo del receptor antes que O-, que conviene reservar
+     * porque es el único que sirve para todos).
+     *
+     * @param receptor Grupo sanguíneo del receptor.
+     * @return Grupos compatibles ordenados.
+     */
+    public List<TipoSangre> gruposDonantes(TipoSangre receptor) {
+        if (receptor == null) {
+            throw new IllegalArgumentException("El grupo sanguíneo del receptor no puede ser nulo");
+        }
+        List<TipoSangre> grupos = new ArrayList<>(receptor.donantesCompatibles());
+        grupos.sort(Comparator.comparingInt(TipoSangre::cantidadReceptores)
+                .thenComparing(grupo -> grupo != receptor)
+                .thenComparingInt(TipoSangre::ordinal));
+        return grupos;
+    }
+
+    /**
+     * IDs de todos los donantes activos compatibles (unión de los grupos compatibles).
+     *
+     * @param receptor Grupo sanguíneo del receptor.
+     * @param edadMinima Edad mínima del donante (null: sin mínimo).
+     * @param edadMaxima Edad máxima del donante (null: sin máximo).
+     * @throws IllegalStateException Si los mapas de bits todavía se están cargando.
+     */
+    public MapaDeBits donantesCompatibles(TipoSangre receptor, Integer edadMinima, Integer edadMaxima) {
+        if (receptor == null) {
+            throw new IllegalArgumentException("El grupo sanguíneo del receptor no puede ser nulo");
+        }
+        return mapas().seleccionar(receptor.donantesCompatibles(), edadMinima, edadMaxima, LocalDate.now());
+    }
+
+    /**
+     * Cantidad de donantes activos compatibles por grupo, en orden de preferencia.
+     *
+     * @throws IllegalStateException Si los mapas de bits todavía se están cargando.
+     */
+    public Map<TipoSangre, Long> contarDonantes(TipoSangre receptor, Integer edadMinima, Integer edadMaxima) {
+        IndiceBitmapPacientes mapas = mapas();
+        LocalDate hoy = LocalDate.now();
+        Map<TipoSangre, Long> conteo = new LinkedHashMap<>();
+        for (TipoSangre grupo : gruposDonantes(receptor)) {
+            conteo.put(grupo, mapas.contar(EnumSet.of(grupo), edadMinima, edadMaxima, hoy));
+        }
+        return conteo;
+    }
+
+    /**
+     * Página de donantes activos compatibles, ordenados por preferencia de grupo
+     * (ver gruposDonantes) y, dentro de cada grupo, por ID.
+     *
+     * @param receptor Grupo sanguíneo del receptor.
+     * @param edadMinima Edad mínima del donante (null: sin mínimo).
+     * @param edadMaxima Edad máxima del donante (null: sin máximo).
+     * @param pagina Número de página (desde 0).
+     * @param tamanio Cantidad de donantes por página (1 a 100).
+     * @throws IllegalStateException Si los mapas de bits todavía se están cargando.
+     * @throws Exception Si hay error de BD al leer los pacientes.
+     */
+    public Pagina<Donante> buscarDonantes(TipoSangre receptor, Integer edadMinima, Integer edadMaxima, int pagina, int tamanio) throws Exception {
+        if (pagina < 0 || tamanio <= 0 || tamanio > MAX_TAMANIO_PAGINA) {
+            throw new IllegalArgumentException("Página o tamaño de página inválido (máximo " + MAX_TAMANIO_PAGINA + ")");
+        }
+        IndiceBitmapPacientes mapas = mapas();
+        LocalDate hoy = LocalDate.now();
+
+        // Se saltean grupos enteros por cardinalidad; solo se materializan los IDs del grupo donde cae la página
+        long saltear = (long) pagina * tamanio;
+        List<Long> ids = new ArrayList<>(tamanio);
+        List<TipoSangre> gruposDeIds = new ArrayList<>(tamanio);
+        boolean haySiguiente = false;
+        for (TipoSangre grupo : gruposDonantes(receptor)) {
+            if (ids.size() == tamanio) {
+                if (mapas.contar(EnumSet.of(grupo), edadMinima, edadMaxima, hoy) > 0) {
+                    haySiguiente = true;
+                    break;
+                }
+                continue;
+            }
+            MapaDeBits delGrupo = mapas.seleccionar(EnumSet.of(grupo), edadMinima, edadMaxima, hoy);
+            long cantidad = delGrupo.cardinalidad();
+            if (saltear >= cantidad) {
+                saltear -= cantidad;
+                continue;
+            }
+            long[] delGrupoIds = delGrupo.aArreglo();
+            int i = (int) saltear;
+            for (; i < delGrupoIds.length && ids.size() < tamanio; i++) {
+                ids.add(delGrupoIds[i]);
+                gruposDeIds.add(grupo);
+            }
+            saltear = 0;
+            if (i < delGrupoIds.length) {
+                haySiguiente = true;
+                break;
+            }
+        }
+
+        try {
+            ResultadoLectura<Paciente> leidos = pacienteDao.leerPorIds(ids);
+            // Los encontrados vienen en el orden pedido; los que faltan (borrados recién) se omiten
+            List<Donante> donantes = new ArrayList<>(leidos.encontrados().size());
+            int j = 0;
+            for (Paciente paciente : leidos.encontrados()) {
+                while (ids.get(j) != paciente.getId()) {
+                    j++;
+                }
+                donantes.add(new Donante(paciente, gruposDeIds.get(j)));
+            }
+            return new Pagina<>(donantes, pagina, tamanio, haySiguiente);
+        } catch (SQLException e) {
+            throw new Exception("Error al leer los donantes compatibles: " + e.getMessage(), e);
+        }
+    }
+
+    private static IndiceBitmapPacientes mapas() {
+        return AnaliticaPacientesService.getInstancia().getMapas();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Coalescedor de lecturas concurrentes ("single-flight") para la capa Service.
+ * Cuando varios hilos piden la misma clave al mismo tiempo, solo el primero ejecuta
+ * la consulta a la BD; el resto espera y comparte el mismo resultado.
+ *
+ * El mapa de consultas en vuelo es un ConcurrentHashMap (sin bloqueos explícitos) y cada
+ * entrada queda asociada a una "generación". Toda escritura llama a invalidar(), que avanza
+ * la generación: las lecturas que llegan después de la escritura nunca se unen a una
+ * consulta que empezó antes.
+ */
+package services;
+
+import java.sql.SQLException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+public class ConsultasCoalescidas<K, V> {
+
+    /**
+     * Consulta a ejecutar por el hilo "líder".
+     */
+    @FunctionalInterface
+    public interface Consulta<V> {
+        V ejecutar() throws SQLException;
+    }
+
+    // Clave compuesta: la clave pedida + la generación vigente al momento de pedirla
+    private record ClaveEnVuelo<K>(K clave, long generacion) {}
+
+    private final ConcurrentHashMap<ClaveEnVuelo<K>, CompletableFuture<V>> enVuelo = new ConcurrentHashMap<>();
+
+    // Se incrementa en cada escritura para no servir resultados previos a la misma
+    private final AtomicLong generacion = new AtomicLong();
+
+    // Copia del resultado para cada hilo que esperaba: las entidades son mutables
+    // (setters, versión) y no deben compartirse entre estaciones
+    private final UnaryOperator<V> copiar;
+
+    /**
+     * @param copiar Función que copia un resultado no nulo para entregarlo a cada hilo en espera.
+     */
+    public ConsultasCoalescidas(UnaryOperator<V> copiar) {
+        this.copiar = copiar;
+    }
+
+    /**
+     * Ejecuta la consulta o, si ya hay una idéntica en curso (misma clave y generación),
+     * espera su resultado.
+     *
+     * @param clave Clave de la lectura (ej: ID o DNI).
+     * @param consulta Consulta a ejecutar si no hay otra en vuelo.
+     * @return Resultado compartido (puede ser null si la entidad no existe).
+     * @throws SQLException Si la consulta falla (el error se comparte con todos los que esperaban).
+     */
+    public V ejecutar(K clave, Consulta<V> consulta) throws SQLException {
+        ClaveEnVuelo<K> claveEnVuelo = new ClaveEnVuelo<>(clave, generacion.get());
+        CompletableFuture<V> propio = new CompletableFuture<>();
+        CompletableFuture<V> existente = enVuelo.putIfAbsent(claveEnVuelo, propio);
+
+        if (existente != null) {
+            V compartido = esperar(existente);
+            return compartido != null ? copiar.apply(compartido) : null;
+        }
+
+        // Este hilo es el líder: ejecuta la consulta y publica el resultado
+        try {
+            V resultado = consulta.ejecutar();
+            // Se publica una copia que nadie modifica; el líder se queda con el original
+            propio.complete(resultado != null ? copiar.apply(resultado) : null);
+            return resultado;
+        } catch (SQLException | RuntimeException e) {
+            propio.completeExceptionally(e);
+            throw e;
+        } finally {
+            enVuelo.remove(claveEnVuelo, propio);
+        }
+    }
+
+    /**
+     * Avanza la generación. Debe llamarse después de confirmar cualquier escritura que
+     * pueda afectar el resultado de las lecturas coalescidas.
+     */
+    public void invalidar() {
+        generacion.incrementAndGet();
+    }
+
+    private V esperar(CompletableFuture<V> futuro) throws SQLException {
+        try {
+            return futuro.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Lectura interrumpida mientras esperaba una consulta en curso.", e);
+        } catch (CancellationException e) {
+            throw new SQLException("La consulta compartida fue cancelada.", e);
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof SQLException) {
+                throw (SQLException) causa;
+            }
+            if (causa instanceof RuntimeException) {
+                throw (RuntimeException) causa;
+            }
+            throw new SQLException("Error en la consulta compartida: " + causa.getMessage(), causa);
+        }
+    }
+}
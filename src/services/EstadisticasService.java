@@ -0,0 +1,369 @@
+/*
+ * Servicio de estadísticas y reportes del sistema.
+ * Los reportes que combinan varias consultas se ejecutan en una única transacción de
+ * solo lectura con snapshot consistente (TransactionManager.startReadOnlyTransaction),
+ * compartiendo la misma conexión: los números son coherentes entre sí aunque haya
+ * escrituras concurrentes, y se usa una sola conexión en lugar de una por consulta.
+ *
+ * Los contadores del resumen no se cuentan en cada consulta: se leen de la fila de
+ * resumen_contadores, que las escrituras de PacienteService e HistoriaClinicaService
+ * mantienen con incrementos en su misma transacción. Una reconciliación periódica los
+ * recalcula desde las tablas (iniciarReconciliacionPeriodica).
+ *
+ * El reporte demográfico (pirámide de edades por grupo sanguíneo y altas por mes) tiene
+ * dos variantes: un recorrido en streaming repartido en rangos de IDs con fork/join, cada
+ * rango con su conexión y su acumulador, que se combinan al final (calcularDemografia);
+ * o la agregación con GROUP BY en MySQL (calcularDemografiaEnBd).
+ */
+package services;
+
+import config.DatabaseConnection;
+import config.Plazo;
+import config.Prioridad;
+import config.TransaccionConReintentos;
+import config.TransactionManager;
+import dao.PacienteDao;
+import dao.ResumenContadoresDao;
+import entities.TipoSangre;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class EstadisticasService {
+
+    /**
+     * Resumen de contadores del sistema.
+     *
+     * @param pacientesConHistoria Pacientes activos con Historia Clínica activa.
+     * @param historiasPorGrupo Historias Clínicas activas por grupo sanguíneo.
+     * @param reconciliado Último recálculo completo de los contadores (null si nunca se recalcularon).
+     */
+    public record ResumenEstadistico(long pacientesActivos, long pacientesEliminados, long pacientesConHistoria,
+            long historiasActivas, long historiasEliminadas, Map<TipoSangre, Long> historiasPorGrupo,
+            LocalDateTime reconciliado) {
+
+        public long totalPacientes() {
+            return pacientesActivos + pacientesEliminados;
+        }
+
+        public long totalHistorias() {
+            return historiasActivas + historiasEliminadas;
+        }
+
+        public long pacientesSinHistoria() {
+            return pacientesActivos - pacientesConHistoria;
+        }
+    }
+
+    /**
+     * Reporte demográfico de los pacientes activos: cantidad por franja de edad de 5 años
+     * (0-4 ... 85-89, 90 o más, sin fecha de nacimiento) y grupo sanguíneo (o sin HC),
+     * y altas de pacientes por mes.
+     */
+    public static final class Demografia {
+
+        private final long[][] porFranjaYGrupo;
+        private final SortedMap<YearMonth, Long> altasPorMes;
+
+        Demografia(long[][] porFranjaYGrupo, SortedMap<YearMonth, Long> altasPorMes) {
+            this.porFranjaYGrupo = porFranjaYGrupo;
+            this.altasPorMes = Collections.unmodifiableSortedMap(altasPorMes);
+        }
+
+        /**
+         * Cantidad de franjas (la anteúltima es "90 o más" y la última "sin fecha de nacimiento").
+         */
+        public int franjas() {
+            return porFranjaYGrupo.length;
+        }
+
+        /**
+         * Descripción de la franja (ej: "35-39").
+         */
+        public String etiquetaFranja(int franja) {
+            if (franja == AcumuladorDemografia.SIN_FECHA) {
+                return "sin fecha";
+            }
+            int desde = franja * AcumuladorDemografia.ANCHO_FRANJA;
+            return franja == AcumuladorDemografia.FRANJA_ABIERTA ? desde + "+" : desde + "-" + (desde + AcumuladorDemografia.ANCHO_FRANJA - 1);
+        }
+
+        /**
+         * Pacientes activos de la franja con el grupo indicado (null: sin Historia Clínica activa).
+         */
+        public long pacientes(int franja, TipoSangre grupo) {
+            return porFranjaYGrupo[franja][grupo != null ? grupo.ordinal() : AcumuladorDemografia.GRUPOS - 1];
+        }
+
+        /**
+         * Pacientes activos de la franja.
+         */
+        public long totalFranja(int franja) {
+            long total = 0;
+            for (long cantidad : porFranjaYGrupo[franja]) {
+                total += cantidad;
+            }
+            return total;
+        }
+
+        /**
+         * Pacientes activos.
+         */
+        public long totalPacientes() {
+            long total = 0;
+            for (int f = 0; f < porFranjaYGrupo.length; f++) {
+                total += totalFranja(f);
+            }
+            return total;
+        }
+
+        /**
+         * Altas de pacientes (activos o eliminados) por mes, en orden cronológico.
+         */
+        public SortedMap<YearMonth, Long> altasPorMes() {
+            return altasPorMes;
+        }
+
+        /**
+         * Altas de pacientes por año, en orden cronológico.
+         */
+        public SortedMap<Integer, Long> altasPorAnio() {
+            SortedMap<Integer, Long> porAnio = new TreeMap<>();
+            for (Map.Entry<YearMonth, Long> entrada : altasPorMes.entrySet()) {
+                porAnio.merge(entrada.getKey().getYear(), entrada.getValue(), Long::sum);
+            }
+            return porAnio;
+        }
+    }
+
+    private static final Duration PLAZO_REPORTE = Duration.ofSeconds(Long.getLong("plazo.reporteSeg", 60));
+    // Fork/join del reporte demográfico: hilos (y conexiones) simultáneos y rango mínimo de IDs por partición
+    private static final int PARALELISMO = Integer.getInteger("estadisticas.paralelismo", 4);
+    private static final long IDS_POR_PARTICION = Long.getLong("estadisticas.idsPorParticion", 50_000);
+    private static final ForkJoinPool HILOS = new ForkJoinPool(PARALELISMO);
+
+    // Reconciliación periódica del resumen de contadores
+    private static final long RECONCILIACION_MIN = Long.getLong("resumen.reconciliacionMin", 60);
+    private static final AtomicBoolean RECONCILIACION_INICIADA = new AtomicBoolean(false);
+
+    private PacienteDao pacienteDao;
+    private ResumenContadoresDao resumenDao;
+
+    public EstadisticasService() {
+        this.pacienteDao = new PacienteDao();
+        this.resumenDao = new ResumenContadoresDao();
+    }
+
+    /**
+     * Programa la reconciliación del resumen de contadores: la primera enseguida (en un hilo
+     * de fondo) y luego cada resumen.reconciliacionMin minutos. Las llamadas siguientes no hacen nada.
+     */
+    public static void iniciarReconciliacionPeriodica() {
+        if (!RECONCILIACION_INICIADA.compareAndSet(false, true)) {
+            return;
+        }
+        ScheduledExecutorService programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "reconciliacion-resumen");
+            t.setDaemon(true);
+            return t;
+        });
+        EstadisticasService servicio = new EstadisticasService();
+        programador.scheduleWithFixedDelay(() -> {
+            try {
+                servicio.reconciliarResumen();
+            } catch (Exception e) {
+                // Se reintenta en la próxima ejecución
+                System.err.println("❌ No se pudo reconciliar el resumen de contadores: " + e.getMessage());
+            }
+        }, 0, RECONCILIACION_MIN, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Obtiene los contadores de pacientes e historias clínicas (una lectura de la fila de
+     * resumen_contadores, sin contar filas).
+     *
+     * @return Resumen estadístico.
+     * @throws Exception Si hay error de BD.
+     */
+    public ResumenEstadistico obtenerResumen() throws Exception {
+        try {
+            return aResumen(resumenDao.leer());
+        } catch (SQLException e) {
+            throw new Exception("Error al obtener estadísticas: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Recalcula los contadores del resumen desde las tablas y corrige los valores guardados.
+     * La fila del resumen se bloquea antes de contar, así que las escrituras que terminan
+     * mientras tanto esperan y aplican su delta sobre el valor recalculado: no se pierden
+     * ni se cuentan dos veces.
+     *
+     * @return Resumen recalculado.
+     * @throws Exception Si hay error de BD.
+     */
+    public ResumenEstadistico reconciliarResumen() throws Exception {
+        try {
+            ResumenContadoresDao.Contadores[] antesYDespues = TransaccionConReintentos.ejecutar("resumen.reconciliar", tm -> {
+                Connection conn = tm.getConnection();
+                // Primero el bloqueo: las lecturas de calcular() ven todo lo confirmado hasta acá
+                ResumenContadoresDao.Contadores anteriores = resumenDao.bloquear(conn);
+                ResumenContadoresDao.Contadores exactos = resumenDao.calcular(conn);
+                resumenDao.guardar(conn, exactos);
+                return new ResumenContadoresDao.Contadores[] {anteriores, exactos};
+            });
+            ResumenContadoresDao.Contadores anteriores = antesYDespues[0];
+            ResumenContadoresDao.Contadores exactos = antesYDespues[1];
+            if (!mismosValores(anteriores, exactos)) {
+                System.out.println("⚠️ Resumen de contadores corregido: " + aResumen(anteriores) + " -> " + aResumen(exactos));
+            }
+            return aResumen(exactos);
+        } catch (SQLException e) {
+            throw new Exception("Error al reconciliar el resumen de contadores: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Calcula el reporte demográfico en una pasada en streaming sobre paciente/historia_clinica,
+     * repartida en rangos de IDs que se leen en paralelo (fork/join) y se combinan al final.
+     * Los rangos se leen en conexiones distintas: es una foto aproximada si hay escrituras
+     * concurrentes (ver calcularDemografiaEnBd para una foto consistente).
+     *
+     * @return Reporte demográfico.
+     * @throws Exception Si hay error de BD o se vence el plazo.
+     */
+    public Demografia calcularDemografia() throws Exception {
+        try (Plazo plazo = Plazo.iniciar(PLAZO_REPORTE)) {
+            long[] rango = pacienteDao.rangoIds();
+            if (rango[1] < rango[0]) {
+                return new AcumuladorDemografia().resultado();
+            }
+            // Unas cuantas particiones por hilo, para repartir bien los rangos con huecos de IDs
+            long umbral = Math.max(IDS_POR_PARTICION, (rango[1] - rango[0] + 1) / (PARALELISMO * 4L));
+            try {
+                return HILOS.invoke(new ParticionDemografia(rango[0], rango[1], umbral, LocalDate.now(), plazo)).resultado();
+            } catch (RuntimeException e) {
+                plazo.cancelar(); // Las demás particiones ya no hacen falta
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new Exception("Error al calcular el reporte demográfico: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            SQLException causa = causaSql(e);
+            if (causa == null) {
+                throw e;
+            }
+            throw new Exception("Error al calcular el reporte demográfico: " + causa.getMessage(), causa);
+        }
+    }
+
+    /**
+     * Calcula el reporte demográfico con GROUP BY en MySQL, en una transacción de solo lectura
+     * (foto consistente). Transfiere solo los grupos (edad x grupo sanguíneo, y meses).
+     *
+     * @return Reporte demográfico.
+     * @throws Exception Si hay error de BD o se vence el plazo.
+     */
+    public Demografia calcularDemografiaEnBd() throws Exception {
+        try {
+            return Plazo.ejecutar(PLAZO_REPORTE, () -> {
+                try (TransactionManager tm = new TransactionManager(DatabaseConnection.getConnection(Prioridad.LISTADO))) {
+                    tm.startReadOnlyTransaction();
+                    AcumuladorDemografia acumulador = new AcumuladorDemografia();
+                    pacienteDao.agruparDemografia(tm.getConnection(), LocalDate.now(), acumulador);
+                    tm.commit();
+                    return acumulador.resultado();
+                }
+            });
+        } catch (SQLException e) {
+            throw new Exception("Error al calcular el reporte demográfico: " + e.getMessage(), e);
+        }
+    }
+
+    private static ResumenEstadistico aResumen(ResumenContadoresDao.Contadores c) {
+        return new ResumenEstadistico(c.pacientesActivos(), c.pacientesEliminados(), c.pacientesConHistoria(),
+                c.historiasActivas(), c.historiasEliminadas(), c.historiasPorGrupo(), c.reconciliado());
+    }
+
+    // Compara los contadores sin la fecha de reconciliación
+    private static boolean mismosValores(ResumenContadoresDao.Contadores a, ResumenContadoresDao.Contadores b) {
+        return a.pacientesActivos() == b.pacientesActivos() && a.pacientesEliminados() == b.pacientesEliminados()
+                && a.pacientesConHistoria() == b.pacientesConHistoria() && a.historiasActivas() == b.historiasActivas()
+                && a.historiasEliminadas() == b.historiasEliminadas() && a.historiasPorGrupo().equals(b.historiasPorGrupo());
+    }
+
+    // Partición del recorrido: divide el rango de IDs en dos hasta el umbral y lee cada hoja en streaming
+    private final class ParticionDemografia extends RecursiveTask<AcumuladorDemografia> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long idDesde;
+        private final long idHasta;
+        private final long umbral;
+        private final LocalDate hoy;
+        private final Plazo plazo;
+
+        ParticionDemografia(long idDesde, long idHasta, long umbral, LocalDate hoy, Plazo plazo) {
+            this.idDesde = idDesde;
+            this.idHasta = idHasta;
+            this.umbral = umbral;
+            this.hoy = hoy;
+            this.plazo = plazo;
+        }
+
+        @Override
+        protected AcumuladorDemografia compute() {
+            if (idHasta - idDesde + 1 <= umbral) {
+                AcumuladorDemografia acumulador = new AcumuladorDemografia();
+                try {
+                    Plazo.ejecutarVinculado(plazo, () -> {
+                        pacienteDao.recorrerDemografia(idDesde, idHasta, hoy, acumulador);
+                        return null;
+                    });
+                } catch (SQLException e) {
+                    throw new ParticionFallida(e);
+                }
+                return acumulador;
+            }
+            long medio = idDesde + (idHasta - idDesde) / 2;
+            ParticionDemografia izquierda = new ParticionDemografia(idDesde, medio, umbral, hoy, plazo);
+            izquierda.fork();
+            AcumuladorDemografia derecha = new ParticionDemografia(medio + 1, idHasta, umbral, hoy, plazo).compute();
+            return izquierda.join().combinar(derecha);
+        }
+    }
+
+    // Transporta el SQLException de una partición a través de ForkJoinPool.invoke
+    private static final class ParticionFallida extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        ParticionFallida(Throwable causa) {
+            super(causa);
+        }
+    }
+
+    // ForkJoinPool puede re-crear la excepción en el hilo que espera: se busca el SQLException en la cadena de causas
+    private static SQLException causaSql(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql) {
+                return sql;
+            }
+        }
+        return null;
+    }
+}
@@ -8,21 +8,39 @@
  */
 package services;
 
+import dao.ConflictoConcurrenciaException;
+import dao.Pagina;
+import dao.ResultadoLectura;
 import dao.HistoriaClinicaDao;
+import dao.ResumenContadoresDao;
 import entities.HistoriaClinica;
+import entities.HistoriaClinicaConPaciente;
+import entities.HistoriaClinicaResumen;
 import entities.TipoSangre;
+import config.TransaccionConReintentos;
 import config.TransactionManager;
-import config.DatabaseConnection;
+import config.Plazo;
 
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
 
 public class HistoriaClinicaService implements GenericService<HistoriaClinica> {
 
     private HistoriaClinicaDao hcDao;
+    private ResumenContadoresDao resumenDao;
+
+    // Plazo máximo de los listados completos (un leerTodos lento no debe retener la conexión indefinidamente)
+    private static final Duration PLAZO_LISTADO = Duration.ofSeconds(Long.getLong("plazo.listadoSeg", 30));
+
+    // Plazo de las búsquedas interactivas
+    private static final Duration PLAZO_BUSQUEDA = Duration.ofSeconds(Long.getLong("plazo.busquedaSeg", 5));
+    private static final int MAX_TAMANIO_PAGINA = 100;
 
     public HistoriaClinicaService() {
         this.hcDao = new HistoriaClinicaDao();
+        this.resumenDao = new ResumenContadoresDao();
     }
 
     //IMPLEMENTACIÓN DE GenericService
@@ -34,29 +52,33 @@ public class HistoriaClinicaService implements GenericService<HistoriaClinica> {
 
     @Override
     public void actualizar(HistoriaClinica entidad) throws Exception {
-        try (TransactionManager tm = new TransactionManager(DatabaseConnection.getConnection())) {
-            tm.startTransaction();
-            
+        // Validaciones
+        validarHistoriaClinica(entidad, false);
+
+        // Un solo UPDATE condicionado por versión (la existencia la verifica el propio UPDATE)
+        long versionLeida = entidad.getVersion();
+        try {
             try {
-                // Validaciones
-                validarHistoriaClinica(entidad);
-                
-                // Verificar que existe
-                HistoriaClinica existente = hcDao.leer(entidad.getId());
-                if (existente == null) {
-                    throw new SQLException("No existe historia clínica con ID: " + entidad.getId());
-                }
-                
-                hcDao.actualizar(entidad, tm.getConnection());
-                tm.commit();
-                System.out.println("✅ Transacción completada - Historia Clínica actualizada");
-                
+                TransaccionConReintentos.ejecutar("historiaClinica.actualizar", tm -> {
+                    entidad.setVersion(versionLeida); // Si se reintenta, se parte de la versión leída
+                    // Solo el cambio de grupo sanguíneo afecta a los contadores
+                    ResumenContadoresDao.Delta delta = entidad.getCamposModificados().contains(HistoriaClinica.Campo.GRUPO_SANGUINEO)
+                            ? resumenDao.cambioGrupoHistoria(tm.getConnection(), entidad.getId(), entidad.getGrupoSanguineo())
+                            : new ResumenContadoresDao.Delta();
+                    hcDao.actualizar(entidad, tm.getConnection());
+                    resumenDao.aplicar(tm.getConnection(), delta);
+                    return null;
+                });
             } catch (Exception e) {
-                tm.rollback();
-                System.out.println("❌ Transacción revertida - Rollback realizado");
+                entidad.setVersion(versionLeida); // Hubo rollback: la BD sigue en la versión leída
                 throw e;
             }
-            
+            entidad.limpiarCamposModificados(); // Solo después del commit: un reintento vuelve a escribir lo mismo
+            PacienteService.invalidarLecturas();
+            NotificadorCambios.historiaGuardada(entidad);
+            System.out.println("✅ Transacción completada - Historia Clínica actualizada");
+        } catch (ConflictoConcurrenciaException e) {
+            throw e;
         } catch (SQLException e) {
             throw new Exception("Error al actualizar historia clínica: " + e.getMessage(), e);
         }
@@ -64,10 +86,8 @@ public class HistoriaClinicaService implements GenericService<HistoriaClinica> {
 
     @Override
     public void eliminar(Long id) throws Exception {
-        try (TransactionManager tm = new TransactionManager(DatabaseConnection.getConnection())) {
-            tm.startTransaction();
-            
-            try {
+        try {
+            TransaccionConReintentos.ejecutar("historiaClinica.eliminar", tm -> {
                 if (id <= 0) {
                     throw new IllegalArgumentException("ID de historia clínica inválido: " + id);
                 }
@@ -78,16 +98,14 @@ public class HistoriaClinicaService implements GenericService<HistoriaClinica> {
                     throw new SQLException("No existe historia clínica con ID: " + id);
                 }
                 
+                ResumenContadoresDao.Delta delta = resumenDao.cambioEstadoHistoria(tm.getConnection(), id, true);
                 hcDao.eliminar(id, tm.getConnection());
-                tm.commit();
-                System.out.println("✅ Transacción completada - Historia Clínica eliminada");
-                
-            } catch (Exception e) {
-                tm.rollback();
-                System.out.println("❌ Transacción revertida - Rollback realizado");
-                throw e;
-            }
-            
+                resumenDao.aplicar(tm.getConnection(), delta);
+                return null;
+            });
+            PacienteService.invalidarLecturas();
+            NotificadorCambios.historiaEliminada(id);
+            System.out.println("✅ Transacción completada - Historia Clínica eliminada");
         } catch (SQLException e) {
             throw new Exception("Error al eliminar historia clínica: " + e.getMessage(), e);
         }
@@ -105,10 +123,85 @@ public class HistoriaClinicaService implements GenericService<HistoriaClinica> {
         }
     }
 
+    /**
+     * Lee varias historias clínicas por ID en pocas consultas (IN-lists por lotes, en paralelo),
+     * en lugar de llamar a getById una vez por cada una.
+     *
+     * @param ids IDs a leer.
+     * @return Las encontradas en el orden pedido y los IDs que no se encontraron.
+     * @throws Exception Si algún ID es inválido o hay error de BD.
+     */
+    public ResultadoLectura<HistoriaClinica> getByIds(Collection<Long> ids) throws Exception {
+        for (Long id : ids) {
+            if (id == null || id <= 0) {
+                throw new IllegalArgumentException("ID de historia clínica inválido: " + id);
+            }
+        }
+        try {
+            return Plazo.ejecutar(PLAZO_LISTADO, () -> hcDao.leerPorIds(ids));
+        } catch (SQLException e) {
+            throw new Exception("Error al buscar historias clínicas por ID: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Completa en una sola consulta los antecedentes, medicación y observaciones de historias
+     * clínicas leídas sin ellos (listados, búsquedas, pacientes por DNI), antes de mostrarlos.
+     *
+     * @param historias Historias Clínicas (se ignoran las null y las que ya tienen sus textos).
+     * @throws Exception Si hay error de BD.
+     */
+    public void cargarTextos(Collection<HistoriaClinica> historias) throws Exception {
+        try {
+            Plazo.ejecutar(PLAZO_LISTADO, () -> {
+                hcDao.cargarTextos(historias);
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new Exception("Error al cargar los textos de las historias clínicas: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Busca la Historia Clínica activa de un Paciente.
+     *
+     * @param pacienteId ID del Paciente.
+     * @return La Historia Clínica o null si no tiene una activa.
+     * @throws Exception Si el ID es inválido o hay error de BD.
+     */
+    public HistoriaClinica getByPacienteId(long pacienteId) throws Exception {
+        try {
+            if (pacienteId <= 0) {
+                throw new IllegalArgumentException("PacienteId inválido: " + pacienteId);
+            }
+            return hcDao.leerPorPacienteId(pacienteId);
+        } catch (SQLException e) {
+            throw new Exception("Error al buscar historia clínica por paciente: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Busca una Historia Clínica activa por su número.
+     *
+     * @param nroHistoria Número de Historia Clínica (se normaliza a mayúsculas).
+     * @return La Historia Clínica o null si no existe.
+     * @throws Exception Si el número está vacío o hay error de BD.
+     */
+    public HistoriaClinica getByNroHistoria(String nroHistoria) throws Exception {
+        try {
+            if (nroHistoria == null || nroHistoria.trim().isEmpty()) {
+                throw new IllegalArgumentException("El número de historia clínica no puede estar vacío");
+            }
+            return hcDao.leerPorNroHistoria(nroHistoria.trim().toUpperCase());
+        } catch (SQLException e) {
+            throw new Exception("Error al buscar historia clínica por número: " + e.getMessage(), e);
+        }
+    }
+
     @Override
     public List<HistoriaClinica> getAll() throws Exception {
         try {
-            return hcDao.leerTodos();
+            return Plazo.ejecutar(PLAZO_LISTADO, () -> hcDao.leerTodos());
         } catch (SQLException e) {
             throw new Exception("Error al obtener lista de historias clínicas: " + e.getMessage(), e);
         }
@@ -117,12 +210,81 @@ public class HistoriaClinicaService implements GenericService<HistoriaClinica> {
     @Override
     public List<HistoriaClinica> getAllDeleted() throws Exception {
         try {
-            return hcDao.leerTodosEliminados();
+            return Plazo.ejecutar(PLAZO_LISTADO, () -> hcDao.leerTodosEliminados());
         } catch (SQLException e) {
             throw new Exception("Error al obtener historias clínicas eliminadas: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Proyección liviana de los registros activos para listados (sin armar las entidades).
+     *
+     * @return Resúmenes ordenados para mostrar.
+     * @throws Exception Si hay error de BD.
+     */
+    public List<HistoriaClinicaResumen> getAllResumen() throws Exception {
+        try {
+            return Plazo.ejecutar(PLAZO_LISTADO, () -> hcDao.leerResumenes(false));
+        } catch (SQLException e) {
+            throw new Exception("Error al obtener lista de historias clínicas: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Proyección liviana de los registros eliminados lógicamente.
+     *
+     * @return Resúmenes ordenados para mostrar.
+     * @throws Exception Si hay error de BD.
+     */
+    public List<HistoriaClinicaResumen> getAllDeletedResumen() throws Exception {
+        try {
+            return Plazo.ejecutar(PLAZO_LISTADO, () -> hcDao.leerResumenes(true));
+        } catch (SQLException e) {
+            throw new Exception("Error al obtener historias clínicas eliminadas: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Historias Clínicas activas con el resumen de su Paciente (una sola consulta).
+     *
+     * @return Pares Historia Clínica / Paciente ordenados por número de historia.
+     * @throws Exception Si hay error de BD.
+     */
+    public List<HistoriaClinicaConPaciente> getAllConPaciente() throws Exception {
+        try {
+            return Plazo.ejecutar(PLAZO_LISTADO, () -> hcDao.leerTodosConPaciente());
+        } catch (SQLException e) {
+            throw new Exception("Error al obtener lista de historias clínicas: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Búsqueda de texto completo en antecedentes, medicación actual y observaciones de las
+     * historias activas (de pacientes activos), ordenada por relevancia.
+     *
+     * @param texto Términos (todos obligatorios); frases entre comillas; '*' final para prefijo.
+     * @param pagina Número de página (desde 0).
+     * @param tamanio Resultados por página (1 a 100).
+     * @return Página de pares Historia Clínica / Paciente.
+     * @throws Exception Si los parámetros son inválidos o hay error de BD.
+     */
+    public Pagina<HistoriaClinicaConPaciente> buscarEnTextos(String texto, int pagina, int tamanio) throws Exception {
+        if (texto == null || texto.trim().isEmpty()) {
+            throw new IllegalArgumentException("El texto a buscar no puede estar vacío");
+        }
+        if (pagina < 0) {
+            throw new IllegalArgumentException("Número de página inválido: " + pagina);
+        }
+        if (tamanio <= 0 || tamanio > MAX_TAMANIO_PAGINA) {
+            throw new IllegalArgumentException("El tamaño de página debe estar entre 1 y " + MAX_TAMANIO_PAGINA);
+        }
+        try {
+            return Plazo.ejecutar(PLAZO_BUSQUEDA, () -> hcDao.buscarEnTextos(texto, pagina, tamanio));
+        } catch (SQLException e) {
+            throw new Exception("Error al buscar en historias clínicas: " + e.getMessage(), e);
+        }
+    }
+
     @Override
     public long countDeleted() throws Exception {
         try {
@@ -134,36 +296,42 @@ public class HistoriaClinicaService implements GenericService<HistoriaClinica> {
 
     @Override
     public void recuperar(Long id) throws Exception {
-        try (TransactionManager tm = new TransactionManager(DatabaseConnection.getConnection())) {
-            tm.startTransaction();
-            
-            try {
+        try {
+            TransaccionConReintentos.ejecutar("historiaClinica.recuperar", tm -> {
                 if (id <= 0) {
                     throw new IllegalArgumentException("ID de historia clínica inválido: " + id);
-                }            
-                // Verificar que existe entre las eliminadas
-                List<HistoriaClinica> eliminadas = hcDao.leerTodosEliminados();
-                boolean encontrada = eliminadas.stream().anyMatch(hc -> hc.getId() == id);
-                
-                if (!encontrada) {
-                    throw new SQLException("No se encontró historia clínica eliminada con ID: " + id);
                 }
-                
+                // Si no hay una historia eliminada (o archivada) con ese ID, recuperar() lanza "No se encontró..."
+                ResumenContadoresDao.Delta delta = resumenDao.cambioEstadoHistoria(tm.getConnection(), id, false);
                 hcDao.recuperar(id, tm.getConnection());
-                tm.commit();
-                System.out.println("✅ Transacción completada - Historia Clínica recuperada");
-                
-            } catch (Exception e) {
-                tm.rollback();
-                System.out.println("❌ Transacción revertida - Rollback realizado");
-                throw e;
-            }
-            
+                resumenDao.aplicar(tm.getConnection(), delta);
+                return null;
+            });
+            PacienteService.invalidarLecturas();
+            notificarRecuperada(id);
+            System.out.println("✅ Transacción completada - Historia Clínica recuperada");
         } catch (SQLException e) {
             throw new Exception("Error al recuperar historia clínica: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Notifica la recuperación releyendo la Historia Clínica una sola vez para todos los
+     * observadores: si estaba archivada (ArchivadoService), no estaba en sus estructuras en
+     * memoria, así que se publica completa además del cambio de estado.
+     */
+    private void notificarRecuperada(long id) {
+        NotificadorCambios.historiaRecuperada(id);
+        try {
+            HistoriaClinica historia = hcDao.leer(id);
+            if (historia != null) {
+                NotificadorCambios.historiaGuardada(historia);
+            }
+        } catch (SQLException e) {
+            System.err.println("No se pudo releer la Historia Clínica recuperada " + id + ": " + e.getMessage());
+        }
+    }
+
     //MÉTODOS ADICIONALES ESPECÍFICOS
 
     /**
@@ -172,36 +340,24 @@ public class HistoriaClinicaService implements GenericService<HistoriaClinica> {
      */
     public HistoriaClinica crearHistoriaClinica(TransactionManager tm, HistoriaClinica historia, long pacienteId) throws SQLException {
         if (pacienteId <= 0) {
-            throw new IllegalArgumentException("PacienteId inválido para la historia clínica.");
+            throw new IllegalArgumentException("PacienteId inválido: " + pacienteId);
         }
-        validarHistoriaClinica(historia);
-        return hcDao.crear(historia, tm.getConnection(), pacienteId);
+        validarHistoriaClinica(historia, true);
+        hcDao.crear(historia, tm.getConnection(), pacienteId);
+        resumenDao.aplicar(tm.getConnection(), resumenDao.altaHistoria(tm.getConnection(), pacienteId, historia.getGrupoSanguineo(), historia.isEliminado()));
+        return historia;
     }
 
     
      //Crea Historia Clínica con transacción propia
      
     public void crearHistoriaClinicaConPaciente(HistoriaClinica historia, long pacienteId) throws Exception {
-        try (TransactionManager tm = new TransactionManager(DatabaseConnection.getConnection())) {
-            tm.startTransaction();
-            
-            try {
-                validarHistoriaClinica(historia);
-                
-                if (pacienteId <= 0) {
-                    throw new IllegalArgumentException("PacienteId inválido: " + pacienteId);
-                }
-                
-                hcDao.crear(historia, tm.getConnection(), pacienteId);
-                tm.commit();
-                System.out.println("✅ Transacción completada - Historia Clínica creada");
-                
-            } catch (Exception e) {
-                tm.rollback();
-                System.out.println("❌ Transacción revertida - Rollback realizado");
-                throw e;
-            }
-            
+        try {
+            TransaccionConReintentos.ejecutar("historiaClinica.crearHistoriaClinicaConPaciente",
+                    tm -> crearHistoriaClinica(tm, historia, pacienteId));
+            PacienteService.invalidarLecturas();
+            NotificadorCambios.historiaGuardada(historia);
+            System.out.println("✅ Transacción completada - Historia Clínica creada");
         } catch (SQLException e) {
             throw new Exception("Error al crear historia clínica: " + e.getMessage(), e);
         }
@@ -209,8 +365,9 @@ public class HistoriaClinicaService implements GenericService<HistoriaClinica> {
 
     //VALIDACIONES 
 
-    private void validarHistoriaClinica(HistoriaClinica historiaClinica) throws IllegalArgumentException {
-        if (historiaClinica.getNroHistoria() == null || historiaClinica.getNroHistoria().trim().isEmpty()) {
+    // En el alta el número puede quedar vacío: lo genera HistoriaClinicaDao.crear
+    private void validarHistoriaClinica(HistoriaClinica historiaClinica, boolean alta) throws IllegalArgumentException {
+        if (!alta && (historiaClinica.getNroHistoria() == null || historiaClinica.getNroHistoria().trim().isEmpty())) {
             throw new IllegalArgumentException("El número de historia clínica es obligatorio");
         }
         if (historiaClinica.getGrupoSanguineo() == null) {
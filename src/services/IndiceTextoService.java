@@ -0,0 +1,274 @@
+/*
+ * Búsqueda en los textos de las historias clínicas (antecedentes, medicación actual y
+ * observaciones) con un índice invertido en memoria (indices.IndiceInvertido), sin
+ * consultar MySQL en cada búsqueda.
+ *
+ * El índice se construye al iniciar la aplicación, en segundo plano, recorriendo
+ * historia_clinica en streaming, y se mantiene al día como ObservadorCambios con las
+ * escrituras confirmadas por HistoriaClinicaService y PacienteService.
+ * Las historias de pacientes eliminados siguen en el índice pero no se devuelven (igual que
+ * en la búsqueda en la BD): así recuperar un paciente no obliga a releer sus textos.
+ * Mientras se construye, las búsquedas deben hacerse en la BD (HistoriaClinicaService.buscarEnTextos).
+ */
+package services;
+
+import dao.HistoriaClinicaDao;
+import dao.Pagina;
+import dao.ResultadoLectura;
+import entities.HistoriaClinica;
+import entities.Paciente;
+import indices.IndiceInvertido;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public final class IndiceTextoService implements ObservadorCambios {
+
+    private static final IndiceTextoService INSTANCIA = new IndiceTextoService();
+
+    private final IndiceInvertido indice = new IndiceInvertido();
+    private final HistoriaClinicaDao hcDao = new HistoriaClinicaDao();
+    private final AtomicBoolean iniciado = new AtomicBoolean(false);
+    private volatile boolean listo = false;
+
+    // Historias que cambiaron mientras se hacía la carga inicial: la carga no debe pisar
+    // su versión nueva con la que leyó antes. Protegido por 'this' junto con cada indexación;
+    // null una vez terminada la carga (ya no hace falta registrar nada).
+    private Set<Long> cambiadasDuranteCarga = new HashSet<>();
+    private Set<Long> pacientesCambiadosDuranteCarga = new HashSet<>();
+
+    // Estado de los pacientes, protegido por 'this': historia activa de cada paciente, pacientes
+    // eliminados, e historias indexadas que no se devuelven porque su paciente está eliminado
+    private final Map<Long, Long> historiaPorPaciente = new HashMap<>();
+    private final Set<Long> pacientesEliminados = new HashSet<>();
+    private final Set<Long> historiasOcultas = new HashSet<>();
+
+    private IndiceTextoService() {
+    }
+
+    /**
+     * Instancia única (el índice es compartido por toda la aplicación).
+     */
+    public static IndiceTextoService getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Registra el índice como observador de cambios y lo construye en un hilo de fondo.
+     * Las llamadas siguientes no hacen nada.
+     */
+    public void iniciarCargaEnSegundoPlano() {
+        if (!iniciado.compareAndSet(false, true)) {
+            return;
+        }
+        NotificadorCambios.registrar(this);
+        Thread hilo = new Thread(this::cargar, "indice-textos");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Indica si la carga inicial terminó y el índice puede usarse.
+     */
+    public boolean isListo() {
+        return listo;
+    }
+
+    /**
+     * Tamaño actual del índice (documentos, términos, memoria).
+     */
+    public IndiceInvertido.Estadisticas getEstadisticas() {
+        return indice.getEstadisticas();
+    }
+
+    /**
+     * IDs de las historias activas de pacientes activos cuyos textos cumplen la consulta.
+     *
+     * @param consulta Palabras a buscar (sin distinguir mayúsculas ni acentos).
+     * @param operador TODOS (todas las palabras) o ALGUNO (al menos una).
+     * @return IDs ordenados de menor a mayor.
+     * @throws IllegalStateException Si el índice todavía se está construyendo.
+     */
+    public long[] buscarIds(String consulta, IndiceInvertido.Operador operador) {
+        if (!listo) {
+            throw new IllegalStateException("El índice de textos clínicos todavía se está construyendo. Use la búsqueda en la base de datos.");
+        }
+        long[] ids = indice.buscar(consulta, operador);
+        synchronized (this) {
+            if (historiasOcultas.isEmpty()) {
+                return ids;
+            }
+            int visibles = 0;
+            for (long id : ids) {
+                if (!historiasOcultas.contains(id)) {
+                    ids[visibles++] = id;
+                }
+            }
+            return visibles == ids.length ? ids : Arrays.copyOf(ids, visibles);
+        }
+    }
+
+    /**
+     * Busca en el índice y lee de la BD solo las historias de la página pedida (multi-get).
+     *
+     * @param consulta Palabras a buscar.
+     * @param operador TODOS o ALGUNO.
+     * @param pagina Número de página (desde 0).
+     * @param tamanio Resultados por página.
+     * @return Página de Historias Clínicas (sin los TEXT, ver HistoriaClinicaDao.cargarTextos), ordenadas por ID.
+     * @throws Exception Si el índice no está listo o hay error de BD.
+     */
+    public Pagina<HistoriaClinica> buscar(String consulta, IndiceInvertido.Operador operador, int pagina, int tamanio) throws Exception {
+        if (consulta == null || consulta.trim().isEmpty()) {
+            throw new IllegalArgumentException("El texto a buscar no puede estar vacío");
+        }
+        if (pagina < 0 || tamanio <= 0) {
+            throw new IllegalArgumentException("Página o tamaño de página inválido");
+        }
+        long[] ids = buscarIds(consulta, operador);
+        int desde = (int) Math.min(ids.length, (long) pagina * tamanio);
+        int hasta = Math.min(ids.length, desde + tamanio);
+        List<Long> idsPagina = new ArrayList<>(hasta - desde);
+        for (int i = desde; i < hasta; i++) {
+            idsPagina.add(ids[i]);
+        }
+        try {
+            ResultadoLectura<HistoriaClinica> leidas = hcDao.leerPorIds(idsPagina);
+            return new Pagina<>(leidas.encontrados(), pagina, tamanio, ids.length > hasta);
+        } catch (SQLException e) {
+            throw new Exception("Error al leer las historias clínicas encontradas: " + e.getMessage(), e);
+        }
+    }
+
+    // OBSERVADOR DE CAMBIOS
+
+    @Override
+    public void pacienteGuardado(Paciente paciente) {
+        cambiarEstadoPaciente(paciente.getId(), paciente.isEliminado());
+    }
+
+    @Override
+    public void pacienteEliminado(long id) {
+        cambiarEstadoPaciente(id, true);
+    }
+
+    @Override
+    public void pacienteRecuperado(long id) {
+        cambiarEstadoPaciente(id, false);
+    }
+
+    @Override
+    public void historiaGuardada(HistoriaClinica historia) {
+        if (historia.isEliminado()) {
+            quitar(historia.getId());
+            return;
+        }
+        if (!historia.isTextosCargados()) {
+            // Guardada sin haber leído sus textos: se toman de la BD (ya confirmados), sobre una copia
+            historia = new HistoriaClinica(historia);
+            try {
+                hcDao.cargarTextos(historia);
+            } catch (SQLException e) {
+                System.err.println("No se pudo reindexar la Historia Clínica " + historia.getId() + ": " + e.getMessage());
+                return;
+            }
+        }
+        String antecedentes = historia.getAntecedentes();
+        String medicacionActual = historia.getMedicacionActual();
+        String observaciones = historia.getObservaciones();
+        synchronized (this) {
+            registrarCambioDuranteCarga(historia.getId());
+            indice.indexar(historia.getId(), antecedentes, medicacionActual, observaciones);
+            asociar(historia.getId(), historia.getPacienteId());
+        }
+    }
+
+    @Override
+    public void historiaEliminada(long id) {
+        quitar(id);
+    }
+
+    private synchronized void quitar(long id) {
+        registrarCambioDuranteCarga(id);
+        indice.quitar(id);
+        historiasOcultas.remove(id);
+    }
+
+    private synchronized void cambiarEstadoPaciente(long pacienteId, boolean eliminado) {
+        if (pacientesCambiadosDuranteCarga != null) {
+            pacientesCambiadosDuranteCarga.add(pacienteId);
+        }
+        if (eliminado) {
+            pacientesEliminados.add(pacienteId);
+        } else {
+            pacientesEliminados.remove(pacienteId);
+        }
+        Long historiaId = historiaPorPaciente.get(pacienteId);
+        if (historiaId != null) {
+            ocultar(historiaId, eliminado);
+        }
+    }
+
+    // Llamar con el lock de 'this'. Una historia eliminada puede dejar su asociación: ocultarla no tiene efecto
+    private void asociar(long historiaId, long pacienteId) {
+        if (pacienteId <= 0) {
+            return; // Historia sin paciente mapeado: se devuelve siempre
+        }
+        historiaPorPaciente.put(pacienteId, historiaId);
+        ocultar(historiaId, pacientesEliminados.contains(pacienteId));
+    }
+
+    // Llamar con el lock de 'this'
+    private void ocultar(long historiaId, boolean oculta) {
+        if (oculta) {
+            historiasOcultas.add(historiaId);
+        } else {
+            historiasOcultas.remove(historiaId);
+        }
+    }
+
+    // Llamar con el lock de 'this'
+    private void registrarCambioDuranteCarga(long id) {
+        if (cambiadasDuranteCarga != null) {
+            cambiadasDuranteCarga.add(id);
+        }
+    }
+
+    // Carga inicial en streaming (hilo de fondo)
+    private void cargar() {
+        long inicio = System.nanoTime();
+        try {
+            hcDao.recorrerTextos((id, pacienteId, pacienteEliminado, antecedentes, medicacionActual, observaciones) -> {
+                synchronized (this) {
+                    if (!pacientesCambiadosDuranteCarga.contains(pacienteId) && pacienteEliminado) {
+                        pacientesEliminados.add(pacienteId);
+                    }
+                    if (!cambiadasDuranteCarga.contains(id)) {
+                        indice.indexar(id, antecedentes, medicacionActual, observaciones);
+                        asociar(id, pacienteId);
+                    }
+                }
+            });
+            indice.compactar();
+            synchronized (this) {
+                cambiadasDuranteCarga = null;
+                pacientesCambiadosDuranteCarga = null;
+            }
+            listo = true;
+            System.out.println("🔎 Índice de textos clínicos listo en " + (System.nanoTime() - inicio) / 1_000_000 + " ms: " + indice.getEstadisticas());
+        } catch (SQLException | RuntimeException e) {
+            synchronized (this) {
+                cambiadasDuranteCarga = null; // El índice no se va a usar
+                pacientesCambiadosDuranteCarga = null;
+            }
+            System.err.println("❌ No se pudo construir el índice de textos clínicos: " + e.getMessage());
+        }
+    }
+}
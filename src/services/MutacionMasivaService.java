@@ -0,0 +1,202 @@
+/*
+ * Baja y recuperación lógica masiva de pacientes por criterios (FiltroPaciente), para
+ * limpiezas administrativas: "eliminar todos los pacientes sin Historia Clínica",
+ * "recuperar los eliminados por error con apellido García".
+ *
+ * La tabla se recorre en rangos de IDs de la clave primaria (masivo.idsPorLote, por
+ * defecto 1000). Cada rango es una transacción corta: bloquea solo sus filas, cambia las
+ * que cumplen el filtro con un UPDATE por lista de IDs y aplica el delta del resumen de
+ * contadores. Entre rangos hay una pausa (masivo.pausaMs, o lo que tardó el rango si fue
+ * más) para no saturar la BD ni atrasar a las réplicas.
+ *
+ * El avance se informa por rango (Progreso) y el resultado indica desde qué ID continuar,
+ * así una ejecución interrumpida (error, interrupción del hilo) se puede reanudar sin
+ * volver a recorrer lo ya hecho. Los pacientes archivados (ArchivadoService) no se incluyen.
+ */
+package services;
+
+import config.TransaccionConReintentos;
+import dao.FiltroPaciente;
+import dao.PacienteDao;
+import dao.ResumenContadoresDao;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class MutacionMasivaService {
+
+    /**
+     * Cambio de estado a aplicar.
+     */
+    public enum Operacion {
+        ELIMINAR(FiltroPaciente.Estado.ACTIVOS),
+        RECUPERAR(FiltroPaciente.Estado.ELIMINADOS);
+
+        private final FiltroPaciente.Estado estadoOrigen;
+
+        Operacion(FiltroPaciente.Estado estadoOrigen) {
+            this.estadoOrigen = estadoOrigen;
+        }
+
+        /**
+         * Estado que deben tener los pacientes a los que se aplica (el del filtro).
+         */
+        public FiltroPaciente.Estado getEstadoOrigen() {
+            return estadoOrigen;
+        }
+    }
+
+    /**
+     * Un rango de IDs procesado (una transacción).
+     *
+     * @param afectados Pacientes que cambiaron de estado en el rango.
+     */
+    public record Lote(int numero, long idDesde, long idHasta, int afectados, Duration duracion) {
+    }
+
+    /**
+     * Recibe el avance después de confirmar cada rango.
+     */
+    @FunctionalInterface
+    public interface Progreso {
+
+        /**
+         * Rango confirmado.
+         *
+         * @param idMaximo Último ID a recorrer (el mayor ID al comenzar).
+         */
+        void loteTerminado(Lote lote, long idMaximo);
+    }
+
+    /**
+     * Resultado de una ejecución (completa o no).
+     *
+     * @param siguienteId ID desde el cual reanudar si no se completó.
+     * @param completo false si se interrumpió antes de recorrer todos los rangos.
+     */
+    public record Resultado(Operacion operacion, long afectados, List<Lote> lotes, long siguienteId,
+            boolean completo, Duration duracion) {
+
+        @Override
+        public String toString() {
+            return String.format("%s masivo{afectados=%d, lotes=%d, %s, duración=%d ms}", operacion, afectados, lotes.size(),
+                    completo ? "completo" : "interrumpido, reanudar desde ID " + siguienteId, duracion.toMillis());
+        }
+    }
+
+    private static final int IDS_POR_LOTE = Integer.getInteger("masivo.idsPorLote", 1000);
+    private static final long PAUSA_MS = Long.getLong("masivo.pausaMs", 100);
+
+    private final PacienteDao pacienteDao;
+    private final ResumenContadoresDao resumenDao;
+
+    public MutacionMasivaService() {
+        this.pacienteDao = new PacienteDao();
+        this.resumenDao = new ResumenContadoresDao();
+    }
+
+    /**
+     * Aplica la operación a todos los pacientes que cumplen el filtro, desde el ID indicado.
+     * Los pacientes dados de alta después de comenzar (IDs mayores al máximo de ese momento)
+     * no se recorren. Si el hilo se interrumpe, termina después del rango en curso.
+     *
+     * @param operacion Baja o recuperación.
+     * @param filtro Criterios; su estado debe ser el de origen de la operación (ACTIVOS
+     *        para eliminar, ELIMINADOS para recuperar).
+     * @param desdeId ID desde el cual recorrer (1 para empezar; siguienteId para reanudar).
+     * @param progreso Recibe cada rango confirmado (puede ser null).
+     * @return Cantidades por rango y desde dónde reanudar.
+     * @throws IllegalArgumentException Si el filtro no corresponde a la operación.
+     * @throws Exception Si hay error de BD (lo confirmado en rangos anteriores queda hecho;
+     *         el mensaje indica desde qué ID reanudar).
+     */
+    public Resultado ejecutar(Operacion operacion, FiltroPaciente filtro, long desdeId, Progreso progreso) throws Exception {
+        if (operacion == null || filtro == null) {
+            throw new IllegalArgumentException("La operación y el filtro son obligatorios");
+        }
+        if (filtro.getEstado() != operacion.getEstadoOrigen()) {
+            throw new IllegalArgumentException("Para " + operacion + " el filtro debe incluir solo pacientes "
+                    + operacion.getEstadoOrigen() + " (tiene " + filtro.getEstado() + ")");
+        }
+        boolean eliminar = operacion == Operacion.ELIMINAR;
+        long inicio = System.nanoTime();
+        LocalDate hoy = LocalDate.now();
+        List<Lote> lotes = new ArrayList<>();
+        long afectados = 0;
+        long siguiente = Math.max(desdeId, 1);
+        try {
+            long[] rango = pacienteDao.rangoIds();
+            long idMaximo = rango[1];
+            siguiente = Math.max(siguiente, rango[0]);
+            while (siguiente <= idMaximo) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return resultado(operacion, afectados, lotes, siguiente, false, inicio);
+                }
+                long inicioLote = System.nanoTime();
+                long idDesde = siguiente;
+                long idHasta = Math.min(idMaximo, idDesde + IDS_POR_LOTE - 1);
+                List<Long> cambiados = TransaccionConReintentos.ejecutar("paciente.masivo", tm -> {
+                    PacienteDao.SeleccionMasiva seleccion = pacienteDao.bloquearRango(tm.getConnection(), filtro, hoy, !eliminar, idDesde, idHasta);
+                    pacienteDao.cambiarEstado(tm.getConnection(), seleccion.ids(), eliminar);
+                    resumenDao.aplicar(tm.getConnection(),
+                            ResumenContadoresDao.Delta.cambioEstadoPacientes(seleccion.ids().size(), seleccion.conHistoria(), eliminar));
+                    return seleccion.ids();
+                });
+                notificar(cambiados, eliminar);
+
+                Lote lote = new Lote(lotes.size() + 1, idDesde, idHasta, cambiados.size(), Duration.ofNanos(System.nanoTime() - inicioLote));
+                lotes.add(lote);
+                afectados += cambiados.size();
+                siguiente = idHasta + 1;
+                if (progreso != null) {
+                    progreso.loteTerminado(lote, idMaximo);
+                }
+                if (siguiente <= idMaximo && !pausar(inicioLote)) {
+                    return resultado(operacion, afectados, lotes, siguiente, false, inicio);
+                }
+            }
+            return resultado(operacion, afectados, lotes, siguiente, true, inicio);
+        } catch (SQLException e) {
+            throw new Exception("Error en " + operacion + " masivo (" + afectados + " pacientes ya procesados; reanudar desde ID "
+                    + siguiente + "): " + e.getMessage(), e);
+        }
+    }
+
+    // Después del commit de cada rango
+    private static void notificar(List<Long> ids, boolean eliminar) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        PacienteService.invalidarLecturas();
+        for (Long id : ids) {
+            if (eliminar) {
+                NotificadorCambios.pacienteEliminado(id);
+            } else {
+                NotificadorCambios.pacienteRecuperado(id);
+            }
+        }
+    }
+
+    // Pausa entre rangos: masivo.pausaMs, o lo que tardó el rango si fue más. false si se interrumpió
+    private static boolean pausar(long inicioLote) {
+        long duracionMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicioLote);
+        try {
+            Thread.sleep(Math.max(PAUSA_MS, duracionMs));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static Resultado resultado(Operacion operacion, long afectados, List<Lote> lotes, long siguienteId,
+            boolean completo, long inicio) {
+        return new Resultado(operacion, afectados, Collections.unmodifiableList(lotes), siguienteId, completo,
+                Duration.ofNanos(System.nanoTime() - inicio));
+    }
+}
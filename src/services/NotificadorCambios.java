@@ -0,0 +1,73 @@
+/*
+ * Registro de ObservadorCambios y difusión de los cambios confirmados.
+ * La capa Service notifica solo después del commit (nunca dentro de la transacción ni si
+ * hubo rollback). El error de un observador se informa y no afecta a los demás ni a la
+ * operación, que ya está confirmada en la BD.
+ */
+package services;
+
+import entities.HistoriaClinica;
+import entities.Paciente;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+public final class NotificadorCambios {
+
+    private static final CopyOnWriteArrayList<ObservadorCambios> OBSERVADORES = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructor privado, no se puede instanciar
+     */
+    private NotificadorCambios() {
+        throw new UnsupportedOperationException("Esta clase no se puede instanciar.");
+    }
+
+    /**
+     * Registra un observador (si ya estaba registrado, no hace nada).
+     */
+    public static void registrar(ObservadorCambios observador) {
+        OBSERVADORES.addIfAbsent(observador);
+    }
+
+    /**
+     * Quita un observador.
+     */
+    public static void quitar(ObservadorCambios observador) {
+        OBSERVADORES.remove(observador);
+    }
+
+    static void pacienteGuardado(Paciente paciente) {
+        notificar(o -> o.pacienteGuardado(paciente));
+    }
+
+    static void pacienteEliminado(long id) {
+        notificar(o -> o.pacienteEliminado(id));
+    }
+
+    static void pacienteRecuperado(long id) {
+        notificar(o -> o.pacienteRecuperado(id));
+    }
+
+    static void historiaGuardada(HistoriaClinica historia) {
+        notificar(o -> o.historiaGuardada(historia));
+    }
+
+    static void historiaEliminada(long id) {
+        notificar(o -> o.historiaEliminada(id));
+    }
+
+    static void historiaRecuperada(long id) {
+        notificar(o -> o.historiaRecuperada(id));
+    }
+
+    private static void notificar(Consumer<ObservadorCambios> evento) {
+        for (ObservadorCambios observador : OBSERVADORES) {
+            try {
+                evento.accept(observador);
+            } catch (RuntimeException e) {
+                System.err.println("Error al notificar un cambio a " + observador.getClass().getSimpleName() + ": " + e.getMessage());
+            }
+        }
+    }
+}
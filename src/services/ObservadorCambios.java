@@ -0,0 +1,51 @@
+/*
+ * Observador de los cambios confirmados (después del commit) en pacientes e historias
+ * clínicas. Lo implementan las estructuras en memoria que deben mantenerse al día con la
+ * BD (índices, caches, vistas de análisis) sin volver a leerla completa.
+ *
+ * Todos los métodos tienen implementación vacía: cada observador redefine los que le
+ * interesan. Se registran en NotificadorCambios.
+ */
+package services;
+
+import entities.HistoriaClinica;
+import entities.Paciente;
+
+public interface ObservadorCambios {
+
+    /**
+     * Paciente creado o actualizado.
+     */
+    default void pacienteGuardado(Paciente paciente) {
+    }
+
+    /**
+     * Paciente eliminado lógicamente.
+     */
+    default void pacienteEliminado(long id) {
+    }
+
+    /**
+     * Paciente recuperado de la eliminación lógica.
+     */
+    default void pacienteRecuperado(long id) {
+    }
+
+    /**
+     * Historia Clínica creada o actualizada (con su pacienteId asignado).
+     */
+    default void historiaGuardada(HistoriaClinica historia) {
+    }
+
+    /**
+     * Historia Clínica eliminada lógicamente.
+     */
+    default void historiaEliminada(long id) {
+    }
+
+    /**
+     * Historia Clínica recuperada de la eliminación lógica.
+     */
+    default void historiaRecuperada(long id) {
+    }
+}
@@ -9,100 +9,111 @@
 
 package services;
 
+import dao.ConflictoConcurrenciaException;
+import dao.FiltroPaciente;
+import dao.Pagina;
+import dao.ResultadoLectura;
 import dao.PacienteDao;
+import dao.ResumenContadoresDao;
 import entities.Paciente;
+import entities.PacienteResumen;
 import entities.HistoriaClinica;
 import entities.TipoSangre;
-import config.TransactionManager;
-import config.DatabaseConnection;
-import dao.HistoriaClinicaDao;
+import config.TransaccionConReintentos;
+import config.Plazo;
 
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
 
 public class PacienteService implements GenericService<Paciente> {
 
     private PacienteDao pacienteDao;
+    private ResumenContadoresDao resumenDao;
+
+    // Plazo máximo de los listados completos (un leerTodos lento no debe retener la conexión indefinidamente)
+    private static final Duration PLAZO_LISTADO = Duration.ofSeconds(Long.getLong("plazo.listadoSeg", 30));
+
+    // Plazo de las búsquedas interactivas (mostrador)
+    private static final Duration PLAZO_BUSQUEDA = Duration.ofSeconds(Long.getLong("plazo.busquedaSeg", 5));
+    private static final int MAX_TAMANIO_PAGINA = 100;
+
+    // Lecturas coalescidas compartidas por todas las instancias (varias estaciones abren el mismo paciente)
+    private static final ConsultasCoalescidas<Long, Paciente> LECTURAS_POR_ID = new ConsultasCoalescidas<>(Paciente::new);
+    private static final ConsultasCoalescidas<String, Paciente> LECTURAS_POR_DNI = new ConsultasCoalescidas<>(Paciente::new);
 
     public PacienteService() {
         this.pacienteDao = new PacienteDao();
+        this.resumenDao = new ResumenContadoresDao();
     }
 
     // IMPLEMENTACIÓN DE GenericService 
 
     @Override
     public void insertar(Paciente paciente) throws Exception {
-        try (TransactionManager tm = new TransactionManager(DatabaseConnection.getConnection())) {
-            tm.startTransaction();
-            
-            try {
-                // Validaciones básicas
+        try {
+            TransaccionConReintentos.ejecutar("paciente.insertar", tm -> {
+                // Validaciones básicas (el DNI único lo garantiza la restricción UNIQUE de la BD)
                 validarPaciente(paciente);
-                
-                // Verificar DNI único
-                if (pacienteDao.buscarPorDni(paciente.getDni()) != null) {
-                    throw new SQLException("Ya existe un paciente con DNI: " + paciente.getDni());
-                }
-                
                 pacienteDao.crear(paciente, tm.getConnection());
-                tm.commit();
-                System.out.println("✅ Transacción completada - Paciente creado");
-                
-            } catch (Exception e) {
-                tm.rollback();
-                System.out.println("❌ Transacción revertida - Rollback realizado");
-                throw e;
-            }
-            
+                resumenDao.aplicar(tm.getConnection(), ResumenContadoresDao.Delta.altaPaciente(paciente.isEliminado()));
+                return null;
+            });
+            invalidarLecturas();
+            NotificadorCambios.pacienteGuardado(paciente);
+            System.out.println("✅ Transacción completada - Paciente creado");
         } catch (SQLException e) {
+            if (esClaveDuplicada(e, "dni")) {
+                throw new Exception("Error al crear paciente: Ya existe un paciente con DNI: " + paciente.getDni(), e);
+            }
             throw new Exception("Error al crear paciente: " + e.getMessage(), e);
         }
     }
 
     @Override
     public void actualizar(Paciente paciente) throws Exception {
-        try (TransactionManager tm = new TransactionManager(DatabaseConnection.getConnection())) {
-            tm.startTransaction();
-            
+        // Validaciones básicas
+        validarPaciente(paciente);
+
+        // Un solo UPDATE condicionado por versión: la existencia la verifica el propio UPDATE
+        // y el DNI único lo garantiza la restricción UNIQUE de la BD
+        long versionLeida = paciente.getVersion();
+        try {
             try {
-                // Validaciones básicas
-                validarPaciente(paciente);
-                
-                // Verificar que el paciente existe
-                Paciente existente = pacienteDao.leer(paciente.getId());
-                if (existente == null) {
-                    throw new SQLException("No existe paciente con ID: " + paciente.getId());
-                }
-                
-                // Verificar DNI único (excluyendo el paciente actual)
-                Paciente porDni = pacienteDao.buscarPorDni(paciente.getDni());
-                if (porDni != null && porDni.getId() != paciente.getId()) {
-                    throw new SQLException("Ya existe otro paciente con DNI: " + paciente.getDni());
-                }
-                
-                pacienteDao.actualizar(paciente, tm.getConnection());
-                tm.commit();
-                System.out.println("✅ Transacción completada - Paciente actualizado");
-                
+                TransaccionConReintentos.ejecutar("paciente.actualizar", tm -> {
+                    paciente.setVersion(versionLeida); // Si se reintenta, se parte de la versión leída
+                    pacienteDao.actualizar(paciente, tm.getConnection());
+                    return null;
+                });
             } catch (Exception e) {
-                tm.rollback();
-                System.out.println("❌ Transacción revertida - Rollback realizado");
+                paciente.setVersion(versionLeida); // Hubo rollback: la BD sigue en la versión leída
                 throw e;
             }
-            
+            paciente.limpiarCamposModificados(); // Solo después del commit: un reintento vuelve a escribir lo mismo
+            invalidarLecturas();
+            NotificadorCambios.pacienteGuardado(paciente);
+            System.out.println("✅ Transacción completada - Paciente actualizado");
+        } catch (ConflictoConcurrenciaException e) {
+            throw e;
         } catch (SQLException e) {
+            if (esClaveDuplicada(e, "dni")) {
+                throw new Exception("Error al actualizar paciente: Ya existe otro paciente con DNI: " + paciente.getDni(), e);
+            }
             throw new Exception("Error al actualizar paciente: " + e.getMessage(), e);
         }
     }
 
     @Override
     public void eliminar(Long id) throws Exception {
-        try (TransactionManager tm = new TransactionManager(DatabaseConnection.getConnection())) {
-            tm.startTransaction();
-            
-            try {
+        try {
+            TransaccionConReintentos.ejecutar("paciente.eliminar", tm -> {
                 if (id <= 0) {
                     throw new IllegalArgumentException("ID de paciente inválido: " + id);
                 }                
@@ -112,16 +123,14 @@ public class PacienteService implements GenericService<Paciente> {
                     throw new SQLException("No existe paciente con ID: " + id);
                 }
                 
+                ResumenContadoresDao.Delta delta = resumenDao.cambioEstadoPaciente(tm.getConnection(), id, true);
                 pacienteDao.eliminar(id, tm.getConnection());
-                tm.commit();
-                System.out.println("✅ Transacción completada - Paciente eliminado");
-                
-            } catch (Exception e) {
-                tm.rollback();
-                System.out.println("❌ Transacción revertida - Rollback realizado");
-                throw e;
-            }
-            
+                resumenDao.aplicar(tm.getConnection(), delta);
+                return null;
+            });
+            invalidarLecturas();
+            NotificadorCambios.pacienteEliminado(id);
+            System.out.println("✅ Transacción completada - Paciente eliminado");
         } catch (SQLException e) {
             throw new Exception("Error al eliminar paciente: " + e.getMessage(), e);
         }
@@ -133,16 +142,37 @@ public class PacienteService implements GenericService<Paciente> {
             if (id <= 0) {
                 throw new IllegalArgumentException("ID de paciente inválido: " + id);
             }
-            return pacienteDao.leer(id);
+            return LECTURAS_POR_ID.ejecutar(id, () -> pacienteDao.leer(id));
         } catch (SQLException e) {
             throw new Exception("Error al buscar paciente por ID: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Lee varios pacientes por ID en pocas consultas (IN-lists por lotes, en paralelo),
+     * en lugar de llamar a getById una vez por cada uno.
+     *
+     * @param ids IDs a leer.
+     * @return Los encontrados en el orden pedido y los IDs que no se encontraron.
+     * @throws Exception Si algún ID es inválido o hay error de BD.
+     */
+    public ResultadoLectura<Paciente> getByIds(Collection<Long> ids) throws Exception {
+        for (Long id : ids) {
+            if (id == null || id <= 0) {
+                throw new IllegalArgumentException("ID de paciente inválido: " + id);
+            }
+        }
+        try {
+            return Plazo.ejecutar(PLAZO_LISTADO, () -> pacienteDao.leerPorIds(ids));
+        } catch (SQLException e) {
+            throw new Exception("Error al buscar pacientes por ID: " + e.getMessage(), e);
+        }
+    }
+
     @Override
     public List<Paciente> getAll() throws Exception {
         try {
-            return pacienteDao.leerTodos();
+            return Plazo.ejecutar(PLAZO_LISTADO, () -> pacienteDao.leerTodos());
         } catch (SQLException e) {
             throw new Exception("Error al obtener lista de pacientes: " + e.getMessage(), e);
         }
@@ -151,7 +181,35 @@ public class PacienteService implements GenericService<Paciente> {
     @Override
     public List<Paciente> getAllDeleted() throws Exception {
         try {
-            return pacienteDao.leerTodosEliminados();
+            return Plazo.ejecutar(PLAZO_LISTADO, () -> pacienteDao.leerTodosEliminados());
+        } catch (SQLException e) {
+            throw new Exception("Error al obtener pacientes eliminados: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Proyección liviana de los registros activos para listados (sin armar las entidades).
+     *
+     * @return Resúmenes ordenados para mostrar.
+     * @throws Exception Si hay error de BD.
+     */
+    public List<PacienteResumen> getAllResumen() throws Exception {
+        try {
+            return Plazo.ejecutar(PLAZO_LISTADO, () -> pacienteDao.leerResumenes(false));
+        } catch (SQLException e) {
+            throw new Exception("Error al obtener lista de pacientes: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Proyección liviana de los registros eliminados lógicamente.
+     *
+     * @return Resúmenes ordenados para mostrar.
+     * @throws Exception Si hay error de BD.
+     */
+    public List<PacienteResumen> getAllDeletedResumen() throws Exception {
+        try {
+            return Plazo.ejecutar(PLAZO_LISTADO, () -> pacienteDao.leerResumenes(true));
         } catch (SQLException e) {
             throw new Exception("Error al obtener pacientes eliminados: " + e.getMessage(), e);
         }
@@ -168,38 +226,125 @@ public class PacienteService implements GenericService<Paciente> {
 
     @Override
     public void recuperar(Long id) throws Exception {
-        try (TransactionManager tm = new TransactionManager(DatabaseConnection.getConnection())) {
-            tm.startTransaction();
-            
-            try {
+        try {
+            TransaccionConReintentos.ejecutar("paciente.recuperar", tm -> {
                 if (id <= 0) {
                     throw new IllegalArgumentException("ID de paciente inválido: " + id);
                 }
-                
-                // Verificar que existe entre los eliminados
-                List<Paciente> eliminados = pacienteDao.leerTodosEliminados();
-                boolean encontrado = eliminados.stream().anyMatch(p -> p.getId() == id);
-                
-                if (!encontrado) {
-                    throw new SQLException("No se encontró paciente eliminado con ID: " + id);
-                }
-                
+                // Si no hay un paciente eliminado (o archivado) con ese ID, recuperar() lanza "No se encontró..."
+                ResumenContadoresDao.Delta delta = resumenDao.cambioEstadoPaciente(tm.getConnection(), id, false);
                 pacienteDao.recuperar(id, tm.getConnection());
-                tm.commit();
-                System.out.println("✅ Transacción completada - Paciente recuperado");
-                
-            } catch (Exception e) {
-                tm.rollback();
-                System.out.println("❌ Transacción revertida - Rollback realizado");
-                throw e;
-            }
-            
+                resumenDao.aplicar(tm.getConnection(), delta);
+                return null;
+            });
+            invalidarLecturas();
+            notificarRecuperado(id);
+            System.out.println("✅ Transacción completada - Paciente recuperado");
         } catch (SQLException e) {
             throw new Exception("Error al recuperar paciente: " + e.getMessage(), e);
         }
     }
 
-    // MÉTODOS ADICIONALES ESPECÍFICOS 
+    // MÉTODOS ADICIONALES ESPECÍFICOS
+
+    /**
+     * Busca pacientes activos por prefijo de apellido y/o nombre (sin distinguir mayúsculas
+     * ni acentos), ordenados por relevancia.
+     *
+     * @param texto Texto a buscar (ej: "gonz", "garcia ju").
+     * @param pagina Número de página (desde 0).
+     * @param tamanio Resultados por página (1 a 100).
+     * @return Página de resultados.
+     * @throws Exception Si los parámetros son inválidos o hay error de BD.
+     */
+    public Pagina<PacienteResumen> buscarPorNombre(String texto, int pagina, int tamanio) throws Exception {
+        validarBusqueda(texto, pagina, tamanio);
+        try {
+            return Plazo.ejecutar(PLAZO_BUSQUEDA, () -> pacienteDao.buscarPorNombre(texto, pagina, tamanio));
+        } catch (SQLException e) {
+            throw new Exception("Error al buscar pacientes por nombre: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Busca pacientes activos con apellido/nombre parecido, tolerando errores de tipeo,
+     * ordenados por similitud.
+     *
+     * @param texto Texto a buscar (ej: "gonzales").
+     * @param pagina Número de página (desde 0).
+     * @param tamanio Resultados por página (1 a 100).
+     * @return Página de resultados; truncada() si hubo más candidatos que busqueda.candidatosAproximados.
+     * @throws Exception Si los parámetros son inválidos o hay error de BD.
+     */
+    public Pagina<PacienteResumen> buscarAproximado(String texto, int pagina, int tamanio) throws Exception {
+        validarBusqueda(texto, pagina, tamanio);
+        try {
+            return Plazo.ejecutar(PLAZO_BUSQUEDA, () -> pacienteDao.buscarAproximado(texto, pagina, tamanio));
+        } catch (SQLException e) {
+            throw new Exception("Error al buscar pacientes por nombre aproximado: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Recorre los pacientes que cumplen los criterios sin cargarlos todos en memoria
+     * (reportes). La consulta es una sola sentencia que filtra en la BD.
+     *
+     * @param filtro Criterios combinados (ver FiltroPaciente).
+     * @param consumidor Recibe cada paciente (HC sin antecedentes/medicación/observaciones:
+     * se completan con HistoriaClinicaService.cargarTextos).
+     * @return Cantidad de pacientes recorridos.
+     * @throws Exception Si hay error de BD.
+     */
+    public long recorrerPorFiltro(FiltroPaciente filtro, Consumer<Paciente> consumidor) throws Exception {
+        if (filtro == null || consumidor == null) {
+            throw new IllegalArgumentException("El filtro y el consumidor no pueden ser nulos");
+        }
+        try {
+            return Plazo.ejecutar(PLAZO_LISTADO, () -> pacienteDao.recorrer(filtro, consumidor));
+        } catch (SQLException e) {
+            throw new Exception("Error al filtrar pacientes: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Retorna los primeros pacientes que cumplen los criterios.
+     *
+     * @param filtro Criterios combinados.
+     * @param limite Cantidad máxima (1 a 100).
+     * @return Lista de pacientes.
+     * @throws Exception Si los parámetros son inválidos o hay error de BD.
+     */
+    public List<Paciente> buscarPorFiltro(FiltroPaciente filtro, int limite) throws Exception {
+        if (filtro == null) {
+            throw new IllegalArgumentException("El filtro no puede ser nulo");
+        }
+        if (limite <= 0 || limite > MAX_TAMANIO_PAGINA) {
+            throw new IllegalArgumentException("El límite debe estar entre 1 y " + MAX_TAMANIO_PAGINA);
+        }
+        try {
+            return Plazo.ejecutar(PLAZO_BUSQUEDA, () -> pacienteDao.buscar(filtro, limite));
+        } catch (SQLException e) {
+            throw new Exception("Error al filtrar pacientes: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Cuenta los pacientes que cumplen los criterios.
+     *
+     * @param filtro Criterios combinados.
+     * @return Cantidad de pacientes.
+     * @throws Exception Si hay error de BD.
+     */
+    public long contarPorFiltro(FiltroPaciente filtro) throws Exception {
+        if (filtro == null) {
+            throw new IllegalArgumentException("El filtro no puede ser nulo");
+        }
+        try {
+            return Plazo.ejecutar(PLAZO_BUSQUEDA, () -> pacienteDao.contar(filtro));
+        } catch (SQLException e) {
+            throw new Exception("Error al contar pacientes: " + e.getMessage(), e);
+        }
+    }
 
     
      //Busca paciente por DNI
@@ -209,7 +354,8 @@ public class PacienteService implements GenericService<Paciente> {
             if (dni == null || dni.trim().isEmpty()) {
                 throw new IllegalArgumentException("DNI no puede estar vacío");
             }
-            return pacienteDao.buscarPorDni(dni.trim().toUpperCase());
+            String dniNormalizado = dni.trim().toUpperCase();
+            return LECTURAS_POR_DNI.ejecutar(dniNormalizado, () -> pacienteDao.buscarPorDni(dniNormalizado));
         } catch (SQLException e) {
             throw new Exception("Error al buscar paciente por DNI: " + e.getMessage(), e);
         }
@@ -219,49 +365,174 @@ public class PacienteService implements GenericService<Paciente> {
      //Crea paciente con Historia Clínica opcional - TRANSACCIÓN ATÓMICA
      
     public void crearPacienteConHistoriaOpcional(Paciente paciente, HistoriaClinica historiaClinica) throws Exception {
-        try (TransactionManager tm = new TransactionManager(DatabaseConnection.getConnection())) {
-            tm.startTransaction();
-            
-            try {
-                // Validar paciente
+        try {
+            // Con Historia Clínica los dos INSERT van juntos: hace falta una conexión multi-sentencia
+            TransaccionConReintentos.ejecutar("paciente.crearPacienteConHistoriaOpcional", historiaClinica != null, tm -> {
+                // Validar paciente (el DNI único lo garantiza la restricción UNIQUE de la BD)
                 validarPaciente(paciente);
-                
-                // Verificar DNI único
-                if (pacienteDao.buscarPorDni(paciente.getDni()) != null) {
-                    throw new SQLException("Ya existe un paciente con DNI: " + paciente.getDni());
-                }
-                
-                // Crear paciente
-                Paciente pacienteCreado = pacienteDao.crear(paciente, tm.getConnection());
-                System.out.println("📝 Paciente creado en transacción (pendiente de commit)");
-                
-                // Crear Historia Clínica si se proporciona
-                if (historiaClinica != null) {
+                ResumenContadoresDao.Delta delta = ResumenContadoresDao.Delta.altaPaciente(paciente.isEliminado());
+
+                if (historiaClinica == null) {
+                    pacienteDao.crear(paciente, tm.getConnection());
+                    System.out.println("📝 Paciente creado en transacción (pendiente de commit)");
+                } else {
                     validarHistoriaClinica(historiaClinica);
-                    
-                    // Usar el DAO directamente para mantener la misma transacción
-                    HistoriaClinicaDao hcDao = new HistoriaClinicaDao();
-                    hcDao.crear(historiaClinica, tm.getConnection(), pacienteCreado.getId());
-                    
-                    // Asignar la historia clínica al paciente
-                    pacienteCreado.setHistoriaClinica(historiaClinica);
-                    System.out.println("📝 Historia Clínica creada en transacción (pendiente de commit)");
+
+                    // Paciente e Historia Clínica en un solo viaje a la BD, con los IDs ya asignados
+                    pacienteDao.crearConHistoria(paciente, historiaClinica, tm.getConnection());
+                    paciente.setHistoriaClinica(historiaClinica);
+                    delta.sumar(ResumenContadoresDao.Delta.altaHistoria(historiaClinica.getGrupoSanguineo(),
+                            historiaClinica.isEliminado(), !paciente.isEliminado()));
+                    System.out.println("📝 Paciente e Historia Clínica creados en transacción (pendiente de commit)");
                 }
-                
-                tm.commit(); // ✅ SOLO aquí se confirma TODO
-                System.out.println("✅ Transacción completada - Paciente" + 
-                    (historiaClinica != null ? " e Historia Clínica" : "") + " creados exitosamente");
-                
-            } catch (Exception e) {
-                tm.rollback(); // ✅ Si algo falla, se revierte TODO
-                System.out.println("❌ Transacción revertida - Rollback realizado. Nada se guardó en la BD");
-                throw new Exception("Error en transacción: " + e.getMessage(), e);
+                resumenDao.aplicar(tm.getConnection(), delta);
+                return null; // ✅ El commit se hace solo si todo lo anterior salió bien
+            });
+            invalidarLecturas();
+            NotificadorCambios.pacienteGuardado(paciente);
+            if (historiaClinica != null) {
+                NotificadorCambios.historiaGuardada(historiaClinica);
+            }
+            System.out.println("✅ Transacción completada - Paciente" + 
+                (historiaClinica != null ? " e Historia Clínica" : "") + " creados exitosamente");
+        } catch (Exception e) {
+            System.out.println("❌ Nada se guardó en la BD");
+            if (e instanceof SQLException sqlEx && esClaveDuplicada(sqlEx, "dni")) {
+                throw new Exception("Error en transacción: Ya existe un paciente con DNI: " + paciente.getDni(), e);
+            }
+            if (historiaClinica != null && e instanceof SQLException sqlEx && esClaveDuplicada(sqlEx, "nro_historia")) {
+                throw new Exception("Error en transacción: Ya existe una historia clínica con número: " + historiaClinica.getNroHistoria(), e);
             }
+            throw new Exception("Error en transacción: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Inserta o actualiza un lote de pacientes según su DNI, para integraciones que reenvían
+     * los mismos datos (una sola transacción: se guardan todos o ninguno). Opcionalmente
+     * incluye la Historia Clínica de cada paciente. Reenviar datos iguales no escribe nada.
+     *
+     * @param pacientes Pacientes a guardar (DNI sin repetir dentro del lote). Su DNI se
+     *        normaliza igual que en buscarPorDni (sin espacios al borde y en mayúsculas).
+     * @param conHistoria true para guardar también la Historia Clínica de cada paciente que la tenga.
+     * @return Un resultado por paciente (insertado, actualizado o sin cambios), en el mismo orden.
+     * @throws IllegalArgumentException Si algún paciente o historia no es válido o hay DNI repetidos.
+     * @throws Exception Si hay error de BD (no se guarda ninguno).
+     */
+    public List<PacienteDao.Upsert> upsertPorDni(List<Paciente> pacientes, boolean conHistoria) throws Exception {
+        if (pacientes == null || pacientes.isEmpty()) {
+            throw new IllegalArgumentException("La lista de pacientes no puede estar vacía");
+        }
+        Set<String> dnis = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        for (Paciente paciente : pacientes) {
+            validarPaciente(paciente);
+            paciente.setDni(paciente.getDni().trim().toUpperCase());
+            if (!dnis.add(paciente.getDni())) {
+                throw new IllegalArgumentException("DNI repetido en el lote: " + paciente.getDni());
+            }
+            if (conHistoria && paciente.getHistoriaClinica() != null) {
+                validarHistoriaClinica(paciente.getHistoriaClinica());
+            }
+        }
+        List<PacienteDao.Upsert> resultados;
+        try {
+            resultados = TransaccionConReintentos.ejecutar("paciente.upsertPorDni", tm -> {
+                List<PacienteDao.Upsert> upserts = pacienteDao.upsertPorDni(tm.getConnection(), pacientes, conHistoria);
+                ResumenContadoresDao.Delta delta = new ResumenContadoresDao.Delta();
+                for (PacienteDao.Upsert upsert : upserts) {
+                    Paciente paciente = upsert.paciente();
+                    HistoriaClinica historia = paciente.getHistoriaClinica();
+                    if (upsert.resultado() == PacienteDao.ResultadoUpsert.INSERTADO) {
+                        delta.sumar(ResumenContadoresDao.Delta.altaPaciente(paciente.isEliminado()));
+                    }
+                    if (upsert.historia() == PacienteDao.ResultadoUpsert.INSERTADO) {
+                        delta.sumar(ResumenContadoresDao.Delta.altaHistoria(historia.getGrupoSanguineo(),
+                                historia.isEliminado(), !paciente.isEliminado()));
+                    } else if (upsert.historia() == PacienteDao.ResultadoUpsert.ACTUALIZADO && !historia.isEliminado()) {
+                        delta.sumar(ResumenContadoresDao.Delta.cambioGrupoHistoria(upsert.grupoAnterior(), historia.getGrupoSanguineo()));
+                    }
+                }
+                resumenDao.aplicar(tm.getConnection(), delta);
+                return upserts;
+            });
+        } catch (SQLException e) {
+            if (esClaveDuplicada(e, "nro_historia")) {
+                throw new Exception("Error en el upsert de pacientes: Ya existe una historia clínica con alguno de los números del lote", e);
+            }
+            throw new Exception("Error en el upsert de pacientes: " + e.getMessage(), e);
+        }
+
+        // Solo lo que cambió, después del commit
+        boolean huboCambios = false;
+        for (PacienteDao.Upsert upsert : resultados) {
+            boolean pacienteCambio = upsert.resultado() != PacienteDao.ResultadoUpsert.SIN_CAMBIOS;
+            boolean historiaCambio = upsert.historia() != null && upsert.historia() != PacienteDao.ResultadoUpsert.SIN_CAMBIOS;
+            if (pacienteCambio || historiaCambio) {
+                if (!huboCambios) {
+                    invalidarLecturas();
+                    huboCambios = true;
+                }
+                NotificadorCambios.pacienteGuardado(upsert.paciente());
+            }
+            if (historiaCambio) {
+                NotificadorCambios.historiaGuardada(upsert.paciente().getHistoriaClinica());
+            }
+        }
+        return resultados;
+    }
+
+    /**
+     * Notifica la recuperación releyendo el paciente: si estaba archivado (ArchivadoService),
+     * ni él ni su Historia Clínica estaban en las estructuras en memoria, así que se
+     * publican completos además del cambio de estado.
+     */
+    private void notificarRecuperado(long id) {
+        NotificadorCambios.pacienteRecuperado(id);
+        try {
+            Paciente paciente = pacienteDao.leer(id);
+            if (paciente != null) {
+                NotificadorCambios.pacienteGuardado(paciente);
+                if (paciente.getHistoriaClinica() != null && !paciente.getHistoriaClinica().isEliminado()) {
+                    NotificadorCambios.historiaGuardada(paciente.getHistoriaClinica());
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("No se pudo releer el Paciente recuperado " + id + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Invalida las lecturas coalescidas en curso. Se llama después de cada commit que
+     * modifica pacientes o historias clínicas (el LEFT JOIN de PacienteDao incluye la HC).
+     */
+    static void invalidarLecturas() {
+        LECTURAS_POR_ID.invalidar();
+        LECTURAS_POR_DNI.invalidar();
+    }
+
+    /**
+     * Indica si el error es una violación de la clave única indicada (error MySQL 1062).
+     */
+    private static boolean esClaveDuplicada(SQLException e, String columna) {
+        boolean duplicada = e instanceof SQLIntegrityConstraintViolationException || e.getErrorCode() == 1062;
+        String mensaje = e.getMessage();
+        return duplicada && mensaje != null && (mensaje.contains("'" + columna + "'") || mensaje.contains("." + columna + "'"));
+    }
+
     // VALIDACIONES 
 
+    private void validarBusqueda(String texto, int pagina, int tamanio) throws IllegalArgumentException {
+        if (texto == null || texto.trim().isEmpty()) {
+            throw new IllegalArgumentException("El texto a buscar no puede estar vacío");
+        }
+        if (pagina < 0) {
+            throw new IllegalArgumentException("Número de página inválido: " + pagina);
+        }
+        if (tamanio <= 0 || tamanio > MAX_TAMANIO_PAGINA) {
+            throw new IllegalArgumentException("El tamaño de página debe estar entre 1 y " + MAX_TAMANIO_PAGINA);
+        }
+    }
+
     private void validarPaciente(Paciente paciente) throws IllegalArgumentException {
         if (paciente.getNombre() == null || paciente.getNombre().trim().isEmpty()) {
             throw new IllegalArgumentException("El nombre del paciente es obligatorio");
@@ -284,10 +555,9 @@ public class PacienteService implements GenericService<Paciente> {
         }
     }
 
+    // Solo se usa en altas y upserts: si el número queda vacío lo genera el DAO al insertar
+    // (o, en el upsert de una historia existente, se conserva el actual)
     private void validarHistoriaClinica(HistoriaClinica historiaClinica) throws IllegalArgumentException {
-        if (historiaClinica.getNroHistoria() == null || historiaClinica.getNroHistoria().trim().isEmpty()) {
-            throw new IllegalArgumentException("El número de historia clínica es obligatorio");
-        }
         if (historiaClinica.getGrupoSanguineo() == null) {
             throw new IllegalArgumentException("El grupo sanguíneo es obligatorio");
         }